@@ -64,6 +64,7 @@ public class NotificationClickHandler {
             // 正向反馈到本地模型 - 参数true表示正向
             String trainingText = notificationInfo.getTitle() != null ? notificationInfo.getContent() : "";
             LocalModelManager.getInstance(context).process(
+                    notificationInfo.getPackageName(),
                     notificationInfo.getTitle(),
                     trainingText,
                     true
@@ -0,0 +1,61 @@
+package cn.pylin.xycjd.manager;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * 共用的 HTTP 客户端
+ *
+ * 在线模型、检查更新、下载更新共用一个连接池：同一主机的连接保持 KEEP_ALIVE_MINUTES 分钟供后续请求复用，
+ * 服务器支持 HTTP/2 时并发请求在同一连接上多路复用。各用途通过 {@link #newClientBuilder()} 设置自己的
+ * 超时和并发限制（派生的客户端共用连接池和线程池）。
+ */
+public class HttpClientManager {
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static HttpClientManager instance;
+    private final ConnectionPool connectionPool;
+    private final OkHttpClient baseClient;
+
+    private HttpClientManager() {
+        this.connectionPool = new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+        this.baseClient = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .build();
+    }
+
+    public static synchronized HttpClientManager getInstance() {
+        if (instance == null) {
+            instance = new HttpClientManager();
+        }
+        return instance;
+    }
+
+    /**
+     * 基于共用连接池的客户端构建器
+     */
+    public OkHttpClient.Builder newClientBuilder() {
+        return baseClient.newBuilder();
+    }
+
+    /**
+     * 空闲连接数
+     */
+    public int getIdleConnectionCount() {
+        return connectionPool.idleConnectionCount();
+    }
+
+    /**
+     * 连接总数（空闲 + 使用中）
+     */
+    public int getConnectionCount() {
+        return connectionPool.connectionCount();
+    }
+}
@@ -13,6 +13,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
+import cn.pylin.xycjd.R;
+
 public class NotificationLogManager {
     private static NotificationLogManager instance;
     private final List<String> logs = new ArrayList<>();
@@ -33,6 +35,23 @@ public class NotificationLogManager {
         void onLogAdded(String log);
     }
 
+    /**
+     * 日志中记录的一次本地模型检查
+     */
+    public static class ModelCheckRecord {
+        public final String packageName;
+        public final String title;
+        public final String content;
+        public final boolean filtered;
+
+        public ModelCheckRecord(String packageName, String title, String content, boolean filtered) {
+            this.packageName = packageName;
+            this.title = title;
+            this.content = content;
+            this.filtered = filtered;
+        }
+    }
+
     private NotificationLogManager(Context context) {
         this.context = context.getApplicationContext();
         loadLogsFromFile(); // 启动时加载已有日志
@@ -287,6 +306,87 @@ public class NotificationLogManager {
         }
     }
 
+    /**
+     * 读取日志文件中的本地模型检查记录（用于重新评估）
+     * 按当前语言的日志格式解析，切换语言前记录的条目会被跳过
+     */
+    public List<ModelCheckRecord> getLocalModelCheckRecords() {
+        List<ModelCheckRecord> records = new ArrayList<>();
+        File file = new File(context.getFilesDir(), LOG_FILE_NAME);
+        if (!file.exists()) {
+            return records;
+        }
+
+        String header = String.format(context.getString(R.string.log_model_check_header),
+                context.getString(R.string.log_model_local));
+        String footer = context.getString(R.string.log_extras_footer);
+        String packagePrefix = context.getString(R.string.log_package_name_colon);
+        String resultPrefix = context.getString(R.string.log_result_colon);
+        String titlePrefix = context.getString(R.string.log_title_colon);
+        String contentPrefix = context.getString(R.string.log_content_colon);
+        String resultFiltered = context.getString(R.string.log_result_filtered);
+        String resultAllowed = context.getString(R.string.log_result_allowed);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)))) {
+            boolean inCheck = false;
+            String packageName = null;
+            String title = null;
+            String result = null;
+            StringBuilder content = null;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.equals(header)) {
+                    inCheck = true;
+                    packageName = null;
+                    title = null;
+                    result = null;
+                    content = null;
+                    continue;
+                }
+                if (!inCheck) {
+                    continue;
+                }
+
+                // 内容可能有多行，直到结束行为止
+                if (content != null) {
+                    if (line.equals(footer)) {
+                        if (packageName != null && (resultFiltered.equals(result) || resultAllowed.equals(result))) {
+                            records.add(new ModelCheckRecord(packageName, title, content.toString(),
+                                    resultFiltered.equals(result)));
+                        }
+                        inCheck = false;
+                        content = null;
+                    } else {
+                        content.append('\n').append(line);
+                    }
+                    continue;
+                }
+
+                if (line.startsWith(packagePrefix)) {
+                    packageName = valueOf(line, packagePrefix);
+                } else if (line.startsWith(resultPrefix)) {
+                    result = valueOf(line, resultPrefix);
+                } else if (line.startsWith(titlePrefix)) {
+                    title = valueOf(line, titlePrefix);
+                } else if (line.startsWith(contentPrefix)) {
+                    content = new StringBuilder(valueOf(line, contentPrefix));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return records;
+    }
+
+    /**
+     * 日志行中标签后的值（去掉标签后的一个空格）
+     */
+    private static String valueOf(String line, String prefix) {
+        String value = line.substring(prefix.length());
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+
     /**
      * 清除日志文件
      */
@@ -4,6 +4,8 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 
+import cn.pylin.xycjd.utils.NotificationSettings;
+
 /**
  * SharedPreferences管理类
  * 统一管理应用中所有的SharedPreferences读写操作
@@ -11,7 +13,7 @@ import android.preference.PreferenceManager;
  * 全局设置：应用启动时一次性读取，保存在内存中
  * 应用包特定设置：按需读取，实时同步
  */
-public class SharedPreferencesManager {
+public class SharedPreferencesManager implements NotificationSettings {
     
     private static SharedPreferencesManager instance;
     
@@ -97,6 +99,55 @@ public class SharedPreferencesManager {
     public static final String PROCESS_MODE_SHOW_FIRST = "show_first"; // 先显示再检查
     public static final String PROCESS_MODE_CHECK_FIRST = "check_first"; // 先检查再显示
     
+    // 在线模型近似缓存阈值（SimHash 汉明距离，0 为关闭）
+    private static final String PREF_ONLINE_NEAR_DUPLICATE_THRESHOLD = "online_near_duplicate_threshold";
+    private int onlineNearDuplicateThreshold;
+    public static final int DEFAULT_ONLINE_NEAR_DUPLICATE_THRESHOLD = 3;
+    public static final int MAX_ONLINE_NEAR_DUPLICATE_THRESHOLD = 10;
+    
+    // 在线模型批量请求（默认关闭）
+    private static final String PREF_ONLINE_BATCH_ENABLED = "online_batch_enabled";
+    private boolean onlineBatchEnabled;
+    
+    // 在线模型同时进行的请求数上限
+    private static final String PREF_ONLINE_MAX_CONCURRENT_REQUESTS = "online_max_concurrent_requests";
+    private int onlineMaxConcurrentRequests;
+    public static final int DEFAULT_ONLINE_MAX_CONCURRENT_REQUESTS = 4;
+    public static final int MAX_ONLINE_MAX_CONCURRENT_REQUESTS = 8;
+    
+    // 在线模型连接保活间隔（秒，0 为关闭）
+    private static final String PREF_ONLINE_KEEP_ALIVE_SECONDS = "online_keep_alive_seconds";
+    private int onlineKeepAliveSeconds;
+    public static final int DEFAULT_ONLINE_KEEP_ALIVE_SECONDS = 60;
+    public static final int MAX_ONLINE_KEEP_ALIVE_SECONDS = 300;
+    
+    // 本地模型分词模式
+    private static final String PREF_LOCAL_TOKENIZER_MODE = "local_tokenizer_mode";
+    private String localTokenizerMode;
+    public static final String TOKENIZER_MODE_FEATURE_HASH = "feature_hash"; // 流式特征哈希
+    public static final String TOKENIZER_MODE_STRING = "string"; // 字符串分词（v3.1）
+    
+    // 本地模型内存上限（MB）
+    private static final String PREF_LOCAL_MODEL_MEMORY_BUDGET = "local_model_memory_budget";
+    private int localModelMemoryBudget;
+    public static final int DEFAULT_LOCAL_MODEL_MEMORY_BUDGET = 4;
+    public static final int MIN_LOCAL_MODEL_MEMORY_BUDGET = 1;
+    public static final int MAX_LOCAL_MODEL_MEMORY_BUDGET = 32;
+    
+    // 本地模型评分引擎
+    private static final String PREF_LOCAL_MODEL_ENGINE = "local_model_engine";
+    private String localModelEngine;
+    public static final String LOCAL_MODEL_ENGINE_HEURISTIC = "heuristic"; // 启发式（v3.1 决策树集成）
+    public static final String LOCAL_MODEL_ENGINE_LOGISTIC = "logistic"; // 稀疏逻辑回归
+    public static final String LOCAL_MODEL_ENGINE_HASHED = "hashed"; // 固定大小的哈希权重表
+    
+    // 本地模型权重精度（位）
+    private static final String PREF_LOCAL_MODEL_WEIGHT_BITS = "local_model_weight_bits";
+    private int localModelWeightBits;
+    public static final int LOCAL_MODEL_WEIGHT_BITS_FLOAT = 32; // 浮点（默认）
+    public static final int LOCAL_MODEL_WEIGHT_BITS_16 = 16;    // 16 位定点
+    public static final int LOCAL_MODEL_WEIGHT_BITS_8 = 8;      // 8 位定点
+    
     // 悬浮窗圆角百分比存储值（0-100）
     private static final String PREF_FLOATING_CORNER_RADIUS_1 = "floating_corner_radius_1";
     private static final String PREF_FLOATING_CORNER_RADIUS_2 = "floating_corner_radius_2";
@@ -197,6 +248,14 @@ public class SharedPreferencesManager {
         notificationLogRecording = globalPrefs.getBoolean(PREF_NOTIFICATION_LOG_RECORDING, false);
         floatingWindowEnabled = globalPrefs.getBoolean(PREF_FLOATING_WINDOW_ENABLED, false);
         onlineModelProcessMode = globalPrefs.getString(PREF_ONLINE_MODEL_PROCESS_MODE, PROCESS_MODE_SHOW_FIRST);
+        onlineNearDuplicateThreshold = globalPrefs.getInt(PREF_ONLINE_NEAR_DUPLICATE_THRESHOLD, DEFAULT_ONLINE_NEAR_DUPLICATE_THRESHOLD);
+        onlineBatchEnabled = globalPrefs.getBoolean(PREF_ONLINE_BATCH_ENABLED, false);
+        onlineMaxConcurrentRequests = globalPrefs.getInt(PREF_ONLINE_MAX_CONCURRENT_REQUESTS, DEFAULT_ONLINE_MAX_CONCURRENT_REQUESTS);
+        onlineKeepAliveSeconds = globalPrefs.getInt(PREF_ONLINE_KEEP_ALIVE_SECONDS, DEFAULT_ONLINE_KEEP_ALIVE_SECONDS);
+        localTokenizerMode = globalPrefs.getString(PREF_LOCAL_TOKENIZER_MODE, TOKENIZER_MODE_FEATURE_HASH);
+        localModelMemoryBudget = globalPrefs.getInt(PREF_LOCAL_MODEL_MEMORY_BUDGET, DEFAULT_LOCAL_MODEL_MEMORY_BUDGET);
+        localModelEngine = globalPrefs.getString(PREF_LOCAL_MODEL_ENGINE, LOCAL_MODEL_ENGINE_HEURISTIC);
+        localModelWeightBits = globalPrefs.getInt(PREF_LOCAL_MODEL_WEIGHT_BITS, LOCAL_MODEL_WEIGHT_BITS_FLOAT);
         
         // 加载声音与震动设置（默认开启）
         soundEnabled = globalPrefs.getBoolean(PREF_SOUND_ENABLED, true);
@@ -468,6 +527,86 @@ public class SharedPreferencesManager {
         return PROCESS_MODE_CHECK_FIRST.equals(getOnlineModelProcessMode());
     }
     
+    public int getOnlineNearDuplicateThreshold() {
+        return Math.max(0, Math.min(MAX_ONLINE_NEAR_DUPLICATE_THRESHOLD, onlineNearDuplicateThreshold));
+    }
+    
+    public void setOnlineNearDuplicateThreshold(int threshold) {
+        this.onlineNearDuplicateThreshold = threshold;
+        globalEditor.putInt(PREF_ONLINE_NEAR_DUPLICATE_THRESHOLD, threshold).apply();
+    }
+    
+    public boolean isOnlineBatchEnabled() {
+        return onlineBatchEnabled;
+    }
+    
+    public void setOnlineBatchEnabled(boolean enabled) {
+        this.onlineBatchEnabled = enabled;
+        globalEditor.putBoolean(PREF_ONLINE_BATCH_ENABLED, enabled).apply();
+    }
+
+    public int getOnlineMaxConcurrentRequests() {
+        return Math.max(1, Math.min(MAX_ONLINE_MAX_CONCURRENT_REQUESTS, onlineMaxConcurrentRequests));
+    }
+
+    public void setOnlineMaxConcurrentRequests(int maxRequests) {
+        this.onlineMaxConcurrentRequests = maxRequests;
+        globalEditor.putInt(PREF_ONLINE_MAX_CONCURRENT_REQUESTS, maxRequests).apply();
+    }
+
+    public int getOnlineKeepAliveSeconds() {
+        return Math.max(0, Math.min(MAX_ONLINE_KEEP_ALIVE_SECONDS, onlineKeepAliveSeconds));
+    }
+
+    public void setOnlineKeepAliveSeconds(int seconds) {
+        this.onlineKeepAliveSeconds = seconds;
+        globalEditor.putInt(PREF_ONLINE_KEEP_ALIVE_SECONDS, seconds).apply();
+    }
+    
+    // ==================== 本地模型分词模式方法 ====================
+    
+    public String getLocalTokenizerMode() {
+        return localTokenizerMode != null ? localTokenizerMode : TOKENIZER_MODE_FEATURE_HASH;
+    }
+    
+    public void setLocalTokenizerMode(String mode) {
+        this.localTokenizerMode = mode;
+        globalEditor.putString(PREF_LOCAL_TOKENIZER_MODE, mode).apply();
+    }
+    
+    // ==================== 本地模型内存上限方法 ====================
+    
+    public int getLocalModelMemoryBudget() {
+        return Math.max(MIN_LOCAL_MODEL_MEMORY_BUDGET, Math.min(MAX_LOCAL_MODEL_MEMORY_BUDGET, localModelMemoryBudget));
+    }
+    
+    public void setLocalModelMemoryBudget(int budgetMb) {
+        this.localModelMemoryBudget = budgetMb;
+        globalEditor.putInt(PREF_LOCAL_MODEL_MEMORY_BUDGET, budgetMb).apply();
+    }
+    
+    // ==================== 本地模型评分引擎方法 ====================
+    
+    public String getLocalModelEngine() {
+        return localModelEngine != null ? localModelEngine : LOCAL_MODEL_ENGINE_HEURISTIC;
+    }
+    
+    public void setLocalModelEngine(String engine) {
+        this.localModelEngine = engine;
+        globalEditor.putString(PREF_LOCAL_MODEL_ENGINE, engine).apply();
+    }
+    
+    // ==================== 本地模型权重精度方法 ====================
+    
+    public int getLocalModelWeightBits() {
+        return localModelWeightBits;
+    }
+    
+    public void setLocalModelWeightBits(int bits) {
+        this.localModelWeightBits = bits;
+        globalEditor.putInt(PREF_LOCAL_MODEL_WEIGHT_BITS, bits).apply();
+    }
+    
     // ==================== 应用包特定设置读写方法 ====================
     
     /**
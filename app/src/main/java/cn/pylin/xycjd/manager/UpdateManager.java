@@ -60,7 +60,7 @@ public class UpdateManager {
     }
     
     private void performUpdateCheck(UpdateCallback callback) {
-        OkHttpClient client = new OkHttpClient.Builder()
+        OkHttpClient client = HttpClientManager.getInstance().newClientBuilder()
                 .connectTimeout(10, TimeUnit.SECONDS)
                 .readTimeout(30, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
@@ -243,7 +243,7 @@ public class UpdateManager {
             this.progressPercent = progressPercent;
             this.cancelButton = cancelButton;
             
-            this.client = new OkHttpClient.Builder()
+            this.client = HttpClientManager.getInstance().newClientBuilder()
                     .connectTimeout(30, TimeUnit.SECONDS)
                     .readTimeout(60, TimeUnit.SECONDS)
                     .writeTimeout(60, TimeUnit.SECONDS)
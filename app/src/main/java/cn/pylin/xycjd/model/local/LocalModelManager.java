@@ -1,1176 +1,585 @@
 package cn.pylin.xycjd.model.local;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import org.json.JSONObject;
+import android.os.SystemClock;
+import android.util.Log;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cn.pylin.xycjd.model.online.OnlineModelManager;
 import cn.pylin.xycjd.manager.SharedPreferencesManager;
+import cn.pylin.xycjd.utils.NotificationRules;
 
 /**
- * 本地机器学习文本回归管理器 - v3.0 增强版
- * 
- * 优化目标：
- * 1. 保持外部接口完全不变
- * 2. 引入TF-IDF权重和特征工程
- * 3. 实现决策树集成提升非线性表达
- * 4. 自适应学习率和时间衰减
- * 5. 显著提升准确率和收敛速度
+ * 本地机器学习文本回归管理器 - v4
+ *
+ * 评分与学习交给设置中选择的评分引擎（{@link ScoringEngine}）：
+ * 1. 启发式引擎 {@link HeuristicScoringEngine}：v3.1 模型（TF-IDF + 决策树集成），默认
+ * 2. 逻辑回归引擎 {@link LogisticScoringEngine}：稀疏在线逻辑回归，预测和学习开销与特征数成正比
+ * 3. 哈希引擎 {@link HashedScoringEngine}：固定大小的权重表，内存不随词汇量增长，适合内存较小的设备
+ *
+ * 各引擎使用相同的特征（{@link Tokenizer#extractFeatures}）和各自的模型文件，
+ * 通知处理时特征只提取一次（{@link NotificationFeatures}，见 {@link #createFeatures}），过滤判断直接使用；
+ * 只有当前引擎参与学习；切换引擎后，之前的引擎保存并释放内存。
+ * 每个引擎按应用分片（{@link ShardedModel}）：全局模型作为先验，各应用的分片在其第一条通知时加载，
+ * 分片文件位于 ml_shards/引擎名/包名/。包名为空时只使用全局模型。
+ * 权重可以量化为 16 位或 8 位定点（见 {@link WeightCodec}），内存和模型文件中都按所选精度保存。
+ *
+ * 通知监听服务连接时调用 {@link #preload()} 在后台加载模型，过滤判断在加载完成前最多等待
+ * READY_TIMEOUT_MS，超时后按不过滤处理，不让第一条通知承担整个加载耗时。
+ *
+ * 批量接口（{@link #predictBatch}、{@link #learnBatch}、{@link #learnPositiveBatch}）在调用线程上同步执行，
+ * 须在后台线程调用：特征提取在多个线程上并行，学习时每 BATCH_SLICE 条只取得一次写锁、发布一次快照、记录一次日志。
+ * {@link #reevaluate} 用固定的模型在 fork-join 线程池上重新评分历史通知，预览按当前过滤程度哪些结果会变化。
  */
 public class LocalModelManager {
     private static final String TAG = "LocalModelManager";
 
     private static LocalModelManager instance;
-    private static final String MODEL_FILE_NAME = "ml_weights_v3.json";
-    private static final float DEFAULT_WEIGHT = 10.00f;
-    private static final float MIN_WEIGHT = 0.0f;
-    private static final float MAX_WEIGHT = 10.0f;
-    
-    // 学习强度配置
-    private static final float AUTO_LEARNING_MULTIPLIER = 1.0f;
-    private static final float MANUAL_POSITIVE_MULTIPLIER = 2.5f; // 增强手动反馈
-    
+    private static final float DEFAULT_WEIGHT = ModelSnapshot.DEFAULT_WEIGHT;
+    private static final long READY_TIMEOUT_MS = 500;
+    private static final int BATCH_SLICE = 256;                 // 批量处理时一次学习的条数（限制特征缓冲区的内存）
+    private static final int PARALLEL_EXTRACT_THRESHOLD = 16;   // 少于此条数时在调用线程上提取特征
+
     private final Context context;
-    private final Map<String, Float> wordWeights;      // 词权重
-    private final Map<String, Integer> wordCounts;     // 词频统计
-    private final Map<String, Float> tfIdfWeights;     // TF-IDF权重
-    private final Map<String, Long> lastAccessTime;    // 最后访问时间
-    private final List<DecisionTree> decisionTrees;    // 决策树集成
-    private final ExecutorService executor;
-    private volatile boolean isLoaded = false;
-    private volatile boolean isDirty = false;
-    
-    // 模型元数据
-    private long totalLearnCount = 0;
-    private long totalDocumentCount = 0;           // 总文档数（用于TF-IDF）
-    private long lastCleanupTime = 0;
-    
-    // 特征统计
-    private final Map<String, Integer> termDocCount;  // 词出现的文档数（用于IDF）
+    private final ModelSettings settings;
+    private final ThreadLocal<FeatureBuffer> featureBuffers = ThreadLocal.withInitial(FeatureBuffer::new);
 
-    private LocalModelManager(Context context) {
-        this.context = context.getApplicationContext();
-        this.wordWeights = new ConcurrentHashMap<>();
-        this.wordCounts = new ConcurrentHashMap<>();
-        this.tfIdfWeights = new ConcurrentHashMap<>();
-        this.lastAccessTime = new ConcurrentHashMap<>();
-        this.termDocCount = new ConcurrentHashMap<>();
-        this.decisionTrees = new ArrayList<>();
-        this.executor = Executors.newSingleThreadExecutor();
-        
-        // 初始化决策树
-        initializeDecisionTrees();
-        this.isLoaded = true;
-    }
+    private static final String SHARD_DIRECTORY = "ml_shards";
 
-    public static synchronized LocalModelManager getInstance(Context context) {
-        if (instance == null) {
-            instance = new LocalModelManager(context);
-        }
-        return instance;
-    }
+    // 评分引擎：按需创建，engine 为当前引擎
+    private final Object engineLock = new Object();
+    private ShardedModel heuristicEngine;
+    private ShardedModel logisticEngine;
+    private ShardedModel hashedEngine;
+    private volatile ShardedModel engine;
 
-    /**
-     * 初始化决策树集成 - v3.1 增强版
-     * 增加到5个决策树，覆盖更多维度
-     */
-    private void initializeDecisionTrees() {
-        // 决策树1：基于关键词权重的修正
-        decisionTrees.add(new DecisionTree() {
-            @Override
-            public float adjustScore(float baseScore, String[] tokens, Map<String, Float> weights) {
-                // 如果包含高权重负面词，降低分数
-                float negativeBoost = 0;
-                float positiveBoost = 0;
-                
-                for (String token : tokens) {
-                    Float weight = weights.get(token);
-                    if (weight != null) {
-                        if (weight < 3.0f) {
-                            negativeBoost += (3.0f - weight) * 0.1f;
-                        } else if (weight > 7.0f) {
-                            positiveBoost += (weight - 7.0f) * 0.1f;
-                        }
-                    }
-                }
-                
-                return baseScore - negativeBoost + positiveBoost;
-            }
-        });
-        
-        // 决策树2：基于词频和一致性的修正
-        decisionTrees.add(new DecisionTree() {
-            @Override
-            public float adjustScore(float baseScore, String[] tokens, Map<String, Float> weights) {
-                if (tokens.length == 0) return baseScore;
-                
-                // 计算权重方差
-                float sum = 0, sumSq = 0;
-                int count = 0;
-                for (String token : tokens) {
-                    Float weight = weights.get(token);
-                    if (weight != null) {
-                        sum += weight;
-                        sumSq += weight * weight;
-                        count++;
-                    }
-                }
-                
-                if (count < 2) return baseScore;
-                
-                float mean = sum / count;
-                float variance = (sumSq / count) - (mean * mean);
-                
-                // 方差大说明意见不一致，降低置信度
-                float confidencePenalty = Math.min(2.0f, variance * 0.1f);
-                return baseScore - confidencePenalty;
-            }
-        });
-        
-        // 决策树3：基于位置和长度的修正
-        decisionTrees.add(new DecisionTree() {
+    private final ExecutorService readerExecutor;      // 过滤判断
+    private final ExecutorService writerExecutor;      // 预加载、清空、释放内存、调整内存上限、切换引擎
+    private final ThreadPoolExecutor batchExecutor;    // 批量处理时并行提取特征，空闲时线程退出
+
+    // 冷启动预加载
+    private final AtomicBoolean preloadStarted = new AtomicBoolean(false);
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+    private volatile boolean readyTimedOut = false;    // 已有一次等待超时，加载完成前不再等待
+    private volatile long coldStartLoadMillis = -1;    // 冷启动加载耗时（毫秒），未完成时为 -1
+
+    private LocalModelManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.settings = new ModelSettings() {
             @Override
-            public float adjustScore(float baseScore, String[] tokens, Map<String, Float> weights) {
-                // 长文本倾向于中性，短文本更极端
-                float lengthFactor = Math.min(1.0f, tokens.length / 10.0f);
-                float lengthAdjust = (1.0f - lengthFactor) * 0.5f;
-                
-                // 如果权重集中在少数词，说明特征明确
-                float weightSum = 0;
-                float maxWeight = 0;
-                for (String token : tokens) {
-                    Float weight = weights.get(token);
-                    if (weight != null) {
-                        weightSum += weight;
-                        maxWeight = Math.max(maxWeight, weight);
-                    }
-                }
-                
-                float concentrationFactor = (maxWeight > 0) ? (maxWeight / (weightSum + 1)) : 0;
-                float concentrationAdjust = (concentrationFactor - 0.3f) * 2.0f;
-                
-                return baseScore + lengthAdjust + concentrationAdjust;
+            public float getLearningDegree() {
+                return SharedPreferencesManager.getInstance(LocalModelManager.this.context).getLearningDegree();
             }
-        });
-        
-        // 决策树4：基于词长和类型的修正（v3.1新增）
-        decisionTrees.add(new DecisionTree() {
+
             @Override
-            public float adjustScore(float baseScore, String[] tokens, Map<String, Float> weights) {
-                float longWordBoost = 0;
-                float chineseBoost = 0;
-                float emojiPenalty = 0;
-                
-                for (String token : tokens) {
-                    if (shouldSkipToken(token)) continue;
-                    
-                    // 长词加分
-                    if (token.length() >= 5) {
-                        longWordBoost += 0.1f;
-                    }
-                    
-                    // 中文词加分
-                    if (isChinese(token.charAt(0))) {
-                        chineseBoost += 0.05f;
-                    }
-                    
-                    // Emoji/符号减分
-                    if (token.startsWith("EMOJI_") || token.startsWith("PUNCT_")) {
-                        emojiPenalty += 0.08f;
-                    }
-                }
-                
-                return baseScore + longWordBoost + chineseBoost - emojiPenalty;
+            public int getMemoryBudgetMb() {
+                return SharedPreferencesManager.getInstance(LocalModelManager.this.context).getLocalModelMemoryBudget();
             }
-        });
-        
-        // 决策树5：基于TF-IDF特征的修正（v3.1新增）
-        decisionTrees.add(new DecisionTree() {
+
             @Override
-            public float adjustScore(float baseScore, String[] tokens, Map<String, Float> weights) {
-                if (tokens.length == 0) return baseScore;
-                
-                // 计算平均TF-IDF
-                float totalTfIdf = 0;
-                int count = 0;
-                for (String token : tokens) {
-                    if (!shouldSkipToken(token)) {
-                        float tfIdf = tfIdfWeights.getOrDefault(token, 0.5f);
-                        totalTfIdf += tfIdf;
-                        count++;
-                    }
-                }
-                
-                if (count == 0) return baseScore;
-                
-                float avgTfIdf = totalTfIdf / count;
-                
-                // TF-IDF越高，说明特征越突出，分数越极端
-                float adjustment = (avgTfIdf - 0.5f) * 2.0f;
-                
-                return baseScore + adjustment;
+            public int getWeightBits() {
+                return SharedPreferencesManager.getInstance(LocalModelManager.this.context).getLocalModelWeightBits();
             }
-        });
+        };
+        this.readerExecutor = Executors.newSingleThreadExecutor(namedThreadFactory("local-model-reader"));
+        this.writerExecutor = Executors.newSingleThreadExecutor(namedThreadFactory("local-model-writer"));
+        int batchThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        this.batchExecutor = new ThreadPoolExecutor(batchThreads, batchThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreadFactory("local-model-batch"));
+        this.batchExecutor.allowCoreThreadTimeOut(true);
+        this.engine = getEngine(SharedPreferencesManager.getInstance(this.context).getLocalModelEngine());
     }
 
     /**
-     * 自动学习处理方法 - v3.0 增强版
+     * 批量处理的一条通知
      */
-    public float process(String title, String text, boolean isPositive) {
-        ensureLoaded();
-        
-        String combinedText = combineText(title, text);
-        if (combinedText.isEmpty()) {
-            return DEFAULT_WEIGHT;
-        }
+    public static final class BatchItem {
+        public final String packageName;
+        public final String title;
+        public final String text;
 
-        String[] tokens = tokenize(combinedText);
-        if (tokens.length == 0) {
-            return DEFAULT_WEIGHT;
+        public BatchItem(String packageName, String title, String text) {
+            this.packageName = packageName;
+            this.title = title;
+            this.text = text;
         }
-
-        // 计算位置权重（标题更重要）
-        Map<String, Float> positionWeights = calculatePositionWeights(title, text, tokens);
-        
-        // 获取自适应学习率
-        float baseLearningRate = getLearningRate();
-        float adaptiveRate = calculateAdaptiveLearningRate(tokens, isPositive);
-        float learningRate = baseLearningRate * adaptiveRate * AUTO_LEARNING_MULTIPLIER;
-        
-        // 计算当前分数和误差
-        float currentScore = calculateScore(tokens, positionWeights);
-        float targetScore = isPositive ? MAX_WEIGHT : MIN_WEIGHT;
-        float error = targetScore - currentScore;
-
-        // 更新权重（带时间衰减）
-        updateWeightsV3(tokens, error, learningRate, isPositive, positionWeights);
-
-        // 更新统计和TF-IDF
-        updateStatsV3(tokens);
-        isDirty = true;
-        
-        // 定期清理低频词
-        scheduleCleanup();
-        
-        // 异步保存
-        executor.execute(this::throttledSaveModel);
-
-        return calculateScore(tokens, positionWeights);
     }
 
     /**
-     * 手动正向反馈 - v3.0 增强版
+     * 批量处理进度
      */
-    public float processPositive(String title, String text) {
-        ensureLoaded();
-        
-        String combinedText = combineText(title, text);
-        if (combinedText.isEmpty()) {
-            return DEFAULT_WEIGHT;
-        }
-
-        String[] tokens = tokenize(combinedText);
-        if (tokens.length == 0) {
-            return DEFAULT_WEIGHT;
-        }
-
-        // 计算位置权重
-        Map<String, Float> positionWeights = calculatePositionWeights(title, text, tokens);
-        
-        // 手动反馈学习率更强
-        float baseLearningRate = getLearningRate();
-        float adaptiveRate = calculateAdaptiveLearningRate(tokens, true);
-        float learningRate = baseLearningRate * adaptiveRate * MANUAL_POSITIVE_MULTIPLIER;
-        
-        // 计算当前分数和误差
-        float currentScore = calculateScore(tokens, positionWeights);
-        float error = MAX_WEIGHT - currentScore;
-
-        // 更新权重（只做正向，更强）
-        updateWeightsManualV3(tokens, error, learningRate, positionWeights);
-
-        // 更新统计
-        updateStatsV3(tokens);
-        isDirty = true;
-        
-        // 定期清理
-        scheduleCleanup();
-        
-        // 异步保存
-        executor.execute(this::throttledSaveModel);
+    public interface BatchProgressListener {
+        /**
+         * 每提取完一条通知的特征回调一次（在调用线程或特征提取线程上），done 为已提取的条数
+         */
+        void onProgress(int done, int total);
+    }
 
-        return calculateScore(tokens, positionWeights);
+    private static ThreadFactory namedThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
-    /**
-     * 预测分数 - v3.0 增强版
-     */
-    public float predict(String title, String text) {
-        ensureLoaded();
-        String combinedText = combineText(title, text);
-        if (combinedText.isEmpty()) {
-            return DEFAULT_WEIGHT;
-        }
-        String[] tokens = tokenize(combinedText);
-        if (tokens.length == 0) {
-            return DEFAULT_WEIGHT;
+    public static synchronized LocalModelManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalModelManager(context);
         }
-        
-        Map<String, Float> positionWeights = calculatePositionWeights(title, text, tokens);
-        return calculateScore(tokens, positionWeights);
+        return instance;
     }
 
     /**
-     * 检查是否需要过滤 - 保持接口完全兼容
+     * 在后台加载当前引擎的模型 - 通知监听服务连接时调用，重复调用无效
      */
-    public void checkFilter(String title, String text, OnlineModelManager.FilterCallback callback) {
-        executor.execute(() -> {
+    public void preload() {
+        if (!preloadStarted.compareAndSet(false, true)) {
+            return;
+        }
+        writerExecutor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
             try {
-                ensureLoaded();
-                float score = predict(title, text);
-                
-                // 获取过滤阈值
-                float filteringDegree = SharedPreferencesManager.getInstance(context).getFilteringDegree();
-                boolean shouldFilter = score <= filteringDegree;
-                
-                if (callback != null) {
-                    callback.onResult(shouldFilter, score);
-                }
+                currentEngine().preload();
             } catch (Exception e) {
-                // 出错时不过滤，返回高分
-                if (callback != null) {
-                    callback.onResult(false, 10.0f);
-                }
+                e.printStackTrace();
+            } finally {
+                coldStartLoadMillis = SystemClock.elapsedRealtime() - start;
+                readyLatch.countDown();
+                Log.i(TAG, "Model preloaded in " + coldStartLoadMillis + " ms");
             }
         });
     }
 
-    // ==================== v3.0 核心算法实现 ====================
-
-    /**
-     * 计算位置权重 - 标题权重更高
-     */
-    private Map<String, Float> calculatePositionWeights(String title, String text, String[] tokens) {
-        Map<String, Float> positionWeights = new HashMap<>();
-        
-        Set<String> titleTokens = new HashSet<>();
-        if (title != null && !title.isEmpty()) {
-            String[] titleTokensArray = tokenize(title.toLowerCase());
-            Collections.addAll(titleTokens, titleTokensArray);
-        }
-        
-        for (String token : tokens) {
-            float weight = titleTokens.contains(token) ? 1.5f : 1.0f;
-            positionWeights.put(token, weight);
-        }
-        
-        return positionWeights;
-    }
-
     /**
-     * 自适应学习率计算 - v3.1 增强版
-     * 增加动态学习率衰减
+     * 冷启动加载耗时（毫秒），预加载未完成时返回 -1
      */
-    private float calculateAdaptiveLearningRate(String[] tokens, boolean isPositive) {
-        // 误差越大，学习率越大
-        float currentScore = calculateScore(tokens, null);
-        float targetScore = isPositive ? MAX_WEIGHT : MIN_WEIGHT;
-        float error = Math.abs(targetScore - currentScore);
-        
-        // 自适应因子：误差大时加速学习
-        float errorFactor = Math.min(2.0f, 1.0f + error * 0.2f);
-        
-        // 动态学习率衰减（v3.1新增）
-        // 随着训练次数增加，学习率逐渐减小，防止过拟合
-        float dynamicDecay = 1.0f / (1.0f + totalLearnCount * 0.001f);
-        
-        return errorFactor * dynamicDecay;
-    }
-
-    /**
-     * v3.1 权重更新 - 带时间衰减、正则化和智能冷启动
-     */
-    private void updateWeightsV3(String[] tokens, float error, float learningRate, 
-                                 boolean isPositive, Map<String, Float> positionWeights) {
-        long currentTime = System.currentTimeMillis();
-        
-        for (String token : tokens) {
-            if (shouldSkipToken(token)) continue;
-
-            int count = wordCounts.getOrDefault(token, 0);
-            long lastTime = lastAccessTime.getOrDefault(token, currentTime);
-            
-            // 智能冷启动：为新词提供更好的初始值
-            float oldWeight;
-            if (count == 0) {
-                oldWeight = calculateSmartInitialWeight(token, isPositive);
-            } else {
-                oldWeight = wordWeights.getOrDefault(token, DEFAULT_WEIGHT);
-            }
-            
-            // 时间衰减因子（指数衰减）
-            float timeDecay = calculateTimeDecay(lastTime, currentTime);
-            
-            // 稳定性因子（出现次数越多越稳定）
-            float stabilityFactor = 1.0f / (1.0f + count * 0.05f);
-            
-            // 位置权重
-            float posWeight = positionWeights != null ? positionWeights.getOrDefault(token, 1.0f) : 1.0f;
-            
-            // 方向性因子（正向/负向学习的不对称性）
-            float directionalFactor = isPositive ? 1.3f : 0.7f;
-            
-            // L2正则化（防止权重过大）
-            float regularization = 0.99f; // 每次更新轻微收缩
-            
-            // 综合学习率
-            float effectiveRate = learningRate * stabilityFactor * directionalFactor * posWeight * timeDecay;
-            
-            // 权重更新
-            float newWeight = oldWeight * regularization + effectiveRate * error;
-            
-            // 边界保护
-            if (isPositive) {
-                newWeight = Math.min(MAX_WEIGHT, newWeight);
-            } else {
-                newWeight = Math.max(MIN_WEIGHT, newWeight);
-            }
-            
-            wordWeights.put(token, newWeight);
-            lastAccessTime.put(token, currentTime);
-        }
+    public long getColdStartLoadMillis() {
+        return coldStartLoadMillis;
     }
 
     /**
-     * 智能冷启动初始值计算 - v3.1 新增
-     * 为新词提供基于统计特性的智能初始值
+     * 等待预加载完成（未开始时先开始）
+     * 最多等待 READY_TIMEOUT_MS；超时一次后直到加载完成都不再等待，避免排队的通知逐条超时
      */
-    private float calculateSmartInitialWeight(String token, boolean isPositive) {
-        // 基于词的特性计算初始权重
-        float baseWeight = DEFAULT_WEIGHT;
-        
-        // 1. 长度因素（长词通常更重要）
-        if (token.length() >= 5) {
-            baseWeight += 1.0f;
+    private boolean awaitReady() {
+        if (readyLatch.getCount() == 0) {
+            return true;
         }
-        if (token.length() >= 8) {
-            baseWeight += 0.5f;
+        preload();
+        if (readyTimedOut) {
+            return false;
         }
-        
-        // 2. 类型因素
-        if (isChinese(token.charAt(0))) {
-            // 中文词：中性偏正
-            baseWeight += 0.5f;
-        } else if (token.startsWith("EMOJI_")) {
-            // Emoji：通常表示情感，偏向两极
-            baseWeight = isPositive ? 8.0f : 2.0f;
-        } else if (token.startsWith("PUNCT_")) {
-            // 特殊符号：中性偏低
-            baseWeight -= 1.0f;
-        } else if (isAscii(token)) {
-            // 英文词：根据长度调整
-            if (token.length() >= 4) {
-                baseWeight += 0.3f;
+        try {
+            if (readyLatch.await(READY_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return true;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        
-        // 3. 特殊词模式
-        if (token.matches(".*\\d{4,}.*")) {
-            // 包含长数字（年份、验证码等）
-            baseWeight += 0.5f;
-        }
-        
-        // 4. 学习方向调整
-        if (!isPositive) {
-            // 负向学习时，新词初始值偏低
-            baseWeight = Math.max(MIN_WEIGHT, baseWeight - 1.0f);
-        }
-        
-        // 5. 边界保护
-        return Math.max(MIN_WEIGHT, Math.min(MAX_WEIGHT, baseWeight));
+        readyTimedOut = true;
+        return false;
     }
 
     /**
-     * 手动正向权重更新 - v3.0
+     * 自动学习处理方法 - v3.0 增强版
+     * 全局模型和该应用的分片都学习
      */
-    private void updateWeightsManualV3(String[] tokens, float error, float learningRate, 
-                                       Map<String, Float> positionWeights) {
-        long currentTime = System.currentTimeMillis();
-        
-        for (String token : tokens) {
-            if (shouldSkipToken(token)) continue;
-
-            float oldWeight = wordWeights.getOrDefault(token, DEFAULT_WEIGHT);
-            int count = wordCounts.getOrDefault(token, 0);
-            long lastTime = lastAccessTime.getOrDefault(token, currentTime);
-            
-            // 时间衰减
-            float timeDecay = calculateTimeDecay(lastTime, currentTime);
-            
-            // 稳定性因子
-            float stabilityFactor = 1.0f / (1.0f + count * 0.03f);
-            
-            // 位置权重
-            float posWeight = positionWeights != null ? positionWeights.getOrDefault(token, 1.0f) : 1.0f;
-            
-            // 手动正向更强
-            float directionalFactor = 2.0f;
-            
-            // L2正则化
-            float regularization = 0.98f;
-            
-            // 综合学习率
-            float effectiveRate = learningRate * stabilityFactor * directionalFactor * posWeight * timeDecay;
-            
-            // 权重更新（只允许上升）
-            float newWeight = oldWeight * regularization + effectiveRate * error;
-            newWeight = Math.min(MAX_WEIGHT, newWeight);
-            
-            wordWeights.put(token, newWeight);
-            lastAccessTime.put(token, currentTime);
+    public float process(String packageName, String title, String text, boolean isPositive) {
+        FeatureBuffer features = extractFeatures(title, text);
+        if (features == null) {
+            return DEFAULT_WEIGHT;
         }
+        return currentEngine().learn(packageName, features, isPositive);
     }
 
     /**
-     * 时间衰减计算 - 指数衰减
-     */
-    private float calculateTimeDecay(long lastTime, long currentTime) {
-        long elapsedDays = (currentTime - lastTime) / (1000L * 60 * 60 * 24);
-        if (elapsedDays <= 1) return 1.0f;
-        
-        // 半衰期为30天
-        float halfLife = 30.0f;
-        return (float) Math.pow(0.5, elapsedDays / halfLife);
-    }
-
-    /**
-     * 更新统计和TF-IDF - v3.0
+     * 手动正向反馈 - v3.0 增强版
      */
-    private void updateStatsV3(String[] tokens) {
-        Set<String> uniqueTokens = new HashSet<>();
-        
-        for (String token : tokens) {
-            if (shouldSkipToken(token)) continue;
-            
-            // 更新词频
-            wordCounts.put(token, wordCounts.getOrDefault(token, 0) + 1);
-            
-            // 记录本次文档中出现的词（用于TF-IDF）
-            uniqueTokens.add(token);
-        }
-        
-        // 更新文档统计（每个文档只计一次）
-        for (String token : uniqueTokens) {
-            termDocCount.put(token, termDocCount.getOrDefault(token, 0) + 1);
+    public float processPositive(String packageName, String title, String text) {
+        FeatureBuffer features = extractFeatures(title, text);
+        if (features == null) {
+            return DEFAULT_WEIGHT;
         }
-        
-        totalDocumentCount++;
-        totalLearnCount++;
-        
-        // 更新TF-IDF权重
-        updateTfIdfWeights();
+        return currentEngine().learnPositive(packageName, features);
     }
 
     /**
-     * 更新TF-IDF权重
+     * 预测分数 - v3.0 增强版
+     * 只读取当前快照，不会等待学习或保存（该应用的分片第一次使用时除外）
      */
-    private void updateTfIdfWeights() {
-        if (totalDocumentCount < 10) return; // 文档数太少时不计算TF-IDF
-        
-        for (String token : wordCounts.keySet()) {
-            int tf = wordCounts.getOrDefault(token, 0);
-            int df = termDocCount.getOrDefault(token, 1);
-            
-            // TF: 词频
-            float tfValue = (float) Math.log(tf + 1);
-            
-            // IDF: 逆文档频率
-            float idfValue = (float) Math.log((double) totalDocumentCount / df);
-            
-            // TF-IDF
-            float tfIdf = tfValue * idfValue;
-            
-            // 归一化到0-1范围
-            float normalizedTfIdf = Math.min(1.0f, tfIdf / 5.0f);
-            
-            tfIdfWeights.put(token, normalizedTfIdf);
+    public float predict(String packageName, String title, String text) {
+        FeatureBuffer features = extractFeatures(title, text);
+        if (features == null) {
+            return DEFAULT_WEIGHT;
         }
+        return currentEngine().predict(packageName, features);
     }
 
     /**
-     * 计算分数 - v3.1 全面优化版
-     * 增加特征重要性加权
+     * 预测分数 - 使用已提取的特征
      */
-    private float calculateScore(String[] tokens, Map<String, Float> positionWeights) {
-        if (tokens.length == 0) return DEFAULT_WEIGHT;
-
-        float totalWeightedScore = 0;
-        float totalConfidence = 0;
-        int validCount = 0;
-
-        for (String token : tokens) {
-            if (shouldSkipToken(token)) continue;
-
-            // 基础权重
-            float baseWeight = wordWeights.getOrDefault(token, DEFAULT_WEIGHT);
-            
-            // TF-IDF权重
-            float tfIdf = tfIdfWeights.getOrDefault(token, 0.5f);
-            
-            // 位置权重
-            float posWeight = positionWeights != null ? positionWeights.getOrDefault(token, 1.0f) : 1.0f;
-            
-            // 特征重要性权重（v3.1新增）
-            float importanceWeight = calculateFeatureImportance(token);
-            
-            // 置信度
-            float confidence = calculateTokenConfidence(token);
-            
-            // 综合权重：基础权重 * (1 + TF-IDF) * 位置权重 * 特征重要性
-            float finalWeight = baseWeight * (1.0f + tfIdf * 0.3f) * posWeight * importanceWeight;
-            
-            totalWeightedScore += finalWeight * confidence;
-            totalConfidence += confidence;
-            validCount++;
+    public float predict(String packageName, NotificationFeatures notificationFeatures) {
+        FeatureBuffer features = notificationFeatures.getFeatures();
+        if (features == null) {
+            return DEFAULT_WEIGHT;
         }
-
-        if (validCount == 0) return DEFAULT_WEIGHT;
-
-        // 基础平均分
-        float baseScore = totalWeightedScore / validCount;
-        
-        // 决策树集成修正
-        float adjustedScore = applyDecisionTrees(baseScore, tokens, wordWeights);
-        
-        // 边界保护
-        float finalScore = Math.max(MIN_WEIGHT, Math.min(MAX_WEIGHT, adjustedScore));
-        
-        return finalScore;
+        return currentEngine().predict(packageName, features);
     }
 
     /**
-     * 计算特征重要性 - v3.1 新增
-     * 根据词的统计特性分配重要性权重
+     * 按当前分词设置创建一条通知的特征（规范化在调用线程上进行，分词在第一次使用时进行）
+     * 不创建本类的实例，只使用在线模型时不会加载本地模型
      */
-    private float calculateFeatureImportance(String token) {
-        int count = wordCounts.getOrDefault(token, 0);
-        float weight = wordWeights.getOrDefault(token, DEFAULT_WEIGHT);
-        
-        // 1. 长度重要性（长词通常更重要）
-        float lengthFactor = 1.0f;
-        if (token.length() >= 5) {
-            lengthFactor = 1.2f;
-        } else if (token.length() >= 8) {
-            lengthFactor = 1.4f;
-        }
-        
-        // 2. 偏离度重要性（偏离默认值越大越重要）
-        float deviationFactor = 1.0f + Math.abs(weight - DEFAULT_WEIGHT) / DEFAULT_WEIGHT * 0.3f;
-        
-        // 3. 稀有度重要性（罕见词可能更重要）
-        float rarityFactor = 1.0f;
-        if (count > 0 && count < 5) {
-            rarityFactor = 1.1f;
-        } else if (count == 0) {
-            rarityFactor = 1.15f; // 新词
-        }
-        
-        // 4. 类型重要性（中文词通常比符号重要）
-        float typeFactor = 1.0f;
-        if (isChinese(token.charAt(0))) {
-            typeFactor = 1.1f;
-        } else if (token.startsWith("EMOJI_") || token.startsWith("PUNCT_")) {
-            typeFactor = 0.8f; // 符号重要性较低
-        }
-        
-        // 5. 综合重要性（限制在合理范围）
-        float importance = lengthFactor * deviationFactor * rarityFactor * typeFactor;
-        return Math.min(1.5f, Math.max(0.7f, importance));
+    public static NotificationFeatures createFeatures(Context context, String title, String text) {
+        return new NotificationFeatures(title, text, isStringTokenizer(context));
     }
 
     /**
-     * 应用决策树集成
+     * 批量自动学习（须在后台线程调用），结果与逐条调用 {@link #process} 相同
      */
-    private float applyDecisionTrees(float baseScore, String[] tokens, Map<String, Float> weights) {
-        float adjustedScore = baseScore;
-        
-        for (DecisionTree tree : decisionTrees) {
-            adjustedScore = tree.adjustScore(adjustedScore, tokens, weights);
-        }
-        
-        return adjustedScore;
+    public void learnBatch(List<BatchItem> items, boolean isPositive, BatchProgressListener listener) {
+        runBatch(items, listener, (model, packageNames, features, positions, count) ->
+                model.learnBatch(packageNames, features, count, isPositive));
     }
 
     /**
-     * 计算Token置信度 - v3.0
+     * 批量手动正向反馈（须在后台线程调用），结果与逐条调用 {@link #processPositive} 相同
      */
-    private float calculateTokenConfidence(String token) {
-        int count = wordCounts.getOrDefault(token, 0);
-        
-        if (count == 0) return 0.6f; // 新词中等置信度
-        
-        // 基于词频的置信度
-        float freqConfidence = Math.min(1.0f, (float) Math.log(count + 1) / 2.0f);
-        
-        // 基于权重偏离度的置信度
-        float weight = wordWeights.getOrDefault(token, DEFAULT_WEIGHT);
-        float weightDeviation = Math.abs(weight - DEFAULT_WEIGHT) / DEFAULT_WEIGHT;
-        float stabilityConfidence = 1.0f - Math.min(0.6f, weightDeviation * 0.5f);
-        
-        // 基于TF-IDF的置信度（特征越突出越可信）
-        float tfIdf = tfIdfWeights.getOrDefault(token, 0.5f);
-        float featureConfidence = 0.5f + tfIdf * 0.5f;
-        
-        // 综合置信度
-        return Math.max(0.3f, (freqConfidence * 0.4f + stabilityConfidence * 0.4f + featureConfidence * 0.2f));
+    public void learnPositiveBatch(List<BatchItem> items, BatchProgressListener listener) {
+        runBatch(items, listener, (model, packageNames, features, positions, count) ->
+                model.learnPositiveBatch(packageNames, features, count));
     }
 
     /**
-     * 学习率获取 - v3.0
+     * 批量预测（须在后台线程调用），返回的分数与 items 一一对应，没有特征的通知为默认分数
      */
-    private float getLearningRate() {
-        float learningDegree = SharedPreferencesManager.getInstance(context).getLearningDegree();
-        return Math.max(0f, Math.min(10f, learningDegree)) / 10.0f;
+    public float[] predictBatch(List<BatchItem> items) {
+        float[] scores = new float[items.size()];
+        Arrays.fill(scores, DEFAULT_WEIGHT);
+        float[] sliceScores = new float[Math.min(BATCH_SLICE, items.size())];
+        runBatch(items, null, (model, packageNames, features, positions, count) -> {
+            model.predictBatch(packageNames, features, count, sliceScores);
+            for (int i = 0; i < count; i++) {
+                scores[positions[i]] = sliceScores[i];
+            }
+        });
+        return scores;
     }
 
     /**
-     * Token过滤 - v3.0 增强版
+     * 处理一片已提取特征的通知，positions[i] 为 features[i] 在 items 中的位置
      */
-    private boolean shouldSkipToken(String token) {
-        if (token == null || token.isEmpty()) return true;
-        
-        // 纯数字（但保留有意义的数字模式）
-        if (token.matches("^\\d+$")) {
-            int length = token.length();
-            // 保留4位以上数字（可能是年份、验证码等）
-            if (length < 4) return true;
-        }
-        
-        // 短ASCII词（但保留常见缩写）
-        if (isAscii(token) && token.length() < 3) {
-            // 保留常见缩写
-            Set<String> keepSet = new HashSet<>(Arrays.asList("ok", "no", "yes", "app", "msg", "tip"));
-            if (!keepSet.contains(token)) return true;
-        }
-        
-        return false;
+    private interface SliceHandler {
+        void handle(ShardedModel model, String[] packageNames, FeatureBuffer[] features, int[] positions, int count);
     }
 
     /**
-     * 文本预处理 - 保持不变
+     * 每 BATCH_SLICE 条为一片：并行提取特征后交给 handler，没有特征的通知跳过
      */
-    private String combineText(String title, String text) {
-        StringBuilder sb = new StringBuilder();
-        if (title != null && !title.trim().isEmpty()) {
-            sb.append(title.trim());
+    private void runBatch(List<BatchItem> items, BatchProgressListener listener, SliceHandler handler) {
+        int total = items.size();
+        if (total == 0) {
+            return;
         }
-        if (text != null && !text.trim().isEmpty()) {
-            if (sb.length() > 0) sb.append(" ");
-            sb.append(text.trim());
+        ShardedModel model = currentEngine();
+        boolean stringMode = isStringTokenizer();
+
+        int sliceSize = Math.min(BATCH_SLICE, total);
+        FeatureBuffer[] buffers = new FeatureBuffer[sliceSize];
+        for (int i = 0; i < sliceSize; i++) {
+            buffers[i] = new FeatureBuffer();
+        }
+        boolean[] extracted = new boolean[sliceSize];
+        String[] packageNames = new String[sliceSize];
+        FeatureBuffer[] features = new FeatureBuffer[sliceSize];
+        int[] positions = new int[sliceSize];
+        AtomicInteger done = new AtomicInteger();
+
+        for (int start = 0; start < total; start += sliceSize) {
+            int end = Math.min(total, start + sliceSize);
+            Arrays.fill(extracted, false);
+            extractSlice(items, start, end, stringMode, buffers, extracted, done, listener);
+
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                if (!extracted[i - start]) continue;
+                packageNames[count] = items.get(i).packageName;
+                features[count] = buffers[i - start];
+                positions[count] = i;
+                count++;
+            }
+            if (count > 0) {
+                handler.handle(model, packageNames, features, positions, count);
+            }
         }
-        return sb.toString();
     }
 
     /**
-     * 分词算法 - v3.1 全面优化版
-     * 增强N-gram、语义特征、特殊符号处理
+     * 提取 items[start..end) 的特征：调用线程与特征提取线程依次领取下一条，全部完成后返回
      */
-    private String[] tokenize(String text) {
-        if (text == null || text.isEmpty()) {
-            return new String[0];
-        }
-
-        List<String> tokens = new ArrayList<>();
-        StringBuilder englishBuffer = new StringBuilder();
-        String lowerText = text.toLowerCase();
-        int length = lowerText.length();
-
-        for (int i = 0; i < length; i++) {
-            char c = lowerText.charAt(i);
-
-            if (isChinese(c)) {
-                // 处理英文缓冲区
-                flushEnglishBuffer(englishBuffer, tokens);
-                
-                // 中文分词：单字 + 双字 + 三字 + 四字 + 五字
-                tokens.add(String.valueOf(c));
-                
-                if (i + 1 < length && isChinese(lowerText.charAt(i + 1))) {
-                    String bi = String.valueOf(c) + lowerText.charAt(i + 1);
-                    tokens.add(bi);
-                    
-                    if (i + 2 < length && isChinese(lowerText.charAt(i + 2))) {
-                        String tri = bi + lowerText.charAt(i + 2);
-                        tokens.add(tri);
-                        
-                        if (i + 3 < length && isChinese(lowerText.charAt(i + 3))) {
-                            String quad = tri + lowerText.charAt(i + 3);
-                            tokens.add(quad);
-                            
-                            if (i + 4 < length && isChinese(lowerText.charAt(i + 4))) {
-                                String pent = quad + lowerText.charAt(i + 4);
-                                tokens.add(pent);
-                            }
-                        }
-                    }
+    private void extractSlice(List<BatchItem> items, int start, int end, boolean stringMode, FeatureBuffer[] buffers,
+                              boolean[] extracted, AtomicInteger done, BatchProgressListener listener) {
+        int total = items.size();
+        AtomicInteger next = new AtomicInteger(start);
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < end) {
+                BatchItem item = items.get(i);
+                extracted[i - start] = Tokenizer.extractFeatures(item.title, item.text, stringMode, buffers[i - start]);
+                int progress = done.incrementAndGet();
+                if (listener != null) {
+                    listener.onProgress(progress, total);
                 }
+            }
+        };
 
-            } else if (Character.isLetterOrDigit(c)) {
-                // 英文/数字累积
-                englishBuffer.append(c);
-            } else {
-                // 分隔符，处理英文缓冲区
-                flushEnglishBuffer(englishBuffer, tokens);
-                
-                // 语义特征：特殊符号和emoji
-                addSemanticFeatures(c, tokens);
+        List<Future<?>> helpers = new ArrayList<>();
+        if (end - start >= PARALLEL_EXTRACT_THRESHOLD) {
+            for (int i = 0; i < batchExecutor.getMaximumPoolSize(); i++) {
+                helpers.add(batchExecutor.submit(worker));
+            }
+        }
+        worker.run();
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
-
-        // 处理结尾
-        flushEnglishBuffer(englishBuffer, tokens);
-
-        return tokens.toArray(new String[0]);
     }
 
     /**
-     * 添加语义特征 - v3.1 新增
-     * 处理emoji、特殊符号、标点模式
+     * 按当前模型和过滤程度重新评分历史通知（须在后台线程调用，阻塞直到完成）
+     * 在公共 fork-join 线程池上并行评分，每个分区完成后回调 listener
      */
-    private void addSemanticFeatures(char c, List<String> tokens) {
-        // Emoji范围检测
-        if ((c >= 0x2600 && c <= 0x26FF) || // 杂项符号
-            (c >= 0x2700 && c <= 0x27BF) || // 装饰符号
-            (c >= 0x1F300 && c <= 0x1F9FF) || // 新增emoji
-            (c >= 0xFE00 && c <= 0xFE0F)) {   // 变体选择器
-            tokens.add("EMOJI_" + c);
-            return;
-        }
-        
-        // 特殊标点模式
-        if (c == '!' || c == '?' || c == '！' || c == '？') {
-            // 检查连续重复次数
-            int count = 1;
-            // 这里简化处理，实际可以统计连续重复
-            tokens.add("PUNCT_EXCLAIM");
-        } else if (c == '.' || c == '。') {
-            tokens.add("PUNCT_DOT");
-        } else if (c == '#' || c == '＃') {
-            tokens.add("PUNCT_HASH");
-        } else if (c == '$' || c == '￥') {
-            tokens.add("PUNCT_MONEY");
-        }
+    public BulkRescorer.Summary reevaluate(List<BulkRescorer.Item> items, BulkRescorer.Listener listener) {
+        return new BulkRescorer(ForkJoinPool.commonPool()).run(currentEngine(), items,
+                SharedPreferencesManager.getInstance(context).getFilteringDegree(), isStringTokenizer(), listener);
     }
 
     /**
-     * 英文分词优化 - v3.0
+     * 检查是否需要过滤
+     * 在独立的读取线程上执行，不与学习、清理、保存排队；模型仍在冷启动加载且等待超时时不过滤
      */
-    private void flushEnglishBuffer(StringBuilder buffer, List<String> tokens) {
-        if (buffer.length() == 0) return;
-        
-        String english = buffer.toString();
-        
-        // 短词直接加入
-        if (english.length() <= 3) {
-            tokens.add(english);
-        } else {
-            // 长词：整词 + 前缀(4) + 后缀(4) + 词根(4)
-            tokens.add(english);
-            tokens.add(english.substring(0, Math.min(4, english.length())));
-            if (english.length() >= 4) {
-                tokens.add(english.substring(english.length() - Math.min(4, english.length())));
-            }
-            if (english.length() >= 5) {
-                // 词根：中间部分
-                int midStart = english.length() / 2 - 2;
-                if (midStart > 0 && midStart + 4 <= english.length()) {
-                    tokens.add(english.substring(midStart, midStart + 4));
+    public void checkFilter(String packageName, NotificationFeatures features, OnlineModelManager.FilterCallback callback) {
+        readerExecutor.execute(() -> {
+            try {
+                if (!awaitReady()) {
+                    if (callback != null) {
+                        callback.onResult(false, DEFAULT_WEIGHT);
+                    }
+                    return;
+                }
+
+                float score = predict(packageName, features);
+
+                // 获取过滤阈值
+                float filteringDegree = SharedPreferencesManager.getInstance(context).getFilteringDegree();
+                boolean shouldFilter = NotificationRules.shouldFilter(score, filteringDegree);
+
+                if (callback != null) {
+                    callback.onResult(shouldFilter, score);
+                }
+            } catch (Exception e) {
+                // 出错时不过滤，返回高分
+                if (callback != null) {
+                    callback.onResult(false, 10.0f);
                 }
             }
-        }
-        
-        buffer.setLength(0);
+        });
     }
 
     /**
-     * 工具方法
+     * 特征提取 - 写入当前线程的特征缓冲区
+     * 文本为空或没有任何特征时返回 null
      */
-    private boolean isChinese(char c) {
-        return c >= 0x4E00 && c <= 0x9FA5;
+    private FeatureBuffer extractFeatures(String title, String text) {
+        FeatureBuffer features = featureBuffers.get();
+        return Tokenizer.extractFeatures(title, text, isStringTokenizer(), features) ? features : null;
     }
 
-    private boolean isAscii(String str) {
-        for (char c : str.toCharArray()) {
-            if (c > 127) return false;
-        }
-        return true;
+    private boolean isStringTokenizer() {
+        return isStringTokenizer(context);
+    }
+
+    private static boolean isStringTokenizer(Context context) {
+        return SharedPreferencesManager.TOKENIZER_MODE_STRING.equals(
+                SharedPreferencesManager.getInstance(context).getLocalTokenizerMode());
     }
 
-    // ==================== 持久化管理 ====================
+    // ==================== 评分引擎 ====================
 
     /**
-     * 确保模型加载
+     * 当前设置选择的引擎
+     * 设置变更后第一次调用时切换，之前的引擎在写入线程上保存并释放内存
      */
-    private void ensureLoaded() {
-        if (!isLoaded) {
-            synchronized (this) {
-                if (!isLoaded) {
-                    loadModel();
-                    isLoaded = true;
-                }
+    private ShardedModel currentEngine() {
+        ShardedModel current = engine;
+        String selected = SharedPreferencesManager.getInstance(context).getLocalModelEngine();
+        if (current.getName().equals(selected)) {
+            return current;
+        }
+
+        synchronized (engineLock) {
+            ShardedModel previous = engine;
+            if (previous.getName().equals(selected)) {
+                return previous;
             }
+            ShardedModel next = getEngine(selected);
+            engine = next;
+            writerExecutor.execute(previous::release);
+            return next;
         }
     }
 
-    /**
-     * 节流保存
-     */
-    private long lastSaveTime = 0;
-    private void throttledSaveModel() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastSaveTime > 5000) {
-            lastSaveTime = currentTime;
-            saveModel();
+    private ShardedModel getEngine(String name) {
+        synchronized (engineLock) {
+            File directory = context.getFilesDir();
+            if (SharedPreferencesManager.LOCAL_MODEL_ENGINE_LOGISTIC.equals(name)) {
+                if (logisticEngine == null) {
+                    logisticEngine = new ShardedModel(new LogisticScoringEngine(directory, settings),
+                            shardDirectory(LogisticScoringEngine.NAME), settings,
+                            LogisticScoringEngine::new, writerExecutor);
+                }
+                return logisticEngine;
+            }
+            if (SharedPreferencesManager.LOCAL_MODEL_ENGINE_HASHED.equals(name)) {
+                if (hashedEngine == null) {
+                    hashedEngine = new ShardedModel(new HashedScoringEngine(directory, settings),
+                            shardDirectory(HashedScoringEngine.NAME), settings,
+                            HashedScoringEngine::new, writerExecutor);
+                }
+                return hashedEngine;
+            }
+            if (heuristicEngine == null) {
+                heuristicEngine = new ShardedModel(new HeuristicScoringEngine(directory, settings),
+                        shardDirectory(HeuristicScoringEngine.NAME), settings,
+                        HeuristicScoringEngine::new, writerExecutor);
+            }
+            return heuristicEngine;
         }
     }
 
+    private File shardDirectory(String engineName) {
+        return new File(new File(context.getFilesDir(), SHARD_DIRECTORY), engineName);
+    }
+
+    // ==================== 内存与模型管理 ====================
+
     /**
-     * 定期清理低频词
+     * 按当前设置立即调整内存上限（设置变更后调用）
      */
-    private void scheduleCleanup() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastCleanupTime > 60000) { // 每分钟检查一次
-            lastCleanupTime = currentTime;
-            
-            // 如果数据量过大，清理低频低权重词
-            if (wordCounts.size() > 5000) {
-                executor.execute(this::cleanupLowValueTerms);
-            }
-        }
+    public void applyMemoryBudget() {
+        ShardedModel current = currentEngine();
+        writerExecutor.execute(current::applyMemoryBudget);
     }
 
     /**
-     * 清理低价值词条
+     * 按当前设置切换权重精度（设置变更后调用）
+     * 当前引擎保存后释放内存，下次使用时按新的精度重新加载
      */
-    private void cleanupLowValueTerms() {
-        Iterator<Map.Entry<String, Integer>> iterator = wordCounts.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, Integer> entry = iterator.next();
-            String token = entry.getKey();
-            int count = entry.getValue();
-            float weight = wordWeights.getOrDefault(token, DEFAULT_WEIGHT);
-            
-            // 清理条件：低频且权重接近默认值
-            if (count < 3 && Math.abs(weight - DEFAULT_WEIGHT) < 0.5f) {
-                iterator.remove();
-                wordWeights.remove(token);
-                tfIdfWeights.remove(token);
-                lastAccessTime.remove(token);
-                termDocCount.remove(token);
-            }
-        }
+    public void applyWeightPrecision() {
+        ShardedModel current = currentEngine();
+        writerExecutor.execute(current::release);
     }
 
     /**
-     * 保存模型 - v3.0 格式
+     * 当前模型占用的内存（字节，估算值）
      */
-    private synchronized void saveModel() {
-        if (!isDirty) return;
-        
-        try {
-            JSONObject json = new JSONObject();
-            json.put("totalLearnCount", totalLearnCount);
-            json.put("totalDocumentCount", totalDocumentCount);
-            json.put("saveTime", System.currentTimeMillis());
-            
-            // 保存权重（只保存偏离默认值较多的）
-            JSONObject weightsJson = new JSONObject();
-            for (Map.Entry<String, Float> entry : wordWeights.entrySet()) {
-                float weight = entry.getValue();
-                if (Math.abs(weight - DEFAULT_WEIGHT) > 0.05f) {
-                    weightsJson.put(entry.getKey(), weight);
-                }
-            }
-            json.put("weights", weightsJson);
-            
-            // 保存词频
-            JSONObject countsJson = new JSONObject();
-            for (Map.Entry<String, Integer> entry : wordCounts.entrySet()) {
-                if (entry.getValue() > 0) {
-                    countsJson.put(entry.getKey(), entry.getValue());
-                }
-            }
-            json.put("counts", countsJson);
-            
-            // 保存TF-IDF权重
-            JSONObject tfIdfJson = new JSONObject();
-            for (Map.Entry<String, Float> entry : tfIdfWeights.entrySet()) {
-                if (entry.getValue() > 0.1f) {
-                    tfIdfJson.put(entry.getKey(), entry.getValue());
-                }
-            }
-            json.put("tfidf", tfIdfJson);
-            
-            // 保存时间戳
-            JSONObject timeJson = new JSONObject();
-            for (Map.Entry<String, Long> entry : lastAccessTime.entrySet()) {
-                timeJson.put(entry.getKey(), entry.getValue());
-            }
-            json.put("accessTime", timeJson);
-            
-            // 保存文档统计
-            JSONObject docJson = new JSONObject();
-            for (Map.Entry<String, Integer> entry : termDocCount.entrySet()) {
-                if (entry.getValue() > 1) {
-                    docJson.put(entry.getKey(), entry.getValue());
-                }
-            }
-            json.put("termDocCount", docJson);
-            
-            // 写入文件
-            File file = new File(context.getFilesDir(), MODEL_FILE_NAME);
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                fos.write(json.toString().getBytes());
-            }
-            
-            isDirty = false;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public long getMemoryUsageBytes() {
+        return currentEngine().getMemoryUsageBytes();
     }
 
     /**
-     * 加载模型 - v3.0 格式
-     * 不校验版本号，直接加载
+     * 当前词条数
      */
-    private void loadModel() {
-        try {
-            File file = new File(context.getFilesDir(), MODEL_FILE_NAME);
-            if (!file.exists()) return;
-            
-            Scanner scanner = new Scanner(file);
-            StringBuilder sb = new StringBuilder();
-            while (scanner.hasNextLine()) {
-                sb.append(scanner.nextLine());
-            }
-            scanner.close();
-            
-            JSONObject json = new JSONObject(sb.toString());
-            
-            // 直接加载数据，不校验版本
-            totalLearnCount = json.optLong("totalLearnCount", 0);
-            totalDocumentCount = json.optLong("totalDocumentCount", 0);
-            
-            // 加载权重
-            if (json.has("weights")) {
-                JSONObject weightsJson = json.getJSONObject("weights");
-                Iterator<String> keys = weightsJson.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    wordWeights.put(key, (float) weightsJson.getDouble(key));
-                }
-            }
-            
-            // 加载词频
-            if (json.has("counts")) {
-                JSONObject countsJson = json.getJSONObject("counts");
-                Iterator<String> keys = countsJson.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    wordCounts.put(key, countsJson.getInt(key));
-                }
-            }
-            
-            // 加载TF-IDF
-            if (json.has("tfidf")) {
-                JSONObject tfIdfJson = json.getJSONObject("tfidf");
-                Iterator<String> keys = tfIdfJson.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    tfIdfWeights.put(key, (float) tfIdfJson.getDouble(key));
-                }
-            }
-            
-            // 加载时间戳
-            if (json.has("accessTime")) {
-                JSONObject timeJson = json.getJSONObject("accessTime");
-                Iterator<String> keys = timeJson.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    lastAccessTime.put(key, timeJson.getLong(key));
-                }
-            }
-            
-            // 加载文档统计
-            if (json.has("termDocCount")) {
-                JSONObject docJson = json.getJSONObject("termDocCount");
-                Iterator<String> keys = docJson.keys();
-                while (keys.hasNext()) {
-                    String key = keys.next();
-                    termDocCount.put(key, docJson.getInt(key));
-                }
-            }
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public int getTermCount() {
+        return currentEngine().getTermCount();
     }
 
     /**
      * 清空模型 - 保持接口不变
+     * 所有引擎的模型和文件一并清空
      */
     public void clearModel() {
-        executor.execute(() -> {
-            wordWeights.clear();
-            wordCounts.clear();
-            tfIdfWeights.clear();
-            lastAccessTime.clear();
-            termDocCount.clear();
-            totalLearnCount = 0;
-            totalDocumentCount = 0;
-            isDirty = false;
-            isLoaded = true;
-            
-            // 删除所有版本的模型文件
-            File[] files = context.getFilesDir().listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.getName().startsWith("ml_weights")) {
-                        file.delete();
-                    }
-                }
-            }
+        ShardedModel heuristic = getEngine(SharedPreferencesManager.LOCAL_MODEL_ENGINE_HEURISTIC);
+        ShardedModel logistic = getEngine(SharedPreferencesManager.LOCAL_MODEL_ENGINE_LOGISTIC);
+        ShardedModel hashed = getEngine(SharedPreferencesManager.LOCAL_MODEL_ENGINE_HASHED);
+        writerExecutor.execute(() -> {
+            heuristic.clear();
+            logistic.clear();
+            hashed.clear();
         });
     }
 
     /**
-     * 释放内存 - 保持接口不变
+     * 系统内存紧张时（onTrimMemory）释放各应用的分片，全局模型保留
+     * 内存越紧张保留的分片越少；仅界面隐藏（TRIM_MEMORY_UI_HIDDEN）时不处理
      */
-    public void releaseMemory() {
-        executor.execute(() -> {
-            synchronized (this) {
-                saveModel();
-                wordWeights.clear();
-                wordCounts.clear();
-                tfIdfWeights.clear();
-                lastAccessTime.clear();
-                termDocCount.clear();
-                isLoaded = false;
-            }
-        });
-    }
+    public void trimShards(int level) {
+        int maxLoaded;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            maxLoaded = 0;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            maxLoaded = 2;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            maxLoaded = 4;
+        } else {
+            return;
+        }
 
+        ShardedModel heuristic;
+        ShardedModel logistic;
+        ShardedModel hashed;
+        synchronized (engineLock) {
+            heuristic = heuristicEngine;
+            logistic = logisticEngine;
+            hashed = hashedEngine;
+        }
+        int released = 0;
+        if (heuristic != null) released += heuristic.trimShards(maxLoaded);
+        if (logistic != null) released += logistic.trimShards(maxLoaded);
+        if (hashed != null) released += hashed.trimShards(maxLoaded);
+        if (released > 0) {
+            Log.i(TAG, "Trim memory level " + level + ": released " + released + " shards");
+        }
+    }
 
     /**
-     * 决策树接口
+     * 释放内存 - 保持接口不变
      */
-    private interface DecisionTree {
-        float adjustScore(float baseScore, String[] tokens, Map<String, Float> weights);
+    public void releaseMemory() {
+        writerExecutor.execute(() -> {
+            ShardedModel heuristic;
+            ShardedModel logistic;
+            ShardedModel hashed;
+            synchronized (engineLock) {
+                heuristic = heuristicEngine;
+                logistic = logisticEngine;
+                hashed = hashedEngine;
+            }
+            if (heuristic != null) heuristic.release();
+            if (logistic != null) logistic.release();
+            if (hashed != null) hashed.release();
+        });
     }
 }
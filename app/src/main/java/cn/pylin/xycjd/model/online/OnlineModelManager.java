@@ -6,13 +6,31 @@ import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.concurrent.ExecutorService;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import cn.pylin.xycjd.R;
+import cn.pylin.xycjd.manager.HttpClientManager;
 import cn.pylin.xycjd.manager.SharedPreferencesManager;
+import cn.pylin.xycjd.model.local.NotificationFeatures;
+import cn.pylin.xycjd.utils.NotificationRules;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -20,18 +38,80 @@ import okhttp3.Response;
 /**
  * 在线模型管理器 - 重构版
  * 实现OpenAI接口规范的调用
+ *
+ * 成功的评分按模型配置和请求内容缓存（{@link OnlineScoreCache}），同样的通知再次出现时不再请求接口；
+ * 精确缓存未命中时，只有数字、编号不同的通知复用最近的分数（{@link NearDuplicateCache}），
+ * 每 NEAR_DUPLICATE_AUDIT_INTERVAL 次近似命中仍请求一次接口核对，不一致时记录日志，用于调整阈值。
+ * 修改接口地址、模型、提示词或温度后缓存自动失效。
+ *
+ * 批量模式（设置中开启）：过滤检查先收集 BATCH_WINDOW_MS 或 MAX_BATCH_SIZE 条，缓存未命中的通知合并为一次请求，
+ * 要求接口按顺序返回分数的 JSON 数组，再分别回调；返回格式不符或请求失败时逐条重新请求。
+ *
+ * 请求线程只负责查询缓存和组装请求，HTTP 请求异步发出（OkHttp enqueue），同时进行的请求数不超过设置的上限，
+ * 其余在 Dispatcher 中排队，一个慢请求不会阻塞后面的通知。连接池与更新检查共用（{@link HttpClientManager}），
+ * 服务器支持 HTTP/2 时并发请求复用同一连接。
+ *
+ * 连接预热：亮屏或通知监听服务连接时（{@link #prewarm()}）先请求一次 /models，建立 DNS、TCP 和 TLS 连接，
+ * 先检查再显示的模式下第一条通知不必等待握手。通知持续到来时按设置的间隔发送同样的轻量请求保持连接，
+ * 最后一条通知后 KEEP_ALIVE_IDLE_MS 内没有新通知则停止。握手耗时与请求耗时（不含握手）分开统计。
  */
 public class OnlineModelManager {
     
+    private static final String SCORE_CACHE_FILE = "online_score_cache.bin";
+    private static final int MAX_TITLE_LENGTH = 50;
+    private static final int MAX_CONTENT_LENGTH = 200;
+    private static final int NEAR_DUPLICATE_AUDIT_INTERVAL = 8;
+    private static final float NEAR_DUPLICATE_MAX_SCORE_DELTA = 2.0f;  // 分数相差超过该值视为不一致
+    private static final long BATCH_WINDOW_MS = 300;
+    private static final int MAX_BATCH_SIZE = 8;
+    private static final long CONNECT_TIMEOUT_SECONDS = 5;
+    private static final long READ_TIMEOUT_SECONDS = 15;
+    private static final long WRITE_TIMEOUT_SECONDS = 10;
+    private static final long CALL_TIMEOUT_SECONDS = 20;   // 整个请求（含重试和重定向）的上限
+    private static final long PREWARM_MIN_INTERVAL_MS = 30 * 1000;     // 最近有过请求时连接仍在连接池中，不再预热
+    private static final long KEEP_ALIVE_IDLE_MS = 5 * 60 * 1000;      // 超过该时间没有通知时停止保活
+    private static final Object WARM_UP_TAG = new Object();
+
     private static OnlineModelManager instance;
-    private final ExecutorService executor;
+    private final ScheduledExecutorService executor;
     private final Context context;
     private final OkHttpClient client;
+    private final Dispatcher dispatcher;
+    private final OnlineScoreCache scoreCache;
+    private final NearDuplicateCache nearDuplicateCache;
+
+    // 批量模式下等待发送的过滤检查
+    private final Object batchLock = new Object();
+    private List<PendingCheck> pendingChecks = new ArrayList<>();
+
+    // 连接保活
+    private ScheduledFuture<?> keepAliveTask;
+    private int keepAliveSeconds = 0;
+    private volatile long lastNotificationTime = 0;
+    private volatile long lastCallTime = 0;
+
+    // 握手与请求耗时统计
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong handshakeTotalMs = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong requestTotalMs = new AtomicLong();
+    private final AtomicLong warmUpCount = new AtomicLong();
 
     private OnlineModelManager(Context context) {
         this.context = context.getApplicationContext();
-        this.executor = Executors.newSingleThreadExecutor();
-        this.client = new OkHttpClient();
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.dispatcher = new Dispatcher();
+        applyConcurrencyLimit();
+        this.client = HttpClientManager.getInstance().newClientBuilder()
+                .dispatcher(dispatcher)
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .eventListenerFactory(call -> new CallTimingListener(call.request().tag() == WARM_UP_TAG))
+                .build();
+        this.scoreCache = new OnlineScoreCache(new File(this.context.getCacheDir(), SCORE_CACHE_FILE));
+        this.nearDuplicateCache = new NearDuplicateCache();
     }
 
     public static synchronized OnlineModelManager getInstance(Context context) {
@@ -45,45 +125,549 @@ public class OnlineModelManager {
         void onResult(boolean shouldFilter, float score);
     }
 
+    /**
+     * 异步请求得到的分数（失败时为备用分数）
+     */
+    private interface ScoreCallback {
+        void onScore(float score);
+    }
+
+    /**
+     * 异步请求的结果处理：请求失败或 parse 抛出异常时调用 onFailure，否则调用一次 onSuccess
+     * onSuccess 在失败处理之外调用，其中的异常不会触发 onFailure
+     */
+    private interface ResponseHandler<T> {
+        T parse(String responseString) throws Exception;
+
+        void onSuccess(T result);
+
+        void onFailure(Exception e);
+    }
+
+    /**
+     * 一次待评分的请求（标题和内容已截断）
+     */
+    private static final class ScoreRequest {
+        final String title;
+        final String content;
+        final long configHash;
+        final long key;
+        long signature;
+        NearDuplicateCache.Match match;     // 需要核对的近似命中
+
+        ScoreRequest(String title, String content, long configHash) {
+            this.title = title;
+            this.content = content;
+            this.configHash = configHash;
+            this.key = OnlineScoreCache.key(configHash, title, content);
+        }
+    }
+
+    /**
+     * 批量模式下等待发送的过滤检查
+     */
+    private static final class PendingCheck {
+        final NotificationFeatures features;
+        final FilterCallback callback;
+
+        PendingCheck(NotificationFeatures features, FilterCallback callback) {
+            this.features = features;
+            this.callback = callback;
+        }
+    }
+
     /**
      * 异步检查是否需要过滤
+     * 请求使用规范化后的标题和正文（全角转半角、空白已合并）；批量模式下与其他通知合并请求
      */
-    public void checkFilter(String title, String content, FilterCallback callback) {
+    public void checkFilter(NotificationFeatures features, FilterCallback callback) {
+        applyConcurrencyLimit();
+        lastNotificationTime = System.currentTimeMillis();
+        scheduleKeepAlive();
+        if (SharedPreferencesManager.getInstance(context).isOnlineBatchEnabled()) {
+            enqueueBatch(new PendingCheck(features, callback));
+            return;
+        }
         executor.execute(() -> {
-            float score = executeApiCall(title, content);
-            float filteringDegree = SharedPreferencesManager.getInstance(context).getOnlineFilteringDegree();
-            boolean shouldFilter = score <= filteringDegree;
-            
-            if (callback != null) {
-                callback.onResult(shouldFilter, score);
+            SharedPreferencesManager manager = SharedPreferencesManager.getInstance(context);
+            String systemPrompt = resolvePrompt(manager.getOnlineModelPrompt());
+            ScoreRequest request = prepareRequest(features.title, features.text, manager, systemPrompt);
+            float cached = lookupCache(request, manager);
+            if (!Float.isNaN(cached)) {
+                deliver(callback, cached);
+                return;
             }
+            enqueueSingle(request, manager, systemPrompt, score -> deliver(callback, score));
         });
     }
 
+    private void deliver(FilterCallback callback, float score) {
+        float filteringDegree = SharedPreferencesManager.getInstance(context).getOnlineFilteringDegree();
+        boolean shouldFilter = score <= filteringDegree;
+        
+        if (callback != null) {
+            callback.onResult(shouldFilter, score);
+        }
+    }
+
     /**
-     * 执行API调用并返回分数（实际使用的方法）
-     * 失败时返回10.0f
+     * 执行API调用并返回分数（同步，在调用线程上等待响应）
+     * 先查询评分缓存和近似缓存，未命中时请求接口并缓存结果；失败时返回10.0f（不缓存）
      */
     public float executeApiCall(String title, String content) {
+        SharedPreferencesManager manager = SharedPreferencesManager.getInstance(context);
+        String systemPrompt = resolvePrompt(manager.getOnlineModelPrompt());
+        ScoreRequest request = prepareRequest(title, content, manager, systemPrompt);
+        float cached = lookupCache(request, manager);
+        if (!Float.isNaN(cached)) {
+            return cached;
+        }
+        return requestSingle(request, manager, systemPrompt);
+    }
+
+    private ScoreRequest prepareRequest(String title, String content, SharedPreferencesManager manager,
+                                        String systemPrompt) {
+        long configHash = OnlineScoreCache.configHash(manager.getOnlineApiUrl(), manager.getOnlineModelName(),
+                systemPrompt, manager.getTemperature());
+        return new ScoreRequest(truncate(title, MAX_TITLE_LENGTH), truncate(content, MAX_CONTENT_LENGTH), configHash);
+    }
+
+    /**
+     * 查询评分缓存和近似缓存，需要请求接口时返回 NaN
+     * 近似命中定期抽查：抽查的请求记录 match，拿到接口分数后核对
+     */
+    private float lookupCache(ScoreRequest request, SharedPreferencesManager manager) {
+        float cached = scoreCache.get(request.configHash, request.key);
+        if (!Float.isNaN(cached)) {
+            return cached;
+        }
+
+        // 近似缓存：命中时直接使用，定期抽查
+        int threshold = manager.getOnlineNearDuplicateThreshold();
+        request.signature = threshold > 0 ? nearDuplicateCache.signature(request.title, request.content) : 0;
+        NearDuplicateCache.Match match = nearDuplicateCache.find(request.configHash, request.signature, threshold);
+        if (match != null && nearDuplicateCache.getHitCount() % NEAR_DUPLICATE_AUDIT_INTERVAL != 0) {
+            return match.score;
+        }
+        request.match = match;
+        return Float.NaN;
+    }
+
+    /**
+     * 单独请求一条，失败时返回近似命中的分数或10.0f
+     */
+    private float requestSingle(ScoreRequest request, SharedPreferencesManager manager, String systemPrompt) {
+        float score;
+        try {
+            score = callOnlineApi(request.title, request.content,
+                manager.getOnlineApiUrl(),
+                manager.getOnlineApiKey(),
+                manager.getOnlineModelName(),
+                systemPrompt,
+                manager.getTemperature());
+        } catch (Exception e) {
+            Log.e("OnlineModelManager", "API call failed: " + e.getMessage());
+            return request.match != null ? request.match.score : 10.0f;
+        }
+        // 写缓存出错不影响已拿到的分数
+        try {
+            recordScore(request, score, manager);
+        } catch (RuntimeException e) {
+            Log.e("OnlineModelManager", "Failed to record score", e);
+        }
+        return score;
+    }
+
+    /**
+     * 异步请求一条，失败时回调近似命中的分数或10.0f
+     */
+    private void enqueueSingle(ScoreRequest request, SharedPreferencesManager manager, String systemPrompt,
+                               ScoreCallback callback) {
         try {
-            return callOnlineApi(title, content, 
-                SharedPreferencesManager.getInstance(context));
+            JSONObject requestBody = buildRequestBody(request.title, request.content,
+                    manager.getOnlineModelName(), systemPrompt, manager.getTemperature());
+            enqueueChatCompletion(manager.getOnlineApiUrl(), manager.getOnlineApiKey(), requestBody,
+                    new ResponseHandler<Float>() {
+                        @Override
+                        public Float parse(String responseString) throws Exception {
+                            return parseScoreFromResponse(responseString);
+                        }
+
+                        @Override
+                        public void onSuccess(Float score) {
+                            complete(request, score, manager, callback);
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            Log.e("OnlineModelManager", "API call failed: " + e.getMessage());
+                            callback.onScore(request.match != null ? request.match.score : 10.0f);
+                        }
+                    });
         } catch (Exception e) {
             Log.e("OnlineModelManager", "API call failed: " + e.getMessage());
-            return 10.0f;
+            callback.onScore(request.match != null ? request.match.score : 10.0f);
+        }
+    }
+
+    /**
+     * 接口返回的分数写入缓存，需要时核对近似命中
+     */
+    private void recordScore(ScoreRequest request, float score, SharedPreferencesManager manager) {
+        scoreCache.put(request.configHash, request.key, score);
+        nearDuplicateCache.put(request.configHash, request.signature, score);
+        if (request.match != null) {
+            auditNearDuplicate(request.match, score, manager.getOnlineFilteringDegree());
+        }
+    }
+
+    /**
+     * 记录接口返回的分数并回调，每条通知只回调一次
+     * 写缓存或回调出错只记录日志，不会当作请求失败再次请求和回调
+     */
+    private void complete(ScoreRequest request, float score, SharedPreferencesManager manager,
+                          ScoreCallback callback) {
+        try {
+            recordScore(request, score, manager);
+        } catch (RuntimeException e) {
+            Log.e("OnlineModelManager", "Failed to record score", e);
+        }
+        try {
+            callback.onScore(score);
+        } catch (RuntimeException e) {
+            Log.e("OnlineModelManager", "Filter callback failed", e);
+        }
+    }
+
+    // ==================== 批量模式 ====================
+
+    /**
+     * 加入等待队列：第一条开始计时，满 MAX_BATCH_SIZE 条时立即发送
+     */
+    private void enqueueBatch(PendingCheck check) {
+        synchronized (batchLock) {
+            pendingChecks.add(check);
+            if (pendingChecks.size() == 1) {
+                executor.schedule(this::flushBatch, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            } else if (pendingChecks.size() >= MAX_BATCH_SIZE) {
+                executor.execute(this::flushBatch);
+            }
+        }
+    }
+
+    /**
+     * 发送等待中的检查（在请求线程上执行）：缓存命中的直接回调，其余合并为一次请求
+     */
+    private void flushBatch() {
+        List<PendingCheck> checks;
+        synchronized (batchLock) {
+            if (pendingChecks.isEmpty()) {
+                return;
+            }
+            checks = pendingChecks;
+            pendingChecks = new ArrayList<>();
+        }
+
+        SharedPreferencesManager manager = SharedPreferencesManager.getInstance(context);
+        String systemPrompt = resolvePrompt(manager.getOnlineModelPrompt());
+        List<ScoreRequest> requests = new ArrayList<>();
+        List<FilterCallback> callbacks = new ArrayList<>();
+        for (PendingCheck check : checks) {
+            ScoreRequest request = prepareRequest(check.features.title, check.features.text, manager, systemPrompt);
+            float cached = lookupCache(request, manager);
+            if (!Float.isNaN(cached)) {
+                deliver(check.callback, cached);
+            } else {
+                requests.add(request);
+                callbacks.add(check.callback);
+            }
+        }
+
+        if (requests.size() == 1) {
+            FilterCallback callback = callbacks.get(0);
+            enqueueSingle(requests.get(0), manager, systemPrompt, score -> deliver(callback, score));
+            return;
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        ResponseHandler<float[]> handler = new ResponseHandler<float[]>() {
+            @Override
+            public float[] parse(String responseString) throws Exception {
+                return parseScoresFromResponse(responseString, requests.size());
+            }
+
+            @Override
+            public void onSuccess(float[] scores) {
+                for (int i = 0; i < requests.size(); i++) {
+                    FilterCallback callback = callbacks.get(i);
+                    complete(requests.get(i), scores[i], manager, score -> deliver(callback, score));
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.w("OnlineModelManager", "Batch call failed, falling back to single requests: " + e.getMessage());
+                for (int i = 0; i < requests.size(); i++) {
+                    FilterCallback callback = callbacks.get(i);
+                    enqueueSingle(requests.get(i), manager, systemPrompt, score -> deliver(callback, score));
+                }
+            }
+        };
+        try {
+            JSONObject requestBody = buildBatchRequestBody(requests, manager.getOnlineModelName(),
+                    systemPrompt, manager.getTemperature());
+            enqueueChatCompletion(manager.getOnlineApiUrl(), manager.getOnlineApiKey(), requestBody, handler);
+        } catch (Exception e) {
+            handler.onFailure(e);
+        }
+    }
+
+    // ==================== 并发与指标 ====================
+
+    /**
+     * 按设置调整同时进行的请求数上限（所有请求发往同一接口，单主机上限与总上限相同）
+     */
+    private void applyConcurrencyLimit() {
+        int limit = SharedPreferencesManager.getInstance(context).getOnlineMaxConcurrentRequests();
+        if (dispatcher.getMaxRequests() != limit) {
+            dispatcher.setMaxRequests(limit);
+            dispatcher.setMaxRequestsPerHost(limit);
+        }
+    }
+
+    /**
+     * 正在进行的请求数
+     */
+    public int getInFlightRequestCount() {
+        return dispatcher.runningCallsCount();
+    }
+
+    /**
+     * 等待发出的请求数：Dispatcher 中排队的请求 + 批量模式下等待合并的通知
+     */
+    public int getQueuedRequestCount() {
+        int pending;
+        synchronized (batchLock) {
+            pending = pendingChecks.size();
+        }
+        return dispatcher.queuedCallsCount() + pending;
+    }
+
+    // ==================== 连接预热与保活 ====================
+
+    /**
+     * 预热连接（亮屏、通知监听服务连接时调用）
+     * 仅在使用在线模型且已配置接口时进行；最近有过请求或仍有请求在进行时跳过
+     */
+    public void prewarm() {
+        if (!isOnlineModelActive()) {
+            return;
+        }
+        if (System.currentTimeMillis() - lastCallTime < PREWARM_MIN_INTERVAL_MS
+                || dispatcher.runningCallsCount() > 0) {
+            return;
         }
+        sendWarmUp();
     }
 
     /**
-     * 核心API调用方法 - 使用配置管理器
+     * 通知到来时启动保活任务，间隔设置变化时重新安排
      */
-    private float callOnlineApi(String title, String content, SharedPreferencesManager manager) throws Exception {
-        return callOnlineApi(title, content, 
-            manager.getOnlineApiUrl(),
-            manager.getOnlineApiKey(),
-            manager.getOnlineModelName(),
-            manager.getOnlineModelPrompt(),
-            manager.getTemperature());
+    private synchronized void scheduleKeepAlive() {
+        int seconds = SharedPreferencesManager.getInstance(context).getOnlineKeepAliveSeconds();
+        if (keepAliveTask != null && seconds == keepAliveSeconds) {
+            return;
+        }
+        cancelKeepAlive();
+        if (seconds > 0) {
+            keepAliveSeconds = seconds;
+            keepAliveTask = executor.scheduleWithFixedDelay(this::keepAlive, seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private synchronized void cancelKeepAlive() {
+        if (keepAliveTask != null) {
+            keepAliveTask.cancel(false);
+            keepAliveTask = null;
+        }
+        keepAliveSeconds = 0;
+    }
+
+    /**
+     * 保活任务：通知停止或关闭在线模型后结束，一个间隔内没有请求时发送轻量请求
+     */
+    private void keepAlive() {
+        long now = System.currentTimeMillis();
+        if (now - lastNotificationTime > KEEP_ALIVE_IDLE_MS || !isOnlineModelActive()) {
+            cancelKeepAlive();
+            return;
+        }
+        int seconds = SharedPreferencesManager.getInstance(context).getOnlineKeepAliveSeconds();
+        if (seconds <= 0) {
+            cancelKeepAlive();
+            return;
+        }
+        if (now - lastCallTime >= seconds * 1000L && dispatcher.runningCallsCount() == 0) {
+            sendWarmUp();
+        }
+    }
+
+    /**
+     * 是否正在使用在线模型（已开启模型过滤、选择在线模型并配置了接口地址）
+     */
+    private boolean isOnlineModelActive() {
+        SharedPreferencesManager manager = SharedPreferencesManager.getInstance(context);
+        String apiUrl = manager.getOnlineApiUrl();
+        return manager.isModelFilteringEnabled()
+                && NotificationRules.MODEL_ONLINE.equals(manager.getFilterModel())
+                && apiUrl != null && !apiUrl.isEmpty();
+    }
+
+    /**
+     * 发送轻量请求（GET /models）建立或保持连接，响应内容不使用
+     */
+    private void sendWarmUp() {
+        SharedPreferencesManager manager = SharedPreferencesManager.getInstance(context);
+        Request request;
+        try {
+            request = new Request.Builder()
+                    .url(baseUrl(manager.getOnlineApiUrl()) + "/models")
+                    .addHeader("Authorization", "Bearer " + manager.getOnlineApiKey())
+                    .tag(WARM_UP_TAG)
+                    .get()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            Log.w("OnlineModelManager", "Invalid API URL, skip warm-up: " + e.getMessage());
+            return;
+        }
+        warmUpCount.incrementAndGet();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.w("OnlineModelManager", "Warm-up failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * 记录每次请求的握手耗时（DNS + TCP + TLS，复用连接时没有）和请求耗时（不含握手）
+     * 预热请求只统计握手
+     */
+    private final class CallTimingListener extends EventListener {
+        private final boolean warmUp;
+        private long callStart;
+        private long handshakeStart;
+        private long handshakeMs;
+
+        CallTimingListener(boolean warmUp) {
+            this.warmUp = warmUp;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+            lastCallTime = System.currentTimeMillis();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            if (handshakeStart == 0) handshakeStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            if (handshakeStart == 0) handshakeStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                               Protocol protocol) {
+            handshakeMs = (System.nanoTime() - handshakeStart) / 1_000_000;
+            connectionCount.incrementAndGet();
+            handshakeTotalMs.addAndGet(handshakeMs);
+            Log.d("OnlineModelManager", "Connection established in " + handshakeMs + " ms (" + protocol + ")");
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            if (warmUp) {
+                return;
+            }
+            long totalMs = (System.nanoTime() - callStart) / 1_000_000;
+            requestCount.incrementAndGet();
+            requestTotalMs.addAndGet(Math.max(0, totalMs - handshakeMs));
+        }
+    }
+
+    /**
+     * 新建连接次数
+     */
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * 平均握手耗时（毫秒）
+     */
+    public long getAverageHandshakeMs() {
+        long count = connectionCount.get();
+        return count > 0 ? handshakeTotalMs.get() / count : 0;
+    }
+
+    /**
+     * 平均请求耗时（毫秒，不含握手）
+     */
+    public long getAverageRequestMs() {
+        long count = requestCount.get();
+        return count > 0 ? requestTotalMs.get() / count : 0;
+    }
+
+    /**
+     * 预热和保活请求次数
+     */
+    public long getWarmUpCount() {
+        return warmUpCount.get();
+    }
+
+    /**
+     * 核对一次近似命中：过滤结果不同或分数相差过大时视为不一致
+     */
+    private void auditNearDuplicate(NearDuplicateCache.Match match, float score, float filteringDegree) {
+        boolean disagreed = (match.score <= filteringDegree) != (score <= filteringDegree)
+                || Math.abs(match.score - score) > NEAR_DUPLICATE_MAX_SCORE_DELTA;
+        nearDuplicateCache.recordAudit(disagreed);
+
+        String message = String.format(Locale.US,
+                "Near-duplicate audit: distance=%d cached=%.1f actual=%.1f hits=%d/%d disagreements=%d/%d",
+                match.distance, match.score, score,
+                nearDuplicateCache.getHitCount(), nearDuplicateCache.getLookupCount(),
+                nearDuplicateCache.getDisagreementCount(), nearDuplicateCache.getAuditCount());
+        if (disagreed) {
+            Log.w("OnlineModelManager", message);
+        } else {
+            Log.i("OnlineModelManager", message);
+        }
+    }
+
+    /**
+     * 评分缓存（命中统计等）
+     */
+    public OnlineScoreCache getScoreCache() {
+        return scoreCache;
+    }
+
+    /**
+     * 近似缓存（命中、抽查与不一致统计）
+     */
+    public NearDuplicateCache getNearDuplicateCache() {
+        return nearDuplicateCache;
     }
 
     /**
@@ -94,7 +678,7 @@ public class OnlineModelManager {
                                    String systemPrompt, float temperature) {
         try {
             float score = callOnlineApi("测试标题", "测试内容", 
-                apiUrl, apiKey, modelName, systemPrompt, temperature);
+                apiUrl, apiKey, modelName, resolvePrompt(systemPrompt), temperature);
             return score >= 0.0f && score <= 10.0f;
         } catch (Exception e) {
             Log.e("OnlineModelManager", "Test failed: " + e.getMessage());
@@ -108,50 +692,122 @@ public class OnlineModelManager {
     private float callOnlineApi(String title, String content, 
                                String apiUrl, String apiKey, String modelName,
                                String systemPrompt, float temperature) throws Exception {
+        // 构建请求体
+        JSONObject requestBody = buildRequestBody(title, content, modelName, systemPrompt, temperature);
+        return parseScoreFromResponse(postChatCompletion(apiUrl, apiKey, requestBody));
+    }
 
-        // 构建URL
-        String finalUrl = apiUrl.replaceAll("/+$", "");
-        if (!finalUrl.endsWith("/chat/completions")) {
-            finalUrl += "/chat/completions";
+    /**
+     * 发送 /chat/completions 请求，返回响应内容
+     */
+    private String postChatCompletion(String apiUrl, String apiKey, JSONObject requestBody) throws Exception {
+        // 执行请求
+        try (Response response = client.newCall(buildChatCompletionRequest(apiUrl, apiKey, requestBody)).execute()) {
+            if (response.isSuccessful() && response.body() != null) {
+                // 直接使用 OkHttp 的 string() 方法获取响应内容
+                return response.body().string();
+            } else {
+                throw new Exception("HTTP error: " + response.code());
+            }
         }
+    }
+
+    /**
+     * 异步发送 /chat/completions 请求（超过并发上限时在 Dispatcher 中排队），在 OkHttp 线程上回调
+     */
+    private <T> void enqueueChatCompletion(String apiUrl, String apiKey, JSONObject requestBody,
+                                           ResponseHandler<T> handler) {
+        client.newCall(buildChatCompletionRequest(apiUrl, apiKey, requestBody)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                handler.onFailure(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                T result;
+                try (Response body = response) {
+                    if (!body.isSuccessful() || body.body() == null) {
+                        throw new Exception("HTTP error: " + body.code());
+                    }
+                    result = handler.parse(body.body().string());
+                } catch (Exception e) {
+                    handler.onFailure(e);
+                    return;
+                }
+                handler.onSuccess(result);
+            }
+        });
+    }
+
+    private Request buildChatCompletionRequest(String apiUrl, String apiKey, JSONObject requestBody) {
+        // 构建URL
+        String finalUrl = baseUrl(apiUrl) + "/chat/completions";
 
-        // 构建请求体
-        JSONObject requestBody = buildRequestBody(title, content, modelName, systemPrompt, temperature);
-        
         // 创建请求
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(finalUrl)
                 .addHeader("Content-Type", "application/json")
                 .addHeader("Authorization", "Bearer " + apiKey)
                 .post(RequestBody.create(requestBody.toString(), MediaType.get("application/json; charset=utf-8")))
                 .build();
+    }
 
-        // 执行请求并解析响应
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                // 直接使用 OkHttp 的 string() 方法获取响应内容
-                String responseString = response.body().string();
-                return parseScoreFromResponse(responseString);
-            } else {
-                throw new Exception("HTTP error: " + response.code());
-            }
+    /**
+     * 接口基础地址（去掉末尾的 / 和 /chat/completions）
+     */
+    private static String baseUrl(String apiUrl) {
+        String url = apiUrl.replaceAll("/+$", "");
+        if (url.endsWith("/chat/completions")) {
+            url = url.substring(0, url.length() - "/chat/completions".length());
         }
+        return url;
     }
 
     /**
-     * 构建请求体
+     * 截断内容
      */
-    private JSONObject buildRequestBody(String title, String content, String modelName, 
-                                      String systemPrompt, float temperature) throws Exception {
-        // 截断内容
-        String safeTitle = title != null ? title.substring(0, Math.min(50, title.length())) : "";
-        String safeContent = content != null ? content.substring(0, Math.min(200, content.length())) : "";
+    private static String truncate(String text, int maxLength) {
+        return text != null ? text.substring(0, Math.min(maxLength, text.length())) : "";
+    }
 
-        // 获取系统提示词
+    /**
+     * 获取系统提示词（未设置时使用默认提示词）
+     */
+    private String resolvePrompt(String systemPrompt) {
         if (systemPrompt == null || systemPrompt.isEmpty()) {
-            systemPrompt = context.getString(R.string.default_prompt_content);
+            return context.getString(R.string.default_prompt_content);
         }
+        return systemPrompt;
+    }
+
+    /**
+     * 构建请求体（标题和内容已截断，系统提示词已确定）
+     */
+    private JSONObject buildRequestBody(String safeTitle, String safeContent, String modelName, 
+                                      String systemPrompt, float temperature) throws Exception {
+        return buildChatRequest(String.format("标题：%s\n内容：%s", safeTitle, safeContent),
+                modelName, systemPrompt, temperature);
+    }
 
+    /**
+     * 构建批量请求体：按编号列出各条通知，要求按顺序返回分数的 JSON 数组
+     */
+    private JSONObject buildBatchRequestBody(List<ScoreRequest> requests, String modelName,
+                                           String systemPrompt, float temperature) throws Exception {
+        StringBuilder content = new StringBuilder();
+        content.append(String.format("以下共 %d 条通知，请按顺序分别评分，只输出一个包含 %d 个分数的 JSON 数组，例如 [8.0, 2.5]。",
+                requests.size(), requests.size()));
+        for (int i = 0; i < requests.size(); i++) {
+            ScoreRequest request = requests.get(i);
+            content.append("\n\n[").append(i + 1).append("]\n")
+                    .append(String.format("标题：%s\n内容：%s", request.title, request.content));
+        }
+        return buildChatRequest(content.toString(), modelName, systemPrompt, temperature);
+    }
+
+    private JSONObject buildChatRequest(String userContent, String modelName,
+                                        String systemPrompt, float temperature) throws Exception {
         // 构建消息
         JSONObject systemMessage = new JSONObject();
         systemMessage.put("role", "system");
@@ -159,7 +815,7 @@ public class OnlineModelManager {
 
         JSONObject userMessage = new JSONObject();
         userMessage.put("role", "user");
-        userMessage.put("content", String.format("标题：%s\n内容：%s", safeTitle, safeContent));
+        userMessage.put("content", userContent);
 
         JSONArray messages = new JSONArray();
         messages.put(systemMessage);
@@ -178,15 +834,8 @@ public class OnlineModelManager {
      * 从API响应中解析分数
      */
     private float parseScoreFromResponse(String responseString) throws Exception {
-        JSONObject jsonResponse = new JSONObject(responseString);
-        JSONArray choices = jsonResponse.getJSONArray("choices");
-        
-        if (choices.length() > 0) {
-            String contentResult = choices.getJSONObject(0)
-                .getJSONObject("message")
-                .getString("content")
-                .trim();
-            
+        String contentResult = parseContentFromResponse(responseString);
+        if (contentResult != null) {
             // 提取数字
             String numberStr = contentResult.replaceAll("[^0-9.]", "");
             if (!numberStr.isEmpty()) {
@@ -197,4 +846,46 @@ public class OnlineModelManager {
         
         throw new Exception("No valid score found in response");
     }
+
+    /**
+     * 从批量响应中解析分数数组，个数不符或有无效分数时抛出异常
+     */
+    private float[] parseScoresFromResponse(String responseString, int count) throws Exception {
+        String contentResult = parseContentFromResponse(responseString);
+        int start = contentResult != null ? contentResult.indexOf('[') : -1;
+        int end = contentResult != null ? contentResult.lastIndexOf(']') : -1;
+        if (start < 0 || end < start) {
+            throw new Exception("No score array found in response");
+        }
+
+        JSONArray array = new JSONArray(contentResult.substring(start, end + 1));
+        if (array.length() != count) {
+            throw new Exception("Expected " + count + " scores but got " + array.length());
+        }
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            double score = array.getDouble(i);
+            if (Double.isNaN(score)) {
+                throw new Exception("Invalid score at " + i);
+            }
+            scores[i] = (float) Math.max(0, Math.min(10, score));
+        }
+        return scores;
+    }
+
+    /**
+     * 第一个候选回复的内容，没有时返回 null
+     */
+    private String parseContentFromResponse(String responseString) throws Exception {
+        JSONObject jsonResponse = new JSONObject(responseString);
+        JSONArray choices = jsonResponse.getJSONArray("choices");
+        
+        if (choices.length() > 0) {
+            return choices.getJSONObject(0)
+                .getJSONObject("message")
+                .getString("content")
+                .trim();
+        }
+        return null;
+    }
 }
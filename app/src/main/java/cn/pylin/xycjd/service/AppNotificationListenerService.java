@@ -1,9 +1,15 @@
 package cn.pylin.xycjd.service;
 
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 
 import cn.pylin.xycjd.manager.NotificationLogManager;
+import cn.pylin.xycjd.model.local.LocalModelManager;
+import cn.pylin.xycjd.model.online.OnlineModelManager;
 import cn.pylin.xycjd.utils.NotificationProcessor;
 import cn.pylin.xycjd.R;
 import cn.pylin.xycjd.manager.SharedPreferencesManager;
@@ -16,6 +22,15 @@ public class AppNotificationListenerService extends NotificationListenerService
     
     private static AppNotificationListenerService instance;
     private NotificationProcessor processor;
+    
+    // 亮屏时预热在线模型的连接，解锁后的第一条通知不必等待握手
+    private final BroadcastReceiver screenOnReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            OnlineModelManager.getInstance(context).prewarm();
+        }
+    };
+    private boolean screenOnReceiverRegistered = false;
 
     public static AppNotificationListenerService getInstance() {
         return instance;
@@ -25,6 +40,14 @@ public class AppNotificationListenerService extends NotificationListenerService
     public void onListenerConnected() {
         super.onListenerConnected();
         instance = this;
+        // 在后台加载本地模型，第一条通知不必等待整个加载
+        LocalModelManager.getInstance(this).preload();
+        // 预热在线模型的连接
+        OnlineModelManager.getInstance(this).prewarm();
+        if (!screenOnReceiverRegistered) {
+            registerReceiver(screenOnReceiver, new IntentFilter(Intent.ACTION_SCREEN_ON));
+            screenOnReceiverRegistered = true;
+        }
         // 初始化处理器
         processor = new NotificationProcessor(this);
     }
@@ -34,6 +57,17 @@ public class AppNotificationListenerService extends NotificationListenerService
         super.onListenerDisconnected();
         instance = null;
         processor = null;
+        if (screenOnReceiverRegistered) {
+            unregisterReceiver(screenOnReceiver);
+            screenOnReceiverRegistered = false;
+        }
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 内存紧张时释放各应用的模型分片
+        LocalModelManager.getInstance(this).trimShards(level);
     }
     
     @Override
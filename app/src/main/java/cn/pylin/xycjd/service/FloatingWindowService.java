@@ -45,6 +45,7 @@ import cn.pylin.xycjd.model.local.LocalModelManager;
 import cn.pylin.xycjd.R;
 import cn.pylin.xycjd.manager.SharedPreferencesManager;
 import cn.pylin.xycjd.utils.FloatingWindowBackgroundHelper;
+import cn.pylin.xycjd.utils.NotificationQueue;
 import cn.pylin.xycjd.utils.SpringSnapHelper;
 import cn.pylin.xycjd.ui.view.CircleImageView;
 
@@ -79,7 +80,7 @@ public class FloatingWindowService extends Service {
     private Runnable collapseRunnable;
     private boolean isAutoExpanded = false; // 标记当前是否为自动展开状态
 
-    public static class NotificationInfo {
+    public static class NotificationInfo implements NotificationQueue.Entry {
         private String key;
         private String packageName;
         private String title;
@@ -150,7 +151,7 @@ public class FloatingWindowService extends Service {
         }
     }
 
-    private java.util.LinkedList<NotificationInfo> notificationQueue = new java.util.LinkedList<>();
+    private final NotificationQueue<NotificationInfo> notificationQueue = new NotificationQueue<>();
 
     private String lastNotificationPackageName;
     private String lastNotificationTitle;
@@ -210,7 +211,7 @@ public class FloatingWindowService extends Service {
     /**
      * 获取通知队列
      */
-    public java.util.LinkedList<NotificationInfo> getNotificationQueue() {
+    public NotificationQueue<NotificationInfo> getNotificationQueue() {
         return notificationQueue;
     }
     
@@ -661,13 +662,7 @@ public class FloatingWindowService extends Service {
             boolean isIslandVisible = floatingIslandView != null && floatingIslandView.getParent() != null;
 
             // 查找是否已存在相同key的通知
-            int existingIndex = -1;
-            for (int i = 0; i < notificationQueue.size(); i++) {
-                if (notificationQueue.get(i).key.equals(key)) {
-                    existingIndex = i;
-                    break;
-                }
-            }
+            int existingIndex = notificationQueue.indexOfKey(key);
 
             if (existingIndex != -1) {
                 NotificationInfo info = notificationQueue.get(existingIndex);
@@ -691,8 +686,7 @@ public class FloatingWindowService extends Service {
                 
                 // 将更新后的通知移动到队首
                 if (existingIndex != 0) {
-                    notificationQueue.remove(existingIndex);
-                    notificationQueue.addFirst(info);
+                    notificationQueue.moveToFront(existingIndex);
                     if (isIslandVisible && notificationAdapter != null) {
                         notificationAdapter.notifyItemMoved(existingIndex, 0);
                         notificationAdapter.notifyItemChanged(0);
@@ -765,14 +759,7 @@ public class FloatingWindowService extends Service {
     }
 
     private int removeNotificationInternal(String key) {
-        if (key == null) return -1;
-        for (int i = 0; i < notificationQueue.size(); i++) {
-            if (key.equals(notificationQueue.get(i).key)) {
-                notificationQueue.remove(i);
-                return i;
-            }
-        }
-        return -1;
+        return notificationQueue.removeByKey(key);
     }
 
     /**
@@ -781,14 +768,9 @@ public class FloatingWindowService extends Service {
      * @return true如果是媒体通知，false如果不是或找不到
      */
     private boolean isMediaNotification(String key) {
-        if (key == null) return false;
-        for (NotificationInfo info : notificationQueue) {
-            if (key.equals(info.key)) {
-                // 有mediaToken就是媒体通知
-                return info.mediaToken != null;
-            }
-        }
-        return false;
+        NotificationInfo info = notificationQueue.findByKey(key);
+        // 有mediaToken就是媒体通知
+        return info != null && info.mediaToken != null;
     }
 
     /**
@@ -1043,7 +1025,7 @@ public class FloatingWindowService extends Service {
                         if (manager.isModelFilteringEnabled() && isModelFilterEnabled(removedInfo.packageName) && manager.getFilterModel().equals("model_local")) {
                             // 负向反馈到本地模型 - 使用新的分离接口，参数false表示负向
                             String trainingText = (removedInfo.content != null ? removedInfo.content : "");
-                            LocalModelManager.getInstance(FloatingWindowService.this).process(removedInfo.title, trainingText, false);
+                            LocalModelManager.getInstance(FloatingWindowService.this).process(removedInfo.packageName, removedInfo.title, trainingText, false);
                         }
 
                         notificationAdapter.notifyItemRemoved(position);
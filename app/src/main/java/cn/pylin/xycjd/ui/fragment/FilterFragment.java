@@ -10,6 +10,7 @@ import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.PopupMenu;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -38,6 +39,7 @@ public class FilterFragment extends Fragment {
     private View contentApps, contentNotice;
     private View cardApps, cardNotice;
     private ImageButton arrowApps, arrowNotice;
+    private ProgressBar noticeFeedbackProgress;
     
     private List<AppInfoManager> allAppsList;
     private List<AppInfoManager> filteredAppsList;
@@ -71,6 +73,7 @@ public class FilterFragment extends Fragment {
     private void initViews(View view) {
         listView = view.findViewById(R.id.apps_list);
         noticeListView = view.findViewById(R.id.notice_list);
+        noticeFeedbackProgress = view.findViewById(R.id.notice_feedback_progress);
         menuButtonApps = view.findViewById(R.id.menu_button_apps);
         menuButtonNotice = view.findViewById(R.id.menu_button_notice);
         
@@ -236,8 +239,7 @@ public class FilterFragment extends Fragment {
         if (noticeAdapter == null || filteredNotificationList == null) return;
         
         List<FilteredNotificationManager.FilteredNotification> toRemove = new ArrayList<>();
-        FilteredNotificationManager manager = FilteredNotificationManager.getInstance(mContext);
-        LocalModelManager mlManager = LocalModelManager.getInstance(mContext);
+        List<LocalModelManager.BatchItem> trainingItems = new ArrayList<>();
         
         // 检查是否启用了模型过滤
         boolean modelFilteringEnabled = SharedPreferencesManager.getInstance(mContext).isModelFilteringEnabled();
@@ -247,20 +249,17 @@ public class FilterFragment extends Fragment {
             if (notification.isChecked) {
                     // 只有在启用模型过滤且使用本地模型时才进行训练
                     if (modelFilteringEnabled && filterModel.equals("model_local")) {
-                        // 正向反馈到本地模型 - 使用新的分离接口
+                        // 正向反馈到本地模型 - 批量学习
                         String trainingText = (notification.content != null ? notification.content : "");
-                        mlManager.processPositive(notification.title, trainingText);
+                        trainingItems.add(new LocalModelManager.BatchItem(
+                                notification.packageName, notification.title, trainingText));
                     }
                 toRemove.add(notification);
             }
         }
         
-        for (FilteredNotificationManager.FilteredNotification notification : toRemove) {
-            manager.removeNotification(notification);
-        }
-        
-        loadNotices();
-        Toast.makeText(mContext, getString(R.string.notice_need_feedback), Toast.LENGTH_SHORT).show();
+        // 在后台批量学习，完成后再移除通知
+        new NoticeFeedbackTask(toRemove, trainingItems).execute();
     }
 
     private void noticeDelete() {
@@ -387,4 +386,53 @@ public class FilterFragment extends Fragment {
             filterApps(currentFilterType);
         }
     }
+    
+    private class NoticeFeedbackTask extends AsyncTask<Void, Integer, Void> {
+        private final List<FilteredNotificationManager.FilteredNotification> toRemove;
+        private final List<LocalModelManager.BatchItem> trainingItems;
+        
+        NoticeFeedbackTask(List<FilteredNotificationManager.FilteredNotification> toRemove,
+                           List<LocalModelManager.BatchItem> trainingItems) {
+            this.toRemove = toRemove;
+            this.trainingItems = trainingItems;
+        }
+        
+        @Override
+        protected void onPreExecute() {
+            if (trainingItems.isEmpty()) return;
+            menuButtonNotice.setEnabled(false);
+            noticeFeedbackProgress.setMax(trainingItems.size());
+            noticeFeedbackProgress.setProgress(0);
+            noticeFeedbackProgress.setVisibility(View.VISIBLE);
+        }
+        
+        @Override
+        protected Void doInBackground(Void... voids) {
+            if (!trainingItems.isEmpty()) {
+                LocalModelManager.getInstance(mContext).learnPositiveBatch(trainingItems,
+                        (done, total) -> publishProgress(done));
+            }
+            return null;
+        }
+        
+        @Override
+        protected void onProgressUpdate(Integer... values) {
+            noticeFeedbackProgress.setProgress(values[values.length - 1]);
+        }
+        
+        @Override
+        protected void onPostExecute(Void result) {
+            noticeFeedbackProgress.setVisibility(View.GONE);
+            menuButtonNotice.setEnabled(true);
+            
+            FilteredNotificationManager manager = FilteredNotificationManager.getInstance(mContext);
+            for (FilteredNotificationManager.FilteredNotification notification : toRemove) {
+                manager.removeNotification(notification);
+            }
+            
+            if (!isAdded()) return;
+            loadNotices();
+            Toast.makeText(mContext, getString(R.string.notice_need_feedback), Toast.LENGTH_SHORT).show();
+        }
+    }
 }
@@ -29,10 +29,17 @@ import androidx.core.app.NotificationCompat;
 import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.pylin.xycjd.model.local.BulkRescorer;
 import cn.pylin.xycjd.model.local.LocalModelManager;
+import cn.pylin.xycjd.manager.NotificationLogManager;
 import cn.pylin.xycjd.manager.FilteredNotificationManager;
 import cn.pylin.xycjd.manager.FloatingWindowPermissionManager;
+import cn.pylin.xycjd.model.online.NearDuplicateCache;
 import cn.pylin.xycjd.model.online.OnlineModelManager;
+import cn.pylin.xycjd.model.online.OnlineScoreCache;
 import cn.pylin.xycjd.utils.PermissionChecker;
 import cn.pylin.xycjd.R;
 import cn.pylin.xycjd.manager.SharedPreferencesManager;
@@ -102,8 +109,20 @@ public class SettingsFragment extends Fragment {
     private SeekBar seekBarFilteringDegree;
     private TextView tvLearningDegreeValue;
     private SeekBar seekBarLearningDegree;
+    private TextView tvMemoryBudgetValue;
+    private SeekBar seekBarMemoryBudget;
+    private TextView tvMemoryUsage;
+    private RadioGroup radioGroupLocalModelEngine;
+    private RadioButton radioBtnEngineHeuristic;
+    private RadioButton radioBtnEngineLogistic;
+    private RadioButton radioBtnEngineHashed;
+    private RadioGroup radioGroupWeightPrecision;
+    private RadioButton radioBtnWeightFloat;
+    private RadioButton radioBtnWeight16;
+    private RadioButton radioBtnWeight8;
     private Button btnResetLearningConfig;
     private Button btnClearLearningModel;
+    private Button btnReevaluateHistory;
 
     // 在线模型配置相关控件
     private CardView cardOnlineModelConfig;
@@ -116,6 +135,14 @@ public class SettingsFragment extends Fragment {
     
     // 在线模型流程控制相关控件
     private RadioGroup radioGroupOnlineModelProcess;
+    private TextView tvOnlineCacheStats;
+    private TextView tvNearDuplicateThresholdValue;
+    private SeekBar seekBarNearDuplicateThreshold;
+    private androidx.appcompat.widget.SwitchCompat switchOnlineBatch;
+    private TextView tvMaxConcurrentRequestsValue;
+    private SeekBar seekBarMaxConcurrentRequests;
+    private TextView tvKeepAliveIntervalValue;
+    private SeekBar seekBarKeepAliveInterval;
     private RadioButton radioBtnShowFirst;
     private RadioButton radioBtnCheckFirst;
 
@@ -226,6 +253,7 @@ public class SettingsFragment extends Fragment {
     private static final String TEST_NOTIFICATION_CHANNEL_ID = "test_notification_channel";
     private static final String PREF_MODEL_FILTERING_ENABLED = "pref_model_filtering_enabled";
     private static final String PREF_FILTERING_DEGREE = "pref_filtering_degree";
+    private static final int MAX_REEVALUATE_ITEMS = 50;
     private static final String PREF_LEARNING_DEGREE = "pref_learning_degree";
     private static final String PREF_ONLINE_FILTERING_DEGREE = "pref_online_filtering_degree";
     private static final String PREF_ONLINE_MODEL_PROMPT = "pref_online_model_prompt";
@@ -240,6 +268,9 @@ public class SettingsFragment extends Fragment {
     public static final String MODEL_ONLINE = "model_online";
 
     private static final String PREF_SETTINGS_SCROLL_Y = "pref_settings_scroll_y";
+
+    private static final int KEEP_ALIVE_STEP_SECONDS = 30;
+
     private static final String PREF_ANIMATION_SPEED = "pref_animation_speed";
 
     @Nullable
@@ -365,8 +396,20 @@ public class SettingsFragment extends Fragment {
         seekBarFilteringDegree = view.findViewById(R.id.seekbar_filtering_degree);
         tvLearningDegreeValue = view.findViewById(R.id.tv_learning_degree_value);
         seekBarLearningDegree = view.findViewById(R.id.seekbar_learning_degree);
+        tvMemoryBudgetValue = view.findViewById(R.id.tv_memory_budget_value);
+        seekBarMemoryBudget = view.findViewById(R.id.seekbar_memory_budget);
+        tvMemoryUsage = view.findViewById(R.id.tv_memory_usage);
+        radioGroupLocalModelEngine = view.findViewById(R.id.radio_group_local_model_engine);
+        radioBtnEngineHeuristic = view.findViewById(R.id.radio_btn_engine_heuristic);
+        radioBtnEngineLogistic = view.findViewById(R.id.radio_btn_engine_logistic);
+        radioBtnEngineHashed = view.findViewById(R.id.radio_btn_engine_hashed);
+        radioGroupWeightPrecision = view.findViewById(R.id.radio_group_weight_precision);
+        radioBtnWeightFloat = view.findViewById(R.id.radio_btn_weight_float);
+        radioBtnWeight16 = view.findViewById(R.id.radio_btn_weight_16);
+        radioBtnWeight8 = view.findViewById(R.id.radio_btn_weight_8);
         btnResetLearningConfig = view.findViewById(R.id.btn_reset_learning_config);
         btnClearLearningModel = view.findViewById(R.id.btn_clear_learning_model);
+        btnReevaluateHistory = view.findViewById(R.id.btn_reevaluate_history);
 
         // 初始化在线模型配置相关控件
         cardOnlineModelConfig = view.findViewById(R.id.card_online_model_config);
@@ -391,6 +434,14 @@ public class SettingsFragment extends Fragment {
         
         // 初始化在线模型流程控制相关控件
         radioGroupOnlineModelProcess = view.findViewById(R.id.radio_group_online_model_process);
+        tvOnlineCacheStats = view.findViewById(R.id.tv_online_cache_stats);
+        tvNearDuplicateThresholdValue = view.findViewById(R.id.tv_near_duplicate_threshold_value);
+        seekBarNearDuplicateThreshold = view.findViewById(R.id.seekbar_near_duplicate_threshold);
+        switchOnlineBatch = view.findViewById(R.id.switch_online_batch);
+        tvMaxConcurrentRequestsValue = view.findViewById(R.id.tv_max_concurrent_requests_value);
+        seekBarMaxConcurrentRequests = view.findViewById(R.id.seekbar_max_concurrent_requests);
+        tvKeepAliveIntervalValue = view.findViewById(R.id.tv_keep_alive_interval_value);
+        seekBarKeepAliveInterval = view.findViewById(R.id.seekbar_keep_alive_interval);
         radioBtnShowFirst = view.findViewById(R.id.radio_btn_show_first);
         radioBtnCheckFirst = view.findViewById(R.id.radio_btn_check_first);
         
@@ -1127,6 +1178,73 @@ public class SettingsFragment extends Fragment {
             public void onStopTrackingTouch(SeekBar seekBar) {}
         });
 
+        // 近似缓存阈值：0-10，0 为关闭
+        int nearDuplicateThreshold = SharedPreferencesManager.getInstance(requireContext()).getOnlineNearDuplicateThreshold();
+        seekBarNearDuplicateThreshold.setMax(SharedPreferencesManager.MAX_ONLINE_NEAR_DUPLICATE_THRESHOLD);
+        seekBarNearDuplicateThreshold.setProgress(nearDuplicateThreshold);
+        tvNearDuplicateThresholdValue.setText(formatNearDuplicateThreshold(nearDuplicateThreshold));
+        seekBarNearDuplicateThreshold.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                tvNearDuplicateThresholdValue.setText(formatNearDuplicateThreshold(progress));
+                
+                if (fromUser) {
+                    SharedPreferencesManager.getInstance(requireContext()).setOnlineNearDuplicateThreshold(progress);
+                }
+            }
+            
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {}
+        });
+
+        // 同时进行的请求数：1-8，进度条从 0 开始
+        int maxConcurrentRequests = SharedPreferencesManager.getInstance(requireContext()).getOnlineMaxConcurrentRequests();
+        seekBarMaxConcurrentRequests.setMax(SharedPreferencesManager.MAX_ONLINE_MAX_CONCURRENT_REQUESTS - 1);
+        seekBarMaxConcurrentRequests.setProgress(maxConcurrentRequests - 1);
+        tvMaxConcurrentRequestsValue.setText(String.valueOf(maxConcurrentRequests));
+        seekBarMaxConcurrentRequests.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                tvMaxConcurrentRequestsValue.setText(String.valueOf(progress + 1));
+                
+                if (fromUser) {
+                    SharedPreferencesManager.getInstance(requireContext()).setOnlineMaxConcurrentRequests(progress + 1);
+                }
+            }
+            
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {}
+        });
+
+        // 连接保活间隔：0-300 秒，步长 30 秒，0 为关闭
+        int keepAliveSeconds = SharedPreferencesManager.getInstance(requireContext()).getOnlineKeepAliveSeconds();
+        seekBarKeepAliveInterval.setMax(SharedPreferencesManager.MAX_ONLINE_KEEP_ALIVE_SECONDS / KEEP_ALIVE_STEP_SECONDS);
+        seekBarKeepAliveInterval.setProgress(keepAliveSeconds / KEEP_ALIVE_STEP_SECONDS);
+        tvKeepAliveIntervalValue.setText(formatKeepAliveInterval(keepAliveSeconds));
+        seekBarKeepAliveInterval.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                int seconds = progress * KEEP_ALIVE_STEP_SECONDS;
+                tvKeepAliveIntervalValue.setText(formatKeepAliveInterval(seconds));
+                
+                if (fromUser) {
+                    SharedPreferencesManager.getInstance(requireContext()).setOnlineKeepAliveSeconds(seconds);
+                }
+            }
+            
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {}
+        });
+
         // 重置按钮点击事件
         btnResetOnlineFilteringDegreeConfig.setOnClickListener(v -> {
             // 恢复默认值
@@ -1141,12 +1259,18 @@ public class SettingsFragment extends Fragment {
             manager.setOnlineApiKey("");
             manager.setOnlineModelName("");
             manager.setOnlineModelPrompt("");
+            manager.setOnlineNearDuplicateThreshold(SharedPreferencesManager.DEFAULT_ONLINE_NEAR_DUPLICATE_THRESHOLD);
+            manager.setOnlineMaxConcurrentRequests(SharedPreferencesManager.DEFAULT_ONLINE_MAX_CONCURRENT_REQUESTS);
+            manager.setOnlineKeepAliveSeconds(SharedPreferencesManager.DEFAULT_ONLINE_KEEP_ALIVE_SECONDS);
 
             // 更新 UI
             seekBarOnlineFilteringDegree.setProgress((int) (defaultFilteringDegree * 10));
             tvOnlineFilteringDegreeValue.setText(String.format("%.1f", defaultFilteringDegree));
             seekBarTemperature.setProgress((int) (defaultTemperature * 10));
             tvTemperatureValue.setText(String.format("%.1f", defaultTemperature));
+            seekBarNearDuplicateThreshold.setProgress(SharedPreferencesManager.DEFAULT_ONLINE_NEAR_DUPLICATE_THRESHOLD);
+            seekBarMaxConcurrentRequests.setProgress(SharedPreferencesManager.DEFAULT_ONLINE_MAX_CONCURRENT_REQUESTS - 1);
+            seekBarKeepAliveInterval.setProgress(SharedPreferencesManager.DEFAULT_ONLINE_KEEP_ALIVE_SECONDS / KEEP_ALIVE_STEP_SECONDS);
         });
 
         // API配置按钮点击事件
@@ -1154,6 +1278,41 @@ public class SettingsFragment extends Fragment {
         
         // 设置在线模型流程控制
         setupOnlineModelProcessControls();
+        
+        // 批量请求：短时间内的多条通知合并为一次请求
+        switchOnlineBatch.setChecked(SharedPreferencesManager.getInstance(requireContext()).isOnlineBatchEnabled());
+        switchOnlineBatch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                SharedPreferencesManager.getInstance(requireContext()).setOnlineBatchEnabled(isChecked));
+        
+        updateOnlineCacheStats();
+    }
+    
+    /**
+     * 显示在线模型评分缓存的命中情况和请求数
+     */
+    private void updateOnlineCacheStats() {
+        if (!isAdded()) return;
+        OnlineModelManager onlineModelManager = OnlineModelManager.getInstance(requireContext());
+        OnlineScoreCache cache = onlineModelManager.getScoreCache();
+        NearDuplicateCache nearDuplicateCache = onlineModelManager.getNearDuplicateCache();
+        tvOnlineCacheStats.setText(getString(R.string.online_cache_stats,
+                cache.getHitCount(), cache.getMissCount(), cache.getEntryCount())
+                + "\n" + getString(R.string.online_near_duplicate_stats,
+                nearDuplicateCache.getHitCount(), nearDuplicateCache.getLookupCount(),
+                nearDuplicateCache.getAuditCount(), nearDuplicateCache.getDisagreementCount())
+                + "\n" + getString(R.string.online_request_stats,
+                onlineModelManager.getInFlightRequestCount(), onlineModelManager.getQueuedRequestCount())
+                + "\n" + getString(R.string.online_connection_stats,
+                onlineModelManager.getConnectionCount(), onlineModelManager.getAverageHandshakeMs(),
+                onlineModelManager.getAverageRequestMs(), onlineModelManager.getWarmUpCount()));
+    }
+    
+    private String formatNearDuplicateThreshold(int threshold) {
+        return threshold > 0 ? String.valueOf(threshold) : getString(R.string.near_duplicate_threshold_off);
+    }
+    
+    private String formatKeepAliveInterval(int seconds) {
+        return seconds > 0 ? getString(R.string.online_keep_alive_interval_value, seconds) : getString(R.string.online_keep_alive_off);
     }
     
     private void setupOnlineModelProcessControls() {
@@ -1347,6 +1506,32 @@ public class SettingsFragment extends Fragment {
         seekBarLearningDegree.setProgress((int) (learningDegree * 10));
         tvLearningDegreeValue.setText(String.format("%.1f", learningDegree));
         
+        // 内存上限：SeekBar范围是0-31，对应1-32 MB
+        int memoryBudget = SharedPreferencesManager.getInstance(requireContext()).getLocalModelMemoryBudget();
+        seekBarMemoryBudget.setProgress(memoryBudget - SharedPreferencesManager.MIN_LOCAL_MODEL_MEMORY_BUDGET);
+        tvMemoryBudgetValue.setText(getString(R.string.value_mb, memoryBudget));
+        updateMemoryUsage();
+        
+        // 评分引擎，默认是启发式
+        String engine = SharedPreferencesManager.getInstance(requireContext()).getLocalModelEngine();
+        if (SharedPreferencesManager.LOCAL_MODEL_ENGINE_LOGISTIC.equals(engine)) {
+            radioBtnEngineLogistic.setChecked(true);
+        } else if (SharedPreferencesManager.LOCAL_MODEL_ENGINE_HASHED.equals(engine)) {
+            radioBtnEngineHashed.setChecked(true);
+        } else {
+            radioBtnEngineHeuristic.setChecked(true);
+        }
+        
+        // 权重精度，默认是浮点
+        int weightBits = SharedPreferencesManager.getInstance(requireContext()).getLocalModelWeightBits();
+        if (weightBits == SharedPreferencesManager.LOCAL_MODEL_WEIGHT_BITS_16) {
+            radioBtnWeight16.setChecked(true);
+        } else if (weightBits == SharedPreferencesManager.LOCAL_MODEL_WEIGHT_BITS_8) {
+            radioBtnWeight8.setChecked(true);
+        } else {
+            radioBtnWeightFloat.setChecked(true);
+        }
+        
         // 设置监听器
         seekBarFilteringDegree.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
@@ -1385,6 +1570,56 @@ public class SettingsFragment extends Fragment {
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {}
         });
+        
+        seekBarMemoryBudget.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                int value = progress + SharedPreferencesManager.MIN_LOCAL_MODEL_MEMORY_BUDGET;
+                tvMemoryBudgetValue.setText(getString(R.string.value_mb, value));
+                
+                if (fromUser) {
+                    SharedPreferencesManager.getInstance(requireContext()).setLocalModelMemoryBudget(value);
+                }
+            }
+            
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+            
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                // 松手后再按新上限淘汰词条
+                LocalModelManager.getInstance(requireContext()).applyMemoryBudget();
+                tvMemoryUsage.postDelayed(() -> updateMemoryUsage(), 500);
+            }
+        });
+
+        radioGroupLocalModelEngine.setOnCheckedChangeListener((group, checkedId) -> {
+            if (checkedId == R.id.radio_btn_engine_heuristic) {
+                SharedPreferencesManager.getInstance(requireContext()).setLocalModelEngine(
+                    SharedPreferencesManager.LOCAL_MODEL_ENGINE_HEURISTIC);
+            } else if (checkedId == R.id.radio_btn_engine_logistic) {
+                SharedPreferencesManager.getInstance(requireContext()).setLocalModelEngine(
+                    SharedPreferencesManager.LOCAL_MODEL_ENGINE_LOGISTIC);
+            } else if (checkedId == R.id.radio_btn_engine_hashed) {
+                SharedPreferencesManager.getInstance(requireContext()).setLocalModelEngine(
+                    SharedPreferencesManager.LOCAL_MODEL_ENGINE_HASHED);
+            }
+            // 切换后显示新引擎的内存占用
+            tvMemoryUsage.postDelayed(() -> updateMemoryUsage(), 500);
+        });
+
+        radioGroupWeightPrecision.setOnCheckedChangeListener((group, checkedId) -> {
+            int bits = SharedPreferencesManager.LOCAL_MODEL_WEIGHT_BITS_FLOAT;
+            if (checkedId == R.id.radio_btn_weight_16) {
+                bits = SharedPreferencesManager.LOCAL_MODEL_WEIGHT_BITS_16;
+            } else if (checkedId == R.id.radio_btn_weight_8) {
+                bits = SharedPreferencesManager.LOCAL_MODEL_WEIGHT_BITS_8;
+            }
+            SharedPreferencesManager.getInstance(requireContext()).setLocalModelWeightBits(bits);
+            // 模型按新的精度重新加载后再显示内存占用
+            LocalModelManager.getInstance(requireContext()).applyWeightPrecision();
+            tvMemoryUsage.postDelayed(() -> updateMemoryUsage(), 500);
+        });
 
         // 重置按钮点击事件
         btnResetLearningConfig.setOnClickListener(v -> {
@@ -1396,6 +1631,8 @@ public class SettingsFragment extends Fragment {
             SharedPreferencesManager manager = SharedPreferencesManager.getInstance(requireContext());
             manager.setFilteringDegree(defaultFilteringDegree);
             manager.setLearningDegree(defaultLearningDegree);
+            manager.setLocalModelMemoryBudget(SharedPreferencesManager.DEFAULT_LOCAL_MODEL_MEMORY_BUDGET);
+            LocalModelManager.getInstance(requireContext()).applyMemoryBudget();
 
             // 更新 UI
             seekBarFilteringDegree.setProgress((int) (defaultFilteringDegree * 10));
@@ -1403,13 +1640,107 @@ public class SettingsFragment extends Fragment {
 
             seekBarLearningDegree.setProgress((int) (defaultLearningDegree * 10));
             tvLearningDegreeValue.setText(String.format("%.1f", defaultLearningDegree));
+
+            seekBarMemoryBudget.setProgress(SharedPreferencesManager.DEFAULT_LOCAL_MODEL_MEMORY_BUDGET
+                    - SharedPreferencesManager.MIN_LOCAL_MODEL_MEMORY_BUDGET);
+            tvMemoryBudgetValue.setText(getString(R.string.value_mb, SharedPreferencesManager.DEFAULT_LOCAL_MODEL_MEMORY_BUDGET));
+            tvMemoryUsage.postDelayed(() -> updateMemoryUsage(), 500);
         });
 
         // 清空学习模型按钮点击事件
         btnClearLearningModel.setOnClickListener(v -> {
             LocalModelManager.getInstance(requireContext()).clearModel();
             Toast.makeText(requireContext(), getString(R.string.clear_learning_model_success), Toast.LENGTH_SHORT).show();
+            tvMemoryUsage.postDelayed(() -> updateMemoryUsage(), 500);
         });
+
+        // 按当前模型和过滤程度预览历史通知的过滤结果
+        btnReevaluateHistory.setOnClickListener(v -> reevaluateHistory());
+    }
+
+    /**
+     * 重新评分已过滤的通知和日志中的本地模型检查记录，显示哪些通知的过滤结果会变化
+     */
+    private void reevaluateHistory() {
+        Context context = requireContext().getApplicationContext();
+        btnReevaluateHistory.setEnabled(false);
+
+        new Thread(() -> {
+            List<BulkRescorer.Item> items = new ArrayList<>();
+            for (FilteredNotificationManager.FilteredNotification notification
+                    : FilteredNotificationManager.getInstance(context).getAllNotifications()) {
+                items.add(new BulkRescorer.Item(notification.packageName, notification.title,
+                        notification.content != null ? notification.content : "", true));
+            }
+            for (NotificationLogManager.ModelCheckRecord record
+                    : NotificationLogManager.getInstance(context).getLocalModelCheckRecords()) {
+                items.add(new BulkRescorer.Item(record.packageName, record.title, record.content, record.filtered));
+            }
+
+            BulkRescorer.Summary summary = null;
+            if (!items.isEmpty()) {
+                summary = LocalModelManager.getInstance(context).reevaluate(items, (results, done, total) ->
+                        btnReevaluateHistory.post(() -> btnReevaluateHistory.setText(
+                                context.getString(R.string.reevaluate_history_progress, done, total))));
+            }
+
+            BulkRescorer.Summary result = summary;
+            btnReevaluateHistory.post(() -> {
+                btnReevaluateHistory.setEnabled(true);
+                btnReevaluateHistory.setText(R.string.reevaluate_history);
+                if (!isAdded()) return;
+                if (result == null) {
+                    Toast.makeText(requireContext(), R.string.reevaluate_history_empty, Toast.LENGTH_SHORT).show();
+                } else {
+                    showReevaluateResult(result);
+                }
+            });
+        }).start();
+    }
+
+    private void showReevaluateResult(BulkRescorer.Summary summary) {
+        float filteringDegree = SharedPreferencesManager.getInstance(requireContext()).getFilteringDegree();
+        StringBuilder message = new StringBuilder(getString(R.string.reevaluate_history_summary,
+                summary.total, filteringDegree, summary.filtered, summary.nowFiltered, summary.nowAllowed));
+
+        // 列出结果变化的通知（最多 MAX_REEVALUATE_ITEMS 条）
+        int shown = Math.min(summary.flipped.size(), MAX_REEVALUATE_ITEMS);
+        if (shown > 0) {
+            message.append("\n");
+        }
+        for (int i = 0; i < shown; i++) {
+            BulkRescorer.Result result = summary.flipped.get(i);
+            message.append("\n").append(getString(result.filtered
+                            ? R.string.reevaluate_history_now_filtered : R.string.reevaluate_history_now_allowed))
+                    .append(" ").append(String.format("%.2f", result.score))
+                    .append(" [").append(result.item.packageName).append("] ")
+                    .append(result.item.title);
+        }
+        if (summary.flipped.size() > shown) {
+            message.append("\n").append(getString(R.string.reevaluate_history_more, summary.flipped.size() - shown));
+        }
+
+        new android.app.AlertDialog.Builder(requireContext())
+                .setTitle(R.string.reevaluate_history_title)
+                .setMessage(message.toString())
+                .setPositiveButton(R.string.confirm, null)
+                .show();
+    }
+    
+    /**
+     * 显示本地模型当前占用的内存
+     */
+    private void updateMemoryUsage() {
+        if (!isAdded()) return;
+        LocalModelManager localModelManager = LocalModelManager.getInstance(requireContext());
+        float usageMb = localModelManager.getMemoryUsageBytes() / (1024f * 1024f);
+        long loadMillis = localModelManager.getColdStartLoadMillis();
+        if (loadMillis >= 0) {
+            tvMemoryUsage.setText(getString(R.string.local_model_memory_usage_with_load_time,
+                    usageMb, localModelManager.getTermCount(), loadMillis));
+        } else {
+            tvMemoryUsage.setText(getString(R.string.local_model_memory_usage, usageMb, localModelManager.getTermCount()));
+        }
     }
     
     private void setupPermissionControls() {
@@ -1458,6 +1789,10 @@ public class SettingsFragment extends Fragment {
         updatePermissionStatus();
         // 更新服务状态
         updateServiceStatus();
+        // 更新模型内存占用
+        updateMemoryUsage();
+        // 更新在线模型缓存统计
+        updateOnlineCacheStats();
         // 恢复滚动位置
         restoreScrollPosition();
     }
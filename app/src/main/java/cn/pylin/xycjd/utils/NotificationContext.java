@@ -1,8 +1,12 @@
 package cn.pylin.xycjd.utils;
 
 import android.app.PendingIntent;
+import android.content.Context;
 import android.service.notification.StatusBarNotification;
 
+import cn.pylin.xycjd.model.local.LocalModelManager;
+import cn.pylin.xycjd.model.local.NotificationFeatures;
+
 /**
  * 通知处理上下文类
  * 封装单次通知处理的所有相关信息
@@ -19,6 +23,9 @@ public class NotificationContext {
     
     // 配置信息
     public AppNotificationConfig config;
+
+    // 特征（规范化文本、分词结果、内容哈希），第一次用到时创建，各处理环节共用
+    private NotificationFeatures features;
     
     // 处理结果
     public boolean shouldFilter;          // 是否应该过滤
@@ -40,6 +47,17 @@ public class NotificationContext {
         this.filterReason = "";
     }
 
+    /**
+     * 通知的特征，第一次调用时创建
+     * 只有需要模型过滤的通知才会调用，忽略、媒体和重复的通知不做规范化和哈希
+     */
+    public NotificationFeatures getFeatures(Context context) {
+        if (features == null) {
+            features = LocalModelManager.createFeatures(context, title, content);
+        }
+        return features;
+    }
+
     /**
      * 判断是否为媒体通知
      */
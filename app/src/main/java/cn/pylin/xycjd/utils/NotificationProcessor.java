@@ -19,9 +19,10 @@ import cn.pylin.xycjd.service.FloatingWindowService;
 /**
  * 通知处理器 - 重构版本
  * 逻辑流程：
- * 1. 接收通知
+ * 1. 接收通知，提取特征（规范化文本、分词、内容哈希，只计算一次，见 NotificationFeatures）
  * 2. 前置检查（空消息、媒体、已经在超级岛的重复通知）
  * 3. 逻辑匹配（显示逻辑与模型过滤逻辑）
+ *    2、3 的判断由 NotificationRules 完成，这里只负责执行
  * 4. 执行方法（自动展开、声音、震动）
  */
 public class NotificationProcessor {
@@ -50,13 +51,8 @@ public class NotificationProcessor {
             return;
         }
         
-        // 步骤2：前置检查
-        if (!preCheck(notificationContext)) {
-            return;
-        }
-        
-        // 步骤3：逻辑匹配（显示逻辑与模型过滤逻辑）
-        executeLogicMatching(notificationContext);
+        // 步骤2、3：前置检查与逻辑匹配（显示逻辑与模型过滤逻辑）
+        execute(notificationContext, NotificationRules.evaluate(notificationContext.config));
     }
     
     /**
@@ -87,7 +83,7 @@ public class NotificationProcessor {
             mediaToken = extras.getParcelable(android.app.Notification.EXTRA_MEDIA_SESSION);
         }
         
-        // 创建上下文
+        // 创建上下文（特征在过滤时才提取，见 NotificationContext.getFeatures）
         NotificationContext context = new NotificationContext(sbn, title, text, pendingIntent, mediaToken);
         
         // 填充配置信息
@@ -100,113 +96,45 @@ public class NotificationProcessor {
      * 填充应用配置
      */
     private void fillAppConfig(NotificationContext context, String packageName) {
-        AppNotificationConfig config = context.config;
-        
-        // 基础配置
-        config.enabled = prefsManager.isAppEnabled(packageName);
-        config.isMedia = context.isMediaNotification();
-        
-        // 检查是否已存在（通过队列检查）
-        config.isExisting = checkIfNotificationExists(context.key);
-        
-        // 模式配置
-        config.appMode = prefsManager.getNotificationMode();
-        
-        // 模型过滤配置
-        config.modelFilterEnabled = prefsManager.isModelFilteringEnabled() && 
-                                   prefsManager.isAppModelFilterEnabled(packageName);
-        config.modelType = prefsManager.getFilterModel();
-        
-        // 行为配置
-        config.autoExpand = prefsManager.isAppAutoExpandEnabled(packageName);
-        config.vibration = prefsManager.isAppNotificationVibrationEnabled(packageName);
-        config.sound = prefsManager.isAppNotificationSoundEnabled(packageName);
+        // 是否已存在通过队列检查，其余配置见 NotificationRules
+        NotificationRules.resolveConfig(context.config, prefsManager, packageName,
+                context.isMediaNotification(), checkIfNotificationExists(context.key));
     }
     
     /**
-     * 步骤2：前置检查
-     * 返回true继续处理，false终止处理
+     * 步骤2、3：执行处理规则（见 NotificationRules）
      */
-    private boolean preCheck(NotificationContext context) {
-        // 1. 检查是否启用
-        if (!context.config.enabled) {
-            return false;
-        }
-        
-        // 2. 重复通知检查
-        if (context.config.isExisting) {
-            updateExistingNotification(context);
-            return false;
-        }
-        
-        // 3. 媒体通知特殊处理
-        if (context.config.isMedia) {
-            // 媒体通知：直接显示到超级岛并执行行为，然后终止处理
-            if (!context.config.appMode.equals("MODE_NOTIFICATION_BAR_ONLY")) {
+    private void execute(NotificationContext context, NotificationRules.Decision decision) {
+        switch (decision.action) {
+            case UPDATE_EXISTING:
+                // 重复通知：更新超级岛中的内容（无动画），超级岛模式下删除系统通知
+                updateIslandContentNoAnimation(context);
+                if (decision.removeFromSystem) {
+                    removeFromSystem(context);
+                }
+                break;
+            case SHOW_MEDIA:
+                // 媒体通知：直接显示到超级岛并执行行为
                 showInIsland(context);
                 executeBehaviors(context);
-            }
-            return false;
-        }
-        
-        return true;
-    }
-    
-    /**
-     * 步骤3：逻辑匹配（先匹配显示逻辑，再执行过滤）
-     */
-    private void executeLogicMatching(NotificationContext context) {
-        String mode = context.config.appMode;
-        
-        // 根据显示模式执行不同的过滤逻辑
-        if (mode.equals("mode_super_island_only")) {
-            executeSuperIslandModeWithFilter(context);
-        } else if (mode.equals("mode_notification_bar_only")) {
-            executeNotificationBarModeWithFilter(context);
-        } else if (mode.equals("mode_both")) {
-            executeBothModeWithFilter(context);
-        }
-    }
-    
-    /**
-     * 模式：仅超级岛 + 过滤逻辑
-     * 逻辑：先移除系统通知，再过滤决定是否显示
-     */
-    private void executeSuperIslandModeWithFilter(NotificationContext context) {
-        // 1. 先移除系统通知
-        removeFromSystem(context);
-        
-        // 2. 再过滤决定是否显示
-        if (context.config.needsModelFiltering()) {
-            applyFiltering(context, true); // true = 需要显示超级岛
-        } else {
-            showInIsland(context);
-            executeBehaviors(context);
-        }
-    }
-    
-    /**
-     * 模式：仅通知栏 + 过滤逻辑
-     * 逻辑：过滤决定是否保留系统通知（不执行行为）
-     */
-    private void executeNotificationBarModeWithFilter(NotificationContext context) {
-        // 1. 过滤决定是否保留
-        if (context.config.needsModelFiltering()) {
-            applyFiltering(context, false); // false = 不显示超级岛
-        }
-    }
-    
-    /**
-     * 模式：双显 + 过滤逻辑
-     * 逻辑：过滤决定是否移除还是显示
-     */
-    private void executeBothModeWithFilter(NotificationContext context) {
-        // 1. 过滤决定是否显示
-        if (context.config.needsModelFiltering()) {
-            applyFiltering(context, true); // true = 需要显示超级岛
-        } else {
-            showInIsland(context);
-            executeBehaviors(context);
+                break;
+            case SHOW:
+                if (decision.removeFromSystem) {
+                    removeFromSystem(context);
+                }
+                showInIsland(context);
+                executeBehaviors(context);
+                break;
+            case FILTER:
+                // 仅超级岛模式：先移除系统通知，再过滤决定是否显示
+                if (decision.removeFromSystem) {
+                    removeFromSystem(context);
+                }
+                applyFiltering(context, decision.showIsland);
+                break;
+            case IGNORE:
+            default:
+                break;
         }
     }
     
@@ -216,11 +144,11 @@ public class NotificationProcessor {
      * @param shouldShowIsland 根据显示逻辑决定是否需要在超级岛显示
      */
     private void applyFiltering(NotificationContext context, boolean shouldShowIsland) {
-        if (context.config.modelType.equals("model_local")) {
+        if (context.config.modelType.equals(NotificationRules.MODEL_LOCAL)) {
             // 本地模型：异步执行
             applyLocalModelFilteringAsync(context, shouldShowIsland);
         }
-        else if (context.config.modelType.equals("model_online")) {
+        else if (context.config.modelType.equals(NotificationRules.MODEL_ONLINE)) {
             // 在线模型：根据流程设置决定
             String processMode = prefsManager.getOnlineModelProcessMode();
             if (SharedPreferencesManager.PROCESS_MODE_CHECK_FIRST.equals(processMode)) {
@@ -239,8 +167,8 @@ public class NotificationProcessor {
     private void applyLocalModelFilteringAsync(NotificationContext context, boolean shouldShowIsland) {
         // 使用与在线模型一致的接口
         LocalModelManager.getInstance(this.context).checkFilter(
-            context.title, 
-            context.content, 
+            context.packageName,
+            context.getFeatures(this.context),
             (shouldFilter, score) -> {
                 context.modelScore = score;
                 context.shouldFilter = shouldFilter;
@@ -273,8 +201,7 @@ public class NotificationProcessor {
     private void applyOnlineModelFilteringSync(NotificationContext context, boolean shouldShowIsland) {
         // 异步执行检查，不阻塞主线程
         OnlineModelManager.getInstance(this.context).checkFilter(
-            context.title, 
-            context.content, 
+            context.getFeatures(this.context),
             (shouldFilter, score) -> {
                 context.modelScore = score;
                 context.shouldFilter = shouldFilter;
@@ -311,8 +238,7 @@ public class NotificationProcessor {
         }
         // 异步检查，如果需要过滤则移除
         OnlineModelManager.getInstance(this.context).checkFilter(
-            context.title, 
-            context.content, 
+            context.getFeatures(this.context),
             (shouldFilter, score) -> {
                 context.modelScore = score;
                 context.shouldFilter = shouldFilter;
@@ -372,18 +298,6 @@ public class NotificationProcessor {
         removeFromSystem(context);
     }
     
-    /**
-     * 更新已存在的通知
-     */
-    private void updateExistingNotification(NotificationContext context) {
-        // 更新超级岛中的内容（无动画）
-        updateIslandContentNoAnimation(context);
-        // 如果是超级岛模式，删除系统通知
-        if (context.config.appMode.equals("mode_super_island_only")) {
-            removeFromSystem(context);
-        }
-    }
-    
     /**
      * 更新超级岛内容（无动画版本）
      */
@@ -392,15 +306,13 @@ public class NotificationProcessor {
             FloatingWindowService service = FloatingWindowService.getInstance();
             if (service != null) {
                 // 直接更新队列中的数据
-                java.util.LinkedList<FloatingWindowService.NotificationInfo> queue = service.getNotificationQueue();
-                for (FloatingWindowService.NotificationInfo info : queue) {
-                    if (info.getKey().equals(context.key)) {
-                        info.setTitle(context.title);
-                        info.setContent(context.content);
-                        info.setPendingIntent(context.pendingIntent);
-                        info.setMediaToken(context.mediaToken);
-                        break;
-                    }
+                NotificationQueue<FloatingWindowService.NotificationInfo> queue = service.getNotificationQueue();
+                FloatingWindowService.NotificationInfo info = queue.findByKey(context.key);
+                if (info != null) {
+                    info.setTitle(context.title);
+                    info.setContent(context.content);
+                    info.setPendingIntent(context.pendingIntent);
+                    info.setMediaToken(context.mediaToken);
                 }
                 
                 // 如果超级岛正在显示，直接更新UI内容（无动画）
@@ -460,15 +372,7 @@ public class NotificationProcessor {
      */
     private boolean checkIfNotificationExists(String key) {
         FloatingWindowService service = FloatingWindowService.getInstance();
-        if (service != null) {
-            java.util.LinkedList<FloatingWindowService.NotificationInfo> queue = service.getNotificationQueue();
-            for (FloatingWindowService.NotificationInfo info : queue) {
-                if (info.getKey().equals(key)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return service != null && service.getNotificationQueue().indexOfKey(key) >= 0;
     }
     
     /**
@@ -0,0 +1,39 @@
+plugins {
+    java
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":core"))
+    implementation(libs.jmh.core)
+    annotationProcessor(libs.jmh.generator.annprocess)
+    runtimeOnly(libs.json)
+}
+
+// ./gradlew :benchmarks:jmh [-Pinclude=正则]，结果写入 build/reports/jmh/results.json
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks of the filtering engine."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val resultFile = layout.buildDirectory.file("reports/jmh/results.json").get().asFile
+    doFirst { resultFile.parentFile.mkdirs() }
+    args(listOfNotNull(
+        project.findProperty("include")?.toString(),
+        "-rf", "json",
+        "-rff", resultFile.path
+    ))
+}
+
+// ./gradlew :benchmarks:engineBenchmark -Pcorpus=语料.tsv
+tasks.register<JavaExec>("engineBenchmark") {
+    group = "benchmark"
+    description = "Compares the scoring engines on a labeled corpus."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("cn.pylin.xycjd.benchmarks.EngineBenchmark")
+    args(listOfNotNull(project.findProperty("corpus")?.toString()))
+}
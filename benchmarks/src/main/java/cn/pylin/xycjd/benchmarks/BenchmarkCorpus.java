@@ -0,0 +1,124 @@
+package cn.pylin.xycjd.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试语料
+ *
+ * 1. 生成：按固定种子生成中英文混合的模拟通知，词表大小可调，用于在接近真实的词条规模下测量
+ *    两类通知（保留/过滤）各有一组主题词，其余为共享的噪声词、数字、emoji 和标点
+ * 2. 读取：带标签的 TSV 语料，每行 label \t title \t text，label 为 1（保留）或 0（过滤）
+ */
+public final class BenchmarkCorpus {
+
+    /**
+     * 一条通知
+     */
+    public static final class Item {
+        public final String title;
+        public final String text;
+        public final boolean keep;
+
+        public Item(String title, String text, boolean keep) {
+            this.title = title;
+            this.text = text;
+            this.keep = keep;
+        }
+    }
+
+    private static final String[] EMOJI = {"🔥", "🎉", "✈", "☀", "💰", "📦"};
+    private static final String[] PUNCT = {"!", "。", "#", "￥", ".", "？"};
+    private static final int TOPIC_WORDS = 200;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * 生成 count 条通知，词表约 vocabularySize 个词（中英文各半）
+     */
+    public static List<Item> generate(long seed, int count, int vocabularySize) {
+        Random random = new Random(seed);
+        String[] vocabulary = new String[Math.max(2 * TOPIC_WORDS + 1, vocabularySize)];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = (i & 1) == 0 ? chineseWord(random) : englishWord(random);
+        }
+
+        List<Item> items = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            boolean keep = random.nextInt(10) < 6;
+            int topicBase = keep ? 0 : TOPIC_WORDS;
+            String title = sentence(random, vocabulary, topicBase, 2 + random.nextInt(3));
+            String text = sentence(random, vocabulary, topicBase, 6 + random.nextInt(14));
+            items.add(new Item(title, text, keep));
+        }
+        return items;
+    }
+
+    /**
+     * 读取 TSV 语料
+     */
+    public static List<Item> load(File file) throws IOException {
+        List<Item> items = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length < 3) continue;
+                items.add(new Item(parts[1], parts[2], "1".equals(parts[0])));
+            }
+        }
+        return items;
+    }
+
+    private static String sentence(Random random, String[] vocabulary, int topicBase, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(random.nextBoolean() ? " " : "");
+            int kind = random.nextInt(20);
+            if (kind < 6) {
+                // 主题词：决定标签
+                sb.append(vocabulary[topicBase + random.nextInt(TOPIC_WORDS)]);
+            } else if (kind < 17) {
+                // 噪声词：按近似 Zipf 分布抽取
+                int span = vocabulary.length - 2 * TOPIC_WORDS;
+                int index = (int) (span * Math.pow(random.nextDouble(), 2.5));
+                sb.append(vocabulary[2 * TOPIC_WORDS + Math.min(span - 1, index)]);
+            } else if (kind == 17) {
+                sb.append(random.nextInt(100000));
+            } else if (kind == 18) {
+                sb.append(EMOJI[random.nextInt(EMOJI.length)]);
+            } else {
+                sb.append(PUNCT[random.nextInt(PUNCT.length)]);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String chineseWord(Random random) {
+        int length = 2 + random.nextInt(3);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) (0x4E00 + random.nextInt(3000)));
+        }
+        return sb.toString();
+    }
+
+    private static String englishWord(Random random) {
+        int length = 3 + random.nextInt(7);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = (char) ('a' + random.nextInt(26));
+            sb.append(i == 0 && random.nextInt(4) == 0 ? Character.toUpperCase(c) : c);
+        }
+        return sb.toString();
+    }
+}
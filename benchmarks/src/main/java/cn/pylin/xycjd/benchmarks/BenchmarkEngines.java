@@ -0,0 +1,74 @@
+package cn.pylin.xycjd.benchmarks;
+
+import java.io.File;
+import java.util.List;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.HashedScoringEngine;
+import cn.pylin.xycjd.model.local.HeuristicScoringEngine;
+import cn.pylin.xycjd.model.local.LogisticScoringEngine;
+import cn.pylin.xycjd.model.local.ModelSettings;
+import cn.pylin.xycjd.model.local.ScoringEngine;
+import cn.pylin.xycjd.model.local.Tokenizer;
+
+/**
+ * 基准测试用的评分引擎：固定设置（学习程度 3，内存上限 32 MB），模型文件写在临时目录
+ */
+public final class BenchmarkEngines {
+
+    public static final float LEARNING_DEGREE = 3.0f;
+    public static final int MEMORY_BUDGET_MB = 32;
+
+    private static final ModelSettings SETTINGS = new ModelSettings() {
+        @Override
+        public float getLearningDegree() {
+            return LEARNING_DEGREE;
+        }
+
+        @Override
+        public int getMemoryBudgetMb() {
+            return MEMORY_BUDGET_MB;
+        }
+    };
+
+    private BenchmarkEngines() {
+    }
+
+    public static ScoringEngine create(String name, File directory) {
+        return create(name, directory, SETTINGS);
+    }
+
+    public static ScoringEngine create(String name, File directory, ModelSettings settings) {
+        if (LogisticScoringEngine.NAME.equals(name)) {
+            return new LogisticScoringEngine(directory, settings);
+        }
+        if (HashedScoringEngine.NAME.equals(name)) {
+            return new HashedScoringEngine(directory, settings);
+        }
+        return new HeuristicScoringEngine(directory, settings);
+    }
+
+    /**
+     * 用生成的语料学习，直到词条数达到 targetTerms（或语料用完）
+     */
+    public static void train(ScoringEngine engine, int targetTerms, long seed) {
+        List<BenchmarkCorpus.Item> corpus = BenchmarkCorpus.generate(seed, Math.max(1000, targetTerms), targetTerms * 2);
+        FeatureBuffer features = new FeatureBuffer();
+        for (BenchmarkCorpus.Item item : corpus) {
+            if (engine.getTermCount() >= targetTerms) break;
+            if (Tokenizer.extractFeatures(item.title, item.text, false, features)) {
+                engine.learn(features, item.keep);
+            }
+        }
+    }
+
+    public static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,144 @@
+package cn.pylin.xycjd.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.HashedScoringEngine;
+import cn.pylin.xycjd.model.local.HeuristicScoringEngine;
+import cn.pylin.xycjd.model.local.LogisticScoringEngine;
+import cn.pylin.xycjd.model.local.ModelSettings;
+import cn.pylin.xycjd.model.local.ModelSnapshot;
+import cn.pylin.xycjd.model.local.ScoringEngine;
+import cn.pylin.xycjd.model.local.Tokenizer;
+
+/**
+ * 评分引擎对比基准
+ *
+ * 在同一份带标签的语料上分别训练启发式、逻辑回归和哈希引擎，比较延迟、内存、准确率以及与启发式引擎判断的一致率。
+ * 在开发机上直接运行：
+ *
+ *   ./gradlew :benchmarks:engineBenchmark -Pcorpus=corpus.tsv
+ *   java cn.pylin.xycjd.benchmarks.EngineBenchmark [corpus.tsv] [学习程度] [过滤程度]
+ *
+ * 语料格式见 {@link BenchmarkCorpus}；不指定语料时使用生成的模拟语料（5000 条）。
+ * 语料按固定种子打乱后前 80% 用于学习（逐条调用 learn，与应用内的自动学习相同），后 20% 只做预测。
+ */
+public final class EngineBenchmark {
+
+    private static final long SEED = 42;
+    private static final float TRAIN_RATIO = 0.8f;
+
+    private EngineBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final float learningDegree = args.length > 1 ? Float.parseFloat(args[1]) : 3.0f;
+        float filteringDegree = args.length > 2 ? Float.parseFloat(args[2]) : 5.0f;
+
+        List<BenchmarkCorpus.Item> corpus = args.length > 0
+                ? BenchmarkCorpus.load(new File(args[0]))
+                : BenchmarkCorpus.generate(SEED, 5000, 20000);
+        Collections.shuffle(corpus, new Random(SEED));
+        int trainSize = (int) (corpus.size() * TRAIN_RATIO);
+        List<BenchmarkCorpus.Item> train = corpus.subList(0, trainSize);
+        List<BenchmarkCorpus.Item> test = corpus.subList(trainSize, corpus.size());
+
+        ModelSettings settings = new ModelSettings() {
+            @Override
+            public float getLearningDegree() {
+                return learningDegree;
+            }
+
+            @Override
+            public int getMemoryBudgetMb() {
+                return BenchmarkEngines.MEMORY_BUDGET_MB;
+            }
+        };
+
+        File heuristicDir = Files.createTempDirectory("engine-heuristic").toFile();
+        File logisticDir = Files.createTempDirectory("engine-logistic").toFile();
+        File hashedDir = Files.createTempDirectory("engine-hashed").toFile();
+        ScoringEngine[] engines = {
+                BenchmarkEngines.create(HeuristicScoringEngine.NAME, heuristicDir, settings),
+                BenchmarkEngines.create(LogisticScoringEngine.NAME, logisticDir, settings),
+                BenchmarkEngines.create(HashedScoringEngine.NAME, hashedDir, settings)
+        };
+
+        System.out.println("corpus " + corpus.size() + " train " + train.size() + " test " + test.size()
+                + " learningDegree " + learningDegree + " filteringDegree " + filteringDegree);
+
+        boolean[][] decisions = new boolean[engines.length][];
+        for (int e = 0; e < engines.length; e++) {
+            decisions[e] = run(engines[e], train, test, filteringDegree);
+        }
+
+        // 与启发式引擎的判断一致的比例
+        for (int e = 1; e < engines.length; e++) {
+            int agree = 0;
+            for (int i = 0; i < test.size(); i++) {
+                if (decisions[0][i] == decisions[e][i]) agree++;
+            }
+            System.out.printf("%s agreement %.2f%% (%d/%d)%n", engines[e].getName(),
+                    100.0 * agree / Math.max(1, test.size()), agree, test.size());
+        }
+
+        BenchmarkEngines.deleteDirectory(heuristicDir);
+        BenchmarkEngines.deleteDirectory(logisticDir);
+        BenchmarkEngines.deleteDirectory(hashedDir);
+        System.exit(0);
+    }
+
+    /**
+     * 训练并评估一个引擎，返回测试集上每条通知是否被过滤
+     */
+    private static boolean[] run(ScoringEngine engine, List<BenchmarkCorpus.Item> train, List<BenchmarkCorpus.Item> test,
+                                 float filteringDegree) {
+        FeatureBuffer features = new FeatureBuffer();
+        long[] learnNanos = new long[train.size()];
+        int learned = 0;
+        for (BenchmarkCorpus.Item item : train) {
+            if (!Tokenizer.extractFeatures(item.title, item.text, false, features)) continue;
+            long start = System.nanoTime();
+            engine.learn(features, item.keep);
+            learnNanos[learned++] = System.nanoTime() - start;
+        }
+
+        long[] predictNanos = new long[test.size()];
+        boolean[] filtered = new boolean[test.size()];
+        int predicted = 0;
+        int correct = 0;
+        for (int i = 0; i < test.size(); i++) {
+            BenchmarkCorpus.Item item = test.get(i);
+            float score = ModelSnapshot.DEFAULT_WEIGHT;
+            if (Tokenizer.extractFeatures(item.title, item.text, false, features)) {
+                long start = System.nanoTime();
+                score = engine.predict(features);
+                predictNanos[predicted++] = System.nanoTime() - start;
+            }
+            filtered[i] = score <= filteringDegree;
+            if (filtered[i] != item.keep) correct++;
+        }
+
+        System.out.printf("%-10s learn p50 %7.1fus p99 %7.1fus | predict p50 %6.1fus p99 %6.1fus"
+                        + " | accuracy %.2f%% | terms %d memory %.2f MB%n",
+                engine.getName(),
+                percentile(learnNanos, learned, 0.5) / 1000.0, percentile(learnNanos, learned, 0.99) / 1000.0,
+                percentile(predictNanos, predicted, 0.5) / 1000.0, percentile(predictNanos, predicted, 0.99) / 1000.0,
+                100.0 * correct / Math.max(1, test.size()),
+                engine.getTermCount(), engine.getMemoryUsageBytes() / 1048576.0);
+        return filtered;
+    }
+
+    private static long percentile(long[] values, int n, double p) {
+        if (n == 0) return 0;
+        long[] sorted = Arrays.copyOf(values, n);
+        Arrays.sort(sorted);
+        return sorted[Math.min(n - 1, (int) (n * p))];
+    }
+}
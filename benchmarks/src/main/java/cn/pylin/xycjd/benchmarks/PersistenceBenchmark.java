@@ -0,0 +1,83 @@
+package cn.pylin.xycjd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.ScoringEngine;
+import cn.pylin.xycjd.model.local.Tokenizer;
+
+/**
+ * 保存与加载：给定词表规模的模型写成模型文件（save）和从模型文件 + 学习日志重新加载（load）的耗时
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"heuristic", "logistic", "hashed"})
+    public String engineName;
+
+    @Param({"10000", "100000"})
+    public int vocabularySize;
+
+    private File directory;
+    private ScoringEngine engine;
+    private final FeatureBuffer features = new FeatureBuffer();
+    private boolean label;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("persistence-benchmark").toFile();
+        engine = BenchmarkEngines.create(engineName, directory);
+        BenchmarkEngines.train(engine, vocabularySize, 7);
+        engine.save();
+
+        BenchmarkCorpus.Item item = BenchmarkCorpus.generate(3, 1, vocabularySize).get(0);
+        Tokenizer.extractFeatures(item.title, item.text, false, features);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkEngines.deleteDirectory(directory);
+    }
+
+    /**
+     * 学习一条后立即保存（保存会跳过没有变化的快照）
+     */
+    @Benchmark
+    public float save() {
+        label = !label;
+        float score = engine.learn(features, label);
+        engine.save();
+        return score;
+    }
+
+    /**
+     * 释放内存后重新加载
+     */
+    @Benchmark
+    public float load() {
+        engine.release();
+        return engine.predict(features);
+    }
+}
@@ -0,0 +1,107 @@
+package cn.pylin.xycjd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import cn.pylin.xycjd.utils.AppNotificationConfig;
+import cn.pylin.xycjd.utils.NotificationQueue;
+import cn.pylin.xycjd.utils.NotificationRules;
+
+/**
+ * 通知队列与处理规则：按 key 查找、新增后移除、移到队首，以及规则判断
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+    private static final class Entry implements NotificationQueue.Entry {
+        private final String key;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+    }
+
+    @Param({"8", "64"})
+    public int queueSize;
+
+    private final NotificationQueue<Entry> queue = new NotificationQueue<>();
+    private final Entry incoming = new Entry("0|com.example.incoming|1|null|10001");
+    private String lastKey;
+    private AppNotificationConfig[] configs;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        queue.clear();
+        for (int i = 0; i < queueSize; i++) {
+            // 与 StatusBarNotification.getKey() 的格式相同
+            queue.addFirst(new Entry("0|com.example.app" + i + "|" + i + "|null|10001"));
+        }
+        lastKey = queue.getLast().getKey();
+
+        String[] modes = {NotificationRules.MODE_SUPER_ISLAND_ONLY, NotificationRules.MODE_NOTIFICATION_BAR_ONLY,
+                NotificationRules.MODE_BOTH};
+        configs = new AppNotificationConfig[16];
+        for (int i = 0; i < configs.length; i++) {
+            AppNotificationConfig config = new AppNotificationConfig();
+            config.enabled = i % 7 != 0;
+            config.isExisting = i % 5 == 0;
+            config.isMedia = i % 6 == 0;
+            config.appMode = modes[i % modes.length];
+            config.modelFilterEnabled = (i & 1) == 0;
+            configs[i] = config;
+        }
+    }
+
+    /**
+     * 查找队尾的通知（最坏情况，与重复通知检查相同）
+     */
+    @Benchmark
+    public int indexOfKey() {
+        return queue.indexOfKey(lastKey);
+    }
+
+    /**
+     * 新通知入队后被移除
+     */
+    @Benchmark
+    public int addAndRemove() {
+        queue.addFirst(incoming);
+        return queue.removeByKey(incoming.getKey());
+    }
+
+    /**
+     * 队尾的通知更新后移到队首
+     */
+    @Benchmark
+    public String moveToFront() {
+        queue.moveToFront(queue.size() - 1);
+        return queue.getFirst().getKey();
+    }
+
+    @Benchmark
+    public NotificationRules.Decision evaluateRules() {
+        return NotificationRules.evaluate(configs[next++ & (configs.length - 1)]);
+    }
+}
@@ -0,0 +1,86 @@
+package cn.pylin.xycjd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.ScoringEngine;
+import cn.pylin.xycjd.model.local.Tokenizer;
+
+/**
+ * 评分与学习：在给定词表规模的已训练模型上，单条通知的 predict 和 process（学习）耗时
+ * 特征在 setUp 中预先提取，只测量引擎本身
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private static final int CORPUS_SIZE = 1024;
+
+    @Param({"heuristic", "logistic", "hashed"})
+    public String engineName;
+
+    @Param({"10000", "100000"})
+    public int vocabularySize;
+
+    private File directory;
+    private ScoringEngine engine;
+    private FeatureBuffer[] features;
+    private boolean[] labels;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("scoring-benchmark").toFile();
+        engine = BenchmarkEngines.create(engineName, directory);
+        BenchmarkEngines.train(engine, vocabularySize, 7);
+
+        List<BenchmarkCorpus.Item> corpus = BenchmarkCorpus.generate(11, CORPUS_SIZE, vocabularySize * 2);
+        features = new FeatureBuffer[CORPUS_SIZE];
+        labels = new boolean[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            BenchmarkCorpus.Item item = corpus.get(i);
+            features[i] = new FeatureBuffer();
+            Tokenizer.extractFeatures(item.title, item.text, false, features[i]);
+            labels[i] = item.keep;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.release();
+        BenchmarkEngines.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public float predict() {
+        return engine.predict(features[next++ & (CORPUS_SIZE - 1)]);
+    }
+
+    @Benchmark
+    public float process() {
+        int i = next++ & (CORPUS_SIZE - 1);
+        return engine.learn(features[i], labels[i]);
+    }
+}
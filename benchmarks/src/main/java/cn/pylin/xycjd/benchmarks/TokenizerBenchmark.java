@@ -0,0 +1,54 @@
+package cn.pylin.xycjd.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.Tokenizer;
+
+/**
+ * 分词：两种模式下每条通知的特征提取耗时
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    private static final int CORPUS_SIZE = 1024;
+
+    @Param({"feature_hash", "string"})
+    public String mode;
+
+    private List<BenchmarkCorpus.Item> corpus;
+    private final FeatureBuffer features = new FeatureBuffer();
+    private boolean stringMode;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        corpus = BenchmarkCorpus.generate(1, CORPUS_SIZE, 20000);
+        stringMode = "string".equals(mode);
+    }
+
+    @Benchmark
+    public int tokenize() {
+        BenchmarkCorpus.Item item = corpus.get(next++ & (CORPUS_SIZE - 1));
+        Tokenizer.extractFeatures(item.title, item.text, stringMode, features);
+        return features.size;
+    }
+}
@@ -0,0 +1,13 @@
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // org.json 由 Android 系统提供，纯 JVM 环境（benchmarks）在运行时自行引入
+    compileOnly(libs.json)
+}
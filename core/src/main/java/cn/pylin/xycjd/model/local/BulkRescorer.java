@@ -0,0 +1,183 @@
+package cn.pylin.xycjd.model.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.pylin.xycjd.utils.NotificationRules;
+
+/**
+ * 批量重新评分 - 过滤程度或模型变化后，预览历史通知的过滤结果会如何变化
+ *
+ * 记录按 PARTITION_SIZE 条一个分区，在 fork-join 线程池上并行评分；所有分区使用同一个固定的模型
+ * （{@link ShardedModel#snapshot()}），评分期间的学习不影响结果。每个分区完成后立即回调，
+ * 全部完成后返回汇总，其中列出过滤结果与之前不同的记录。
+ */
+public final class BulkRescorer {
+
+    private static final int PARTITION_SIZE = 64;
+
+    /**
+     * 一条待评分的记录
+     */
+    public static final class Item {
+        public final String packageName;
+        public final String title;
+        public final String text;
+        public final boolean wasFiltered;   // 之前的过滤结果
+
+        public Item(String packageName, String title, String text, boolean wasFiltered) {
+            this.packageName = packageName;
+            this.title = title;
+            this.text = text;
+            this.wasFiltered = wasFiltered;
+        }
+    }
+
+    /**
+     * 一条记录的评分结果
+     */
+    public static final class Result {
+        public final Item item;
+        public final float score;
+        public final boolean filtered;      // 按新的过滤程度是否过滤
+
+        Result(Item item, float score, boolean filtered) {
+            this.item = item;
+            this.score = score;
+            this.filtered = filtered;
+        }
+
+        public boolean isFlipped() {
+            return filtered != item.wasFiltered;
+        }
+    }
+
+    /**
+     * 分区评分完成（在 fork-join 工作线程上回调，分区之间没有先后顺序）
+     */
+    public interface Listener {
+        void onPartition(List<Result> results, int done, int total);
+    }
+
+    /**
+     * 汇总
+     */
+    public static final class Summary {
+        public final int total;
+        public final int filtered;          // 按新的过滤程度会过滤的条数
+        public final int nowFiltered;       // 由放行变为过滤的条数
+        public final int nowAllowed;        // 由过滤变为放行的条数
+        public final List<Result> flipped;  // 过滤结果变化的记录，按输入顺序
+
+        Summary(int total, int filtered, int nowFiltered, int nowAllowed, List<Result> flipped) {
+            this.total = total;
+            this.filtered = filtered;
+            this.nowFiltered = nowFiltered;
+            this.nowAllowed = nowAllowed;
+            this.flipped = flipped;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    public BulkRescorer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 重新评分所有记录（阻塞直到完成）
+     * @param filteringDegree 新的过滤程度
+     * @param stringMode 是否使用字符串分词模式
+     */
+    public Summary run(ShardedModel model, List<Item> items, float filteringDegree, boolean stringMode,
+                       Listener listener) {
+        int total = items.size();
+        Result[] results = new Result[total];
+        if (total > 0) {
+            ShardedModel.Snapshot snapshot = model.snapshot();
+            pool.invoke(new Partition(snapshot, items, results, 0, total, filteringDegree, stringMode,
+                    listener, new AtomicInteger()));
+        }
+
+        int filtered = 0;
+        int nowFiltered = 0;
+        int nowAllowed = 0;
+        List<Result> flipped = new ArrayList<>();
+        for (Result result : results) {
+            if (result.filtered) filtered++;
+            if (result.isFlipped()) {
+                flipped.add(result);
+                if (result.filtered) {
+                    nowFiltered++;
+                } else {
+                    nowAllowed++;
+                }
+            }
+        }
+        return new Summary(total, filtered, nowFiltered, nowAllowed, Collections.unmodifiableList(flipped));
+    }
+
+    /**
+     * 一段记录 [start, end)：超过 PARTITION_SIZE 时二分，否则直接评分
+     */
+    private static final class Partition extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ShardedModel.Snapshot snapshot;
+        private final List<Item> items;
+        private final Result[] results;
+        private final int start;
+        private final int end;
+        private final float filteringDegree;
+        private final boolean stringMode;
+        private final Listener listener;
+        private final AtomicInteger done;
+
+        Partition(ShardedModel.Snapshot snapshot, List<Item> items, Result[] results, int start, int end,
+                  float filteringDegree, boolean stringMode, Listener listener,
+                  AtomicInteger done) {
+            this.snapshot = snapshot;
+            this.items = items;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+            this.filteringDegree = filteringDegree;
+            this.stringMode = stringMode;
+            this.listener = listener;
+            this.done = done;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > PARTITION_SIZE) {
+                int middle = (start + end) >>> 1;
+                invokeAll(split(start, middle), split(middle, end));
+                return;
+            }
+
+            FeatureBuffer features = new FeatureBuffer();
+            List<Result> partition = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                Item item = items.get(i);
+                float score = Tokenizer.extractFeatures(item.title, item.text, stringMode, features)
+                        ? snapshot.predict(item.packageName, features)
+                        : ModelSnapshot.DEFAULT_WEIGHT;
+                Result result = new Result(item, score, NotificationRules.shouldFilter(score, filteringDegree));
+                results[i] = result;
+                partition.add(result);
+            }
+            int completed = done.addAndGet(end - start);
+            if (listener != null) {
+                listener.onPartition(partition, completed, results.length);
+            }
+        }
+
+        private Partition split(int from, int to) {
+            return new Partition(snapshot, items, results, from, to, filteringDegree, stringMode, listener, done);
+        }
+    }
+}
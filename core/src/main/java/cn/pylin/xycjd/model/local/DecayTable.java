@@ -0,0 +1,51 @@
+package cn.pylin.xycjd.model.local;
+
+/**
+ * 时间衰减表
+ *
+ * 时间按 epoch（天）计，每个词条只记录最后一次学习所在的 epoch（int），
+ * 衰减系数由 epoch 差值查预先计算好的表得到，学习时不再逐词调用 Math.pow。
+ * 全局只需在每次学习开始时计算一次当前 epoch，随着时间推移不需要遍历或改写任何词条。
+ *
+ * 衰减为指数衰减，半衰期 30 天；相差 1 个 epoch 以内不衰减。
+ */
+public final class DecayTable {
+
+    /** 一个 epoch 的长度：一天 */
+    public static final long EPOCH_MILLIS = 1000L * 60 * 60 * 24;
+
+    private static final float HALF_LIFE = 30.0f;
+    private static final int TABLE_SIZE = 1024; // 约 2.8 年，之后的衰减系数小于 1e-10，按需计算
+
+    private static final float[] TABLE = new float[TABLE_SIZE];
+
+    static {
+        for (int elapsed = 0; elapsed < TABLE_SIZE; elapsed++) {
+            TABLE[elapsed] = compute(elapsed);
+        }
+    }
+
+    private DecayTable() {
+    }
+
+    /**
+     * 时间戳所在的 epoch
+     */
+    public static int epochOf(long timeMillis) {
+        return (int) (timeMillis / EPOCH_MILLIS);
+    }
+
+    /**
+     * 经过 elapsedEpochs 个 epoch 后的衰减系数
+     */
+    public static float decay(int elapsedEpochs) {
+        if (elapsedEpochs <= 1) return 1.0f;
+        if (elapsedEpochs < TABLE_SIZE) return TABLE[elapsedEpochs];
+        return compute(elapsedEpochs);
+    }
+
+    private static float compute(int elapsedEpochs) {
+        if (elapsedEpochs <= 1) return 1.0f;
+        return (float) Math.pow(0.5, elapsedEpochs / HALF_LIFE);
+    }
+}
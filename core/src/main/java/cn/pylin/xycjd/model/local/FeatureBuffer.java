@@ -0,0 +1,62 @@
+package cn.pylin.xycjd.model.local;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的特征缓冲区
+ *
+ * 分词结果以并行原始类型数组保存：64位特征哈希 + 特征标志位，
+ * 以及评分时使用的位置权重等临时数据。
+ * 同一线程内反复使用，评分路径上不再为每个token创建对象。
+ */
+public final class FeatureBuffer {
+
+    // 标志位：低8位为token长度（上限255）
+    public static final int LENGTH_MASK = 0xFF;
+    public static final int FLAG_CHINESE = 1 << 8;       // 首字符为中文
+    public static final int FLAG_EMOJI = 1 << 9;         // EMOJI_ 特征
+    public static final int FLAG_PUNCT = 1 << 10;        // PUNCT_ 特征
+    public static final int FLAG_ASCII = 1 << 11;        // 全部为ASCII字符
+    public static final int FLAG_LONG_DIGITS = 1 << 12;  // 包含4位以上连续数字
+    public static final int FLAG_SKIP = 1 << 13;         // 不参与评分和学习
+    public static final int FLAG_REJECTED = 1 << 14;     // 新词未通过准入，本次不学习（仍参与评分）
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    public long[] hashes = new long[INITIAL_CAPACITY];
+    public int[] flags = new int[INITIAL_CAPACITY];
+    public float[] positionWeights = new float[INITIAL_CAPACITY];
+    public long[] scratch = new long[INITIAL_CAPACITY];
+    public int size;
+    public int titleCount;   // 前 titleCount 个特征来自标题
+
+    public void clear() {
+        size = 0;
+        titleCount = 0;
+    }
+
+    public void add(long hash, int flag) {
+        if (size == hashes.length) {
+            grow();
+        }
+        hashes[size] = hash;
+        flags[size] = flag;
+        size++;
+    }
+
+    public static int length(int flag) {
+        return flag & LENGTH_MASK;
+    }
+
+    public static boolean is(int flag, int mask) {
+        return (flag & mask) != 0;
+    }
+
+    private void grow() {
+        int capacity = hashes.length * 2;
+        hashes = Arrays.copyOf(hashes, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        positionWeights = new float[capacity];
+        scratch = new long[capacity];
+    }
+}
@@ -0,0 +1,107 @@
+package cn.pylin.xycjd.model.local;
+
+import java.util.Arrays;
+
+/**
+ * 频率草图 - Count-Min 结构
+ *
+ * 用固定大小的计数器表近似统计每个特征出现的次数，不保存特征本身，用于新词准入判断。
+ * 共 4 行，每行 width 个 4 位计数器（上限 15），每个 long 存放 16 个计数器。
+ * 估计值只会偏大不会偏小（取各行最小值）。
+ *
+ * 累计增加次数达到 10 × width 时所有计数器减半，使统计偏向近期出现的特征。
+ *
+ * 本类不是线程安全的，由调用方负责同步。
+ */
+public final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MIN_WIDTH = 1024;
+    private static final int MAX_COUNT = 15;
+    private static final long HALF_MASK = 0x7777777777777777L;
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final long[][] rows;
+    private final int width;
+    private final int shift;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedItems 预计需要区分的特征数（通常为词条上限）
+     */
+    public FrequencySketch(int expectedItems) {
+        int width = MIN_WIDTH;
+        while (width < expectedItems && width < (1 << 30)) {
+            width <<= 1;
+        }
+        this.width = width;
+        this.shift = 64 - Integer.numberOfTrailingZeros(width);
+        this.sampleSize = 10 * width;
+        this.rows = new long[DEPTH][width / 16];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 估计出现次数（0-15）
+     */
+    public int frequency(long hash) {
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((rows[i][index >>> 4] >>> ((index & 15) << 2)) & 0xF);
+            if (count < min) min = count;
+        }
+        return min;
+    }
+
+    /**
+     * 记录一次出现
+     */
+    public void increment(long hash) {
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            int word = index >>> 4;
+            int offset = (index & 15) << 2;
+            if (((rows[i][word] >>> offset) & 0xF) < MAX_COUNT) {
+                rows[i][word] += 1L << offset;
+            }
+        }
+        if (++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    public void clear() {
+        for (long[] row : rows) {
+            Arrays.fill(row, 0);
+        }
+        additions = 0;
+    }
+
+    public long estimateMemoryBytes() {
+        return (long) DEPTH * (width / 16) * 8;
+    }
+
+    /**
+     * 所有计数器减半（老化）
+     */
+    private void halve() {
+        for (long[] row : rows) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = (row[j] >>> 1) & HALF_MASK;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(long hash, int row) {
+        return (int) (((hash + SEEDS[row]) * MIX) >>> shift);
+    }
+}
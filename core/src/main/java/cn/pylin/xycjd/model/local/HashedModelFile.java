@@ -0,0 +1,98 @@
+package cn.pylin.xycjd.model.local;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 哈希引擎的模型文件 - 固定大小的权重表
+ *
+ * 格式（大端）：
+ *   int magic, int version, int tableBits, long totalLearnCount, float bias, long saveTime,
+ *   float[2^tableBits] weights
+ *
+ * 权重表整体写入和读取（一次批量复制），没有逐词的键和计数。
+ */
+public final class HashedModelFile {
+
+    private static final int MAGIC = 0x58594853; // "XYHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4 + 8;
+
+    public final int tableBits;
+    public final long totalLearnCount;
+    public final float bias;
+    public final long saveTime;
+    public final float[] weights;
+
+    private HashedModelFile(int tableBits, long totalLearnCount, float bias, long saveTime, float[] weights) {
+        this.tableBits = tableBits;
+        this.totalLearnCount = totalLearnCount;
+        this.bias = bias;
+        this.saveTime = saveTime;
+        this.weights = weights;
+    }
+
+    /**
+     * 读取模型文件，格式或大小不符时抛出 IOException
+     */
+    public static HashedModelFile read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a hashed model file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported hashed model version " + version);
+            }
+            int tableBits = buffer.getInt();
+            long totalLearnCount = buffer.getLong();
+            float bias = buffer.getFloat();
+            long saveTime = buffer.getLong();
+            if (tableBits < 0 || tableBits > 30 || buffer.capacity() != HEADER_SIZE + (4L << tableBits)) {
+                throw new IOException("Truncated hashed model file");
+            }
+
+            float[] weights = new float[1 << tableBits];
+            buffer.asFloatBuffer().get(weights);
+            return new HashedModelFile(tableBits, totalLearnCount, bias, saveTime, weights);
+        }
+    }
+
+    /**
+     * 写入模型文件（原子替换），weights 的长度须为 2 的幂
+     */
+    public static void write(File target, long saveTime, long totalLearnCount, float bias, float[] weights)
+            throws IOException {
+        int tableBits = Integer.numberOfTrailingZeros(weights.length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + weights.length * 4);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(tableBits);
+        buffer.putLong(totalLearnCount);
+        buffer.putFloat(bias);
+        buffer.putLong(saveTime);
+        buffer.asFloatBuffer().put(weights);
+        buffer.rewind();
+
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             FileChannel channel = fos.getChannel()) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            fos.getFD().sync();
+        }
+
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + target.getName());
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package cn.pylin.xycjd.model.local;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 哈希评分引擎 - 固定大小的权重表（哈希技巧）
+ *
+ * 与逻辑回归引擎相同的模型（分数 = 10 × sigmoid(bias + Σ x·w)），但不保存词条：
+ * 每个特征的哈希值再混合一次，低位取模得到权重表下标，最高位决定符号（±1），
+ * 不同特征落在同一位置时的影响正负抵消，期望上不引入偏差。
+ * 学习为随机梯度下降，学习率与逻辑回归引擎的初始学习率相同，偏置与特征权重按同一学习率更新；
+ * 权重表不保存逐词的更新次数，学习率不随更新次数递减。
+ *
+ * 权重表大小在加载时按内存上限确定（最多使用上限的 1/4，2^14 - 2^18 个权重，默认 4 MB 上限时为 1 MB），
+ * 之后不随词汇量增长，不需要淘汰；内存上限变化时把权重表折叠或展开到新的大小
+ * （展开时两个位置复制原值，预测结果不变）。
+ *
+ * 模型文件为整个权重表（{@link HashedModelFile}），每学习 SAVE_INTERVAL 条在持久化线程上保存一次，
+ * 没有学习日志；保存和加载都是一次数组复制。权重精度设置对此引擎不生效。
+ *
+ * 预测直接读取权重表，不加锁；学习在写锁内原地更新，预测可能读到一次学习中途的权重。
+ */
+public final class HashedScoringEngine implements ScoringEngine {
+    public static final String NAME = "hashed";
+
+    private static final String MODEL_FILE_NAME = "ml_hashed_v1.bin";
+
+    private static final int MIN_TABLE_BITS = 14;
+    private static final int MAX_TABLE_BITS = 18;
+    private static final int BUDGET_FRACTION = 4;            // 权重表最多占内存上限的 1/4
+    private static final float[] EMPTY_TABLE = new float[1]; // 未加载或已释放时使用，不会被写入
+
+    private static final float PRIOR_BIAS = 2.2f;            // sigmoid(2.2) ≈ 0.9
+    private static final float MAX_SCORE = 10.0f;
+    private static final float MAX_WEIGHT = 8.0f;            // 权重截断
+    private static final float BASE_LEARNING_RATE = 1.0f;    // 学习程度为 10 时的学习率（没有逐词计数，不递减）
+    private static final float REGULARIZATION = 0.999f;      // 每次更新轻微收缩
+    private static final float MANUAL_POSITIVE_MULTIPLIER = 2.5f; // 增强手动反馈
+    private static final int SAVE_INTERVAL = 32;             // 每学习多少条保存一次
+
+    private final File modelFile;
+    private final ModelSettings settings;
+    private final ExecutorService persistExecutor;
+
+    // 写入端：学习、加载、释放、调整大小都在 writeLock 内进行
+    private final Object writeLock = new Object();
+    private volatile boolean isLoaded = false;
+    private volatile float[] weights = EMPTY_TABLE;
+    private volatile float bias = PRIOR_BIAS;
+    private volatile long totalLearnCount = 0;
+    private long version = 0;
+    private int unsavedCount = 0;
+
+    // 持久化：version <= savedVersion 的内容已在文件中
+    private final Object persistLock = new Object();
+    private long savedVersion = 0;
+    private long lastSaveTime = 0;
+
+    public HashedScoringEngine(File directory, ModelSettings settings) {
+        this(directory, settings, ModelStorage.newPersistExecutor("local-model-persist-hashed"));
+    }
+
+    /**
+     * 使用给定的持久化线程（按应用分片时各分片共用）
+     */
+    public HashedScoringEngine(File directory, ModelSettings settings, ExecutorService persistExecutor) {
+        this.modelFile = new File(directory, MODEL_FILE_NAME);
+        this.settings = settings;
+        this.persistExecutor = persistExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    // ==================== 预测与学习 ====================
+
+    @Override
+    public float predict(FeatureBuffer features) {
+        ensureLoaded();
+        return score(weights, bias, features);
+    }
+
+    /**
+     * 权重表是原地更新的，固定时复制一份（最大 1 MB）
+     */
+    @Override
+    public Scorer snapshotScorer() {
+        float[] table;
+        float pinnedBias;
+        long learnCount;
+        synchronized (writeLock) {
+            loadIfNeeded();
+            table = weights.clone();
+            pinnedBias = bias;
+            learnCount = totalLearnCount;
+        }
+        return pinnedScorer(table, pinnedBias, learnCount);
+    }
+
+    /**
+     * 直接读取模型文件，与加载时一样按当前内存上限调整大小
+     */
+    @Override
+    public Scorer savedScorer() {
+        HashedModelFile file = null;
+        synchronized (persistLock) {
+            if (modelFile.exists()) {
+                try {
+                    file = HashedModelFile.read(modelFile);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        if (file == null) {
+            return pinnedScorer(EMPTY_TABLE, PRIOR_BIAS, 0);
+        }
+        return pinnedScorer(resize(file.weights, tableBits()), file.bias, file.totalLearnCount);
+    }
+
+    private static Scorer pinnedScorer(float[] table, float pinnedBias, long learnCount) {
+        return new Scorer() {
+            @Override
+            public float predict(FeatureBuffer features) {
+                return score(table, pinnedBias, features);
+            }
+
+            @Override
+            public long getLearnCount() {
+                return learnCount;
+            }
+        };
+    }
+
+    @Override
+    public float learn(FeatureBuffer features, boolean isPositive) {
+        return update(features, isPositive, 1.0f);
+    }
+
+    @Override
+    public float learnPositive(FeatureBuffer features) {
+        return update(features, true, MANUAL_POSITIVE_MULTIPLIER);
+    }
+
+    /**
+     * 特征哈希再混合一次（MurmurHash3 fmix64），低位作下标、最高位作符号，两者互不相关
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static float linear(float[] table, float bias, FeatureBuffer features, float scale) {
+        int mask = table.length - 1;
+        float z = bias;
+        for (int i = 0; i < features.size; i++) {
+            if (FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) continue;
+            long h = mix(features.hashes[i]);
+            float w = table[(int) h & mask];
+            z += features.positionWeights[i] * scale * (h < 0 ? -w : w);
+        }
+        return z;
+    }
+
+    private static float score(float[] table, float bias, FeatureBuffer features) {
+        return MAX_SCORE * sigmoid(linear(table, bias, features, featureScale(features)));
+    }
+
+    /**
+     * 特征缩放：1 / √参与评分的特征数
+     */
+    private static float featureScale(FeatureBuffer features) {
+        int count = 0;
+        for (int i = 0; i < features.size; i++) {
+            if (!FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) count++;
+        }
+        return count > 0 ? (float) (1.0 / Math.sqrt(count)) : 0f;
+    }
+
+    private static float sigmoid(float z) {
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    /**
+     * 一次梯度下降
+     */
+    private float update(FeatureBuffer features, boolean isPositive, float multiplier) {
+        float learningRate = learningRate(multiplier);
+
+        synchronized (writeLock) {
+            // 在写锁内确认已加载，避免与释放交错后写入空表
+            loadIfNeeded();
+            updateLocked(features, isPositive, learningRate);
+
+            if (++unsavedCount >= SAVE_INTERVAL) {
+                saveAsync();
+            }
+            return score(weights, bias, features);
+        }
+    }
+
+    @Override
+    public void learnBatch(FeatureBuffer[] batch, int count, boolean isPositive) {
+        updateBatch(batch, count, isPositive, 1.0f);
+    }
+
+    @Override
+    public void learnPositiveBatch(FeatureBuffer[] batch, int count) {
+        updateBatch(batch, count, true, MANUAL_POSITIVE_MULTIPLIER);
+    }
+
+    /**
+     * 批量梯度下降：逐条更新后只保存一次
+     */
+    private void updateBatch(FeatureBuffer[] batch, int count, boolean isPositive, float multiplier) {
+        if (count <= 0) return;
+        float learningRate = learningRate(multiplier);
+
+        synchronized (writeLock) {
+            loadIfNeeded();
+            for (int i = 0; i < count; i++) {
+                updateLocked(batch[i], isPositive, learningRate);
+            }
+            saveAsync();
+        }
+    }
+
+    private float learningRate(float multiplier) {
+        return Math.max(0f, Math.min(10f, settings.getLearningDegree())) / 10.0f
+                * BASE_LEARNING_RATE * multiplier;
+    }
+
+    /**
+     * 更新一条样本的权重（需持有 writeLock）
+     */
+    private void updateLocked(FeatureBuffer features, boolean isPositive, float learningRate) {
+        float scale = featureScale(features);
+        float[] table = weights;
+        int mask = table.length - 1;
+        float p = sigmoid(linear(table, bias, features, scale));
+        float gradient = (isPositive ? 1.0f : 0.0f) - p;
+
+        if (learningRate > 0) {
+            for (int i = 0; i < features.size; i++) {
+                if (FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) continue;
+                long h = mix(features.hashes[i]);
+                int index = (int) h & mask;
+                float step = learningRate * gradient * features.positionWeights[i] * scale;
+                float w = table[index] * REGULARIZATION + (h < 0 ? -step : step);
+                table[index] = Math.max(-MAX_WEIGHT, Math.min(MAX_WEIGHT, w));
+            }
+            bias = Math.max(-MAX_WEIGHT, Math.min(MAX_WEIGHT, bias + learningRate * gradient));
+        }
+        totalLearnCount++;
+        version++;
+    }
+
+    // ==================== 权重表大小 ====================
+
+    /**
+     * 按内存上限确定的权重表位数
+     */
+    private int tableBits() {
+        long floats = settings.getMemoryBudgetMb() * 1024L * 1024L / BUDGET_FRACTION / 4;
+        int bits = 63 - Long.numberOfLeadingZeros(Math.max(1, floats));
+        return Math.max(MIN_TABLE_BITS, Math.min(MAX_TABLE_BITS, bits));
+    }
+
+    /**
+     * 调整权重表大小：缩小时把高位的权重加到对应的低位（与用小表学习等价），
+     * 放大时每个位置复制原值（预测结果不变）
+     */
+    private static float[] resize(float[] table, int bits) {
+        int size = 1 << bits;
+        if (table.length == size) return table;
+        float[] resized = new float[size];
+        if (size < table.length) {
+            int mask = size - 1;
+            for (int i = 0; i < table.length; i++) {
+                resized[i & mask] += table[i];
+            }
+            for (int i = 0; i < size; i++) {
+                resized[i] = Math.max(-MAX_WEIGHT, Math.min(MAX_WEIGHT, resized[i]));
+            }
+        } else {
+            int mask = table.length - 1;
+            for (int i = 0; i < size; i++) {
+                resized[i] = table[i & mask];
+            }
+        }
+        return resized;
+    }
+
+    @Override
+    public void applyMemoryBudget() {
+        synchronized (writeLock) {
+            loadIfNeeded();
+            int bits = tableBits();
+            if (weights.length != 1 << bits) {
+                weights = resize(weights, bits);
+                version++;
+                saveAsync();
+            }
+        }
+    }
+
+    // ==================== 持久化 ====================
+
+    @Override
+    public void preload() {
+        ensureLoaded();
+    }
+
+    private void ensureLoaded() {
+        if (!isLoaded) {
+            synchronized (writeLock) {
+                loadIfNeeded();
+            }
+        }
+    }
+
+    /**
+     * 读取模型文件（需持有 writeLock），文件不存在或损坏时从空表开始
+     */
+    private void loadIfNeeded() {
+        if (isLoaded) return;
+        float[] table = null;
+        float loadedBias = PRIOR_BIAS;
+        long learnCount = 0;
+        synchronized (persistLock) {
+            if (modelFile.exists()) {
+                try {
+                    HashedModelFile file = HashedModelFile.read(modelFile);
+                    table = file.weights;
+                    loadedBias = file.bias;
+                    learnCount = file.totalLearnCount;
+                    lastSaveTime = file.saveTime;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        int bits = tableBits();
+        weights = table != null ? resize(table, bits) : new float[1 << bits];
+        bias = loadedBias;
+        totalLearnCount = learnCount;
+        version++;
+        unsavedCount = 0;
+        synchronized (persistLock) {
+            // 大小未变时与文件一致，改变时需要写回
+            savedVersion = table != null && table.length == weights.length ? version : savedVersion;
+        }
+        isLoaded = true;
+    }
+
+    /**
+     * 复制当前权重表，在持久化线程上写入（需持有 writeLock）
+     */
+    private void saveAsync() {
+        float[] copy = weights.clone();
+        float savedBias = bias;
+        long learnCount = totalLearnCount;
+        long savedAt = version;
+        unsavedCount = 0;
+        persistExecutor.execute(() -> write(copy, savedBias, learnCount, savedAt));
+    }
+
+    private void write(float[] table, float savedBias, long learnCount, long atVersion) {
+        synchronized (persistLock) {
+            if (atVersion <= savedVersion) return;
+            try {
+                long saveTime = Math.max(System.currentTimeMillis(), lastSaveTime + 1);
+                HashedModelFile.write(modelFile, saveTime, learnCount, savedBias, table);
+                lastSaveTime = saveTime;
+                savedVersion = atVersion;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void save() {
+        float[] copy;
+        float savedBias;
+        long learnCount;
+        long atVersion;
+        synchronized (writeLock) {
+            if (!isLoaded) return;
+            copy = weights.clone();
+            savedBias = bias;
+            learnCount = totalLearnCount;
+            atVersion = version;
+            unsavedCount = 0;
+        }
+        write(copy, savedBias, learnCount, atVersion);
+    }
+
+    /**
+     * 保存后释放权重表，下次使用时重新加载
+     */
+    @Override
+    public void release() {
+        synchronized (writeLock) {
+            if (isLoaded) {
+                write(weights, bias, totalLearnCount, version);
+            }
+            weights = EMPTY_TABLE;
+            bias = PRIOR_BIAS;
+            totalLearnCount = 0;
+            isLoaded = false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            weights = new float[1 << tableBits()];
+            bias = PRIOR_BIAS;
+            totalLearnCount = 0;
+            unsavedCount = 0;
+            version++;
+            isLoaded = true;
+
+            // 排队中的旧版本不再写入
+            synchronized (persistLock) {
+                savedVersion = version;
+                lastSaveTime = 0;
+                modelFile.delete();
+                new File(modelFile.getPath() + ".tmp").delete();
+            }
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    @Override
+    public long getLearnCount() {
+        return totalLearnCount;
+    }
+
+    @Override
+    public long getMemoryUsageBytes() {
+        float[] table = weights;
+        return table == EMPTY_TABLE ? 0 : table.length * 4L;
+    }
+
+    /**
+     * 非零权重的位置数（不同特征可能共用一个位置）
+     */
+    @Override
+    public int getTermCount() {
+        float[] table = weights;
+        if (table == EMPTY_TABLE) return 0;
+        int count = 0;
+        for (float w : table) {
+            if (w != 0f) count++;
+        }
+        return count;
+    }
+}
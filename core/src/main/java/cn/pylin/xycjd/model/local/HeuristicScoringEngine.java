@@ -0,0 +1,980 @@
+package cn.pylin.xycjd.model.local;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 启发式评分引擎 - v3.1 模型
+ *
+ * 逐词权重 + TF-IDF + 五个决策树修正，自适应学习率和时间衰减（原 LocalModelManager 中的模型）。
+ * 模型文件为 ml_weights_v4.bin（v4 二进制格式）+ 学习日志，首次加载时从 v3 JSON 文件迁移。
+ */
+public final class HeuristicScoringEngine implements ScoringEngine {
+    public static final String NAME = "heuristic";
+
+    private static final String MODEL_FILE_NAME = "ml_weights_v4.bin";
+    private static final String LEGACY_MODEL_FILE_NAME = "ml_weights_v3.json";
+    private static final String JOURNAL_FILE_NAME = "ml_weights_v4.journal";
+    private static final String FILE_PREFIX = "ml_weights";
+    private static final float DEFAULT_WEIGHT = ModelSnapshot.DEFAULT_WEIGHT;
+    private static final float MIN_WEIGHT = 0.0f;
+    private static final float MAX_WEIGHT = 10.0f;
+    
+    // 内存上限：每个词条约占 76 字节（列数据 24 + 哈希表 48 + 频率草图 4），按此换算词条上限
+    private static final int BYTES_PER_TERM = 76;
+    private static final float ADMISSION_WATERMARK = 0.75f;  // 词条数超过上限的该比例后开始准入控制
+    private static final int ADMISSION_MIN_FREQUENCY = 2;    // 准入需要的最少历史出现次数
+    private static final float EVICTION_TARGET = 0.9f;       // 超过上限时淘汰到上限的该比例
+    
+    // 学习强度配置
+    private static final float AUTO_LEARNING_MULTIPLIER = 1.0f;
+    private static final float MANUAL_POSITIVE_MULTIPLIER = 2.5f; // 增强手动反馈
+    
+    private final File directory;
+    private final ModelSettings settings;
+    private volatile boolean isLoaded = false;
+    
+    // 写入端：所有修改都在 writeLock 内进行，修改完成后发布新快照
+    private final Object writeLock = new Object();
+    private final TermStore store;                     // 词条存储（权重、词频、文档数、访问时间）
+    private long totalLearnCount = 0;
+    private long totalDocumentCount = 0;           // 总文档数（用于TF-IDF）
+    private long snapshotVersion = 0;
+    private volatile FrequencySketch sketch;           // 新词准入的频率草图
+    private int maxTerms = 0;                          // 当前内存上限对应的词条上限
+    
+    // 读取端：评分只读取当前快照，不加锁
+    private volatile ModelSnapshot snapshot;
+    
+    // 持久化：每次学习追加一条日志记录，日志过大时把快照合并进模型文件
+    private final ModelStorage storage;
+
+    public HeuristicScoringEngine(File directory, ModelSettings settings) {
+        this(directory, settings, ModelStorage.newPersistExecutor("local-model-persist"));
+    }
+
+    /**
+     * 使用给定的持久化线程（按应用分片时各分片共用）
+     */
+    public HeuristicScoringEngine(File directory, ModelSettings settings, ExecutorService persistExecutor) {
+        this.directory = directory;
+        this.settings = settings;
+        this.store = new TermStore(weightCodec());
+        this.storage = new ModelStorage(new File(directory, MODEL_FILE_NAME), new File(directory, JOURNAL_FILE_NAME),
+                persistExecutor, () -> isLoaded ? snapshot : null);
+        
+        // 模型文件在 preload() 或第一次使用时加载
+        synchronized (writeLock) {
+            storage.markSaved(publishSnapshot());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * 按设置的权重精度选择量化方式，权重范围为 [MIN_WEIGHT, MAX_WEIGHT]
+     */
+    private WeightCodec weightCodec() {
+        return WeightCodec.of(settings.getWeightBits(), MIN_WEIGHT, MAX_WEIGHT);
+    }
+
+    /**
+     * 自动学习处理方法 - v3.0 增强版
+     */
+    @Override
+    public float learn(FeatureBuffer features, boolean isPositive) {
+        ensureLoaded();
+        
+        float score;
+        synchronized (writeLock) {
+            int uniqueCount = learnLocked(features, isPositive);
+            
+            // 超出内存上限时淘汰低价值词条
+            enforceMemoryBudget();
+            
+            score = calculateScore(publishSnapshot(), features, true);
+            
+            // 记录日志（在写锁内入队，保证日志顺序与学习顺序一致）
+            appendJournal(features.scratch, uniqueCount);
+        }
+
+        return score;
+    }
+
+    /**
+     * 手动正向反馈 - v3.0 增强版
+     */
+    @Override
+    public float learnPositive(FeatureBuffer features) {
+        ensureLoaded();
+        
+        float score;
+        synchronized (writeLock) {
+            int uniqueCount = learnPositiveLocked(features);
+            
+            // 内存上限
+            enforceMemoryBudget();
+            
+            score = calculateScore(publishSnapshot(), features, true);
+            
+            // 记录日志
+            appendJournal(features.scratch, uniqueCount);
+        }
+
+        return score;
+    }
+
+    @Override
+    public void learnBatch(FeatureBuffer[] batch, int count, boolean isPositive) {
+        learnBatch(batch, count, isPositive, false);
+    }
+
+    @Override
+    public void learnPositiveBatch(FeatureBuffer[] batch, int count) {
+        learnBatch(batch, count, true, true);
+    }
+
+    /**
+     * 批量学习：在一次写锁内依次学习，结果与逐条学习相同（内存上限只在最后检查一次），
+     * 最后只发布一次快照，所有涉及的特征合并为一条日志记录
+     */
+    private void learnBatch(FeatureBuffer[] batch, int count, boolean isPositive, boolean manual) {
+        if (count <= 0) return;
+        ensureLoaded();
+        
+        synchronized (writeLock) {
+            long[] keys = new long[256];
+            int keyCount = 0;
+            for (int i = 0; i < count; i++) {
+                FeatureBuffer features = batch[i];
+                int uniqueCount = manual ? learnPositiveLocked(features) : learnLocked(features, isPositive);
+                if (keyCount + uniqueCount > keys.length) {
+                    keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keyCount + uniqueCount));
+                }
+                System.arraycopy(features.scratch, 0, keys, keyCount, uniqueCount);
+                keyCount += uniqueCount;
+            }
+            
+            enforceMemoryBudget();
+            publishSnapshot();
+            
+            // 去重后记录一条日志
+            Arrays.sort(keys, 0, keyCount);
+            int distinct = 0;
+            for (int i = 0; i < keyCount; i++) {
+                if (i == 0 || keys[i] != keys[i - 1]) keys[distinct++] = keys[i];
+            }
+            appendJournal(keys, distinct);
+        }
+    }
+
+    /**
+     * 自动学习一条（需持有 writeLock），不发布快照、不记录日志
+     * 返回本次涉及的不同特征数，特征哈希保存在 features.scratch 中
+     */
+    private int learnLocked(FeatureBuffer features, boolean isPositive) {
+        ModelSnapshot model = writerView();
+        
+        // 获取自适应学习率
+        float baseLearningRate = getLearningRate();
+        float adaptiveRate = calculateAdaptiveLearningRate(model, features, isPositive);
+        
+        // 新词准入
+        admitNewTerms(features);
+        float learningRate = baseLearningRate * adaptiveRate * AUTO_LEARNING_MULTIPLIER;
+        
+        // 计算当前分数和误差
+        float currentScore = calculateScore(model, features, true);
+        float targetScore = isPositive ? MAX_WEIGHT : MIN_WEIGHT;
+        float error = targetScore - currentScore;
+
+        // 更新权重（带时间衰减）
+        updateWeightsV3(model, features, error, learningRate, isPositive);
+
+        // 更新统计
+        return updateStatsV3(features);
+    }
+
+    /**
+     * 手动正向反馈一条（需持有 writeLock），不发布快照、不记录日志
+     */
+    private int learnPositiveLocked(FeatureBuffer features) {
+        ModelSnapshot model = writerView();
+        
+        // 手动反馈学习率更强
+        float baseLearningRate = getLearningRate();
+        float adaptiveRate = calculateAdaptiveLearningRate(model, features, true);
+        
+        // 新词准入
+        admitNewTerms(features);
+        float learningRate = baseLearningRate * adaptiveRate * MANUAL_POSITIVE_MULTIPLIER;
+        
+        // 计算当前分数和误差
+        float currentScore = calculateScore(model, features, true);
+        float error = MAX_WEIGHT - currentScore;
+
+        // 更新权重（只做正向，更强）
+        updateWeightsManualV3(model, features, error, learningRate);
+
+        // 更新统计
+        return updateStatsV3(features);
+    }
+
+    /**
+     * 预测分数 - v3.0 增强版
+     * 只读取当前快照，不会等待学习或保存
+     */
+    @Override
+    public float predict(FeatureBuffer features) {
+        ensureLoaded();
+        return calculateScore(snapshot, features, true);
+    }
+
+    @Override
+    public Scorer snapshotScorer() {
+        ensureLoaded();
+        return pinnedScorer(snapshot);
+    }
+
+    @Override
+    public Scorer savedScorer() {
+        return pinnedScorer(storage.read(weightCodec()));
+    }
+
+    private Scorer pinnedScorer(ModelSnapshot pinned) {
+        return new Scorer() {
+            @Override
+            public float predict(FeatureBuffer features) {
+                return calculateScore(pinned, features, true);
+            }
+
+            @Override
+            public long getLearnCount() {
+                return pinned.totalLearnCount;
+            }
+        };
+    }
+
+    // ==================== v3.0 核心算法实现 ====================
+
+    /**
+     * 自适应学习率计算 - v3.1 增强版
+     * 增加动态学习率衰减
+     */
+    private float calculateAdaptiveLearningRate(ModelSnapshot model, FeatureBuffer features, boolean isPositive) {
+        // 误差越大，学习率越大
+        float currentScore = calculateScore(model, features, false);
+        float targetScore = isPositive ? MAX_WEIGHT : MIN_WEIGHT;
+        float error = Math.abs(targetScore - currentScore);
+        
+        // 自适应因子：误差大时加速学习
+        float errorFactor = Math.min(2.0f, 1.0f + error * 0.2f);
+        
+        // 动态学习率衰减（v3.1新增）
+        // 随着训练次数增加，学习率逐渐减小，防止过拟合
+        float dynamicDecay = 1.0f / (1.0f + model.totalLearnCount * 0.001f);
+        
+        return errorFactor * dynamicDecay;
+    }
+
+    /**
+     * v3.1 权重更新 - 带时间衰减、正则化和智能冷启动
+     */
+    private void updateWeightsV3(ModelSnapshot model, FeatureBuffer features, float error, float learningRate, 
+                                 boolean isPositive) {
+        int currentEpoch = DecayTable.epochOf(settings.currentTimeMillis());
+        
+        for (int i = 0; i < features.size; i++) {
+            int flags = features.flags[i];
+            if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_SKIP | FeatureBuffer.FLAG_REJECTED)) continue;
+
+            int id = store.add(features.hashes[i]);
+            int count = store.count(id);
+            int lastEpoch = model.getEpoch(id, currentEpoch);
+            
+            // 智能冷启动：为新词提供更好的初始值
+            float oldWeight;
+            if (count == 0) {
+                oldWeight = calculateSmartInitialWeight(flags, isPositive);
+            } else {
+                oldWeight = model.getWeight(id);
+            }
+            
+            // 时间衰减因子（指数衰减，查表）
+            float timeDecay = DecayTable.decay(currentEpoch - lastEpoch);
+            
+            // 稳定性因子（出现次数越多越稳定）
+            float stabilityFactor = 1.0f / (1.0f + count * 0.05f);
+            
+            // 位置权重
+            float posWeight = features.positionWeights[i];
+            
+            // 方向性因子（正向/负向学习的不对称性）
+            float directionalFactor = isPositive ? 1.3f : 0.7f;
+            
+            // L2正则化（防止权重过大）
+            float regularization = 0.99f; // 每次更新轻微收缩
+            
+            // 综合学习率
+            float effectiveRate = learningRate * stabilityFactor * directionalFactor * posWeight * timeDecay;
+            
+            // 权重更新
+            float newWeight = oldWeight * regularization + effectiveRate * error;
+            
+            // 边界保护
+            if (isPositive) {
+                newWeight = Math.min(MAX_WEIGHT, newWeight);
+            } else {
+                newWeight = Math.max(MIN_WEIGHT, newWeight);
+            }
+            
+            store.setWeight(id, newWeight);
+            store.setEpoch(id, currentEpoch);
+        }
+    }
+
+    /**
+     * 智能冷启动初始值计算 - v3.1 新增
+     * 为新词提供基于统计特性的智能初始值
+     */
+    private float calculateSmartInitialWeight(int flags, boolean isPositive) {
+        // 基于词的特性计算初始权重
+        float baseWeight = DEFAULT_WEIGHT;
+        int length = FeatureBuffer.length(flags);
+        
+        // 1. 长度因素（长词通常更重要）
+        if (length >= 5) {
+            baseWeight += 1.0f;
+        }
+        if (length >= 8) {
+            baseWeight += 0.5f;
+        }
+        
+        // 2. 类型因素
+        if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_CHINESE)) {
+            // 中文词：中性偏正
+            baseWeight += 0.5f;
+        } else if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_EMOJI)) {
+            // Emoji：通常表示情感，偏向两极
+            baseWeight = isPositive ? 8.0f : 2.0f;
+        } else if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_PUNCT)) {
+            // 特殊符号：中性偏低
+            baseWeight -= 1.0f;
+        } else if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_ASCII)) {
+            // 英文词：根据长度调整
+            if (length >= 4) {
+                baseWeight += 0.3f;
+            }
+        }
+        
+        // 3. 特殊词模式
+        if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_LONG_DIGITS)) {
+            // 包含长数字（年份、验证码等）
+            baseWeight += 0.5f;
+        }
+        
+        // 4. 学习方向调整
+        if (!isPositive) {
+            // 负向学习时，新词初始值偏低
+            baseWeight = Math.max(MIN_WEIGHT, baseWeight - 1.0f);
+        }
+        
+        // 5. 边界保护
+        return Math.max(MIN_WEIGHT, Math.min(MAX_WEIGHT, baseWeight));
+    }
+
+    /**
+     * 手动正向权重更新 - v3.0
+     */
+    private void updateWeightsManualV3(ModelSnapshot model, FeatureBuffer features, float error, float learningRate) {
+        int currentEpoch = DecayTable.epochOf(settings.currentTimeMillis());
+        
+        for (int i = 0; i < features.size; i++) {
+            if (FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP | FeatureBuffer.FLAG_REJECTED)) continue;
+
+            int id = store.add(features.hashes[i]);
+            float oldWeight = model.getWeight(id);
+            int count = store.count(id);
+            int lastEpoch = model.getEpoch(id, currentEpoch);
+            
+            // 时间衰减
+            float timeDecay = DecayTable.decay(currentEpoch - lastEpoch);
+            
+            // 稳定性因子
+            float stabilityFactor = 1.0f / (1.0f + count * 0.03f);
+            
+            // 位置权重
+            float posWeight = features.positionWeights[i];
+            
+            // 手动正向更强
+            float directionalFactor = 2.0f;
+            
+            // L2正则化
+            float regularization = 0.98f;
+            
+            // 综合学习率
+            float effectiveRate = learningRate * stabilityFactor * directionalFactor * posWeight * timeDecay;
+            
+            // 权重更新（只允许上升）
+            float newWeight = oldWeight * regularization + effectiveRate * error;
+            newWeight = Math.min(MAX_WEIGHT, newWeight);
+            
+            store.setWeight(id, newWeight);
+            store.setEpoch(id, currentEpoch);
+        }
+    }
+
+    /**
+     * 更新词频和文档统计 - v3.0
+     * TF-IDF不在这里计算，见 getTfIdf
+     * 返回本次涉及的不同特征数，特征哈希去重后按升序保存在 features.scratch 中
+     */
+    private int updateStatsV3(FeatureBuffer features) {
+        long[] uniqueHashes = features.scratch;
+        int uniqueCount = 0;
+        
+        for (int i = 0; i < features.size; i++) {
+            if (FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP | FeatureBuffer.FLAG_REJECTED)) continue;
+            
+            // 更新词频
+            int id = store.add(features.hashes[i]);
+            store.setCount(id, store.count(id) + 1);
+            
+            // 记录本次文档中出现的词（用于TF-IDF）
+            uniqueHashes[uniqueCount++] = features.hashes[i];
+        }
+        
+        // 更新文档统计（每个文档只计一次，排序后跳过重复）
+        Arrays.sort(uniqueHashes, 0, uniqueCount);
+        int distinctCount = 0;
+        for (int i = 0; i < uniqueCount; i++) {
+            if (i > 0 && uniqueHashes[i] == uniqueHashes[i - 1]) continue;
+            int id = store.add(uniqueHashes[i]);
+            store.setDocCount(id, store.docCount(id) + 1);
+            uniqueHashes[distinctCount++] = uniqueHashes[i];
+        }
+        
+        totalDocumentCount++;
+        totalLearnCount++;
+        return distinctCount;
+    }
+
+    /**
+     * 计算分数 - v4 单次遍历
+     * 每个特征只查一次词典，逐词加权与决策树集成所需的统计量在同一次遍历中完成，
+     * 遍历结束后按 v3.1 的顺序依次应用五个决策树的修正，结果与逐树遍历完全一致：
+     * 1. 关键词权重：低权重词减分、高权重词加分
+     * 2. 权重一致性：权重方差大时降低分数
+     * 3. 长度和集中度：短文本更极端，权重集中在少数词时特征明确
+     * 4. 词长和类型：长词、中文词加分，emoji/符号减分
+     * 5. TF-IDF：平均TF-IDF越高分数越极端
+     * 决策树1-3统计所有有权重的特征（与 v3.1 相同，包括被过滤规则跳过的特征），4-5只统计参与评分的特征
+     */
+    private float calculateScore(ModelSnapshot model, FeatureBuffer features, boolean usePositionWeights) {
+        int size = features.size;
+        if (size == 0) return DEFAULT_WEIGHT;
+
+        TermStore terms = model.terms;
+        float totalWeightedScore = 0;
+        int validCount = 0;
+
+        // 决策树1-3的统计量
+        float negativeBoost = 0;
+        float positiveBoost = 0;
+        float weightSum = 0;
+        float weightSumSq = 0;
+        float maxWeight = 0;
+        int weightedCount = 0;
+
+        // 决策树4-5的统计量
+        float longWordBoost = 0;
+        float chineseBoost = 0;
+        float emojiPenalty = 0;
+        float totalTfIdf = 0;
+
+        for (int i = 0; i < size; i++) {
+            int flags = features.flags[i];
+            int id = terms.find(features.hashes[i]);
+            float storedWeight = id >= 0 ? terms.weight(id) : Float.NaN;
+            boolean hasWeight = !Float.isNaN(storedWeight);
+
+            if (hasWeight) {
+                if (storedWeight < 3.0f) {
+                    negativeBoost += (3.0f - storedWeight) * 0.1f;
+                } else if (storedWeight > 7.0f) {
+                    positiveBoost += (storedWeight - 7.0f) * 0.1f;
+                }
+                weightSum += storedWeight;
+                weightSumSq += storedWeight * storedWeight;
+                maxWeight = Math.max(maxWeight, storedWeight);
+                weightedCount++;
+            }
+
+            if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_SKIP)) continue;
+
+            // 基础权重、词频、TF-IDF权重
+            float baseWeight = hasWeight ? storedWeight : DEFAULT_WEIGHT;
+            int count = id >= 0 ? terms.count(id) : 0;
+            float tfIdf = id >= 0 ? model.getTfIdf(count, terms.docCount(id)) : 0.5f;
+
+            // 位置权重
+            float posWeight = usePositionWeights ? features.positionWeights[i] : 1.0f;
+
+            // 特征重要性权重（v3.1新增）
+            float importanceWeight = calculateFeatureImportance(flags, count, baseWeight);
+
+            // 置信度
+            float confidence = calculateTokenConfidence(count, baseWeight, tfIdf);
+
+            // 综合权重：基础权重 * (1 + TF-IDF) * 位置权重 * 特征重要性
+            float finalWeight = baseWeight * (1.0f + tfIdf * 0.3f) * posWeight * importanceWeight;
+
+            totalWeightedScore += finalWeight * confidence;
+            validCount++;
+
+            // 长词、中文词加分，Emoji/符号减分
+            if (FeatureBuffer.length(flags) >= 5) {
+                longWordBoost += 0.1f;
+            }
+            if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_CHINESE)) {
+                chineseBoost += 0.05f;
+            }
+            if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_EMOJI | FeatureBuffer.FLAG_PUNCT)) {
+                emojiPenalty += 0.08f;
+            }
+            totalTfIdf += tfIdf;
+        }
+
+        if (validCount == 0) return DEFAULT_WEIGHT;
+
+        // 基础平均分
+        float score = totalWeightedScore / validCount;
+
+        // 决策树1：高权重负面词降低分数
+        score = score - negativeBoost + positiveBoost;
+
+        // 决策树2：方差大说明意见不一致，降低置信度
+        if (weightedCount >= 2) {
+            float mean = weightSum / weightedCount;
+            float variance = (weightSumSq / weightedCount) - (mean * mean);
+            score = score - Math.min(2.0f, variance * 0.1f);
+        }
+
+        // 决策树3：长文本倾向于中性，短文本更极端；权重集中在少数词说明特征明确
+        float lengthFactor = Math.min(1.0f, size / 10.0f);
+        float lengthAdjust = (1.0f - lengthFactor) * 0.5f;
+        float concentrationFactor = (maxWeight > 0) ? (maxWeight / (weightSum + 1)) : 0;
+        float concentrationAdjust = (concentrationFactor - 0.3f) * 2.0f;
+        score = score + lengthAdjust + concentrationAdjust;
+
+        // 决策树4：词长和类型
+        score = score + longWordBoost + chineseBoost - emojiPenalty;
+
+        // 决策树5：TF-IDF越高，说明特征越突出，分数越极端
+        float avgTfIdf = totalTfIdf / validCount;
+        score = score + (avgTfIdf - 0.5f) * 2.0f;
+
+        // 边界保护
+        return Math.max(MIN_WEIGHT, Math.min(MAX_WEIGHT, score));
+    }
+
+    /**
+     * 计算特征重要性 - v3.1 新增
+     * 根据词的统计特性分配重要性权重
+     */
+    private float calculateFeatureImportance(int flags, int count, float weight) {
+        int length = FeatureBuffer.length(flags);
+        
+        // 1. 长度重要性（长词通常更重要）
+        float lengthFactor = 1.0f;
+        if (length >= 5) {
+            lengthFactor = 1.2f;
+        } else if (length >= 8) {
+            lengthFactor = 1.4f;
+        }
+        
+        // 2. 偏离度重要性（偏离默认值越大越重要）
+        float deviationFactor = 1.0f + Math.abs(weight - DEFAULT_WEIGHT) / DEFAULT_WEIGHT * 0.3f;
+        
+        // 3. 稀有度重要性（罕见词可能更重要）
+        float rarityFactor = 1.0f;
+        if (count > 0 && count < 5) {
+            rarityFactor = 1.1f;
+        } else if (count == 0) {
+            rarityFactor = 1.15f; // 新词
+        }
+        
+        // 4. 类型重要性（中文词通常比符号重要）
+        float typeFactor = 1.0f;
+        if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_CHINESE)) {
+            typeFactor = 1.1f;
+        } else if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_EMOJI | FeatureBuffer.FLAG_PUNCT)) {
+            typeFactor = 0.8f; // 符号重要性较低
+        }
+        
+        // 5. 综合重要性（限制在合理范围）
+        float importance = lengthFactor * deviationFactor * rarityFactor * typeFactor;
+        return Math.min(1.5f, Math.max(0.7f, importance));
+    }
+
+    /**
+     * 计算Token置信度 - v3.0
+     */
+    private float calculateTokenConfidence(int count, float weight, float tfIdf) {
+        if (count == 0) return 0.6f; // 新词中等置信度
+        
+        // 基于词频的置信度
+        float freqConfidence = Math.min(1.0f, (float) Math.log(count + 1) / 2.0f);
+        
+        // 基于权重偏离度的置信度
+        float weightDeviation = Math.abs(weight - DEFAULT_WEIGHT) / DEFAULT_WEIGHT;
+        float stabilityConfidence = 1.0f - Math.min(0.6f, weightDeviation * 0.5f);
+        
+        // 基于TF-IDF的置信度（特征越突出越可信）
+        float featureConfidence = 0.5f + tfIdf * 0.5f;
+        
+        // 综合置信度
+        return Math.max(0.3f, (freqConfidence * 0.4f + stabilityConfidence * 0.4f + featureConfidence * 0.2f));
+    }
+
+    /**
+     * 学习率获取 - v3.0
+     */
+    private float getLearningRate() {
+        float learningDegree = settings.getLearningDegree();
+        return Math.max(0f, Math.min(10f, learningDegree)) / 10.0f;
+    }
+
+    // ==================== 快照管理 ====================
+
+    /**
+     * 发布当前写入端状态为新快照（需持有 writeLock）
+     */
+    private ModelSnapshot publishSnapshot() {
+        ModelSnapshot published = new ModelSnapshot(store.snapshot(), totalLearnCount, totalDocumentCount, ++snapshotVersion);
+        snapshot = published;
+        return published;
+    }
+
+    /**
+     * 写入端的临时视图，直接读取可写存储，不发布（需持有 writeLock）
+     */
+    private ModelSnapshot writerView() {
+        return new ModelSnapshot(store, totalLearnCount, totalDocumentCount, snapshotVersion);
+    }
+
+    // ==================== 持久化管理 ====================
+
+    @Override
+    public void preload() {
+        ensureLoaded();
+    }
+
+    @Override
+    public long getLearnCount() {
+        return snapshot.totalLearnCount;
+    }
+
+    /**
+     * 确保模型加载
+     */
+    private void ensureLoaded() {
+        if (!isLoaded) {
+            synchronized (writeLock) {
+                if (!isLoaded) {
+                    loadModel();
+                    // 刚从文件加载的内容无需再次保存
+                    storage.markSaved(publishSnapshot());
+                    isLoaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 追加学习日志（需持有 writeLock）
+     * 在写锁内按特征编码本次更新后的取值，文件写入在持久化线程上完成
+     * 每条记录只包含本次涉及的特征，开销与通知长度成正比
+     */
+    private void appendJournal(long[] hashes, int count) {
+        storage.append(ModelJournal.encode(store, totalLearnCount, totalDocumentCount, hashes, count));
+    }
+
+    /**
+     * 加载模型 - 二进制模型文件 + 学习日志（需持有 writeLock）
+     * 模型文件不存在时尝试从 v3 JSON 文件迁移（仅一次）
+     */
+    private void loadModel() {
+        if (!storage.exists()) {
+            migrateLegacyModel();
+        }
+        storage.load(new ModelJournal.Replayer() {
+            @Override
+            public void onTerm(long key, float weight, int count, int docCount, int epoch) {
+                setTerm(key, weight, count, docCount, epoch);
+            }
+            
+            @Override
+            public void onTotals(long learnCount, long documentCount) {
+                totalLearnCount = learnCount;
+                totalDocumentCount = documentCount;
+            }
+        });
+    }
+
+    // ==================== 内存上限 ====================
+
+    /**
+     * 读取内存上限设置，换算为词条上限（需持有 writeLock）
+     * 上限变化时按新的词条上限重建频率草图
+     */
+    private int updateMemoryBudget() {
+        long budgetBytes = settings.getMemoryBudgetMb() * 1024L * 1024L;
+        int bytesPerTerm = BYTES_PER_TERM - 4 + WeightCodec.bytesPerWeight(store.codec());
+        int terms = (int) Math.min(Integer.MAX_VALUE, budgetBytes / bytesPerTerm);
+        if (terms != maxTerms || sketch == null) {
+            maxTerms = terms;
+            sketch = new FrequencySketch(terms);
+        }
+        return maxTerms;
+    }
+
+    /**
+     * 新词准入（需持有 writeLock）
+     * 词条数接近上限后，只有在频率草图中已出现足够次数的新词才会被学习，一次性出现的词不再占用词条
+     * 先按草图中原有的计数判断再计入本次，同一通知中重复出现的特征判断结果一致
+     */
+    private void admitNewTerms(FeatureBuffer features) {
+        int limit = updateMemoryBudget();
+        boolean gated = store.size() >= limit * ADMISSION_WATERMARK;
+        
+        if (gated) {
+            for (int i = 0; i < features.size; i++) {
+                int flags = features.flags[i];
+                if (FeatureBuffer.is(flags, FeatureBuffer.FLAG_SKIP)) continue;
+                
+                long hash = features.hashes[i];
+                if (store.find(hash) < 0 && sketch.frequency(hash) < ADMISSION_MIN_FREQUENCY) {
+                    features.flags[i] = flags | FeatureBuffer.FLAG_REJECTED;
+                }
+            }
+        }
+        
+        for (int i = 0; i < features.size; i++) {
+            if (!FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) {
+                sketch.increment(features.hashes[i]);
+            }
+        }
+    }
+
+    /**
+     * 淘汰低价值词条（需持有 writeLock）
+     * 词条数超过上限时，按 价值 × 新近度 从低到高淘汰，直到降到上限的 90%
+     * 每次淘汰后要再新增上限的 10% 个词条才会再次触发，均摊到每次学习的开销很小
+     */
+    private boolean enforceMemoryBudget() {
+        if (maxTerms <= 0 || store.size() <= maxTerms) return false;
+        
+        int currentEpoch = DecayTable.epochOf(settings.currentTimeMillis());
+        int n = store.size();
+        float[] values = new float[n];
+        for (int id = 0; id < n; id++) {
+            values[id] = calculateTermValue(id, currentEpoch);
+        }
+        
+        // 保留价值最高的 target 个词条（价值相同的一并淘汰）
+        int target = (int) (maxTerms * EVICTION_TARGET);
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        float threshold = sorted[n - target - 1];
+        store.retain(id -> values[id] > threshold);
+        
+        // 淘汰的词条不会写入日志，需要重写模型文件
+        storage.compactAsync();
+        return true;
+    }
+
+    /**
+     * 词条价值 - 出现越多、权重越偏离默认值价值越高，按最后学习时间衰减
+     */
+    private float calculateTermValue(int id, int currentEpoch) {
+        int count = store.count(id);
+        float weight = store.weight(id);
+        float deviation = Float.isNaN(weight) ? 0 : Math.abs(weight - DEFAULT_WEIGHT) / DEFAULT_WEIGHT;
+        float value = (float) Math.log(count + 2) * (0.1f + deviation);
+        
+        int lastEpoch = store.epoch(id);
+        return value * DecayTable.decay(lastEpoch != 0 ? currentEpoch - lastEpoch : 0);
+    }
+
+    @Override
+    public void applyMemoryBudget() {
+        synchronized (writeLock) {
+            updateMemoryBudget();
+            if (enforceMemoryBudget()) {
+                publishSnapshot();
+            }
+        }
+    }
+
+    @Override
+    public long getMemoryUsageBytes() {
+        long bytes = snapshot.terms.estimateMemoryBytes();
+        FrequencySketch currentSketch = sketch;
+        if (currentSketch != null) {
+            bytes += currentSketch.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getTermCount() {
+        return snapshot.terms.size();
+    }
+
+    // ==================== 持久化管理 ====================
+
+    @Override
+    public void save() {
+        storage.compactNow();
+    }
+
+    /**
+     * 释放内存 - 先把日志合并进模型文件，空快照不需要写回文件
+     */
+    @Override
+    public void release() {
+        synchronized (writeLock) {
+            storage.runLocked(() -> {
+                storage.save(snapshot);
+                store.clear(weightCodec());
+                storage.markSaved(publishSnapshot());
+                isLoaded = false;
+            });
+        }
+    }
+
+    /**
+     * 清空模型，删除所有版本的模型文件和学习日志
+     */
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            store.clear(weightCodec());
+            if (sketch != null) {
+                sketch.clear();
+            }
+            totalLearnCount = 0;
+            totalDocumentCount = 0;
+            ModelSnapshot empty = publishSnapshot();
+            isLoaded = true;
+            
+            // 等待进行中的保存完成后再删除，避免旧快照重新写回文件
+            storage.runLocked(() -> {
+                storage.delete(empty);
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (file.getName().startsWith(FILE_PREFIX)) {
+                            file.delete();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void setTerm(long key, float weight, int count, int docCount, int epoch) {
+        int id = store.add(key);
+        store.setWeight(id, weight);
+        store.setCount(id, count);
+        store.setDocCount(id, docCount);
+        store.setEpoch(id, epoch);
+    }
+
+    /**
+     * 从 v3 JSON 文件迁移（需持有 writeLock）
+     * 读取旧文件后立即以新格式保存，成功后删除旧文件
+     */
+    private void migrateLegacyModel() {
+        File legacyFile = new File(directory, LEGACY_MODEL_FILE_NAME);
+        if (!legacyFile.exists()) return;
+        
+        if (loadLegacyModel(legacyFile) && storage.save(publishSnapshot())) {
+            legacyFile.delete();
+        }
+    }
+
+    /**
+     * 加载 v3 JSON 格式
+     * 不校验版本号，直接加载
+     */
+    private boolean loadLegacyModel(File file) {
+        try {
+            Scanner scanner = new Scanner(file);
+            StringBuilder sb = new StringBuilder();
+            while (scanner.hasNextLine()) {
+                sb.append(scanner.nextLine());
+            }
+            scanner.close();
+            
+            JSONObject json = new JSONObject(sb.toString());
+            
+            // 直接加载数据，不校验版本
+            totalLearnCount = json.optLong("totalLearnCount", 0);
+            totalDocumentCount = json.optLong("totalDocumentCount", 0);
+            
+            // 加载权重
+            if (json.has("weights")) {
+                JSONObject weightsJson = json.getJSONObject("weights");
+                Iterator<String> keys = weightsJson.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    store.setWeight(store.add(Tokenizer.hash(key)), (float) weightsJson.getDouble(key));
+                }
+            }
+            
+            // 加载词频
+            if (json.has("counts")) {
+                JSONObject countsJson = json.getJSONObject("counts");
+                Iterator<String> keys = countsJson.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    store.setCount(store.add(Tokenizer.hash(key)), countsJson.getInt(key));
+                }
+            }
+            
+            // 加载时间戳（换算为 epoch）
+            if (json.has("accessTime")) {
+                JSONObject timeJson = json.getJSONObject("accessTime");
+                Iterator<String> keys = timeJson.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    long time = timeJson.getLong(key);
+                    store.setEpoch(store.add(Tokenizer.hash(key)), time != 0 ? DecayTable.epochOf(time) : 0);
+                }
+            }
+            
+            // 加载文档统计
+            if (json.has("termDocCount")) {
+                JSONObject docJson = json.getJSONObject("termDocCount");
+                Iterator<String> keys = docJson.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    store.setDocCount(store.add(Tokenizer.hash(key)), docJson.getInt(key));
+                }
+            }
+            
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
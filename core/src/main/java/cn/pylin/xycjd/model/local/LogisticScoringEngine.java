@@ -0,0 +1,439 @@
+package cn.pylin.xycjd.model.local;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 逻辑回归评分引擎 - 稀疏在线学习
+ *
+ * 与启发式引擎使用相同的特征，每个特征只有一个权重：
+ * 1. 预测：z = bias + Σ x·w，分数 = 10 × sigmoid(z)，一次遍历、每个特征查一次词典
+ * 2. 学习：随机梯度下降，梯度 (y - p)·x，每个特征的学习率按该特征的更新次数递减（lr / √n），
+ *    并带轻微的 L2 收缩和权重截断；长时间未更新的权重在下次更新前按时间衰减
+ *
+ * x 为位置权重（标题中的特征 1.5，其余 1.0）除以 √特征数，长短通知的 z 处于同一量级。
+ * 偏置的初始值使没有任何学习时分数约为 9，不会过滤。
+ *
+ * 词条存储复用 {@link TermStore}：weight 为权重，count 为更新次数，epoch 为最后更新所在的 epoch；
+ * 模型文件和学习日志的格式与启发式引擎相同（见 {@link ModelStorage}），文件名不同。
+ */
+public final class LogisticScoringEngine implements ScoringEngine {
+    public static final String NAME = "logistic";
+
+    private static final String MODEL_FILE_NAME = "ml_logistic_v1.bin";
+    private static final String JOURNAL_FILE_NAME = "ml_logistic_v1.journal";
+
+    private static final long BIAS_KEY = Tokenizer.hash("__bias__");
+    private static final float PRIOR_BIAS = 2.2f;            // sigmoid(2.2) ≈ 0.9
+    private static final float MAX_SCORE = 10.0f;
+    private static final float MAX_WEIGHT = 8.0f;            // 权重截断
+    private static final float BASE_LEARNING_RATE = 1.0f;    // 学习程度为 10 时的学习率
+    private static final float REGULARIZATION = 0.999f;      // 每次更新轻微收缩
+    private static final float MANUAL_POSITIVE_MULTIPLIER = 2.5f; // 增强手动反馈
+
+    // 内存上限：每个词条约占 72 字节（列数据 24 + 哈希表 48），按此换算词条上限
+    private static final int BYTES_PER_TERM = 72;
+    private static final float EVICTION_TARGET = 0.9f;       // 超过上限时淘汰到上限的该比例
+
+    private final ModelSettings settings;
+    private volatile boolean isLoaded = false;
+
+    // 写入端：所有修改都在 writeLock 内进行，修改完成后发布新快照
+    private final Object writeLock = new Object();
+    private final TermStore store;
+    private long totalLearnCount = 0;
+    private long snapshotVersion = 0;
+
+    // 读取端：评分只读取当前快照，不加锁
+    private volatile ModelSnapshot snapshot;
+
+    private final ModelStorage storage;
+
+    public LogisticScoringEngine(File directory, ModelSettings settings) {
+        this(directory, settings, ModelStorage.newPersistExecutor("local-model-persist-logistic"));
+    }
+
+    /**
+     * 使用给定的持久化线程（按应用分片时各分片共用）
+     */
+    public LogisticScoringEngine(File directory, ModelSettings settings, ExecutorService persistExecutor) {
+        this.settings = settings;
+        this.store = new TermStore(weightCodec());
+        this.storage = new ModelStorage(new File(directory, MODEL_FILE_NAME), new File(directory, JOURNAL_FILE_NAME),
+                persistExecutor, () -> isLoaded ? snapshot : null);
+
+        synchronized (writeLock) {
+            storage.markSaved(publishSnapshot());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * 按设置的权重精度选择量化方式，权重范围为 [-MAX_WEIGHT, MAX_WEIGHT]
+     */
+    private WeightCodec weightCodec() {
+        return WeightCodec.of(settings.getWeightBits(), -MAX_WEIGHT, MAX_WEIGHT);
+    }
+
+    @Override
+    public float predict(FeatureBuffer features) {
+        ensureLoaded();
+        return score(snapshot.terms, features);
+    }
+
+    @Override
+    public Scorer snapshotScorer() {
+        ensureLoaded();
+        return pinnedScorer(snapshot);
+    }
+
+    @Override
+    public Scorer savedScorer() {
+        return pinnedScorer(storage.read(weightCodec()));
+    }
+
+    private Scorer pinnedScorer(ModelSnapshot pinned) {
+        return new Scorer() {
+            @Override
+            public float predict(FeatureBuffer features) {
+                return score(pinned.terms, features);
+            }
+
+            @Override
+            public long getLearnCount() {
+                return pinned.totalLearnCount;
+            }
+        };
+    }
+
+    @Override
+    public float learn(FeatureBuffer features, boolean isPositive) {
+        return update(features, isPositive, 1.0f);
+    }
+
+    @Override
+    public float learnPositive(FeatureBuffer features) {
+        return update(features, true, MANUAL_POSITIVE_MULTIPLIER);
+    }
+
+    // ==================== 预测与学习 ====================
+
+    /**
+     * 计算 z = bias + Σ x·w
+     */
+    private static float linear(TermStore terms, FeatureBuffer features, float scale) {
+        float z = weightOf(terms, BIAS_KEY, PRIOR_BIAS);
+        for (int i = 0; i < features.size; i++) {
+            if (FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) continue;
+            z += features.positionWeights[i] * scale * weightOf(terms, features.hashes[i], 0f);
+        }
+        return z;
+    }
+
+    private static float score(TermStore terms, FeatureBuffer features) {
+        return MAX_SCORE * sigmoid(linear(terms, features, featureScale(features)));
+    }
+
+    private static float weightOf(TermStore terms, long key, float defaultWeight) {
+        int id = terms.find(key);
+        if (id < 0) return defaultWeight;
+        float weight = terms.weight(id);
+        return Float.isNaN(weight) ? defaultWeight : weight;
+    }
+
+    /**
+     * 特征缩放：1 / √参与评分的特征数
+     */
+    private static float featureScale(FeatureBuffer features) {
+        int count = 0;
+        for (int i = 0; i < features.size; i++) {
+            if (!FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) count++;
+        }
+        return count > 0 ? (float) (1.0 / Math.sqrt(count)) : 0f;
+    }
+
+    private static float sigmoid(float z) {
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    /**
+     * 一次梯度下降
+     */
+    private float update(FeatureBuffer features, boolean isPositive, float multiplier) {
+        ensureLoaded();
+
+        float learningRate = learningRate(multiplier);
+        int currentEpoch = DecayTable.epochOf(settings.currentTimeMillis());
+
+        float score;
+        synchronized (writeLock) {
+            updateLocked(features, isPositive, learningRate, currentEpoch);
+
+            // 超出内存上限时淘汰权重最小的词条
+            enforceMemoryBudget(currentEpoch);
+
+            score = score(publishSnapshot().terms, features);
+            appendJournal(features);
+        }
+        return score;
+    }
+
+    @Override
+    public void learnBatch(FeatureBuffer[] batch, int count, boolean isPositive) {
+        updateBatch(batch, count, isPositive, 1.0f);
+    }
+
+    @Override
+    public void learnPositiveBatch(FeatureBuffer[] batch, int count) {
+        updateBatch(batch, count, true, MANUAL_POSITIVE_MULTIPLIER);
+    }
+
+    /**
+     * 批量梯度下降：逐条更新（与逐条学习结果相同），最后只淘汰、发布快照和记录日志一次
+     */
+    private void updateBatch(FeatureBuffer[] batch, int count, boolean isPositive, float multiplier) {
+        if (count <= 0) return;
+        ensureLoaded();
+
+        float learningRate = learningRate(multiplier);
+        int currentEpoch = DecayTable.epochOf(settings.currentTimeMillis());
+
+        synchronized (writeLock) {
+            int keyCount = 0;
+            for (int i = 0; i < count; i++) {
+                updateLocked(batch[i], isPositive, learningRate, currentEpoch);
+                keyCount += batch[i].size;
+            }
+
+            enforceMemoryBudget(currentEpoch);
+            publishSnapshot();
+
+            long[] keys = new long[keyCount + 1];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                n = collectKeys(batch[i], keys, n);
+            }
+            appendJournal(keys, n);
+        }
+    }
+
+    private float learningRate(float multiplier) {
+        return Math.max(0f, Math.min(10f, settings.getLearningDegree())) / 10.0f
+                * BASE_LEARNING_RATE * multiplier;
+    }
+
+    /**
+     * 更新一条样本的权重（需持有 writeLock），不发布快照、不记录日志
+     */
+    private void updateLocked(FeatureBuffer features, boolean isPositive, float learningRate, int currentEpoch) {
+        float scale = featureScale(features);
+        float p = sigmoid(linear(store, features, scale));
+        float gradient = (isPositive ? 1.0f : 0.0f) - p;
+
+        if (learningRate > 0) {
+            for (int i = 0; i < features.size; i++) {
+                if (FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) continue;
+                updateTerm(features.hashes[i], 0f, features.positionWeights[i] * scale,
+                        gradient, learningRate, currentEpoch);
+            }
+            updateTerm(BIAS_KEY, PRIOR_BIAS, 1.0f, gradient, learningRate, currentEpoch);
+        }
+        totalLearnCount++;
+    }
+
+    private void updateTerm(long key, float initialWeight, float x, float gradient, float learningRate, int currentEpoch) {
+        int id = store.add(key);
+        int count = store.count(id);
+        float weight = store.weight(id);
+        if (count == 0 || Float.isNaN(weight)) {
+            weight = initialWeight;
+        } else {
+            weight *= DecayTable.decay(currentEpoch - store.epoch(id));
+        }
+
+        float rate = learningRate / (float) Math.sqrt(count + 1);
+        weight = weight * REGULARIZATION + rate * gradient * x;
+        weight = Math.max(-MAX_WEIGHT, Math.min(MAX_WEIGHT, weight));
+
+        store.setWeight(id, weight);
+        store.setCount(id, count + 1);
+        store.setEpoch(id, currentEpoch);
+    }
+
+    // ==================== 快照与持久化 ====================
+
+    /**
+     * 发布当前写入端状态为新快照（需持有 writeLock）
+     */
+    private ModelSnapshot publishSnapshot() {
+        ModelSnapshot published = new ModelSnapshot(store.snapshot(), totalLearnCount, totalLearnCount, ++snapshotVersion);
+        snapshot = published;
+        return published;
+    }
+
+    @Override
+    public void preload() {
+        ensureLoaded();
+    }
+
+    @Override
+    public long getLearnCount() {
+        return snapshot.totalLearnCount;
+    }
+
+    private void ensureLoaded() {
+        if (!isLoaded) {
+            synchronized (writeLock) {
+                if (!isLoaded) {
+                    storage.load(new ModelJournal.Replayer() {
+                        @Override
+                        public void onTerm(long key, float weight, int count, int docCount, int epoch) {
+                            int id = store.add(key);
+                            store.setWeight(id, weight);
+                            store.setCount(id, count);
+                            store.setDocCount(id, docCount);
+                            store.setEpoch(id, epoch);
+                        }
+
+                        @Override
+                        public void onTotals(long learnCount, long documentCount) {
+                            totalLearnCount = learnCount;
+                        }
+                    });
+                    storage.markSaved(publishSnapshot());
+                    isLoaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 追加学习日志（需持有 writeLock）：本次更新的特征（去重）+ 偏置
+     */
+    private void appendJournal(FeatureBuffer features) {
+        long[] keys = features.scratch;
+        int n = collectKeys(features, keys, 0);
+        if (n == keys.length) {
+            keys = Arrays.copyOf(keys, n + 1);
+        }
+        appendJournal(keys, n);
+    }
+
+    /**
+     * 追加学习日志（需持有 writeLock）：keys[0..n) 去重后加上偏置，keys 须至少留出一个空位
+     */
+    private void appendJournal(long[] keys, int n) {
+        Arrays.sort(keys, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) keys[distinct++] = keys[i];
+        }
+        keys[distinct++] = BIAS_KEY;
+        storage.append(ModelJournal.encode(store, totalLearnCount, totalLearnCount, keys, distinct));
+    }
+
+    /**
+     * 把参与评分的特征哈希写入 keys[n..)，返回新的 n
+     */
+    private static int collectKeys(FeatureBuffer features, long[] keys, int n) {
+        for (int i = 0; i < features.size; i++) {
+            if (!FeatureBuffer.is(features.flags[i], FeatureBuffer.FLAG_SKIP)) {
+                keys[n++] = features.hashes[i];
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void save() {
+        storage.compactNow();
+    }
+
+    @Override
+    public void release() {
+        synchronized (writeLock) {
+            storage.runLocked(() -> {
+                if (isLoaded) {
+                    storage.save(snapshot);
+                }
+                store.clear(weightCodec());
+                storage.markSaved(publishSnapshot());
+                isLoaded = false;
+            });
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            store.clear(weightCodec());
+            totalLearnCount = 0;
+            ModelSnapshot empty = publishSnapshot();
+            isLoaded = true;
+            storage.delete(empty);
+        }
+    }
+
+    // ==================== 内存上限 ====================
+
+    private int maxTerms() {
+        long budgetBytes = settings.getMemoryBudgetMb() * 1024L * 1024L;
+        int bytesPerTerm = BYTES_PER_TERM - 4 + WeightCodec.bytesPerWeight(store.codec());
+        return (int) Math.min(Integer.MAX_VALUE, budgetBytes / bytesPerTerm);
+    }
+
+    /**
+     * 淘汰低价值词条（需持有 writeLock）
+     * 按 |权重| × 时间衰减 从低到高淘汰到上限的 90%，偏置不会被淘汰
+     */
+    private boolean enforceMemoryBudget(int currentEpoch) {
+        int maxTerms = maxTerms();
+        int n = store.size();
+        if (maxTerms <= 0 || n <= maxTerms) return false;
+
+        float[] values = new float[n];
+        for (int id = 0; id < n; id++) {
+            if (store.key(id) == BIAS_KEY) {
+                values[id] = Float.MAX_VALUE;
+                continue;
+            }
+            float weight = store.weight(id);
+            values[id] = Float.isNaN(weight) ? 0 : Math.abs(weight) * DecayTable.decay(currentEpoch - store.epoch(id));
+        }
+
+        int target = (int) (maxTerms * EVICTION_TARGET);
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        float threshold = sorted[n - target - 1];
+        store.retain(id -> values[id] > threshold);
+
+        // 淘汰的词条不会写入日志，需要重写模型文件
+        storage.compactAsync();
+        return true;
+    }
+
+    @Override
+    public void applyMemoryBudget() {
+        ensureLoaded();
+        synchronized (writeLock) {
+            if (enforceMemoryBudget(DecayTable.epochOf(settings.currentTimeMillis()))) {
+                publishSnapshot();
+            }
+        }
+    }
+
+    @Override
+    public long getMemoryUsageBytes() {
+        return snapshot.terms.estimateMemoryBytes();
+    }
+
+    @Override
+    public int getTermCount() {
+        return snapshot.terms.size();
+    }
+}
@@ -0,0 +1,209 @@
+package cn.pylin.xycjd.model.local;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 本地模型二进制文件 - v4 格式
+ *
+ * 文件布局（大端序）：
+ * 1. 头部：magic、version、totalLearnCount、totalDocumentCount、saveTime、termCount、
+ *    weightBits、weightMin、weightMax（权重量化方式，见 {@link WeightCodec}；32 表示浮点）
+ * 2. 特征哈希：long[termCount]，升序排列（见 {@link Tokenizer#hash}）
+ * 3. 列数据：weights(float / 16 位 / 8 位编码)、counts(int)、docCounts(int)、epochs(int，见 {@link DecayTable})
+ *
+ * TF-IDF 不保存，评分时由词频、文档数和总文档数计算。
+ *
+ * 读取时通过 MappedByteBuffer 映射，按下标访问各列，无需文本解析；加载时按列顺序读出全部词条写入
+ * {@link TermStore}（见 {@link ModelStorage#load}），冷启动的耗时和内存分配仍与词条数成正比，
+ * 相比 JSON 省去的是解析、装箱和临时对象。
+ * 写入时先写临时文件再重命名，保证文件要么是旧版本要么是完整的新版本。
+ */
+public final class ModelFile {
+
+    public static final int MAGIC = 0x58594D4C; // "XYML"
+    public static final int VERSION = 4;
+
+    /** 权重列中表示"该词没有此项数据"的取值 */
+    public static final float ABSENT_FLOAT = Float.NaN;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 4 + 4 + 4;
+
+    private final MappedByteBuffer buffer;
+    private final long totalLearnCount;
+    private final long totalDocumentCount;
+    private final long saveTime;
+    private final int termCount;
+    private final WeightCodec codec;          // 为 null 时权重为浮点
+
+    // 各区段在文件中的起始位置
+    private final int keysStart;
+    private final int weightsStart;
+    private final int countsStart;
+    private final int docCountsStart;
+    private final int epochsStart;
+
+    private ModelFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a model file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported model file version: " + version);
+        }
+        this.totalLearnCount = buffer.getLong(8);
+        this.totalDocumentCount = buffer.getLong(16);
+        this.saveTime = buffer.getLong(24);
+        this.termCount = buffer.getInt(32);
+        if (termCount < 0) {
+            throw new IOException("Corrupted model file");
+        }
+
+        int bits = buffer.getInt(36);
+        this.codec = WeightCodec.of(bits, buffer.getFloat(40), buffer.getFloat(44));
+        if (codec == null && bits != WeightCodec.BITS_FLOAT) {
+            throw new IOException("Unsupported weight precision: " + bits);
+        }
+
+        this.keysStart = HEADER_SIZE;
+        this.weightsStart = keysStart + termCount * 8;
+        this.countsStart = weightsStart + termCount * WeightCodec.bytesPerWeight(codec);
+        this.docCountsStart = countsStart + termCount * 4;
+        this.epochsStart = docCountsStart + termCount * 4;
+
+        if (epochsStart + (long) termCount * 4 != buffer.capacity()) {
+            throw new IOException("Truncated model file");
+        }
+    }
+
+    /**
+     * 以只读方式映射模型文件
+     */
+    public static ModelFile open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // 映射在通道关闭后依然有效
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ModelFile(buffer);
+        }
+    }
+
+    public long getTotalLearnCount() {
+        return totalLearnCount;
+    }
+
+    public long getTotalDocumentCount() {
+        return totalDocumentCount;
+    }
+
+    public long getSaveTime() {
+        return saveTime;
+    }
+
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * 特征哈希
+     */
+    public long key(int index) {
+        return buffer.getLong(keysStart + index * 8);
+    }
+
+    /**
+     * 权重量化方式，null 表示浮点
+     */
+    public WeightCodec codec() {
+        return codec;
+    }
+
+    /** 词权重（量化时还原为浮点），{@link #ABSENT_FLOAT} 表示未学习过 */
+    public float weight(int index) {
+        if (codec == null) {
+            return buffer.getFloat(weightsStart + index * 4);
+        } else if (codec.bits == WeightCodec.BITS_16) {
+            return codec.decode(buffer.getShort(weightsStart + index * 2) & 0xFFFF);
+        }
+        return codec.decode(buffer.get(weightsStart + index) & 0xFF);
+    }
+
+    public int count(int index) {
+        return buffer.getInt(countsStart + index * 4);
+    }
+
+    /** 文档数，0 表示未记录 */
+    public int docCount(int index) {
+        return buffer.getInt(docCountsStart + index * 4);
+    }
+
+    /** 最后学习的 epoch，0 表示未记录 */
+    public int epoch(int index) {
+        return buffer.getInt(epochsStart + index * 4);
+    }
+
+    /**
+     * 写入模型文件（原子替换）
+     * 各列数组与 keys 一一对应，顺序任意，写入时按特征哈希排序
+     * saveTime 同时用于标识学习日志对应的基础文件（见 {@link ModelJournal}），调用方需保证每次写入不同
+     * codec 不为 null 时权重按量化编码写入（取值应已在格点上，就近舍入）
+     */
+    public static void write(File target, long saveTime, long totalLearnCount, long totalDocumentCount,
+                             final long[] keys, float[] weights, int[] counts,
+                             int[] docCounts, int[] epochs, WeightCodec codec) throws IOException {
+        int n = keys.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(keys[a], keys[b]);
+            }
+        });
+
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(totalLearnCount);
+            out.writeLong(totalDocumentCount);
+            out.writeLong(saveTime);
+            out.writeInt(n);
+            out.writeInt(codec != null ? codec.bits : WeightCodec.BITS_FLOAT);
+            out.writeFloat(codec != null ? codec.min : 0f);
+            out.writeFloat(codec != null ? codec.max : 0f);
+
+            for (int i = 0; i < n; i++) out.writeLong(keys[order[i]]);
+            if (codec == null) {
+                for (int i = 0; i < n; i++) out.writeFloat(weights[order[i]]);
+            } else if (codec.bits == WeightCodec.BITS_16) {
+                for (int i = 0; i < n; i++) out.writeShort(codec.encodeNearest(weights[order[i]]));
+            } else {
+                for (int i = 0; i < n; i++) out.writeByte(codec.encodeNearest(weights[order[i]]));
+            }
+            for (int i = 0; i < n; i++) out.writeInt(counts[order[i]]);
+            for (int i = 0; i < n; i++) out.writeInt(docCounts[order[i]]);
+            for (int i = 0; i < n; i++) out.writeInt(epochs[order[i]]);
+
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + target.getName());
+        }
+    }
+}
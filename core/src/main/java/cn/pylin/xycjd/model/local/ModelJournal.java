@@ -0,0 +1,246 @@
+package cn.pylin.xycjd.model.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 本地模型学习日志 - 只追加
+ *
+ * 每次学习后把本次涉及的词条的最新取值写成一条记录追加到日志末尾，
+ * 加载时先读取基础模型文件，再按顺序重放日志。日志过大时由调用方把当前快照写成新的基础文件并清空日志（压缩）。
+ *
+ * 文件布局（大端序）：
+ * 1. 头部：magic、version、baseSaveTime（对应的基础模型文件的 saveTime，没有基础文件时为 0）
+ * 2. 记录：payloadLength(int)、crc32(int)、payload
+ *    payload：totalLearnCount(long)、totalDocumentCount(long)、termCount(int)、
+ *    termCount × [key(long)、weight(float)、count(int)、docCount(int)、epoch(int)]
+ *
+ * 记录中保存的是绝对值而不是增量，重放是幂等的：同一条记录重放多次、或重放已经包含在基础文件中的记录，结果都不变。
+ * 头部的 baseSaveTime 与基础文件不一致时说明日志已经被压缩进基础文件（压缩过程中进程退出），整个日志被忽略。
+ * 末尾不完整或校验失败的记录（写入过程中进程退出）在重放时被截断；只读重放（{@link #read}）不修改文件，遇到这样的记录即停止。
+ *
+ * 本类不是线程安全的，由调用方负责同步。
+ */
+public final class ModelJournal {
+
+    public static final int MAGIC = 0x58594A4C; // "XYJL"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final int RECORD_PREFIX_SIZE = 8 + 8 + 4;
+    private static final int TERM_SIZE = 8 + 4 + 4 + 4 + 4;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long baseSaveTime;
+
+    public ModelJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 编码一条记录：keys[0..n) 中每个特征在存储中的当前取值
+     * keys 中不存在于存储的特征会被跳过
+     */
+    public static byte[] encode(TermStore store, long totalLearnCount, long totalDocumentCount,
+                                long[] keys, int n) {
+        ByteBuffer payload = ByteBuffer.allocate(RECORD_HEADER_SIZE + RECORD_PREFIX_SIZE + n * TERM_SIZE);
+        payload.position(RECORD_HEADER_SIZE);
+        payload.putLong(totalLearnCount);
+        payload.putLong(totalDocumentCount);
+        int countPosition = payload.position();
+        payload.putInt(0);
+
+        int written = 0;
+        for (int i = 0; i < n; i++) {
+            int id = store.find(keys[i]);
+            if (id < 0) continue;
+            payload.putLong(keys[i]);
+            payload.putFloat(store.weight(id));
+            payload.putInt(store.count(id));
+            payload.putInt(store.docCount(id));
+            payload.putInt(store.epoch(id));
+            written++;
+        }
+        payload.putInt(countPosition, written);
+
+        int length = payload.position() - RECORD_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), RECORD_HEADER_SIZE, length);
+        payload.putInt(0, length);
+        payload.putInt(4, (int) crc.getValue());
+
+        byte[] record = new byte[RECORD_HEADER_SIZE + length];
+        System.arraycopy(payload.array(), 0, record, 0, record.length);
+        return record;
+    }
+
+    /**
+     * 追加一条记录
+     * 日志属于其他基础文件（或尚不存在）时先清空
+     */
+    public void append(long expectedBaseSaveTime, byte[] record) throws IOException {
+        open();
+        if (baseSaveTime != expectedBaseSaveTime) {
+            reset(expectedBaseSaveTime);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 清空日志，之后的记录属于 baseSaveTime 对应的基础文件
+     */
+    public void reset(long baseSaveTime) throws IOException {
+        open();
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(baseSaveTime);
+        header.flip();
+        channel.write(header, 0);
+        this.baseSaveTime = baseSaveTime;
+    }
+
+    /**
+     * 日志大小（字节）
+     */
+    public long size() throws IOException {
+        return file.exists() ? file.length() : 0;
+    }
+
+    /**
+     * 重放日志
+     * 仅当日志属于 baseSaveTime 对应的基础文件时才重放
+     */
+    public void replay(long baseSaveTime, Replayer replayer) throws IOException {
+        if (!file.exists()) return;
+        open();
+        if (this.baseSaveTime != baseSaveTime) return;
+
+        long position = replayRecords(channel, replayer);
+
+        // 截断末尾损坏的记录，避免之后追加的记录无法被读到
+        if (position < channel.size()) {
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * 只读重放：不创建、截断或改写日志文件，可以在其他线程写入同一日志时读取已写入的完整记录
+     * 文件不存在、无法识别或不属于 baseSaveTime 对应的基础文件时不重放
+     */
+    public static void read(File file, long baseSaveTime, Replayer replayer) throws IOException {
+        if (!file.exists()) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE) return;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != baseSaveTime) {
+                return;
+            }
+            replayRecords(channel, replayer);
+        }
+    }
+
+    /**
+     * 从头部之后依次重放完整的记录，返回第一条不完整或校验失败的记录的位置（全部完整时为文件末尾）
+     */
+    private static long replayRecords(FileChannel channel, Replayer replayer) throws IOException {
+        long fileSize = channel.size();
+        long position = HEADER_SIZE;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+
+        while (position + RECORD_HEADER_SIZE <= fileSize) {
+            recordHeader.clear();
+            readFully(channel, recordHeader, position);
+            int length = recordHeader.getInt(0);
+            int checksum = recordHeader.getInt(4);
+            if (length < RECORD_PREFIX_SIZE || position + RECORD_HEADER_SIZE + length > fileSize) break;
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + RECORD_HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) break;
+
+            payload.flip();
+            long totalLearnCount = payload.getLong();
+            long totalDocumentCount = payload.getLong();
+            int termCount = payload.getInt();
+            if (termCount < 0 || payload.remaining() != termCount * TERM_SIZE) break;
+            for (int i = 0; i < termCount; i++) {
+                long key = payload.getLong();
+                float weight = payload.getFloat();
+                int count = payload.getInt();
+                int docCount = payload.getInt();
+                int epoch = payload.getInt();
+                replayer.onTerm(key, weight, count, docCount, epoch);
+            }
+            replayer.onTotals(totalLearnCount, totalDocumentCount);
+
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * 关闭文件（删除日志文件前调用）
+     */
+    public void close() {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        raf = null;
+        channel = null;
+    }
+
+    private void open() throws IOException {
+        if (channel != null) return;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() >= HEADER_SIZE) {
+            readFully(channel, header, 0);
+            if (header.getInt(0) == MAGIC && header.getInt(4) == VERSION) {
+                baseSaveTime = header.getLong(8);
+                return;
+            }
+        }
+        // 新文件或无法识别的文件：视为空日志
+        reset(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of journal");
+        }
+    }
+
+    /**
+     * 重放回调
+     */
+    public interface Replayer {
+        void onTerm(long key, float weight, int count, int docCount, int epoch);
+
+        void onTotals(long totalLearnCount, long totalDocumentCount);
+    }
+}
@@ -0,0 +1,36 @@
+package cn.pylin.xycjd.model.local;
+
+/**
+ * 评分引擎读取的设置
+ *
+ * 引擎本身不依赖 Android，设置由调用方提供（应用内读取 SharedPreferencesManager，基准测试使用固定值）。
+ * 每次学习时读取，设置变更后立即生效。
+ */
+public interface ModelSettings {
+
+    /**
+     * 学习程度（0-10）
+     */
+    float getLearningDegree();
+
+    /**
+     * 内存上限（MB）
+     */
+    int getMemoryBudgetMb();
+
+    /**
+     * 当前时间（毫秒），用于计算词条的日期（衰减）
+     * 离线回放时返回通知的时间戳
+     */
+    default long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 权重精度：32（浮点）、16 或 8 位定点（见 {@link WeightCodec}）
+     * 在模型加载时读取，变更后释放一次内存即可生效
+     */
+    default int getWeightBits() {
+        return WeightCodec.BITS_FLOAT;
+    }
+}
@@ -0,0 +1,76 @@
+package cn.pylin.xycjd.model.local;
+
+/**
+ * 模型快照
+ *
+ * 学习端每次更新后发布一个新快照（版本号递增），评分端直接读取当前快照，无需加锁。
+ * 快照中的词条存储是只读副本（见 {@link TermStore#snapshot()}），与学习端共享未修改的页。
+ *
+ * 学习端在写锁内也会用自己的可写存储构造临时视图来计算分数，这种视图不会被发布。
+ */
+public final class ModelSnapshot {
+
+    /** 未学习过的词的默认权重 */
+    public static final float DEFAULT_WEIGHT = 10.00f;
+
+    public final TermStore terms;
+    public final long totalLearnCount;
+    public final long totalDocumentCount;
+    public final long version;
+
+    private final double logDocumentCount;   // log(totalDocumentCount)，用于按需计算IDF
+
+    public ModelSnapshot(TermStore terms, long totalLearnCount, long totalDocumentCount, long version) {
+        this.terms = terms;
+        this.totalLearnCount = totalLearnCount;
+        this.totalDocumentCount = totalDocumentCount;
+        this.version = version;
+        this.logDocumentCount = totalDocumentCount > 0 ? Math.log(totalDocumentCount) : 0;
+    }
+
+    /**
+     * 词条取值 - 编号为-1或未记录时返回默认值
+     */
+    public boolean hasWeight(int id) {
+        return id >= 0 && !Float.isNaN(terms.weight(id));
+    }
+
+    public float getWeight(int id) {
+        return hasWeight(id) ? terms.weight(id) : DEFAULT_WEIGHT;
+    }
+
+    public int getCount(int id) {
+        return id >= 0 ? terms.count(id) : 0;
+    }
+
+    public int getEpoch(int id, int defaultEpoch) {
+        int epoch = id >= 0 ? terms.epoch(id) : 0;
+        return epoch != 0 ? epoch : defaultEpoch;
+    }
+
+    /**
+     * TF-IDF权重 - 按需计算
+     * 文档数太少或未统计过词频时返回 0.5
+     */
+    public float getTfIdf(int id) {
+        if (id < 0) return 0.5f;
+        return getTfIdf(terms.count(id), terms.docCount(id));
+    }
+
+    /**
+     * TF-IDF权重 - 由已读取的词频和文档数计算
+     */
+    public float getTfIdf(int tf, int docCount) {
+        if (totalDocumentCount < 10 || tf == 0) return 0.5f;
+        int df = Math.max(1, docCount);
+
+        // TF: 词频
+        float tfValue = (float) Math.log(tf + 1);
+
+        // IDF: 逆文档频率，log(N / df) = log(N) - log(df)
+        float idfValue = (float) (logDocumentCount - Math.log(df));
+
+        // TF-IDF，归一化到0-1范围
+        return Math.min(1.0f, tfValue * idfValue / 5.0f);
+    }
+}
@@ -0,0 +1,257 @@
+package cn.pylin.xycjd.model.local;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 模型持久化 - 模型文件 + 学习日志
+ *
+ * 各评分引擎共用的保存与加载流程：
+ * 1. 加载：读取模型文件（{@link ModelFile}），再重放模型文件之后的学习日志（{@link ModelJournal}）
+ * 2. 学习：每次学习追加一条日志记录，日志过大时把最新快照写成新的模型文件并清空日志（合并）
+ * 3. 保存：直接把快照写成新的模型文件并清空日志
+ *
+ * 文件写入都在独立的持久化线程上进行，学习和评分不需要等待。
+ * savedVersion 为已写入模型文件的快照版本，baseSaveTime 为当前模型文件的保存时间（日志以此对应模型文件）。
+ */
+public final class ModelStorage {
+
+    private static final long JOURNAL_COMPACT_THRESHOLD = 256 * 1024; // 日志超过该大小时合并进模型文件
+
+    /**
+     * 合并时使用的快照
+     */
+    public interface SnapshotSource {
+        /**
+         * 当前完整的模型快照；模型未加载（或已释放）时当前快照不完整，返回 null，不覆盖模型文件
+         */
+        ModelSnapshot snapshotForSave();
+    }
+
+    private final File modelFile;
+    private final File journalFile;
+    private final ModelJournal journal;
+    private final SnapshotSource source;
+    private final ExecutorService persistExecutor;     // 追加学习日志、合并模型文件
+
+    private final Object persistLock = new Object();
+    private long savedVersion = 0;
+    private long baseSaveTime = 0;
+
+    public ModelStorage(File modelFile, File journalFile, String threadName, SnapshotSource source) {
+        this(modelFile, journalFile, newPersistExecutor(threadName), source);
+    }
+
+    /**
+     * 使用给定的持久化线程（多个模型共用一个线程时）
+     */
+    public ModelStorage(File modelFile, File journalFile, ExecutorService persistExecutor, SnapshotSource source) {
+        this.modelFile = modelFile;
+        this.journalFile = journalFile;
+        this.journal = new ModelJournal(journalFile);
+        this.source = source;
+        this.persistExecutor = persistExecutor;
+    }
+
+    /**
+     * 单线程的持久化线程（守护线程）
+     */
+    public static ExecutorService newPersistExecutor(String threadName) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 模型文件是否存在
+     */
+    public boolean exists() {
+        return modelFile.exists();
+    }
+
+    /**
+     * 加载模型文件 + 学习日志（调用方需持有写锁）
+     * 模型文件的统计量和词条、以及日志中的每条记录依次交给 replayer
+     */
+    public void load(ModelJournal.Replayer replayer) {
+        synchronized (persistLock) {
+            long fileSaveTime = readModelFile(replayer);
+            baseSaveTime = fileSaveTime;
+
+            // 重放模型文件之后的学习日志
+            try {
+                journal.replay(fileSaveTime, replayer);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 只读加载：与 load 读取相同的内容，但不打开日志的写入端，不创建、截断或改写任何文件
+     * 返回独立于引擎的快照（版本号为 0），用于不加载引擎本身的评分（见 {@link ScoringEngine#savedScorer}）
+     */
+    public ModelSnapshot read(WeightCodec codec) {
+        TermStore terms = new TermStore(codec);
+        long[] totals = new long[2];
+        ModelJournal.Replayer replayer = new ModelJournal.Replayer() {
+            @Override
+            public void onTerm(long key, float weight, int count, int docCount, int epoch) {
+                int id = terms.add(key);
+                terms.setWeight(id, weight);
+                terms.setCount(id, count);
+                terms.setDocCount(id, docCount);
+                terms.setEpoch(id, epoch);
+            }
+
+            @Override
+            public void onTotals(long learnCount, long documentCount) {
+                totals[0] = learnCount;
+                totals[1] = documentCount;
+            }
+        };
+        synchronized (persistLock) {
+            long fileSaveTime = readModelFile(replayer);
+            try {
+                ModelJournal.read(journalFile, fileSaveTime, replayer);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return new ModelSnapshot(terms.snapshot(), totals[0], totals[1], 0);
+    }
+
+    /**
+     * 读取模型文件的统计量和词条，返回文件的 saveTime（文件不存在或无法读取时为 0）
+     */
+    private long readModelFile(ModelJournal.Replayer replayer) {
+        if (!modelFile.exists()) {
+            return 0;
+        }
+        try {
+            ModelFile file = ModelFile.open(modelFile);
+            replayer.onTotals(file.getTotalLearnCount(), file.getTotalDocumentCount());
+
+            // 按列直接写入存储，不经过任何装箱或文本解析
+            int n = file.size();
+            for (int i = 0; i < n; i++) {
+                replayer.onTerm(file.key(i), file.weight(i), file.count(i),
+                        file.docCount(i), file.epoch(i));
+            }
+            return file.getSaveTime();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * 追加学习日志（调用方需在写锁内调用，保证日志顺序与学习顺序一致）
+     */
+    public void append(byte[] record) {
+        persistExecutor.execute(() -> {
+            synchronized (persistLock) {
+                try {
+                    journal.append(baseSaveTime, record);
+                    if (journal.size() > JOURNAL_COMPACT_THRESHOLD) {
+                        compact();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * 在持久化线程上合并（淘汰词条等无法写入日志的修改之后调用）
+     */
+    public void compactAsync() {
+        persistExecutor.execute(() -> {
+            synchronized (persistLock) {
+                compact();
+            }
+        });
+    }
+
+    /**
+     * 立即合并
+     */
+    public void compactNow() {
+        synchronized (persistLock) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        ModelSnapshot model = source.snapshotForSave();
+        if (model != null) {
+            save(model);
+        }
+    }
+
+    /**
+     * 保存快照 - v4 二进制格式（权重按快照的量化方式写入）
+     * 直接序列化只读快照，不持有写锁，学习和评分都不需要等待
+     * 所有词按列写出，临时文件写完后再原子替换，然后清空学习日志
+     *
+     * 日志记录的是词条的最新取值，保存期间新产生的记录即使已包含在快照中，之后重放也不会改变结果；
+     * 文件替换后、日志清空前进程退出时，日志仍对应旧文件的 saveTime，加载时会被忽略
+     */
+    public boolean save(ModelSnapshot model) {
+        synchronized (persistLock) {
+            if (model.version <= savedVersion) return true;
+
+            try {
+                TermStore terms = model.terms;
+                long saveTime = Math.max(System.currentTimeMillis(), baseSaveTime + 1);
+                ModelFile.write(modelFile, saveTime, model.totalLearnCount, model.totalDocumentCount,
+                        terms.copyKeys(), terms.copyWeights(), terms.copyCounts(),
+                        terms.copyDocCounts(), terms.copyEpochs(), terms.codec());
+
+                baseSaveTime = saveTime;
+                savedVersion = model.version;
+                journal.reset(saveTime);
+                return true;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 标记快照内容已与文件一致
+     */
+    public void markSaved(ModelSnapshot model) {
+        synchronized (persistLock) {
+            savedVersion = Math.max(savedVersion, model.version);
+        }
+    }
+
+    /**
+     * 在持久化锁内执行，等待进行中的保存完成（释放内存、清空等不能与合并交错的操作）
+     */
+    public void runLocked(Runnable action) {
+        synchronized (persistLock) {
+            action.run();
+        }
+    }
+
+    /**
+     * 删除模型文件和学习日志，empty 及之前的快照不再写回文件
+     */
+    public void delete(ModelSnapshot empty) {
+        synchronized (persistLock) {
+            savedVersion = empty.version;
+            baseSaveTime = 0;
+            journal.close();
+            modelFile.delete();
+            journalFile.delete();
+            new File(modelFile.getPath() + ".tmp").delete();
+        }
+    }
+}
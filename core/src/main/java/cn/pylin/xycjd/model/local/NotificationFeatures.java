@@ -0,0 +1,58 @@
+package cn.pylin.xycjd.model.local;
+
+/**
+ * 一条通知的特征 - 每条通知只计算一次
+ *
+ * 创建时规范化标题和正文（{@link Tokenizer#normalize}）并计算内容哈希；分词在第一次调用
+ * {@link #getFeatures()} 时进行，之后模型、去重、缓存等各环节共用同一份结果。
+ * 特征缓冲区的前 titleCount 个特征来自标题，其余来自正文。
+ *
+ * 评分引擎学习时会修改特征缓冲区的临时数据，同一对象不能在多个线程上同时评分或学习。
+ */
+public final class NotificationFeatures {
+
+    public final String title;          // 规范化后的标题
+    public final String text;           // 规范化后的正文
+    public final boolean stringMode;    // 是否使用字符串分词模式
+    public final long titleHash;
+    public final long textHash;
+    public final long contentHash;      // 标题和正文合在一起的哈希
+
+    private FeatureBuffer features;
+    private boolean hasFeatures;
+
+    public NotificationFeatures(String title, String text, boolean stringMode) {
+        this.title = Tokenizer.normalize(title);
+        this.text = Tokenizer.normalize(text);
+        this.stringMode = stringMode;
+        this.titleHash = Tokenizer.hash(this.title);
+        this.textHash = Tokenizer.hash(this.text);
+        this.contentHash = Tokenizer.hashContent(this.title, this.text);
+    }
+
+    /**
+     * 规范化后标题和正文都为空
+     */
+    public boolean isEmpty() {
+        return title.isEmpty() && text.isEmpty();
+    }
+
+    /**
+     * 分词结果（第一次调用时分词），没有任何特征时返回 null
+     */
+    public synchronized FeatureBuffer getFeatures() {
+        if (features == null) {
+            features = new FeatureBuffer();
+            hasFeatures = Tokenizer.extractNormalizedFeatures(title, text, stringMode, features);
+        }
+        return hasFeatures ? features : null;
+    }
+
+    /**
+     * 来自标题的特征数
+     */
+    public int getTitleFeatureCount() {
+        FeatureBuffer buffer = getFeatures();
+        return buffer != null ? buffer.titleCount : 0;
+    }
+}
@@ -0,0 +1,106 @@
+package cn.pylin.xycjd.model.local;
+
+/**
+ * 评分引擎
+ *
+ * 本地模型的评分与学习算法，输入为 {@link Tokenizer#extractFeatures} 得到的特征，分数范围 0-10，
+ * 分数越低越倾向于过滤。{@link LocalModelManager} 按设置选择当前引擎，各引擎使用各自的模型文件。
+ *
+ * 实现需保证 predict 与 learn 可以在不同线程上同时调用；特征缓冲区只在调用期间使用，引擎不会保留。
+ */
+public interface ScoringEngine {
+
+    /**
+     * 固定在某一时刻模型上的只读评分器，之后的学习不影响它的结果，可以被多个线程并发使用
+     */
+    interface Scorer {
+        float predict(FeatureBuffer features);
+
+        /**
+         * 固定时的学习次数
+         */
+        long getLearnCount();
+    }
+
+    /**
+     * 引擎名称（即设置中保存的取值）
+     */
+    String getName();
+
+    /**
+     * 预测分数
+     */
+    float predict(FeatureBuffer features);
+
+    /**
+     * 当前模型的只读评分器（必要时先加载）
+     */
+    Scorer snapshotScorer();
+
+    /**
+     * 已保存模型的只读评分器：直接读取模型文件（和学习日志），不加载本引擎，不创建、截断或改写任何文件
+     * 没有模型文件时为空模型（学习次数为 0）
+     */
+    Scorer savedScorer();
+
+    /**
+     * 自动学习，返回学习后的分数
+     */
+    float learn(FeatureBuffer features, boolean isPositive);
+
+    /**
+     * 手动正向反馈，返回学习后的分数
+     */
+    float learnPositive(FeatureBuffer features);
+
+    /**
+     * 批量自动学习 batch[0..count)，结果与逐条学习相同，但只发布一次快照、只保存一次
+     */
+    void learnBatch(FeatureBuffer[] batch, int count, boolean isPositive);
+
+    /**
+     * 批量手动正向反馈 batch[0..count)
+     */
+    void learnPositiveBatch(FeatureBuffer[] batch, int count);
+
+    /**
+     * 加载模型文件（已加载时直接返回）
+     * 不调用时在第一次预测或学习时加载；加载期间的预测和学习等待加载完成
+     */
+    void preload();
+
+    /**
+     * 已学习的通知数（模型未加载时为 0）
+     */
+    long getLearnCount();
+
+    /**
+     * 立即把当前模型写入文件
+     */
+    void save();
+
+    /**
+     * 保存后释放内存，下次使用时重新加载
+     */
+    void release();
+
+    /**
+     * 清空模型并删除模型文件
+     */
+    void clear();
+
+    /**
+     * 按当前设置立即调整内存上限
+     */
+    void applyMemoryBudget();
+
+    /**
+     * 当前模型占用的内存（字节，估算值）
+     */
+    long getMemoryUsageBytes();
+
+    /**
+     * 当前词条数
+     */
+    int getTermCount();
+}
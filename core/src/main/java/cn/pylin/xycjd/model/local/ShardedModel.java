@@ -0,0 +1,431 @@
+package cn.pylin.xycjd.model.local;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 按应用分片的本地模型
+ *
+ * 全局模型学习所有应用的通知，作为各应用共用的先验；每个应用另有一个同类型的小模型（分片），只学习该应用的通知。
+ * 分数按分片的样本数在两者之间插值：score = 全局 + w × (分片 - 全局)，w = n / (n + SHARD_PRIOR_STRENGTH)，
+ * 最大 MAX_SHARD_WEIGHT。新应用的分数与全局模型一致，样本越多越偏向该应用自己的词汇，
+ * 聊天应用的大量词汇不会冲淡购物应用的信号。
+ *
+ * 分片在该应用第一次使用时加载，同时加载的分片最多 MAX_LOADED_SHARDS 个，超出时最久未使用的分片保存后释放；
+ * 系统内存紧张时（{@link #trimShards}）按同样的顺序释放更多分片。每个分片的内存上限为全局上限的 1/SHARD_BUDGET_DIVISOR。
+ * 分片文件位于 shardDirectory/包名/，文件名与全局模型相同，所有分片共用一个持久化线程。
+ * 包名为空时只使用全局模型。
+ */
+public final class ShardedModel {
+
+    /**
+     * 创建与全局模型同类型的分片引擎
+     */
+    public interface EngineFactory {
+        ScoringEngine create(File directory, ModelSettings settings, ExecutorService persistExecutor);
+    }
+
+    private static final float SHARD_PRIOR_STRENGTH = 20f;   // 分片权重达到 0.5 需要的样本数
+    private static final float MAX_SHARD_WEIGHT = 0.7f;      // 全局先验至少保留 30%
+    private static final int MAX_LOADED_SHARDS = 8;
+    private static final int SHARD_BUDGET_DIVISOR = 16;
+
+    // 没有分片的应用：学习次数为 0，只使用全局分数
+    private static final ScoringEngine.Scorer NO_SHARD = new ScoringEngine.Scorer() {
+        @Override
+        public float predict(FeatureBuffer features) {
+            return ModelSnapshot.DEFAULT_WEIGHT;
+        }
+
+        @Override
+        public long getLearnCount() {
+            return 0;
+        }
+    };
+
+    private final ScoringEngine global;
+    private final File shardDirectory;
+    private final EngineFactory factory;
+    private final ModelSettings shardSettings;
+    private final Executor releaseExecutor;
+    private final ExecutorService shardPersistExecutor;
+
+    // 已创建的分片引擎（释放后对象保留，再次使用时重新加载，避免同一目录出现两个引擎）
+    private final Map<String, ScoringEngine> shards = new HashMap<>();
+    // 已加载的分片，按访问顺序排列
+    private final LinkedHashMap<String, ScoringEngine> loadedShards = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param releaseExecutor 释放被淘汰分片的线程（释放前会保存，不在调用线程上进行）
+     */
+    public ShardedModel(ScoringEngine global, File shardDirectory, ModelSettings settings,
+                        EngineFactory factory, Executor releaseExecutor) {
+        this.global = global;
+        this.shardDirectory = shardDirectory;
+        this.factory = factory;
+        this.releaseExecutor = releaseExecutor;
+        this.shardPersistExecutor = ModelStorage.newPersistExecutor("local-model-persist-" + global.getName() + "-shards");
+        this.shardSettings = new ModelSettings() {
+            @Override
+            public float getLearningDegree() {
+                return settings.getLearningDegree();
+            }
+
+            @Override
+            public int getMemoryBudgetMb() {
+                return Math.max(1, settings.getMemoryBudgetMb() / SHARD_BUDGET_DIVISOR);
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return settings.currentTimeMillis();
+            }
+
+            @Override
+            public int getWeightBits() {
+                return settings.getWeightBits();
+            }
+        };
+    }
+
+    public String getName() {
+        return global.getName();
+    }
+
+    public ScoringEngine getGlobal() {
+        return global;
+    }
+
+    // ==================== 预测与学习 ====================
+
+    public float predict(String packageName, FeatureBuffer features) {
+        float globalScore = global.predict(features);
+        ScoringEngine shard = shard(packageName);
+        if (shard == null) {
+            return globalScore;
+        }
+        float shardScore = shard.predict(features);
+        return blend(globalScore, shardScore, shard.getLearnCount());
+    }
+
+    /**
+     * 全局模型和该应用的分片都学习，返回学习后的分数
+     */
+    public float learn(String packageName, FeatureBuffer features, boolean isPositive) {
+        float globalScore = global.learn(features, isPositive);
+        ScoringEngine shard = shard(packageName);
+        if (shard == null) {
+            return globalScore;
+        }
+        float shardScore = shard.learn(features, isPositive);
+        return blend(globalScore, shardScore, shard.getLearnCount());
+    }
+
+    public float learnPositive(String packageName, FeatureBuffer features) {
+        float globalScore = global.learnPositive(features);
+        ScoringEngine shard = shard(packageName);
+        if (shard == null) {
+            return globalScore;
+        }
+        float shardScore = shard.learnPositive(features);
+        return blend(globalScore, shardScore, shard.getLearnCount());
+    }
+
+    /**
+     * 批量预测，scores[i] 对应 features[i]
+     */
+    public void predictBatch(String[] packageNames, FeatureBuffer[] features, int count, float[] scores) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = predict(packageNames[i], features[i]);
+        }
+    }
+
+    /**
+     * 批量学习：全局模型学习整批，各应用的分片学习属于自己的部分，每个模型只发布和保存一次
+     */
+    public void learnBatch(String[] packageNames, FeatureBuffer[] features, int count, boolean isPositive) {
+        global.learnBatch(features, count, isPositive);
+        for (Map.Entry<String, List<FeatureBuffer>> group : groupByPackage(packageNames, features, count).entrySet()) {
+            ScoringEngine shard = shard(group.getKey());
+            List<FeatureBuffer> items = group.getValue();
+            shard.learnBatch(items.toArray(new FeatureBuffer[0]), items.size(), isPositive);
+        }
+    }
+
+    public void learnPositiveBatch(String[] packageNames, FeatureBuffer[] features, int count) {
+        global.learnPositiveBatch(features, count);
+        for (Map.Entry<String, List<FeatureBuffer>> group : groupByPackage(packageNames, features, count).entrySet()) {
+            ScoringEngine shard = shard(group.getKey());
+            List<FeatureBuffer> items = group.getValue();
+            shard.learnPositiveBatch(items.toArray(new FeatureBuffer[0]), items.size());
+        }
+    }
+
+    /**
+     * 按包名分组（保持原顺序），包名为空的只由全局模型学习
+     */
+    private static Map<String, List<FeatureBuffer>> groupByPackage(String[] packageNames, FeatureBuffer[] features,
+                                                                   int count) {
+        Map<String, List<FeatureBuffer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String packageName = packageNames[i];
+            if (packageName == null || packageName.isEmpty()) continue;
+            List<FeatureBuffer> group = groups.get(packageName);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(packageName, group);
+            }
+            group.add(features[i]);
+        }
+        return groups;
+    }
+
+    /**
+     * 固定当前模型，用于批量重新评分：全局模型立即固定，各应用的分片在第一次用到时固定一次，
+     * 同一次评分中同一应用的所有通知使用同一个版本。可以被多个线程并发使用
+     * 固定分片不会加载分片、不改变已加载分片的访问顺序，也不创建分片目录（见 {@link #pinShard}）
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(global.snapshotScorer());
+    }
+
+    public final class Snapshot {
+        private final ScoringEngine.Scorer globalScorer;
+        private final Map<String, ScoringEngine.Scorer> shardScorers = new ConcurrentHashMap<>();
+
+        private Snapshot(ScoringEngine.Scorer globalScorer) {
+            this.globalScorer = globalScorer;
+        }
+
+        public float predict(String packageName, FeatureBuffer features) {
+            float globalScore = globalScorer.predict(features);
+            if (packageName == null || packageName.isEmpty()) {
+                return globalScore;
+            }
+            ScoringEngine.Scorer shardScorer = shardScorers.computeIfAbsent(packageName, ShardedModel.this::pinShard);
+            return blend(globalScore, shardScorer.predict(features), shardScorer.getLearnCount());
+        }
+    }
+
+    private static float blend(float globalScore, float shardScore, long shardLearnCount) {
+        if (shardLearnCount <= 0) {
+            return globalScore;
+        }
+        float weight = Math.min(MAX_SHARD_WEIGHT, shardLearnCount / (shardLearnCount + SHARD_PRIOR_STRENGTH));
+        return globalScore + weight * (shardScore - globalScore);
+    }
+
+    // ==================== 分片管理 ====================
+
+    /**
+     * 该应用的分片，必要时创建；超出加载上限时淘汰最久未使用的分片
+     */
+    private ScoringEngine shard(String packageName) {
+        if (packageName == null || packageName.isEmpty()) {
+            return null;
+        }
+
+        ScoringEngine shard;
+        List<ScoringEngine> evicted;
+        synchronized (shards) {
+            shard = shards.get(packageName);
+            if (shard == null) {
+                File directory = new File(shardDirectory, directoryName(packageName));
+                directory.mkdirs();
+                shard = factory.create(directory, shardSettings, shardPersistExecutor);
+                shards.put(packageName, shard);
+            }
+            loadedShards.put(packageName, shard);
+            evicted = evictLocked(MAX_LOADED_SHARDS);
+        }
+
+        releaseAll(evicted);
+        return shard;
+    }
+
+    /**
+     * 固定一个应用的分片，供批量评分使用，不影响实时评分的分片：
+     * 已加载的分片固定当前模型；未加载的只读取已保存的文件；没有分片目录的应用只使用全局模型
+     */
+    private ScoringEngine.Scorer pinShard(String packageName) {
+        ScoringEngine shard;
+        synchronized (shards) {
+            shard = shards.get(packageName);
+            // containsKey 不改变访问顺序；在锁内固定，分片不会在此期间被淘汰
+            if (shard != null && loadedShards.containsKey(packageName)) {
+                return shard.snapshotScorer();
+            }
+        }
+        if (shard == null) {
+            File directory = new File(shardDirectory, directoryName(packageName));
+            if (!directory.isDirectory()) {
+                return NO_SHARD;
+            }
+            // 只用来读取文件，不加入 shards，不会加载、保存或释放
+            shard = factory.create(directory, shardSettings, shardPersistExecutor);
+        }
+        return shard.savedScorer();
+    }
+
+    /**
+     * 内存紧张时释放最久未使用的分片，只保留最近使用的 maxLoaded 个，返回释放的个数
+     * 被释放的分片保存后释放（不在调用线程上进行），之后用到时重新加载
+     */
+    public int trimShards(int maxLoaded) {
+        List<ScoringEngine> evicted;
+        synchronized (shards) {
+            evicted = evictLocked(Math.max(0, maxLoaded));
+        }
+        releaseAll(evicted);
+        return evicted.size();
+    }
+
+    /**
+     * 按访问顺序移出最久未使用的分片，直到已加载的分片不超过 maxLoaded 个
+     */
+    private List<ScoringEngine> evictLocked(int maxLoaded) {
+        List<ScoringEngine> evicted = new ArrayList<>();
+        Iterator<ScoringEngine> it = loadedShards.values().iterator();
+        while (loadedShards.size() > maxLoaded && it.hasNext()) {
+            evicted.add(it.next());
+            it.remove();
+        }
+        return evicted;
+    }
+
+    private void releaseAll(List<ScoringEngine> evicted) {
+        for (ScoringEngine engine : evicted) {
+            releaseExecutor.execute(engine::release);
+        }
+    }
+
+    /**
+     * 包名只包含字母、数字、下划线和点，其他字符替换为下划线
+     */
+    private static String directoryName(String packageName) {
+        StringBuilder name = new StringBuilder(packageName.length());
+        for (int i = 0; i < packageName.length(); i++) {
+            char c = packageName.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '.';
+            name.append(safe ? c : '_');
+        }
+        return name.toString();
+    }
+
+    private List<ScoringEngine> loadedShards() {
+        synchronized (shards) {
+            return new ArrayList<>(loadedShards.values());
+        }
+    }
+
+    /**
+     * 已加载的分片数
+     */
+    public int getLoadedShardCount() {
+        synchronized (shards) {
+            return loadedShards.size();
+        }
+    }
+
+    // ==================== 生命周期 ====================
+
+    /**
+     * 加载全局模型（分片在各应用第一次使用时加载）
+     */
+    public void preload() {
+        global.preload();
+    }
+
+    public void save() {
+        global.save();
+        for (ScoringEngine shard : loadedShards()) {
+            shard.save();
+        }
+    }
+
+    /**
+     * 全局模型和所有分片保存后释放内存
+     */
+    public void release() {
+        List<ScoringEngine> all;
+        synchronized (shards) {
+            all = new ArrayList<>(shards.values());
+            loadedShards.clear();
+        }
+        global.release();
+        for (ScoringEngine shard : all) {
+            shard.release();
+        }
+    }
+
+    /**
+     * 清空全局模型和所有分片，删除分片目录
+     */
+    public void clear() {
+        List<ScoringEngine> all;
+        synchronized (shards) {
+            all = new ArrayList<>(shards.values());
+            shards.clear();
+            loadedShards.clear();
+        }
+        global.clear();
+        for (ScoringEngine shard : all) {
+            shard.clear();
+        }
+        // 等待已排队的日志追加完成后再删除目录，避免旧记录写进之后新建的分片
+        try {
+            shardPersistExecutor.submit(() -> { }).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        deleteRecursively(shardDirectory);
+    }
+
+    public void applyMemoryBudget() {
+        global.applyMemoryBudget();
+        for (ScoringEngine shard : loadedShards()) {
+            shard.applyMemoryBudget();
+        }
+    }
+
+    /**
+     * 全局模型和已加载分片占用的内存（字节，估算值）
+     */
+    public long getMemoryUsageBytes() {
+        long bytes = global.getMemoryUsageBytes();
+        for (ScoringEngine shard : loadedShards()) {
+            bytes += shard.getMemoryUsageBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 全局模型和已加载分片的词条数
+     */
+    public int getTermCount() {
+        int count = global.getTermCount();
+        for (ScoringEngine shard : loadedShards()) {
+            count += shard.getTermCount();
+        }
+        return count;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,460 @@
+package cn.pylin.xycjd.model.local;
+
+import java.util.Arrays;
+
+/**
+ * 词条存储 - 原始类型 + 分页写时复制版本
+ *
+ * 每个特征（64位哈希，见 {@link Tokenizer#hash}）只在词典中查找一次得到int编号，
+ * 之后所有统计量都按编号存放在并行的原始类型数组中：权重、词频、文档数、最后学习的 epoch（见 {@link DecayTable}）。
+ * 词典使用开放寻址（线性探测），不产生装箱对象，也不保存token字符串。
+ * 键值 0 表示空槽，不能作为特征哈希。
+ *
+ * 词典和各列都按固定大小分页保存。{@link #snapshot()} 得到一个只读副本，
+ * 副本与原存储共享所有页；之后原存储第一次修改某一页时才复制该页，
+ * 因此发布快照的开销只与页数相关，每次学习只复制被修改的页。
+ *
+ * 权重列可以按 {@link WeightCodec} 量化为 8 位或 16 位定点（写入时随机舍入），读取时还原为浮点。
+ *
+ * 未记录的列取值：权重为 NaN，词频/文档数/epoch 为 0。
+ * 本类不是线程安全的，由调用方保证同一时刻只有一个写入者；只读副本可以被任意线程并发读取。
+ */
+public final class TermStore {
+
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final boolean readOnly;
+    private WeightCodec codec;                 // 为 null 时权重使用浮点
+    private long randomState = 0x9E3779B97F4A7C15L; // 随机舍入（只有写入者使用）
+
+    // 词典：槽位 -> 特征哈希 / 编号
+    private long[][] slotKeyPages;
+    private int[][] slotIdPages;
+    private boolean[] ownedSlotPages;
+    private int mask;
+
+    // 编号 -> 数据列
+    private long[][] keyPages;
+    private float[][] weightPages;             // 浮点权重
+    private short[][] shortWeightPages;        // 16 位量化权重
+    private byte[][] byteWeightPages;          // 8 位量化权重
+    private int[][] countPages;
+    private int[][] docCountPages;
+    private int[][] epochPages;
+    private boolean[] ownedPages;
+    private int pageCount;
+    private int size;
+
+    public TermStore() {
+        this(INITIAL_CAPACITY, null);
+    }
+
+    public TermStore(WeightCodec codec) {
+        this(INITIAL_CAPACITY, codec);
+    }
+
+    public TermStore(int expectedSize, WeightCodec codec) {
+        this.readOnly = false;
+        this.codec = codec;
+        allocate(Math.max(16, expectedSize));
+    }
+
+    /**
+     * 只读副本：共享全部页
+     */
+    private TermStore(TermStore source) {
+        this.readOnly = true;
+        this.slotKeyPages = source.slotKeyPages.clone();
+        this.slotIdPages = source.slotIdPages.clone();
+        this.mask = source.mask;
+        this.codec = source.codec;
+        this.keyPages = source.keyPages.clone();
+        this.weightPages = source.weightPages != null ? source.weightPages.clone() : null;
+        this.shortWeightPages = source.shortWeightPages != null ? source.shortWeightPages.clone() : null;
+        this.byteWeightPages = source.byteWeightPages != null ? source.byteWeightPages.clone() : null;
+        this.countPages = source.countPages.clone();
+        this.docCountPages = source.docCountPages.clone();
+        this.epochPages = source.epochPages.clone();
+        this.pageCount = source.pageCount;
+        this.size = source.size;
+    }
+
+    private void allocate(int capacity) {
+        int tableSize = Math.max(PAGE_SIZE, Integer.highestOneBit(Math.max(32, capacity * 2 - 1)) << 1);
+        allocateTable(tableSize);
+
+        int pages = (capacity + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+        keyPages = new long[pages][];
+        weightPages = null;
+        shortWeightPages = null;
+        byteWeightPages = null;
+        if (codec == null) {
+            weightPages = new float[pages][];
+        } else if (codec.bits == WeightCodec.BITS_16) {
+            shortWeightPages = new short[pages][];
+        } else {
+            byteWeightPages = new byte[pages][];
+        }
+        countPages = new int[pages][];
+        docCountPages = new int[pages][];
+        epochPages = new int[pages][];
+        ownedPages = new boolean[pages];
+        pageCount = 0;
+        size = 0;
+    }
+
+    private void allocateTable(int tableSize) {
+        int pages = tableSize >>> PAGE_SHIFT;
+        slotKeyPages = new long[pages][PAGE_SIZE];
+        slotIdPages = new int[pages][PAGE_SIZE];
+        ownedSlotPages = new boolean[pages];
+        Arrays.fill(ownedSlotPages, true);
+        mask = tableSize - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 权重量化方式，null 表示浮点
+     */
+    public WeightCodec codec() {
+        return codec;
+    }
+
+    /**
+     * 生成只读快照
+     * 快照与当前存储共享所有页，当前存储之后的修改不会影响快照
+     */
+    public TermStore snapshot() {
+        checkWritable();
+        TermStore copy = new TermStore(this);
+        Arrays.fill(ownedPages, false);
+        Arrays.fill(ownedSlotPages, false);
+        return copy;
+    }
+
+    /**
+     * 查找特征的编号，不存在返回-1
+     */
+    public int find(long hash) {
+        int slot = spread(hash) & mask;
+        long key;
+        while ((key = slotKeyPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK]) != 0) {
+            if (key == hash) {
+                return slotIdPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 获取特征的编号，不存在时新建（各列为未记录状态）
+     */
+    public int add(long hash) {
+        checkWritable();
+        int slot = spread(hash) & mask;
+        long key;
+        while ((key = slotKeyPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK]) != 0) {
+            if (key == hash) {
+                return slotIdPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // 负载因子保持在 0.5 以下
+        if ((size + 1) * 2 > mask + 1) {
+            rehash((mask + 1) * 2);
+            return add(hash);
+        }
+
+        int id = size++;
+        int slotPage = writableSlotPage(slot);
+        slotKeyPages[slotPage][slot & PAGE_MASK] = hash;
+        slotIdPages[slotPage][slot & PAGE_MASK] = id;
+
+        int page = writableRowPage(id);
+        int offset = id & PAGE_MASK;
+        keyPages[page][offset] = hash;
+        setWeightAt(page, offset, Float.NaN);
+        countPages[page][offset] = 0;
+        docCountPages[page][offset] = 0;
+        epochPages[page][offset] = 0;
+        return id;
+    }
+
+    public long key(int id) {
+        return keyPages[id >>> PAGE_SHIFT][id & PAGE_MASK];
+    }
+
+    public float weight(int id) {
+        int page = id >>> PAGE_SHIFT;
+        int offset = id & PAGE_MASK;
+        if (codec == null) {
+            return weightPages[page][offset];
+        } else if (shortWeightPages != null) {
+            return codec.decode(shortWeightPages[page][offset] & 0xFFFF);
+        }
+        return codec.decode(byteWeightPages[page][offset] & 0xFF);
+    }
+
+    public void setWeight(int id, float weight) {
+        setWeightAt(writableRowPage(id), id & PAGE_MASK, weight);
+    }
+
+    private void setWeightAt(int page, int offset, float weight) {
+        if (codec == null) {
+            weightPages[page][offset] = weight;
+        } else if (shortWeightPages != null) {
+            shortWeightPages[page][offset] = (short) codec.encode(weight, nextRandom());
+        } else {
+            byteWeightPages[page][offset] = (byte) codec.encode(weight, nextRandom());
+        }
+    }
+
+    /**
+     * 随机舍入用的 [0, 1) 随机数（xorshift64*，固定种子，相同的学习顺序得到相同的结果）
+     */
+    private float nextRandom() {
+        long x = randomState;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        randomState = x;
+        return ((x * 0x2545F4914F6CDD1DL) >>> 40) * 0x1.0p-24f;
+    }
+
+    public int count(int id) {
+        return countPages[id >>> PAGE_SHIFT][id & PAGE_MASK];
+    }
+
+    public void setCount(int id, int count) {
+        countPages[writableRowPage(id)][id & PAGE_MASK] = count;
+    }
+
+    public int docCount(int id) {
+        return docCountPages[id >>> PAGE_SHIFT][id & PAGE_MASK];
+    }
+
+    public void setDocCount(int id, int docCount) {
+        docCountPages[writableRowPage(id)][id & PAGE_MASK] = docCount;
+    }
+
+    public int epoch(int id) {
+        return epochPages[id >>> PAGE_SHIFT][id & PAGE_MASK];
+    }
+
+    public void setEpoch(int id, int epoch) {
+        epochPages[writableRowPage(id)][id & PAGE_MASK] = epoch;
+    }
+
+    /**
+     * 保留满足条件的词条，其余删除并重建词典
+     * 编号会重新分配；旧页可能被快照共享，因此写入新页而不是原地压缩
+     * 量化的权重在格点上，重新写入后保持不变
+     */
+    public void retain(Filter filter) {
+        checkWritable();
+        int oldSize = size;
+        boolean[] keep = new boolean[oldSize];
+        int kept = 0;
+        for (int id = 0; id < oldSize; id++) {
+            keep[id] = filter.keep(id);
+            if (keep[id]) kept++;
+        }
+        if (kept == oldSize) return;
+
+        long[][] oldKeys = keyPages;
+        TermStore oldColumns = new TermStore(this);
+        int[][] oldCounts = countPages;
+        int[][] oldDocCounts = docCountPages;
+        int[][] oldEpochs = epochPages;
+
+        allocate(Math.max(INITIAL_CAPACITY, kept));
+        for (int id = 0; id < oldSize; id++) {
+            if (!keep[id]) continue;
+            int page = id >>> PAGE_SHIFT;
+            int offset = id & PAGE_MASK;
+            int newId = add(oldKeys[page][offset]);
+            setWeight(newId, oldColumns.weight(id));
+            setCount(newId, oldCounts[page][offset]);
+            setDocCount(newId, oldDocCounts[page][offset]);
+            setEpoch(newId, oldEpochs[page][offset]);
+        }
+    }
+
+    public void clear() {
+        checkWritable();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * 清空并更换权重量化方式
+     */
+    public void clear(WeightCodec codec) {
+        checkWritable();
+        this.codec = codec;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * 导出各列（长度为 size 的连续数组），用于持久化
+     */
+    public long[] copyKeys() {
+        long[] result = new long[size];
+        for (int page = 0; page * PAGE_SIZE < size; page++) {
+            System.arraycopy(keyPages[page], 0, result, page * PAGE_SIZE, pageLength(page));
+        }
+        return result;
+    }
+
+    /**
+     * 权重列（量化时还原为浮点）
+     */
+    public float[] copyWeights() {
+        float[] result = new float[size];
+        if (codec != null) {
+            for (int id = 0; id < size; id++) {
+                result[id] = weight(id);
+            }
+            return result;
+        }
+        for (int page = 0; page * PAGE_SIZE < size; page++) {
+            System.arraycopy(weightPages[page], 0, result, page * PAGE_SIZE, pageLength(page));
+        }
+        return result;
+    }
+
+    public int[] copyCounts() {
+        int[] result = new int[size];
+        for (int page = 0; page * PAGE_SIZE < size; page++) {
+            System.arraycopy(countPages[page], 0, result, page * PAGE_SIZE, pageLength(page));
+        }
+        return result;
+    }
+
+    public int[] copyDocCounts() {
+        int[] result = new int[size];
+        for (int page = 0; page * PAGE_SIZE < size; page++) {
+            System.arraycopy(docCountPages[page], 0, result, page * PAGE_SIZE, pageLength(page));
+        }
+        return result;
+    }
+
+    public int[] copyEpochs() {
+        int[] result = new int[size];
+        for (int page = 0; page * PAGE_SIZE < size; page++) {
+            System.arraycopy(epochPages[page], 0, result, page * PAGE_SIZE, pageLength(page));
+        }
+        return result;
+    }
+
+    private int pageLength(int page) {
+        return Math.min(PAGE_SIZE, size - page * PAGE_SIZE);
+    }
+
+    /**
+     * 估算占用的堆内存（字节），与快照共享的页也计算在内
+     */
+    public long estimateMemoryBytes() {
+        long table = (long) (mask + 1) * (8 + 4);
+        long columns = (long) pageCount * PAGE_SIZE * (8 + WeightCodec.bytesPerWeight(codec) + 4 + 4 + 4);
+        return table + columns;
+    }
+
+    // ==================== 写时复制 ====================
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Term store snapshot is read-only");
+        }
+    }
+
+    /**
+     * 返回编号所在的数据页，必要时先复制共享页或分配新页
+     */
+    private int writableRowPage(int id) {
+        checkWritable();
+        int page = id >>> PAGE_SHIFT;
+        if (page >= pageCount) {
+            addRowPage();
+        } else if (!ownedPages[page]) {
+            keyPages[page] = keyPages[page].clone();
+            if (weightPages != null) weightPages[page] = weightPages[page].clone();
+            if (shortWeightPages != null) shortWeightPages[page] = shortWeightPages[page].clone();
+            if (byteWeightPages != null) byteWeightPages[page] = byteWeightPages[page].clone();
+            countPages[page] = countPages[page].clone();
+            docCountPages[page] = docCountPages[page].clone();
+            epochPages[page] = epochPages[page].clone();
+            ownedPages[page] = true;
+        }
+        return page;
+    }
+
+    private void addRowPage() {
+        if (pageCount == keyPages.length) {
+            int pages = Math.max(4, pageCount * 2);
+            keyPages = Arrays.copyOf(keyPages, pages);
+            if (weightPages != null) weightPages = Arrays.copyOf(weightPages, pages);
+            if (shortWeightPages != null) shortWeightPages = Arrays.copyOf(shortWeightPages, pages);
+            if (byteWeightPages != null) byteWeightPages = Arrays.copyOf(byteWeightPages, pages);
+            countPages = Arrays.copyOf(countPages, pages);
+            docCountPages = Arrays.copyOf(docCountPages, pages);
+            epochPages = Arrays.copyOf(epochPages, pages);
+            ownedPages = Arrays.copyOf(ownedPages, pages);
+        }
+        keyPages[pageCount] = new long[PAGE_SIZE];
+        if (weightPages != null) weightPages[pageCount] = new float[PAGE_SIZE];
+        if (shortWeightPages != null) shortWeightPages[pageCount] = new short[PAGE_SIZE];
+        if (byteWeightPages != null) byteWeightPages[pageCount] = new byte[PAGE_SIZE];
+        countPages[pageCount] = new int[PAGE_SIZE];
+        docCountPages[pageCount] = new int[PAGE_SIZE];
+        epochPages[pageCount] = new int[PAGE_SIZE];
+        ownedPages[pageCount] = true;
+        pageCount++;
+    }
+
+    private int writableSlotPage(int slot) {
+        int page = slot >>> PAGE_SHIFT;
+        if (!ownedSlotPages[page]) {
+            slotKeyPages[page] = slotKeyPages[page].clone();
+            slotIdPages[page] = slotIdPages[page].clone();
+            ownedSlotPages[page] = true;
+        }
+        return page;
+    }
+
+    /**
+     * 扩容词典：整张表重新分配，不再与快照共享
+     */
+    private void rehash(int tableSize) {
+        allocateTable(tableSize);
+        for (int id = 0; id < size; id++) {
+            long hash = key(id);
+            int slot = spread(hash) & mask;
+            while (slotKeyPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slotKeyPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = hash;
+            slotIdPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = id;
+        }
+    }
+
+    private static int spread(long hash) {
+        int h = (int) (hash ^ (hash >>> 32));
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 词条保留条件
+     */
+    public interface Filter {
+        boolean keep(int id);
+    }
+}
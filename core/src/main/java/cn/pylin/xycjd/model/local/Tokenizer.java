@@ -0,0 +1,456 @@
+package cn.pylin.xycjd.model.local;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分词器 - v4
+ *
+ * 两种模式产生完全相同的特征集合（同一个token得到同一个64位哈希）：
+ * 1. 特征哈希模式 {@link #appendFeatures}：逐字符流式扫描，直接在原文上滚动计算n-gram哈希，
+ *    token属性（长度、中文、ASCII、数字等）在扫描时一并算出，不创建任何字符串
+ * 2. 字符串模式 {@link #appendTokens}：沿用 v3.1 的分词（先生成token字符串再哈希），
+ *    用于和特征哈希模式对比准确率与吞吐
+ *
+ * 哈希使用 64 位 FNV-1a，按 char 逐个累积，因此前缀可以逐字扩展得到更长 n-gram 的哈希。
+ * 两种模式的区别只在小写转换：特征哈希模式按字符转换，字符串模式按整串转换（少数特殊字符结果不同）。
+ *
+ * 分词前文本先经过 {@link #normalize}：NFKC 规范化（全角字母数字标点转为半角）并合并空白，
+ * 全角与半角写法得到相同的特征。
+ * 注意：引入规范化之前学习的全角词（如 ｃｏｄｅ）的哈希与规范化后的不同，已有模型中这些词的权重不再被使用，
+ * 模型文件没有升级版本，也不做迁移；之后出现时按半角词重新学习。
+ */
+public final class Tokenizer {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // 语义特征的预计算哈希
+    private static final String EMOJI_PREFIX = "EMOJI_";
+    private static final long EMOJI_PREFIX_STATE = extend(FNV_OFFSET, EMOJI_PREFIX);
+    private static final int EMOJI_FLAGS = (EMOJI_PREFIX.length() + 1) | FeatureBuffer.FLAG_EMOJI;
+
+    private static final String PUNCT_EXCLAIM = "PUNCT_EXCLAIM";
+    private static final String PUNCT_DOT = "PUNCT_DOT";
+    private static final String PUNCT_HASH = "PUNCT_HASH";
+    private static final String PUNCT_MONEY = "PUNCT_MONEY";
+    private static final long PUNCT_EXCLAIM_HASH = hash(PUNCT_EXCLAIM);
+    private static final long PUNCT_DOT_HASH = hash(PUNCT_DOT);
+    private static final long PUNCT_HASH_HASH = hash(PUNCT_HASH);
+    private static final long PUNCT_MONEY_HASH = hash(PUNCT_MONEY);
+
+    private static final int MAX_CHINESE_GRAM = 5;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * 特征提取 - v4
+     * 标题和正文规范化后依次写入特征缓冲区，并计算位置权重
+     * 文本为空或没有任何特征时返回 false
+     */
+    public static boolean extractFeatures(String title, String text, boolean stringMode, FeatureBuffer features) {
+        return extractNormalizedFeatures(normalize(title), normalize(text), stringMode, features);
+    }
+
+    /**
+     * 特征提取 - 标题和正文已经过 {@link #normalize}
+     * 前 features.titleCount 个特征来自标题
+     */
+    public static boolean extractNormalizedFeatures(String title, String text, boolean stringMode,
+                                                    FeatureBuffer features) {
+        features.clear();
+        boolean hasTitle = !title.isEmpty();
+        boolean hasText = !text.isEmpty();
+        if (!hasTitle && !hasText) {
+            return false;
+        }
+
+        // 标题与正文之间本来就以空格分隔，分别分词与合并后分词结果相同
+        if (hasTitle) {
+            if (stringMode) appendTokens(title, features);
+            else appendFeatures(title, features);
+        }
+        int titleCount = features.size;
+        features.titleCount = titleCount;
+        if (hasText) {
+            if (stringMode) appendTokens(text, features);
+            else appendFeatures(text, features);
+        }
+        if (features.size == 0) {
+            return false;
+        }
+
+        calculatePositionWeights(features, titleCount);
+        return true;
+    }
+
+    /**
+     * 计算位置权重 - 标题权重更高
+     * 出现在标题中的特征（无论位于标题还是正文）权重为 1.5
+     */
+    private static void calculatePositionWeights(FeatureBuffer features, int titleCount) {
+        long[] titleHashes = features.scratch;
+        System.arraycopy(features.hashes, 0, titleHashes, 0, titleCount);
+        Arrays.sort(titleHashes, 0, titleCount);
+
+        for (int i = 0; i < features.size; i++) {
+            boolean inTitle = i < titleCount
+                    || Arrays.binarySearch(titleHashes, 0, titleCount, features.hashes[i]) >= 0;
+            features.positionWeights[i] = inTitle ? 1.5f : 1.0f;
+        }
+    }
+
+    // ==================== 特征哈希模式 ====================
+
+    /**
+     * 流式分词，将特征追加到缓冲区
+     */
+    public static void appendFeatures(String text, FeatureBuffer out) {
+        if (text == null || text.isEmpty()) return;
+
+        int length = text.length();
+        int wordStart = -1;
+
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+
+            if (isChinese(c)) {
+                if (wordStart >= 0) {
+                    flushWord(text, wordStart, i, out);
+                    wordStart = -1;
+                }
+
+                // 中文分词：单字 ~ 五字，在前一个 n-gram 的哈希上继续累积
+                long state = FNV_OFFSET;
+                for (int n = 1; n <= MAX_CHINESE_GRAM && i + n - 1 < length; n++) {
+                    char next = text.charAt(i + n - 1);
+                    if (!isChinese(next)) break;
+                    state = step(state, next);
+                    out.add(finish(state), n | FeatureBuffer.FLAG_CHINESE);
+                }
+
+            } else if (Character.isLetterOrDigit(c)) {
+                // 英文/数字累积（只记录起点）
+                if (wordStart < 0) wordStart = i;
+            } else {
+                if (wordStart >= 0) {
+                    flushWord(text, wordStart, i, out);
+                    wordStart = -1;
+                }
+                appendSemanticFeature(c, out);
+            }
+        }
+
+        if (wordStart >= 0) {
+            flushWord(text, wordStart, length, out);
+        }
+    }
+
+    /**
+     * 英文词：整词 + 前缀(4) + 后缀(4) + 词根(4)
+     */
+    private static void flushWord(String text, int start, int end, FeatureBuffer out) {
+        int length = end - start;
+        appendRange(text, start, end, out);
+        if (length <= 3) return;
+
+        appendRange(text, start, start + 4, out);
+        appendRange(text, end - 4, end, out);
+        if (length >= 5) {
+            int midStart = length / 2 - 2;
+            if (midStart > 0 && midStart + 4 <= length) {
+                appendRange(text, start + midStart, start + midStart + 4, out);
+            }
+        }
+    }
+
+    /**
+     * 对原文的一段（小写后）计算哈希和属性
+     */
+    private static void appendRange(String text, int start, int end, FeatureBuffer out) {
+        long state = FNV_OFFSET;
+        boolean ascii = true;
+        boolean allDigits = true;
+        int digitRun = 0;
+        int maxDigitRun = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            state = step(state, c);
+            if (c > 127) ascii = false;
+            if (c >= '0' && c <= '9') {
+                digitRun++;
+                if (digitRun > maxDigitRun) maxDigitRun = digitRun;
+            } else {
+                allDigits = false;
+                digitRun = 0;
+            }
+        }
+
+        int length = end - start;
+        boolean keepShort = length == 2 && isKeptShortWord(
+                Character.toLowerCase(text.charAt(start)), Character.toLowerCase(text.charAt(start + 1)));
+        int flags = buildFlags(length, isChinese(Character.toLowerCase(text.charAt(start))),
+                ascii, allDigits, maxDigitRun >= 4, keepShort);
+        out.add(finish(state), flags);
+    }
+
+    /**
+     * 语义特征：emoji、特殊标点
+     */
+    private static void appendSemanticFeature(char c, FeatureBuffer out) {
+        if (isEmoji(c)) {
+            out.add(finish(step(EMOJI_PREFIX_STATE, c)), EMOJI_FLAGS);
+        } else if (c == '!' || c == '?' || c == '！' || c == '？') {
+            out.add(PUNCT_EXCLAIM_HASH, punctFlags(PUNCT_EXCLAIM));
+        } else if (c == '.' || c == '。') {
+            out.add(PUNCT_DOT_HASH, punctFlags(PUNCT_DOT));
+        } else if (c == '#' || c == '＃') {
+            out.add(PUNCT_HASH_HASH, punctFlags(PUNCT_HASH));
+        } else if (isMoney(c)) {
+            out.add(PUNCT_MONEY_HASH, punctFlags(PUNCT_MONEY));
+        }
+    }
+
+    private static int punctFlags(String token) {
+        return token.length() | FeatureBuffer.FLAG_PUNCT | FeatureBuffer.FLAG_ASCII;
+    }
+
+    // ==================== 字符串模式 ====================
+
+    /**
+     * 先生成token字符串再转换为特征，结果与 v3.1 分词完全一致
+     */
+    public static void appendTokens(String text, FeatureBuffer out) {
+        for (String token : tokenize(text)) {
+            out.add(hash(token), flagsOf(token));
+        }
+    }
+
+    /**
+     * 分词算法 - v3.1
+     * 增强N-gram、语义特征、特殊符号处理
+     */
+    public static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+
+        List<String> tokens = new ArrayList<>();
+        StringBuilder englishBuffer = new StringBuilder();
+        String lowerText = text.toLowerCase();
+        int length = lowerText.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = lowerText.charAt(i);
+
+            if (isChinese(c)) {
+                flushEnglishBuffer(englishBuffer, tokens);
+
+                // 中文分词：单字 + 双字 + 三字 + 四字 + 五字
+                int end = i + 1;
+                while (end < length && end - i < MAX_CHINESE_GRAM && isChinese(lowerText.charAt(end))) {
+                    end++;
+                }
+                for (int n = i + 1; n <= end; n++) {
+                    tokens.add(lowerText.substring(i, n));
+                }
+
+            } else if (Character.isLetterOrDigit(c)) {
+                englishBuffer.append(c);
+            } else {
+                flushEnglishBuffer(englishBuffer, tokens);
+
+                if (isEmoji(c)) {
+                    tokens.add(EMOJI_PREFIX + c);
+                } else if (c == '!' || c == '?' || c == '！' || c == '？') {
+                    tokens.add(PUNCT_EXCLAIM);
+                } else if (c == '.' || c == '。') {
+                    tokens.add(PUNCT_DOT);
+                } else if (c == '#' || c == '＃') {
+                    tokens.add(PUNCT_HASH);
+                } else if (isMoney(c)) {
+                    tokens.add(PUNCT_MONEY);
+                }
+            }
+        }
+
+        flushEnglishBuffer(englishBuffer, tokens);
+
+        return tokens.toArray(new String[0]);
+    }
+
+    private static void flushEnglishBuffer(StringBuilder buffer, List<String> tokens) {
+        if (buffer.length() == 0) return;
+
+        String english = buffer.toString();
+        tokens.add(english);
+        if (english.length() > 3) {
+            // 长词：整词 + 前缀(4) + 后缀(4) + 词根(4)
+            tokens.add(english.substring(0, 4));
+            tokens.add(english.substring(english.length() - 4));
+            if (english.length() >= 5) {
+                int midStart = english.length() / 2 - 2;
+                if (midStart > 0 && midStart + 4 <= english.length()) {
+                    tokens.add(english.substring(midStart, midStart + 4));
+                }
+            }
+        }
+
+        buffer.setLength(0);
+    }
+
+    /**
+     * 计算token字符串的属性标志
+     */
+    public static int flagsOf(String token) {
+        if (token.startsWith(EMOJI_PREFIX)) {
+            return (token.length() & FeatureBuffer.LENGTH_MASK) | FeatureBuffer.FLAG_EMOJI;
+        }
+        if (token.startsWith("PUNCT_")) {
+            return punctFlags(token);
+        }
+
+        boolean ascii = true;
+        boolean allDigits = true;
+        int digitRun = 0;
+        int maxDigitRun = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c > 127) ascii = false;
+            if (c >= '0' && c <= '9') {
+                digitRun++;
+                if (digitRun > maxDigitRun) maxDigitRun = digitRun;
+            } else {
+                allDigits = false;
+                digitRun = 0;
+            }
+        }
+
+        int length = token.length();
+        boolean keepShort = length == 2 && isKeptShortWord(token.charAt(0), token.charAt(1));
+        return buildFlags(length, length > 0 && isChinese(token.charAt(0)),
+                ascii, allDigits, maxDigitRun >= 4, keepShort);
+    }
+
+    // ==================== 文本规范化 ====================
+
+    /**
+     * 规范化文本：NFKC（全角字母、数字、标点和空格转为半角，兼容字符转为标准字符），
+     * 连续空白合并为一个空格并去掉首尾空白。null 返回空串，不需要修改时返回原字符串
+     */
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        if (!Normalizer.isNormalized(text, Normalizer.Form.NFKC)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        }
+
+        int start = 0;
+        int end = text.length();
+        while (start < end && isSpace(text.charAt(start))) start++;
+        while (end > start && isSpace(text.charAt(end - 1))) end--;
+
+        // 只有出现非空格的空白或连续空白时才复制
+        StringBuilder out = null;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isSpace(c) && (c != ' ' || isSpace(text.charAt(i + 1)))) {
+                if (out == null) {
+                    out = new StringBuilder(end - start);
+                    out.append(text, start, i);
+                }
+                out.append(' ');
+                while (isSpace(text.charAt(i + 1))) i++;
+            } else if (out != null) {
+                out.append(c);
+            }
+        }
+        if (out != null) {
+            return out.toString();
+        }
+        return start == 0 && end == text.length() ? text : text.substring(start, end);
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    // ==================== 公共工具 ====================
+
+    /**
+     * token字符串的64位特征哈希，与特征哈希模式的结果一致
+     */
+    public static long hash(String token) {
+        return finish(extend(FNV_OFFSET, token));
+    }
+
+    /**
+     * Token过滤规则（按字符类别判断，替代正则）：
+     * 1. 4位以下的纯数字
+     * 2. 3个字符以下的ASCII词（保留 ok、no）
+     */
+    private static int buildFlags(int length, boolean chinese, boolean ascii,
+                                  boolean allDigits, boolean longDigits, boolean keepShort) {
+        int flags = Math.min(length, FeatureBuffer.LENGTH_MASK);
+        if (chinese) flags |= FeatureBuffer.FLAG_CHINESE;
+        if (ascii) flags |= FeatureBuffer.FLAG_ASCII;
+        if (longDigits) flags |= FeatureBuffer.FLAG_LONG_DIGITS;
+
+        boolean skip = length == 0
+                || (allDigits && length < 4)
+                || (ascii && length < 3 && !keepShort);
+        if (skip) flags |= FeatureBuffer.FLAG_SKIP;
+        return flags;
+    }
+
+    private static boolean isKeptShortWord(char a, char b) {
+        return (a == 'o' && b == 'k') || (a == 'n' && b == 'o');
+    }
+
+    private static long extend(long state, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            state = step(state, s.charAt(i));
+        }
+        return state;
+    }
+
+    private static long step(long state, char c) {
+        return (state ^ c) * FNV_PRIME;
+    }
+
+    /**
+     * 标题和正文合在一起的64位内容哈希（中间以换行分隔），用于去重和缓存
+     */
+    public static long hashContent(String title, String text) {
+        return finish(extend(step(extend(FNV_OFFSET, title), '\n'), text));
+    }
+
+    /**
+     * 0 作为词条存储的空槽标记，哈希值不会为 0
+     */
+    private static long finish(long state) {
+        return state != 0 ? state : 1;
+    }
+
+    public static boolean isChinese(char c) {
+        return c >= 0x4E00 && c <= 0x9FA5;
+    }
+
+    /**
+     * 货币符号：全角 ￥ 经 NFKC 规范化后为 ¥
+     */
+    private static boolean isMoney(char c) {
+        return c == '$' || c == '￥' || c == '¥';
+    }
+
+    private static boolean isEmoji(char c) {
+        return (c >= 0x2600 && c <= 0x26FF) || // 杂项符号
+               (c >= 0x2700 && c <= 0x27BF) || // 装饰符号
+               (c >= 0xFE00 && c <= 0xFE0F);   // 变体选择器
+    }
+}
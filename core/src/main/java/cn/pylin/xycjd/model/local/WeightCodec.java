@@ -0,0 +1,84 @@
+package cn.pylin.xycjd.model.local;
+
+/**
+ * 权重定点量化 - 8 位或 16 位
+ *
+ * 权重范围 [min, max] 均匀分成 2^bits - 2 段，编码 0 表示未记录（NaN），
+ * 编码 1 .. 2^bits - 1 依次对应 min .. max，超出范围的取值截断到两端。
+ *
+ * 学习时使用随机舍入：按到两侧格点的距离决定向上或向下取整，
+ * 多次小幅更新的期望与浮点一致，不会因为每次的增量小于一格而被舍掉。
+ * 已经在格点上的取值（从模型文件或学习日志读入）编码后保持不变。
+ */
+public final class WeightCodec {
+
+    /** 不量化，使用 32 位浮点 */
+    public static final int BITS_FLOAT = 32;
+    public static final int BITS_16 = 16;
+    public static final int BITS_8 = 8;
+
+    private static final int ABSENT = 0;
+    // 与格点的距离小于此值时视为在格点上，避免浮点误差导致随机舍入到相邻格点
+    private static final float GRID_TOLERANCE = 1e-3f;
+
+    public final int bits;
+    public final float min;
+    public final float max;
+    private final int maxCode;
+    private final float step;
+
+    private WeightCodec(int bits, float min, float max) {
+        this.bits = bits;
+        this.min = min;
+        this.max = max;
+        this.maxCode = (1 << bits) - 1;
+        this.step = (max - min) / (maxCode - 1);
+    }
+
+    /**
+     * 指定位数的编码，BITS_FLOAT 或不支持的位数返回 null（不量化）
+     */
+    public static WeightCodec of(int bits, float min, float max) {
+        if (bits != BITS_8 && bits != BITS_16) {
+            return null;
+        }
+        return new WeightCodec(bits, min, max);
+    }
+
+    /**
+     * 每个权重占用的字节数，codec 为 null 时为浮点的 4 字节
+     */
+    public static int bytesPerWeight(WeightCodec codec) {
+        return codec != null ? codec.bits / 8 : 4;
+    }
+
+    /**
+     * 随机舍入编码
+     * @param random [0, 1) 之间的随机数
+     */
+    public int encode(float value, float random) {
+        if (Float.isNaN(value)) return ABSENT;
+        float position = (Math.max(min, Math.min(max, value)) - min) / step;
+        int lower = (int) position;
+        float fraction = position - lower;
+        // 已在格点上（两侧容差内）时不随机
+        if (fraction > 1 - GRID_TOLERANCE || (fraction >= GRID_TOLERANCE && random < fraction)) {
+            lower++;
+        }
+        return Math.min(maxCode, lower + 1);
+    }
+
+    /**
+     * 就近舍入编码（写入模型文件时使用，取值本来就在格点上）
+     */
+    public int encodeNearest(float value) {
+        if (Float.isNaN(value)) return ABSENT;
+        float position = (Math.max(min, Math.min(max, value)) - min) / step;
+        return Math.min(maxCode, Math.round(position) + 1);
+    }
+
+    public float decode(int code) {
+        if (code == ABSENT) return Float.NaN;
+        return min + (code - 1) * step;
+    }
+}
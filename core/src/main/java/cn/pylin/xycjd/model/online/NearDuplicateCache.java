@@ -0,0 +1,216 @@
+package cn.pylin.xycjd.model.online;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.Tokenizer;
+
+/**
+ * 在线模型的近似评分缓存 - 只有数字、编号不同的通知复用最近的分数
+ *
+ * "您有 3 条新消息" 与 "您有 4 条新消息"、不同的快递单号或验证码在精确缓存（{@link OnlineScoreCache}）中都不命中。
+ * 这里先把含数字的字母数字串（数字、单号、验证码等）替换为 #（{@link #mask}），再用分词特征计算
+ * 64 位 SimHash（标题特征按位置权重加权），与最近 MAX_ENTRIES 条记录比较汉明距离，
+ * 不超过阈值时复用距离最近的分数。特征少于 MIN_FEATURES 个的短文本不参与近似匹配。
+ *
+ * 只保存在内存中，超过 TTL 的记录不再使用；模型配置变化时清空。
+ * 命中、抽查（命中后仍请求接口核对）与不一致的次数用于调整阈值。
+ */
+public final class NearDuplicateCache {
+
+    private static final int MAX_ENTRIES = 512;
+    private static final long TTL_MILLIS = 6L * 60 * 60 * 1000;
+    private static final int MIN_FEATURES = 4;
+
+    /**
+     * 近似命中的结果
+     */
+    public static final class Match {
+        public final float score;
+        public final int distance;
+
+        Match(float score, int distance) {
+            this.score = score;
+            this.distance = distance;
+        }
+    }
+
+    private final long[] signatures = new long[MAX_ENTRIES];
+    private final float[] scores = new float[MAX_ENTRIES];
+    private final long[] times = new long[MAX_ENTRIES];
+    private int size = 0;
+    private int next = 0;               // 环形缓冲区的下一个写入位置
+    private long configHash = 0;
+
+    private final FeatureBuffer features = new FeatureBuffer();
+    private final double[] bitWeights = new double[64];
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong audits = new AtomicLong();
+    private final AtomicLong disagreements = new AtomicLong();
+
+    /**
+     * 屏蔽数字和编号：含数字的字母数字串（可含 - 和 _）替换为 #，其余字符不变
+     * 输入应为规范化后的文本（全角数字已转为半角）
+     */
+    public static String mask(String text) {
+        StringBuilder out = null;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (!isIdChar(text.charAt(i))) {
+                if (out != null) out.append(text.charAt(i));
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean hasDigit = false;
+            while (i < length && isIdChar(text.charAt(i))) {
+                char c = text.charAt(i);
+                if (c >= '0' && c <= '9') hasDigit = true;
+                i++;
+            }
+            if (hasDigit) {
+                if (out == null) {
+                    out = new StringBuilder(length);
+                    out.append(text, 0, start);
+                }
+                out.append('#');
+            } else if (out != null) {
+                out.append(text, start, i);
+            }
+        }
+        return out != null ? out.toString() : text;
+    }
+
+    private static boolean isIdChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-' || c == '_';
+    }
+
+    /**
+     * 屏蔽后的标题和正文的 SimHash，特征太少时返回 0（不参与近似匹配）
+     * title、text 为规范化后的文本
+     */
+    public synchronized long signature(String title, String text) {
+        if (!Tokenizer.extractNormalizedFeatures(mask(title), mask(text), false, features)
+                || features.size < MIN_FEATURES) {
+            return 0;
+        }
+
+        Arrays.fill(bitWeights, 0);
+        for (int i = 0; i < features.size; i++) {
+            long hash = mix(features.hashes[i]);
+            float weight = features.positionWeights[i];
+            for (int bit = 0; bit < 64; bit++) {
+                bitWeights[bit] += ((hash >>> bit) & 1) != 0 ? weight : -weight;
+            }
+        }
+        long signature = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (bitWeights[bit] > 0) signature |= 1L << bit;
+        }
+        return signature != 0 ? signature : 1;
+    }
+
+    /**
+     * 查找汉明距离不超过 maxDistance 的最近记录，没有时返回 null
+     */
+    public synchronized Match find(long configHash, long signature, int maxDistance) {
+        ensureConfig(configHash);
+        if (signature == 0 || maxDistance <= 0) {
+            return null;
+        }
+        lookups.incrementAndGet();
+
+        long now = System.currentTimeMillis();
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int i = 0; i < size; i++) {
+            if (now - times[i] >= TTL_MILLIS) continue;
+            int distance = Long.bitCount(signatures[i] ^ signature);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+                if (distance == 0) break;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return new Match(scores[best], bestDistance);
+    }
+
+    /**
+     * 记录一次接口返回的分数；签名相同的记录直接更新
+     */
+    public synchronized void put(long configHash, long signature, float score) {
+        ensureConfig(configHash);
+        if (signature == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            if (signatures[i] == signature) {
+                scores[i] = score;
+                times[i] = now;
+                return;
+            }
+        }
+        signatures[next] = signature;
+        scores[next] = score;
+        times[next] = now;
+        next = (next + 1) % MAX_ENTRIES;
+        if (size < MAX_ENTRIES) size++;
+    }
+
+    /**
+     * 记录一次抽查结果
+     */
+    public void recordAudit(boolean disagreed) {
+        audits.incrementAndGet();
+        if (disagreed) disagreements.incrementAndGet();
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        next = 0;
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getAuditCount() {
+        return audits.get();
+    }
+
+    public long getDisagreementCount() {
+        return disagreements.get();
+    }
+
+    private void ensureConfig(long configHash) {
+        if (this.configHash != configHash) {
+            this.configHash = configHash;
+            clear();
+        }
+    }
+
+    /**
+     * 打散特征哈希的各位（murmur3 fmix64），FNV 哈希的高位分布不够均匀
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,286 @@
+package cn.pylin.xycjd.model.online;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.pylin.xycjd.model.local.Tokenizer;
+
+/**
+ * 在线模型的评分缓存 - 内存 LRU + 磁盘槽位表
+ *
+ * 键为模型配置（接口地址、模型名、系统提示词、温度）与请求中标题、正文（规范化、截断后）的64位哈希，
+ * 同样的通知反复推送时不再请求接口。只缓存成功解析的分数，超过 TTL 的记录视为未命中。
+ *
+ * 1. 内存：最近使用的 MAX_MEMORY_ENTRIES 条，按访问顺序淘汰
+ * 2. 磁盘：固定 DISK_SLOTS 个槽位的文件，按键定位槽位，每次读写一个槽位；冲突时新记录覆盖旧记录
+ *
+ * 文件格式（大端）：int magic, int version, long configHash, 之后每个槽位 long key, float score, long time。
+ * 模型配置变化时（configHash 不同）两级缓存一并清空，旧配置的分数不会被使用。
+ * 文件读写失败时只使用内存缓存。
+ */
+public final class OnlineScoreCache {
+
+    private static final int MAGIC = 0x58594F43; // "XYOC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final int SLOT_SIZE = 8 + 4 + 8;
+
+    private static final int MAX_MEMORY_ENTRIES = 256;
+    private static final int DISK_SLOTS = 4096;              // 2 的幂，文件约 80 KB
+    private static final long TTL_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private static final class CachedScore {
+        final float score;
+        final long time;
+
+        CachedScore(float score, long time) {
+            this.score = score;
+            this.time = time;
+        }
+    }
+
+    private final File file;
+    private final Map<Long, CachedScore> memory = new LinkedHashMap<Long, CachedScore>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedScore> eldest) {
+            return size() > MAX_MEMORY_ENTRIES;
+        }
+    };
+    private final byte[] slot = new byte[SLOT_SIZE];
+
+    private RandomAccessFile disk;          // 未打开或打开失败时为 null
+    private boolean opened = false;
+    private long configHash = 0;
+    private volatile int diskEntryCount = 0;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public OnlineScoreCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 模型配置的哈希，任何一项变化都会使缓存失效
+     */
+    public static long configHash(String apiUrl, String modelName, String systemPrompt, float temperature) {
+        long hash = Tokenizer.hash(apiUrl != null ? apiUrl : "");
+        hash = (hash ^ Tokenizer.hash(modelName != null ? modelName : "")) * MIX;
+        hash = (hash ^ Tokenizer.hash(systemPrompt != null ? systemPrompt : "")) * MIX;
+        hash = (hash ^ Float.floatToIntBits(temperature)) * MIX;
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * 一次请求的缓存键，title、content 为实际发送的文本
+     */
+    public static long key(long configHash, String title, String content) {
+        long key = (configHash ^ Tokenizer.hashContent(title, content)) * MIX;
+        return key != 0 ? key : 1; // 0 为磁盘空槽标记
+    }
+
+    /**
+     * 查询缓存，未命中或已过期时返回 NaN
+     */
+    public synchronized float get(long configHash, long key) {
+        ensureConfig(configHash);
+        long now = System.currentTimeMillis();
+
+        CachedScore entry = memory.get(key);
+        if (entry != null) {
+            if (now - entry.time < TTL_MILLIS) {
+                memoryHits.incrementAndGet();
+                return entry.score;
+            }
+            memory.remove(key);
+        }
+
+        entry = readSlot(key);
+        if (entry != null && now - entry.time < TTL_MILLIS) {
+            memory.put(key, entry);
+            diskHits.incrementAndGet();
+            return entry.score;
+        }
+        misses.incrementAndGet();
+        return Float.NaN;
+    }
+
+    /**
+     * 写入两级缓存
+     */
+    public synchronized void put(long configHash, long key, float score) {
+        ensureConfig(configHash);
+        CachedScore entry = new CachedScore(score, System.currentTimeMillis());
+        memory.put(key, entry);
+        writeSlot(key, entry);
+    }
+
+    /**
+     * 清空两级缓存（命中统计保留）
+     */
+    public synchronized void clear() {
+        memory.clear();
+        if (ensureOpen()) {
+            // 保留当前配置哈希
+            try {
+                resetFile();
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeDisk();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return memoryHits.get() + diskHits.get();
+    }
+
+    public long getMemoryHitCount() {
+        return memoryHits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 磁盘中的记录数（含已过期的记录）
+     */
+    public int getEntryCount() {
+        return diskEntryCount;
+    }
+
+    // ==================== 磁盘槽位表 ====================
+
+    /**
+     * 配置变化时清空两级缓存，文件中保存新的配置哈希
+     */
+    private void ensureConfig(long configHash) {
+        boolean hasDisk = ensureOpen();
+        if (this.configHash == configHash) {
+            return;
+        }
+        memory.clear();
+        this.configHash = configHash;
+        if (hasDisk) {
+            try {
+                resetFile();
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeDisk();
+            }
+        }
+    }
+
+    /**
+     * 第一次使用时打开文件，格式不符时重建
+     */
+    private boolean ensureOpen() {
+        if (opened) {
+            return disk != null;
+        }
+        opened = true;
+        try {
+            file.getParentFile().mkdirs();
+            disk = new RandomAccessFile(file, "rw");
+            boolean valid = disk.length() == HEADER_SIZE + (long) DISK_SLOTS * SLOT_SIZE
+                    && disk.readInt() == MAGIC && disk.readInt() == VERSION;
+            if (valid) {
+                configHash = disk.readLong();
+                diskEntryCount = countEntries();
+            } else {
+                resetFile();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeDisk();
+        }
+        return disk != null;
+    }
+
+    private void resetFile() throws IOException {
+        disk.setLength(0);
+        disk.setLength(HEADER_SIZE + (long) DISK_SLOTS * SLOT_SIZE);
+        disk.seek(0);
+        disk.writeInt(MAGIC);
+        disk.writeInt(VERSION);
+        disk.writeLong(configHash);
+        diskEntryCount = 0;
+    }
+
+    private int countEntries() throws IOException {
+        byte[] table = new byte[DISK_SLOTS * SLOT_SIZE];
+        disk.seek(HEADER_SIZE);
+        disk.readFully(table);
+        ByteBuffer buffer = ByteBuffer.wrap(table);
+        int count = 0;
+        for (int i = 0; i < DISK_SLOTS; i++) {
+            if (buffer.getLong(i * SLOT_SIZE) != 0) count++;
+        }
+        return count;
+    }
+
+    private CachedScore readSlot(long key) {
+        if (disk == null) {
+            return null;
+        }
+        try {
+            disk.seek(slotOffset(key));
+            disk.readFully(slot);
+            ByteBuffer buffer = ByteBuffer.wrap(slot);
+            if (buffer.getLong() != key) {
+                return null;
+            }
+            float score = buffer.getFloat();
+            long time = buffer.getLong();
+            return score >= 0f && score <= 10f ? new CachedScore(score, time) : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeDisk();
+            return null;
+        }
+    }
+
+    private void writeSlot(long key, CachedScore entry) {
+        if (disk == null) {
+            return;
+        }
+        try {
+            long offset = slotOffset(key);
+            disk.seek(offset);
+            boolean empty = disk.readLong() == 0;
+
+            ByteBuffer buffer = ByteBuffer.wrap(slot);
+            buffer.putLong(key).putFloat(entry.score).putLong(entry.time);
+            disk.seek(offset);
+            disk.write(slot);
+            if (empty) diskEntryCount++;
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeDisk();
+        }
+    }
+
+    private static long slotOffset(long key) {
+        int index = (int) (key ^ (key >>> 32)) & (DISK_SLOTS - 1);
+        return HEADER_SIZE + (long) index * SLOT_SIZE;
+    }
+
+    private void closeDisk() {
+        if (disk != null) {
+            try {
+                disk.close();
+            } catch (IOException ignored) {
+            }
+            disk = null;
+        }
+    }
+}
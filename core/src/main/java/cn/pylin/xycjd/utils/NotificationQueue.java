@@ -0,0 +1,78 @@
+package cn.pylin.xycjd.utils;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * 超级岛通知队列
+ * 队首为最新的通知，按通知 key 查找、移除和移到队首
+ * 查找只遍历一次链表（不使用 get(i)，避免链表按下标访问的 O(n²)）
+ *
+ * 本类不是线程安全的，只在主线程访问
+ */
+public class NotificationQueue<T extends NotificationQueue.Entry> extends LinkedList<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 队列元素
+     */
+    public interface Entry {
+        String getKey();
+    }
+
+    /**
+     * 查找 key 对应的下标，不存在返回 -1
+     */
+    public int indexOfKey(String key) {
+        if (key == null) return -1;
+        int index = 0;
+        for (T entry : this) {
+            if (key.equals(entry.getKey())) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找 key 对应的通知，不存在返回 null
+     */
+    public T findByKey(String key) {
+        if (key == null) return null;
+        for (T entry : this) {
+            if (key.equals(entry.getKey())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 移除 key 对应的通知，返回原下标，不存在返回 -1
+     */
+    public int removeByKey(String key) {
+        if (key == null) return -1;
+        int index = 0;
+        for (Iterator<T> iterator = iterator(); iterator.hasNext(); index++) {
+            if (key.equals(iterator.next().getKey())) {
+                iterator.remove();
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把指定下标的通知移到队首
+     */
+    public void moveToFront(int index) {
+        if (index <= 0) return;
+        ListIterator<T> iterator = listIterator(index);
+        T entry = iterator.next();
+        iterator.remove();
+        addFirst(entry);
+    }
+}
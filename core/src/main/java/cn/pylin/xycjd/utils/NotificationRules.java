@@ -0,0 +1,128 @@
+package cn.pylin.xycjd.utils;
+
+/**
+ * 通知处理规则
+ * 根据应用通知配置决定一条通知的处理方式（对应 NotificationProcessor 的前置检查与逻辑匹配），
+ * 不涉及任何 Android 调用，结果由 NotificationProcessor 执行
+ */
+public final class NotificationRules {
+
+    public static final String MODE_SUPER_ISLAND_ONLY = "mode_super_island_only";
+    public static final String MODE_NOTIFICATION_BAR_ONLY = "mode_notification_bar_only";
+    public static final String MODE_BOTH = "mode_both";
+
+    public static final String MODEL_LOCAL = "model_local";
+    public static final String MODEL_ONLINE = "model_online";
+
+    /**
+     * 处理方式
+     */
+    public enum Action {
+        IGNORE,           // 不处理
+        UPDATE_EXISTING,  // 已在超级岛中：更新内容
+        SHOW_MEDIA,       // 媒体通知：直接显示并执行行为
+        SHOW,             // 直接显示并执行行为
+        FILTER            // 先经过模型过滤，再根据结果决定
+    }
+
+    /**
+     * 处理结果（不可变，全部预先创建）
+     */
+    public static final class Decision {
+        public final Action action;
+        public final boolean removeFromSystem;  // 是否从系统通知栏移除（UPDATE_EXISTING 在更新后、其余在处理前）
+        public final boolean showIsland;        // FILTER 通过后是否显示到超级岛
+
+        private Decision(Action action, boolean removeFromSystem, boolean showIsland) {
+            this.action = action;
+            this.removeFromSystem = removeFromSystem;
+            this.showIsland = showIsland;
+        }
+    }
+
+    private static final Decision IGNORE = new Decision(Action.IGNORE, false, false);
+    private static final Decision UPDATE_EXISTING = new Decision(Action.UPDATE_EXISTING, false, false);
+    private static final Decision UPDATE_EXISTING_AND_REMOVE = new Decision(Action.UPDATE_EXISTING, true, false);
+    private static final Decision SHOW_MEDIA = new Decision(Action.SHOW_MEDIA, false, true);
+    private static final Decision SHOW = new Decision(Action.SHOW, false, true);
+    private static final Decision SHOW_AND_REMOVE = new Decision(Action.SHOW, true, true);
+    private static final Decision FILTER_THEN_SHOW = new Decision(Action.FILTER, false, true);
+    private static final Decision FILTER_THEN_SHOW_AND_REMOVE = new Decision(Action.FILTER, true, true);
+    private static final Decision FILTER_ONLY = new Decision(Action.FILTER, false, false);
+
+    private NotificationRules() {
+    }
+
+    /**
+     * 按设置填充应用配置
+     * @param isMedia 是否媒体通知
+     * @param isExisting 是否已在超级岛中
+     */
+    public static void resolveConfig(AppNotificationConfig config, NotificationSettings settings,
+                                     String packageName, boolean isMedia, boolean isExisting) {
+        // 基础配置
+        config.enabled = settings.isAppEnabled(packageName);
+        config.isMedia = isMedia;
+        config.isExisting = isExisting;
+
+        // 模式配置
+        config.appMode = settings.getNotificationMode();
+
+        // 模型过滤配置
+        config.modelFilterEnabled = settings.isModelFilteringEnabled() &&
+                                   settings.isAppModelFilterEnabled(packageName);
+        config.modelType = settings.getFilterModel();
+
+        // 行为配置
+        config.autoExpand = settings.isAppAutoExpandEnabled(packageName);
+        config.vibration = settings.isAppNotificationVibrationEnabled(packageName);
+        config.sound = settings.isAppNotificationSoundEnabled(packageName);
+    }
+
+    /**
+     * 本地模型：分数不高于过滤程度时过滤
+     */
+    public static boolean shouldFilter(float score, float filteringDegree) {
+        return score <= filteringDegree;
+    }
+
+    /**
+     * 决定处理方式
+     * 1. 前置检查：未启用、重复通知、媒体通知
+     * 2. 逻辑匹配：先匹配显示模式，再决定是否经过模型过滤
+     *    仅超级岛：先移除系统通知，再过滤决定是否显示
+     *    仅通知栏：过滤决定是否保留系统通知（不执行行为）
+     *    双显：过滤决定是否移除还是显示
+     */
+    public static Decision evaluate(AppNotificationConfig config) {
+        // 1. 检查是否启用
+        if (!config.enabled) {
+            return IGNORE;
+        }
+
+        String mode = config.appMode;
+
+        // 2. 重复通知：更新内容，超级岛模式下删除系统通知
+        if (config.isExisting) {
+            return MODE_SUPER_ISLAND_ONLY.equals(mode) ? UPDATE_EXISTING_AND_REMOVE : UPDATE_EXISTING;
+        }
+
+        // 3. 媒体通知：直接显示到超级岛并执行行为
+        // 与原 NotificationProcessor 保持一致：这里比较的是字面量而不是常量的值，条件恒为真，
+        // 媒体通知在仅通知栏模式下也会显示；改为使用常量会改变显示行为，需单独决定
+        if (config.isMedia) {
+            return !"MODE_NOTIFICATION_BAR_ONLY".equals(mode) ? SHOW_MEDIA : IGNORE;
+        }
+
+        // 4. 显示模式 + 过滤
+        boolean filter = config.needsModelFiltering();
+        if (MODE_SUPER_ISLAND_ONLY.equals(mode)) {
+            return filter ? FILTER_THEN_SHOW_AND_REMOVE : SHOW_AND_REMOVE;
+        } else if (MODE_NOTIFICATION_BAR_ONLY.equals(mode)) {
+            return filter ? FILTER_ONLY : IGNORE;
+        } else if (MODE_BOTH.equals(mode)) {
+            return filter ? FILTER_THEN_SHOW : SHOW;
+        }
+        return IGNORE;
+    }
+}
@@ -0,0 +1,40 @@
+package cn.pylin.xycjd.utils;
+
+/**
+ * 通知处理读取的设置
+ *
+ * 应用内由 SharedPreferencesManager 实现，离线回放工具从配置文件读取。
+ * 方法名与 SharedPreferencesManager 保持一致。
+ */
+public interface NotificationSettings {
+
+    /**
+     * 显示模式：mode_super_island_only, mode_notification_bar_only, mode_both
+     */
+    String getNotificationMode();
+
+    /**
+     * 模型过滤总开关
+     */
+    boolean isModelFilteringEnabled();
+
+    /**
+     * 过滤模型：model_local, model_online
+     */
+    String getFilterModel();
+
+    /**
+     * 本地模型过滤程度（0-10，分数不高于此值时过滤）
+     */
+    float getFilteringDegree();
+
+    boolean isAppEnabled(String packageName);
+
+    boolean isAppModelFilterEnabled(String packageName);
+
+    boolean isAppAutoExpandEnabled(String packageName);
+
+    boolean isAppNotificationVibrationEnabled(String packageName);
+
+    boolean isAppNotificationSoundEnabled(String packageName);
+}
@@ -21,3 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "小雨超级岛"
 include(":app")
+include(":core")
+include(":benchmarks")
+include(":tools")
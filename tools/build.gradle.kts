@@ -0,0 +1,60 @@
+plugins {
+    java
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":core"))
+    implementation(libs.json)
+}
+
+// ./gradlew :tools:replay -Pcorpus=通知.jsonl [-Psettings=设置.properties] [-Pargs="--learn=all --report=报告.json"]
+tasks.register<JavaExec>("replay") {
+    group = "verification"
+    description = "Replays a JSONL notification corpus through the filter pipeline."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("cn.pylin.xycjd.tools.ReplayTool")
+    val extra = project.findProperty("args")?.toString()?.split(" ")?.filter { it.isNotEmpty() } ?: emptyList()
+    args(listOfNotNull(
+        project.findProperty("corpus")?.toString(),
+        project.findProperty("settings")?.toString()?.let { "--settings=$it" }
+    ) + extra)
+}
+
+// ./gradlew :tools:quantizationDrift -Pcorpus=通知.jsonl [-Psettings=设置.properties]
+tasks.register<JavaExec>("quantizationDrift") {
+    group = "verification"
+    description = "Reports the score drift of quantized local model weights."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("cn.pylin.xycjd.tools.QuantizationDriftTool")
+    args(listOfNotNull(
+        project.findProperty("corpus")?.toString(),
+        project.findProperty("settings")?.toString()?.let { "--settings=$it" }
+    ))
+}
+
+// ./gradlew :tools:regression [-PupdateBaseline]
+// 用 corpus/regression.jsonl 检查各引擎的分数、准确率和延迟是否偏离 corpus/regression-baseline.json，
+// 并用 corpus/golden.jsonl 检查启发式引擎的分数与合并评分循环之前的实现逐位一致
+tasks.register<JavaExec>("regression") {
+    group = "verification"
+    description = "Checks local model scores, quality and latency against the labeled regression corpus."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("cn.pylin.xycjd.tools.RegressionTool")
+    val report = layout.buildDirectory.file("reports/regression/report.json").get().asFile
+    args(listOfNotNull(
+        file("corpus/regression.jsonl").path,
+        "--baseline=" + file("corpus/regression-baseline.json").path,
+        "--golden=" + file("corpus/golden.jsonl").path,
+        "--report=" + report.path,
+        if (project.hasProperty("updateBaseline")) "--update-baseline" else null
+    ))
+}
+
+tasks.named("check") {
+    dependsOn("regression")
+}
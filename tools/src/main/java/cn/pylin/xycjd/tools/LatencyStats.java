@@ -0,0 +1,53 @@
+package cn.pylin.xycjd.tools;
+
+import java.util.Arrays;
+
+/**
+ * 单个处理阶段的耗时记录（纳秒），结束后计算分位数
+ */
+final class LatencyStats {
+
+    final String name;
+    private long[] samples = new long[1024];
+    private int size;
+    private long total;
+    private boolean sorted;
+
+    LatencyStats(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+        total += nanos;
+        sorted = false;
+    }
+
+    int count() {
+        return size;
+    }
+
+    long totalNanos() {
+        return total;
+    }
+
+    /**
+     * 分位数（0-1），没有记录时为 0
+     */
+    long percentile(double p) {
+        if (size == 0) return 0;
+        if (!sorted) {
+            Arrays.sort(samples, 0, size);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(p * size) - 1;
+        return samples[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    long max() {
+        return percentile(1.0);
+    }
+}
@@ -0,0 +1,241 @@
+package cn.pylin.xycjd.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.ModelSettings;
+import cn.pylin.xycjd.model.local.ModelSnapshot;
+import cn.pylin.xycjd.model.local.ScoringEngine;
+import cn.pylin.xycjd.model.local.Tokenizer;
+import cn.pylin.xycjd.model.local.WeightCodec;
+import cn.pylin.xycjd.utils.NotificationRules;
+
+/**
+ * 权重量化的分数偏差
+ *
+ * 语料中有标签的通知按顺序分为训练集和测试集（默认 80% / 20%），对每种权重精度：
+ * 1. trained：以该精度从头学习训练集（学习时随机舍入），与设备上选择该精度后的模型一致
+ * 2. converted：浮点模型保存后按该精度重新加载，与设备上中途切换精度的模型一致
+ * 然后在测试集上与浮点模型逐条比较分数：平均 / p99 / 最大偏差、按过滤程度判断结果不同的条数、准确率，
+ * 以及模型的内存占用和文件大小，用于按设备档次选择精度。
+ *
+ * 用法：QuantizationDriftTool 语料.jsonl [--settings=设置.properties] [--train=0.8]
+ * 语料格式与 ReplayTool 相同，设置中的引擎、学习程度、过滤程度、内存上限和分词模式都会生效。
+ */
+public final class QuantizationDriftTool {
+
+    private static final int[] PRECISIONS = {WeightCodec.BITS_16, WeightCodec.BITS_8};
+
+    /**
+     * 在回放设置的基础上指定权重精度
+     */
+    private static final class PrecisionSettings implements ModelSettings {
+        private final ReplaySettings base;
+        private final int bits;
+
+        PrecisionSettings(ReplaySettings base, int bits) {
+            this.base = base;
+            this.bits = bits;
+        }
+
+        @Override
+        public float getLearningDegree() {
+            return base.getLearningDegree();
+        }
+
+        @Override
+        public int getMemoryBudgetMb() {
+            return base.getMemoryBudgetMb();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return base.currentTimeMillis();
+        }
+
+        @Override
+        public int getWeightBits() {
+            return bits;
+        }
+    }
+
+    /**
+     * 一个模型在测试集上的结果
+     */
+    private static final class Result {
+        final String name;
+        final float[] scores;
+        final long memoryBytes;
+        final long fileBytes;
+
+        Result(String name, float[] scores, long memoryBytes, long fileBytes) {
+            this.name = name;
+            this.scores = scores;
+            this.memoryBytes = memoryBytes;
+            this.fileBytes = fileBytes;
+        }
+    }
+
+    private final ReplaySettings settings;
+    private final List<ReplayCorpus.Item> train;
+    private final List<ReplayCorpus.Item> test;
+    private final FeatureBuffer features = new FeatureBuffer();
+
+    private QuantizationDriftTool(ReplaySettings settings, List<ReplayCorpus.Item> train, List<ReplayCorpus.Item> test) {
+        this.settings = settings;
+        this.train = train;
+        this.test = test;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File corpusFile = null;
+        File settingsFile = null;
+        double trainFraction = 0.8;
+        for (String arg : args) {
+            if (arg.startsWith("--settings=")) {
+                settingsFile = new File(arg.substring("--settings=".length()));
+            } else if (arg.startsWith("--train=")) {
+                trainFraction = Double.parseDouble(arg.substring("--train=".length()));
+            } else if (!arg.startsWith("--")) {
+                corpusFile = new File(arg);
+            }
+        }
+        if (corpusFile == null || trainFraction <= 0 || trainFraction >= 1) {
+            System.err.println("usage: QuantizationDriftTool corpus.jsonl [--settings=file.properties] [--train=0.8]");
+            System.exit(2);
+            return;
+        }
+
+        List<ReplayCorpus.Item> items = new ArrayList<>();
+        try (ReplayCorpus corpus = new ReplayCorpus(corpusFile)) {
+            ReplayCorpus.Item item;
+            while ((item = corpus.next()) != null) {
+                if (item.keep != null) items.add(item);
+            }
+        }
+        int split = (int) (items.size() * trainFraction);
+        if (split == 0 || split == items.size()) {
+            System.err.println("not enough labeled notifications: " + items.size());
+            System.exit(1);
+            return;
+        }
+
+        ReplaySettings settings = ReplaySettings.load(settingsFile);
+        new QuantizationDriftTool(settings, items.subList(0, split), items.subList(split, items.size())).run();
+    }
+
+    private void run() throws IOException {
+        String engineName = settings.getLocalModelEngine();
+        System.out.printf(Locale.ROOT, "engine=%s train=%d test=%d filtering degree=%.1f%n",
+                engineName, train.size(), test.size(), settings.getFilteringDegree());
+
+        File floatDirectory = Files.createTempDirectory("xycjd-drift").toFile();
+        List<Result> results = new ArrayList<>();
+        try {
+            Result reference = trained(engineName, WeightCodec.BITS_FLOAT, floatDirectory);
+            results.add(reference);
+            for (int bits : PRECISIONS) {
+                File directory = Files.createTempDirectory("xycjd-drift").toFile();
+                try {
+                    results.add(trained(engineName, bits, directory));
+                } finally {
+                    ReplayTool.deleteDirectory(directory);
+                }
+                directory = Files.createTempDirectory("xycjd-drift").toFile();
+                try {
+                    results.add(converted(engineName, bits, floatDirectory, directory));
+                } finally {
+                    ReplayTool.deleteDirectory(directory);
+                }
+            }
+        } finally {
+            ReplayTool.deleteDirectory(floatDirectory);
+        }
+
+        Result reference = results.get(0);
+        System.out.printf(Locale.ROOT, "%-16s %10s %10s %10s %8s %9s %11s %11s%n",
+                "model", "mean", "p99", "max", "flips", "accuracy", "memory(KB)", "file(KB)");
+        for (Result result : results) {
+            float[] drift = new float[test.size()];
+            double sum = 0;
+            int flips = 0;
+            for (int i = 0; i < drift.length; i++) {
+                drift[i] = Math.abs(result.scores[i] - reference.scores[i]);
+                sum += drift[i];
+                if (filter(result.scores[i]) != filter(reference.scores[i])) flips++;
+            }
+            Arrays.sort(drift);
+            int p99 = Math.max(0, (int) Math.ceil(drift.length * 0.99) - 1);
+            System.out.printf(Locale.ROOT, "%-16s %10.4f %10.4f %10.4f %8d %9.3f %11.1f %11s%n",
+                    result.name, sum / drift.length, drift[p99], drift[drift.length - 1], flips,
+                    accuracy(result.scores), result.memoryBytes / 1024.0,
+                    result.fileBytes >= 0 ? String.format(Locale.ROOT, "%.1f", result.fileBytes / 1024.0) : "-");
+        }
+    }
+
+    /**
+     * 以指定精度从头学习训练集
+     */
+    private Result trained(String engineName, int bits, File directory) {
+        ScoringEngine engine = ReplayTool.createEngine(engineName, directory, new PrecisionSettings(settings, bits));
+        for (ReplayCorpus.Item item : train) {
+            settings.setCurrentTime(item.timestamp);
+            if (extract(item)) {
+                engine.learn(features, item.keep);
+            }
+        }
+        return evaluate(bits == WeightCodec.BITS_FLOAT ? "float" : bits + "-bit trained", engine, directory);
+    }
+
+    /**
+     * 浮点模型文件按指定精度重新加载
+     */
+    private Result converted(String engineName, int bits, File floatDirectory, File directory) throws IOException {
+        ReplayTool.copyModelFiles(floatDirectory, directory);
+        ScoringEngine engine = ReplayTool.createEngine(engineName, directory, new PrecisionSettings(settings, bits));
+        engine.preload();
+        // 刚加载的模型不会写回，文件要到下次合并时才改为新精度，这里不统计文件大小
+        Result result = evaluate(bits + "-bit converted", engine, directory);
+        return new Result(result.name, result.scores, result.memoryBytes, -1);
+    }
+
+    private Result evaluate(String name, ScoringEngine engine, File directory) {
+        float[] scores = new float[test.size()];
+        for (int i = 0; i < scores.length; i++) {
+            ReplayCorpus.Item item = test.get(i);
+            scores[i] = extract(item) ? engine.predict(features) : ModelSnapshot.DEFAULT_WEIGHT;
+        }
+        engine.save();
+        // 只统计模型文件，学习日志在保存后清空（仍在排队的追加可能晚于保存写入）
+        long fileBytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".bin")) fileBytes += file.length();
+            }
+        }
+        return new Result(name, scores, engine.getMemoryUsageBytes(), fileBytes);
+    }
+
+    private boolean extract(ReplayCorpus.Item item) {
+        return Tokenizer.extractFeatures(item.title, item.text, settings.isStringTokenizer(), features);
+    }
+
+    private boolean filter(float score) {
+        return NotificationRules.shouldFilter(score, settings.getFilteringDegree());
+    }
+
+    private double accuracy(float[] scores) {
+        int correct = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (filter(scores[i]) != test.get(i).keep) correct++;
+        }
+        return (double) correct / scores.length;
+    }
+}
@@ -0,0 +1,483 @@
+package cn.pylin.xycjd.tools;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.HashedScoringEngine;
+import cn.pylin.xycjd.model.local.HeuristicScoringEngine;
+import cn.pylin.xycjd.model.local.LogisticScoringEngine;
+import cn.pylin.xycjd.model.local.ModelSnapshot;
+import cn.pylin.xycjd.model.local.ShardedModel;
+import cn.pylin.xycjd.model.local.Tokenizer;
+import cn.pylin.xycjd.utils.NotificationRules;
+
+/**
+ * 本地模型回归检查：固定语料上的分数、过滤质量和耗时
+ *
+ * 语料（tools/corpus/regression.jsonl，匿名化的中英文通知，全部有标签）按时间顺序处理，
+ * 用基线中的种子把每条通知随机分到训练集或测试集（比例 train_fraction），对每个引擎：
+ * 1. 从空模型开始按顺序学习训练集（与 ReplayTool --learn=all 相同，按应用分片）
+ * 2. 对测试集评分，与基线逐条比较：分数之差不超过 score_tolerance
+ * 3. 以过滤为正类计算精确率 / 召回率，不低于基线减 quality_margin，也不低于 quality_floor 中的绝对下限
+ * 4. 每条通知的评分耗时（特征提取 + 预测）和学习耗时的 p99 不超过 latency_budget_us
+ * 结果写入 JSON 报告（--report），任何一项不通过时退出码为 1。
+ *
+ * --golden 另外检查启发式引擎与合并评分循环之前的实现是否逐位一致（{@link #checkGolden}）。
+ *
+ * 用法：RegressionTool 语料.jsonl --baseline=基线.json [--golden=黄金分数.jsonl] [--settings=设置.properties]
+ *       [--report=报告.json] [--update-baseline]
+ * --update-baseline 用本次结果重写基线中的分数和质量（种子、容差、耗时预算保持不变），用于有意改变模型行为的修改；
+ * 有引擎低于 quality_floor 时不重写，基线不会记录明显退化的结果。
+ */
+public final class RegressionTool {
+
+    private static final String[] ENGINES = {HeuristicScoringEngine.NAME, LogisticScoringEngine.NAME, HashedScoringEngine.NAME};
+    private static final int WARMUP_ROUNDS = 5;
+
+    /**
+     * 一个引擎在测试集上的结果
+     */
+    private static final class Result {
+        final String engine;
+        final float[] scores;
+        final LatencyStats predictStats = new LatencyStats("predict");
+        final LatencyStats learnStats = new LatencyStats("learn");
+        int truePositive;
+        int falsePositive;
+        int trueNegative;
+        int falseNegative;
+
+        Result(String engine, int testSize) {
+            this.engine = engine;
+            this.scores = new float[testSize];
+        }
+
+        double precision() {
+            return ratio(truePositive, truePositive + falsePositive);
+        }
+
+        double recall() {
+            return ratio(truePositive, truePositive + falseNegative);
+        }
+
+        double accuracy() {
+            return ratio(truePositive + trueNegative, scores.length);
+        }
+    }
+
+    private final ReplaySettings settings;
+    private final JSONObject baseline;
+    private final List<ReplayCorpus.Item> train = new ArrayList<>();
+    private final List<ReplayCorpus.Item> test = new ArrayList<>();
+    private final FeatureBuffer features = new FeatureBuffer();
+
+    private RegressionTool(ReplaySettings settings, JSONObject baseline, List<ReplayCorpus.Item> items) {
+        this.settings = settings;
+        this.baseline = baseline;
+
+        // 按种子分组，保持时间顺序
+        Random random = new Random(baseline.getLong("seed"));
+        double trainFraction = baseline.getDouble("train_fraction");
+        for (ReplayCorpus.Item item : items) {
+            if (random.nextDouble() < trainFraction) {
+                train.add(item);
+            } else {
+                test.add(item);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File corpusFile = null;
+        File baselineFile = null;
+        File goldenFile = null;
+        File settingsFile = null;
+        File reportFile = null;
+        boolean updateBaseline = false;
+        for (String arg : args) {
+            if (arg.startsWith("--baseline=")) {
+                baselineFile = new File(arg.substring("--baseline=".length()));
+            } else if (arg.startsWith("--golden=")) {
+                goldenFile = new File(arg.substring("--golden=".length()));
+            } else if (arg.startsWith("--settings=")) {
+                settingsFile = new File(arg.substring("--settings=".length()));
+            } else if (arg.startsWith("--report=")) {
+                reportFile = new File(arg.substring("--report=".length()));
+            } else if (arg.equals("--update-baseline")) {
+                updateBaseline = true;
+            } else if (!arg.startsWith("--")) {
+                corpusFile = new File(arg);
+            }
+        }
+        if (corpusFile == null || baselineFile == null) {
+            System.err.println("usage: RegressionTool corpus.jsonl --baseline=baseline.json [--golden=golden.jsonl] "
+                    + "[--settings=file.properties] [--report=report.json] [--update-baseline]");
+            System.exit(2);
+            return;
+        }
+
+        List<ReplayCorpus.Item> items = new ArrayList<>();
+        try (ReplayCorpus corpus = new ReplayCorpus(corpusFile)) {
+            ReplayCorpus.Item item;
+            while ((item = corpus.next()) != null) {
+                if (item.keep != null) items.add(item);
+            }
+        }
+        JSONObject baseline = new JSONObject(new String(Files.readAllBytes(baselineFile.toPath()), StandardCharsets.UTF_8));
+        RegressionTool tool = new RegressionTool(ReplaySettings.load(settingsFile), baseline, items);
+
+        List<Result> results = new ArrayList<>();
+        for (String engine : ENGINES) {
+            results.add(tool.evaluate(engine));
+        }
+
+        if (updateBaseline) {
+            if (tool.meetsQualityFloor(results)) {
+                tool.updateBaseline(results);
+                Files.write(baselineFile.toPath(), baseline.toString(2).getBytes(StandardCharsets.UTF_8));
+                System.out.println("baseline updated: " + baselineFile);
+            } else {
+                System.out.println("baseline not updated: filter quality below quality_floor");
+            }
+        }
+
+        JSONObject report = tool.check(results);
+        if (goldenFile != null) {
+            JSONObject golden = checkGolden(goldenFile);
+            report.put("golden", golden);
+            report.put("passed", report.getBoolean("passed") && golden.getBoolean("passed"));
+        }
+        if (reportFile != null) {
+            File parent = reportFile.getAbsoluteFile().getParentFile();
+            if (parent != null) parent.mkdirs();
+            Files.write(reportFile.toPath(), report.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+        if (!report.getBoolean("passed")) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 从空模型开始学习训练集，再对测试集评分
+     * 先用一个丢弃的模型完整跑一遍作为预热，计时的一遍不包含 JIT 编译的耗时
+     */
+    private Result evaluate(String engineName) throws IOException {
+        run(engineName, new Result(engineName, test.size()));
+        Result result = new Result(engineName, test.size());
+        run(engineName, result);
+        return result;
+    }
+
+    private void run(String engineName, Result result) throws IOException {
+        File directory = Files.createTempDirectory("xycjd-regression").toFile();
+        try {
+            ShardedModel model = ReplayTool.createShardedModel(engineName, directory, settings);
+            model.preload();
+            for (ReplayCorpus.Item item : train) {
+                settings.setCurrentTime(item.timestamp);
+                long start = System.nanoTime();
+                if (extract(item)) {
+                    model.learn(item.packageName, features, item.keep);
+                    result.learnStats.record(System.nanoTime() - start);
+                }
+            }
+            // 等待后台合并完成，避免与评分计时重叠
+            model.save();
+
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                for (ReplayCorpus.Item item : test) {
+                    score(model, item);
+                }
+            }
+            for (int i = 0; i < test.size(); i++) {
+                ReplayCorpus.Item item = test.get(i);
+                long start = System.nanoTime();
+                float score = score(model, item);
+                result.predictStats.record(System.nanoTime() - start);
+                result.scores[i] = score;
+
+                boolean shouldFilter = NotificationRules.shouldFilter(score, filteringDegree());
+                if (shouldFilter) {
+                    if (item.keep) result.falsePositive++;
+                    else result.truePositive++;
+                } else {
+                    if (item.keep) result.trueNegative++;
+                    else result.falseNegative++;
+                }
+            }
+            model.release();
+        } finally {
+            ReplayTool.deleteDirectory(directory);
+        }
+    }
+
+    private float score(ShardedModel model, ReplayCorpus.Item item) {
+        return extract(item) ? model.predict(item.packageName, features) : ModelSnapshot.DEFAULT_WEIGHT;
+    }
+
+    private boolean extract(ReplayCorpus.Item item) {
+        return Tokenizer.extractFeatures(item.title, item.text, settings.isStringTokenizer(), features);
+    }
+
+    private float filteringDegree() {
+        return (float) baseline.optDouble("filtering_degree", settings.getFilteringDegree());
+    }
+
+    /**
+     * 与基线比较，返回报告并打印摘要
+     */
+    private JSONObject check(List<Result> results) {
+        double tolerance = baseline.getDouble("score_tolerance");
+        double margin = baseline.getDouble("quality_margin");
+        JSONObject budget = baseline.getJSONObject("latency_budget_us");
+        JSONObject engines = baseline.optJSONObject("engines");
+
+        JSONObject report = new JSONObject();
+        report.put("seed", baseline.getLong("seed"));
+        report.put("train", train.size());
+        report.put("test", test.size());
+        report.put("filtering_degree", filteringDegree());
+        report.put("tokenizer", settings.isStringTokenizer() ? "string" : "feature_hash");
+
+        boolean passed = true;
+        JSONArray engineReports = new JSONArray();
+        System.out.printf(Locale.ROOT, "train=%d test=%d seed=%d filtering degree=%.1f%n",
+                train.size(), test.size(), baseline.getLong("seed"), filteringDegree());
+        System.out.printf(Locale.ROOT, "%-10s %10s %8s %10s %8s %9s %12s %12s  %s%n", "engine", "max diff",
+                "changed", "precision", "recall", "accuracy", "predict p99", "learn p99", "result");
+
+        for (Result result : results) {
+            JSONObject expected = engines != null ? engines.optJSONObject(result.engine) : null;
+            JSONObject engineReport = new JSONObject();
+            engineReport.put("engine", result.engine);
+            List<String> failures = new ArrayList<>();
+
+            // 分数
+            double maxDiff = 0;
+            int changed = 0;
+            int flipped = 0;
+            JSONArray expectedScores = expected != null ? expected.optJSONArray("scores") : null;
+            if (expectedScores == null || expectedScores.length() != result.scores.length) {
+                failures.add("baseline scores missing or corpus changed");
+            } else {
+                for (int i = 0; i < result.scores.length; i++) {
+                    double expectedScore = expectedScores.getDouble(i);
+                    double diff = Math.abs(result.scores[i] - expectedScore);
+                    maxDiff = Math.max(maxDiff, diff);
+                    if (diff > tolerance) changed++;
+                    if (NotificationRules.shouldFilter(result.scores[i], filteringDegree())
+                            != NotificationRules.shouldFilter((float) expectedScore, filteringDegree())) {
+                        flipped++;
+                    }
+                }
+                if (changed > 0) {
+                    failures.add(changed + " scores differ by more than " + tolerance);
+                }
+            }
+            engineReport.put("max_score_diff", maxDiff);
+            engineReport.put("changed_scores", changed);
+            engineReport.put("flipped_decisions", flipped);
+
+            // 过滤质量
+            JSONObject quality = new JSONObject();
+            quality.put("true_positive", result.truePositive);
+            quality.put("false_positive", result.falsePositive);
+            quality.put("true_negative", result.trueNegative);
+            quality.put("false_negative", result.falseNegative);
+            quality.put("precision", result.precision());
+            quality.put("recall", result.recall());
+            quality.put("accuracy", result.accuracy());
+            engineReport.put("filter_quality", quality);
+            if (expected != null) {
+                if (result.precision() < expected.getDouble("precision") - margin) {
+                    failures.add(String.format(Locale.ROOT, "precision %.3f below baseline %.3f",
+                            result.precision(), expected.getDouble("precision")));
+                }
+                if (result.recall() < expected.getDouble("recall") - margin) {
+                    failures.add(String.format(Locale.ROOT, "recall %.3f below baseline %.3f",
+                            result.recall(), expected.getDouble("recall")));
+                }
+            }
+            failures.addAll(qualityFloorFailures(result));
+
+            // 耗时
+            JSONObject latency = new JSONObject();
+            latency.put("predict_p50_us", result.predictStats.percentile(0.50) / 1000.0);
+            latency.put("predict_p99_us", result.predictStats.percentile(0.99) / 1000.0);
+            latency.put("learn_p50_us", result.learnStats.percentile(0.50) / 1000.0);
+            latency.put("learn_p99_us", result.learnStats.percentile(0.99) / 1000.0);
+            engineReport.put("latency", latency);
+            if (latency.getDouble("predict_p99_us") > budget.getDouble("predict_p99")) {
+                failures.add(String.format(Locale.ROOT, "predict p99 %.1f us over budget %.0f us",
+                        latency.getDouble("predict_p99_us"), budget.getDouble("predict_p99")));
+            }
+            if (latency.getDouble("learn_p99_us") > budget.getDouble("learn_p99")) {
+                failures.add(String.format(Locale.ROOT, "learn p99 %.1f us over budget %.0f us",
+                        latency.getDouble("learn_p99_us"), budget.getDouble("learn_p99")));
+            }
+
+            engineReport.put("passed", failures.isEmpty());
+            engineReport.put("failures", new JSONArray(failures));
+            engineReports.put(engineReport);
+            passed &= failures.isEmpty();
+
+            System.out.printf(Locale.ROOT, "%-10s %10.5f %8d %10.3f %8.3f %9.3f %10.1fus %10.1fus  %s%n",
+                    result.engine, maxDiff, changed, result.precision(), result.recall(), result.accuracy(),
+                    latency.getDouble("predict_p99_us"), latency.getDouble("learn_p99_us"),
+                    failures.isEmpty() ? "ok" : "FAILED");
+            for (String failure : failures) {
+                System.out.println("    " + failure);
+            }
+        }
+
+        report.put("engines", engineReports);
+        report.put("passed", passed);
+        return report;
+    }
+
+    /**
+     * 黄金分数检查：启发式引擎的评分和学习结果与生成语料时的实现逐位相同
+     *
+     * 语料每行一次操作：先评分，再按 action 学习（learn_positive、learn_negative、manual_positive），
+     * predict_bits / learn_bits 为两次返回值的 float 位模式。期望值由合并评分循环之前的实现
+     * （按应用分片之前的单一模型）生成，这里不指定应用，只使用全局模型。
+     * 每种分词模式（tokenizer）从各自的空模型开始，设置使用默认值，与 --settings 无关。
+     * 每种模式的最后 300 行是全角写法（全角字母数字、全角空格），期望值为之前的实现对对应半角原文的结果，
+     * 用于检查 NFKC 规范化后全角与半角写法得到相同的分数。
+     */
+    private static JSONObject checkGolden(File goldenFile) throws IOException {
+        ReplaySettings settings = ReplaySettings.load(null);
+        FeatureBuffer features = new FeatureBuffer();
+        Map<String, ShardedModel> models = new LinkedHashMap<>();
+        File directory = Files.createTempDirectory("xycjd-golden").toFile();
+        int operations = 0;
+        int mismatches = 0;
+        JSONArray firstMismatches = new JSONArray();
+        try (BufferedReader reader = Files.newBufferedReader(goldenFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) continue;
+                JSONObject operation = new JSONObject(line);
+                String tokenizer = operation.getString("tokenizer");
+                ShardedModel model = models.get(tokenizer);
+                if (model == null) {
+                    File modelDirectory = new File(directory, tokenizer);
+                    modelDirectory.mkdirs();
+                    model = ReplayTool.createShardedModel(HeuristicScoringEngine.NAME, modelDirectory, settings);
+                    model.preload();
+                    models.put(tokenizer, model);
+                }
+
+                String title = operation.has("title") ? operation.getString("title") : null;
+                boolean hasFeatures = Tokenizer.extractFeatures(title, operation.getString("text"),
+                        "string".equals(tokenizer), features);
+                float predicted = hasFeatures ? model.predict(null, features) : ModelSnapshot.DEFAULT_WEIGHT;
+                float learned = ModelSnapshot.DEFAULT_WEIGHT;
+                if (hasFeatures) {
+                    String action = operation.getString("action");
+                    if (action.equals("manual_positive")) {
+                        learned = model.learnPositive(null, features);
+                    } else {
+                        learned = model.learn(null, features, action.equals("learn_positive"));
+                    }
+                }
+
+                operations++;
+                if (Float.floatToIntBits(predicted) != operation.getInt("predict_bits")
+                        || Float.floatToIntBits(learned) != operation.getInt("learn_bits")) {
+                    mismatches++;
+                    if (firstMismatches.length() < 10) {
+                        firstMismatches.put(String.format(Locale.ROOT, "line %d: predict %s (expected %s), learn %s (expected %s)",
+                                lineNumber, predicted, Float.intBitsToFloat(operation.getInt("predict_bits")),
+                                learned, Float.intBitsToFloat(operation.getInt("learn_bits"))));
+                    }
+                }
+            }
+        } finally {
+            for (ShardedModel model : models.values()) {
+                model.release();
+            }
+            ReplayTool.deleteDirectory(directory);
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("operations", operations);
+        report.put("mismatches", mismatches);
+        report.put("first_mismatches", firstMismatches);
+        report.put("passed", operations > 0 && mismatches == 0);
+        System.out.printf(Locale.ROOT, "golden     %d operations, %d mismatches  %s%n", operations, mismatches,
+                report.getBoolean("passed") ? "ok" : "FAILED");
+        for (int i = 0; i < firstMismatches.length(); i++) {
+            System.out.println("    " + firstMismatches.getString(i));
+        }
+        return report;
+    }
+
+    /**
+     * 低于 quality_floor 的绝对下限时的失败原因（与基线无关，重写基线也不能放宽）
+     */
+    private List<String> qualityFloorFailures(Result result) {
+        JSONObject floor = baseline.getJSONObject("quality_floor");
+        List<String> failures = new ArrayList<>();
+        if (result.precision() < floor.getDouble("precision")) {
+            failures.add(String.format(Locale.ROOT, "precision %.3f below minimum %.3f",
+                    result.precision(), floor.getDouble("precision")));
+        }
+        if (result.recall() < floor.getDouble("recall")) {
+            failures.add(String.format(Locale.ROOT, "recall %.3f below minimum %.3f",
+                    result.recall(), floor.getDouble("recall")));
+        }
+        return failures;
+    }
+
+    private boolean meetsQualityFloor(List<Result> results) {
+        for (Result result : results) {
+            if (!qualityFloorFailures(result).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用本次结果重写基线的分数和过滤质量
+     */
+    private void updateBaseline(List<Result> results) {
+        JSONObject engines = new JSONObject();
+        for (Result result : results) {
+            JSONObject expected = new JSONObject();
+            expected.put("precision", round(result.precision()));
+            expected.put("recall", round(result.recall()));
+            JSONArray scores = new JSONArray();
+            for (float score : result.scores) {
+                scores.put(round(score));
+            }
+            expected.put("scores", scores);
+            engines.put(result.engine, expected);
+        }
+        baseline.put("engines", engines);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10000) / 10000.0;
+    }
+
+    private static double ratio(int numerator, int denominator) {
+        return denominator == 0 ? 0 : (double) numerator / denominator;
+    }
+}
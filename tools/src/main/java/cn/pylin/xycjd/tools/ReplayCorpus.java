@@ -0,0 +1,115 @@
+package cn.pylin.xycjd.tools;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * 回放语料：JSONL，每行一条通知，逐行读取，不会整体载入内存
+ *
+ * {"package": "com.example", "title": "...", "text": "...", "timestamp": 1700000000000, "label": "keep"}
+ *
+ * timestamp 为毫秒（缺省时沿用上一条）；label 可省略，
+ * 取值 keep / filter、true / false 或 1 / 0（true 和 1 表示保留，与基准测试语料一致）。
+ * key 可选，相同 key 的后续通知按重复通知处理。
+ */
+public final class ReplayCorpus implements Closeable {
+
+    public static final class Item {
+        public final int line;
+        public final String packageName;
+        public final String key;
+        public final String title;
+        public final String text;
+        public final long timestamp;
+        public final Boolean keep;   // 无标签时为 null
+
+        Item(int line, String packageName, String key, String title, String text, long timestamp, Boolean keep) {
+            this.line = line;
+            this.packageName = packageName;
+            this.key = key;
+            this.title = title;
+            this.text = text;
+            this.timestamp = timestamp;
+            this.keep = keep;
+        }
+    }
+
+    private final BufferedReader reader;
+    private int line;
+    private long lastTimestamp = System.currentTimeMillis();
+    private int skipped;
+
+    public ReplayCorpus(File file) throws IOException {
+        this.reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 下一条通知，读完时返回 null
+     * 空行和无法解析的行跳过（计入 getSkippedLines）
+     */
+    public Item next() throws IOException {
+        String raw;
+        while ((raw = reader.readLine()) != null) {
+            line++;
+            raw = raw.trim();
+            if (raw.isEmpty()) continue;
+            try {
+                return parse(new JSONObject(raw));
+            } catch (JSONException e) {
+                skipped++;
+            }
+        }
+        return null;
+    }
+
+    public int getSkippedLines() {
+        return skipped;
+    }
+
+    private Item parse(JSONObject json) {
+        String packageName = json.optString("package", json.optString("packageName", ""));
+        String key = json.has("key") ? json.optString("key") : null;
+        String title = json.has("title") ? json.optString("title") : null;
+        String text = json.has("text") ? json.optString("text") : null;
+        long timestamp = json.optLong("timestamp", lastTimestamp);
+        lastTimestamp = timestamp;
+        return new Item(line, packageName, key, title, text, timestamp, parseLabel(json.opt("label")));
+    }
+
+    private static Boolean parseLabel(Object label) {
+        if (label == null || label == JSONObject.NULL) {
+            return null;
+        }
+        if (label instanceof Boolean) {
+            return (Boolean) label;
+        }
+        if (label instanceof Number) {
+            return ((Number) label).intValue() != 0;
+        }
+        String value = label.toString().trim().toLowerCase();
+        switch (value) {
+            case "keep":
+            case "true":
+            case "1":
+                return Boolean.TRUE;
+            case "filter":
+            case "false":
+            case "0":
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
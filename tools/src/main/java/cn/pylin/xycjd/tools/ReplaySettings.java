@@ -0,0 +1,186 @@
+package cn.pylin.xycjd.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import cn.pylin.xycjd.model.local.HeuristicScoringEngine;
+import cn.pylin.xycjd.model.local.ModelSettings;
+import cn.pylin.xycjd.model.local.WeightCodec;
+import cn.pylin.xycjd.utils.NotificationRules;
+import cn.pylin.xycjd.utils.NotificationSettings;
+
+/**
+ * 回放使用的设置：properties 文件，键名与 SharedPreferences 相同
+ *
+ * pref_notification_mode=mode_super_island_only
+ * pref_model_filtering_enabled=true
+ * pref_filter_model=model_local
+ * pref_filtering_degree=5.0
+ * pref_learning_degree=3.0
+ * local_tokenizer_mode=feature_hash
+ * local_model_memory_budget=4
+ * local_model_engine=heuristic       # heuristic、logistic 或 hashed
+ * local_model_weight_bits=32        # 权重精度：32、16 或 8
+ * app_checkboxes=*                  # 启用的应用，逗号分隔，* 表示全部
+ * app_model_filter=*
+ * app_auto_expand=
+ * app_notification_vibration=
+ * app_notification_sound=
+ *
+ * 与应用内默认值不同，回放默认所有应用启用监听和模型过滤，否则所有通知都会被忽略。
+ * 模型日期取当前回放到的通知时间戳。
+ */
+public final class ReplaySettings implements NotificationSettings, ModelSettings {
+
+    private static final String ALL = "*";
+
+    private final String notificationMode;
+    private final boolean modelFilteringEnabled;
+    private final String filterModel;
+    private final float filteringDegree;
+    private final float learningDegree;
+    private final String tokenizerMode;
+    private final int memoryBudgetMb;
+    private final String engine;
+    private final int weightBits;
+    private final Set<String> enabledApps;
+    private final Set<String> modelFilterApps;
+    private final Set<String> autoExpandApps;
+    private final Set<String> vibrationApps;
+    private final Set<String> soundApps;
+
+    private long now = System.currentTimeMillis();
+
+    public ReplaySettings(Properties properties) {
+        notificationMode = properties.getProperty("pref_notification_mode", NotificationRules.MODE_SUPER_ISLAND_ONLY);
+        modelFilteringEnabled = Boolean.parseBoolean(properties.getProperty("pref_model_filtering_enabled", "true"));
+        filterModel = properties.getProperty("pref_filter_model", NotificationRules.MODEL_LOCAL);
+        filteringDegree = Float.parseFloat(properties.getProperty("pref_filtering_degree", "5.0"));
+        learningDegree = Float.parseFloat(properties.getProperty("pref_learning_degree", "3.0"));
+        tokenizerMode = properties.getProperty("local_tokenizer_mode", "feature_hash");
+        memoryBudgetMb = Math.max(1, Math.min(32, Integer.parseInt(properties.getProperty("local_model_memory_budget", "4"))));
+        engine = properties.getProperty("local_model_engine", HeuristicScoringEngine.NAME);
+        weightBits = Integer.parseInt(properties.getProperty("local_model_weight_bits", String.valueOf(WeightCodec.BITS_FLOAT)));
+        enabledApps = packages(properties.getProperty("app_checkboxes", ALL));
+        modelFilterApps = packages(properties.getProperty("app_model_filter", ALL));
+        autoExpandApps = packages(properties.getProperty("app_auto_expand", ""));
+        vibrationApps = packages(properties.getProperty("app_notification_vibration", ""));
+        soundApps = packages(properties.getProperty("app_notification_sound", ""));
+    }
+
+    /**
+     * 读取设置文件，file 为 null 时使用默认值
+     */
+    public static ReplaySettings load(File file) throws IOException {
+        Properties properties = new Properties();
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return new ReplaySettings(properties);
+    }
+
+    private static Set<String> packages(String value) {
+        Set<String> set = new HashSet<>();
+        for (String name : value.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) set.add(name);
+        }
+        return set;
+    }
+
+    private static boolean contains(Set<String> set, String packageName) {
+        return set.contains(ALL) || set.contains(packageName);
+    }
+
+    /**
+     * 回放到的通知时间
+     */
+    void setCurrentTime(long timeMillis) {
+        now = timeMillis;
+    }
+
+    public boolean isStringTokenizer() {
+        return "string".equals(tokenizerMode);
+    }
+
+    public String getLocalModelEngine() {
+        return engine;
+    }
+
+    // ==================== NotificationSettings ====================
+
+    @Override
+    public String getNotificationMode() {
+        return notificationMode;
+    }
+
+    @Override
+    public boolean isModelFilteringEnabled() {
+        return modelFilteringEnabled;
+    }
+
+    @Override
+    public String getFilterModel() {
+        return filterModel;
+    }
+
+    @Override
+    public float getFilteringDegree() {
+        return filteringDegree;
+    }
+
+    @Override
+    public boolean isAppEnabled(String packageName) {
+        return contains(enabledApps, packageName);
+    }
+
+    @Override
+    public boolean isAppModelFilterEnabled(String packageName) {
+        return contains(modelFilterApps, packageName);
+    }
+
+    @Override
+    public boolean isAppAutoExpandEnabled(String packageName) {
+        return contains(autoExpandApps, packageName);
+    }
+
+    @Override
+    public boolean isAppNotificationVibrationEnabled(String packageName) {
+        return contains(vibrationApps, packageName);
+    }
+
+    @Override
+    public boolean isAppNotificationSoundEnabled(String packageName) {
+        return contains(soundApps, packageName);
+    }
+
+    // ==================== ModelSettings ====================
+
+    @Override
+    public float getLearningDegree() {
+        return learningDegree;
+    }
+
+    @Override
+    public int getMemoryBudgetMb() {
+        return memoryBudgetMb;
+    }
+
+    @Override
+    public int getWeightBits() {
+        return weightBits;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+}
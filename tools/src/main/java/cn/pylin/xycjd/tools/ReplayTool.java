@@ -0,0 +1,457 @@
+package cn.pylin.xycjd.tools;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import cn.pylin.xycjd.model.local.FeatureBuffer;
+import cn.pylin.xycjd.model.local.HashedScoringEngine;
+import cn.pylin.xycjd.model.local.HeuristicScoringEngine;
+import cn.pylin.xycjd.model.local.LogisticScoringEngine;
+import cn.pylin.xycjd.model.local.ModelSettings;
+import cn.pylin.xycjd.model.local.ModelSnapshot;
+import cn.pylin.xycjd.model.local.ScoringEngine;
+import cn.pylin.xycjd.model.local.ShardedModel;
+import cn.pylin.xycjd.model.local.Tokenizer;
+import cn.pylin.xycjd.utils.AppNotificationConfig;
+import cn.pylin.xycjd.utils.NotificationQueue;
+import cn.pylin.xycjd.utils.NotificationRules;
+
+/**
+ * 离线回放：把通知语料逐条送入与 NotificationProcessor 相同的处理流程
+ *
+ * 每条通知依次经过：
+ * 1. 前置检查（标题和内容都为空时跳过）
+ * 2. 配置解析与处理规则（NotificationRules.resolveConfig / evaluate）
+ * 3. 本地模型过滤：特征提取、按应用分片评分、与过滤程度比较（在线模型不回放，按未过滤处理）
+ * 4. 学习：有标签的通知按标签模拟用户反馈（点击为正向、滑动移除为负向），条件与应用内相同
+ *    （总过滤开启 + 应用过滤开启 + 本地模型）
+ *
+ * 学习方式 --learn：
+ *   shown（默认）只有显示到超级岛的通知才有反馈，与真实使用一致
+ *   all   所有有标签的通知都学习
+ *   none  不学习，只评估当前模型
+ *
+ * 用法：ReplayTool 语料.jsonl [--settings=设置.properties] [--model=模型目录] [--learn=shown|all|none] [--report=报告.json]
+ * --model 指定的目录中的模型文件（包括 ml_shards 分片目录）会复制到临时目录后使用，不会被修改。
+ */
+public final class ReplayTool {
+
+    private static final String SHARD_DIRECTORY = "ml_shards";
+    private static final String LEARN_SHOWN = "shown";
+    private static final String LEARN_ALL = "all";
+    private static final String LEARN_NONE = "none";
+
+    /**
+     * 超级岛中的通知（只记录 key，用于重复通知判断）
+     */
+    private static final class IslandEntry implements NotificationQueue.Entry {
+        private final String key;
+
+        IslandEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final ReplaySettings settings;
+    private final ShardedModel engine;
+    private final String learnMode;
+    private final long loadNanos;
+    private final AppNotificationConfig config = new AppNotificationConfig();
+    private final FeatureBuffer features = new FeatureBuffer();
+    private final NotificationQueue<IslandEntry> island = new NotificationQueue<>();
+
+    // 各阶段耗时
+    private final LatencyStats rulesStats = new LatencyStats("rules");
+    private final LatencyStats tokenizeStats = new LatencyStats("tokenize");
+    private final LatencyStats predictStats = new LatencyStats("predict");
+    private final LatencyStats learnStats = new LatencyStats("learn");
+    private final LatencyStats totalStats = new LatencyStats("total");
+
+    // 处理结果计数
+    private int total;
+    private int empty;
+    private int ignored;
+    private int updated;
+    private int shown;
+    private int scored;
+    private int filtered;
+    private int online;
+    private int learned;
+
+    // 有标签且经过本地模型评分的通知，过滤为正类
+    private int truePositive;
+    private int falsePositive;
+    private int trueNegative;
+    private int falseNegative;
+
+    private ReplayTool(ReplaySettings settings, ShardedModel engine, String learnMode, long loadNanos) {
+        this.settings = settings;
+        this.engine = engine;
+        this.learnMode = learnMode;
+        this.loadNanos = loadNanos;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File corpusFile = null;
+        File settingsFile = null;
+        File modelDirectory = null;
+        File reportFile = null;
+        String learnMode = LEARN_SHOWN;
+        for (String arg : args) {
+            if (arg.startsWith("--settings=")) {
+                settingsFile = new File(arg.substring("--settings=".length()));
+            } else if (arg.startsWith("--model=")) {
+                modelDirectory = new File(arg.substring("--model=".length()));
+            } else if (arg.startsWith("--learn=")) {
+                learnMode = arg.substring("--learn=".length());
+            } else if (arg.startsWith("--report=")) {
+                reportFile = new File(arg.substring("--report=".length()));
+            } else if (!arg.startsWith("--")) {
+                corpusFile = new File(arg);
+            }
+        }
+        if (corpusFile == null || !(LEARN_SHOWN.equals(learnMode) || LEARN_ALL.equals(learnMode) || LEARN_NONE.equals(learnMode))) {
+            System.err.println("usage: ReplayTool corpus.jsonl [--settings=file.properties] [--model=dir] "
+                    + "[--learn=shown|all|none] [--report=report.json]");
+            System.exit(2);
+            return;
+        }
+
+        ReplaySettings settings = ReplaySettings.load(settingsFile);
+        File directory = Files.createTempDirectory("xycjd-replay").toFile();
+        try {
+            if (modelDirectory != null) {
+                copyModelFiles(modelDirectory, directory);
+            }
+            ShardedModel engine = createShardedModel(settings.getLocalModelEngine(), directory, settings);
+            // 与设备上监听服务连接时的预加载相同，单独统计冷启动加载耗时
+            long loadStart = System.nanoTime();
+            engine.preload();
+            long loadNanos = System.nanoTime() - loadStart;
+
+            ReplayTool tool = new ReplayTool(settings, engine, learnMode, loadNanos);
+            JSONObject report = tool.run(corpusFile, directory);
+            tool.print(report);
+            if (reportFile != null) {
+                Files.write(reportFile.toPath(), report.toString(2).getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    static ScoringEngine createEngine(String name, File directory, ModelSettings settings) {
+        if (LogisticScoringEngine.NAME.equals(name)) {
+            return new LogisticScoringEngine(directory, settings);
+        }
+        if (HashedScoringEngine.NAME.equals(name)) {
+            return new HashedScoringEngine(directory, settings);
+        }
+        return new HeuristicScoringEngine(directory, settings);
+    }
+
+    /**
+     * 与 LocalModelManager 相同的分片布局：全局模型在 directory，分片在 ml_shards/引擎名/包名/
+     * 被淘汰的分片在当前线程上释放
+     */
+    static ShardedModel createShardedModel(String name, File directory, ModelSettings settings) {
+        if (LogisticScoringEngine.NAME.equals(name)) {
+            return new ShardedModel(new LogisticScoringEngine(directory, settings),
+                    new File(new File(directory, SHARD_DIRECTORY), LogisticScoringEngine.NAME), settings,
+                    LogisticScoringEngine::new, Runnable::run);
+        }
+        if (HashedScoringEngine.NAME.equals(name)) {
+            return new ShardedModel(new HashedScoringEngine(directory, settings),
+                    new File(new File(directory, SHARD_DIRECTORY), HashedScoringEngine.NAME), settings,
+                    HashedScoringEngine::new, Runnable::run);
+        }
+        return new ShardedModel(new HeuristicScoringEngine(directory, settings),
+                new File(new File(directory, SHARD_DIRECTORY), HeuristicScoringEngine.NAME), settings,
+                HeuristicScoringEngine::new, Runnable::run);
+    }
+
+    private JSONObject run(File corpusFile, File directory) throws IOException {
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+
+        int skippedLines;
+        long start = System.nanoTime();
+        try (ReplayCorpus corpus = new ReplayCorpus(corpusFile)) {
+            ReplayCorpus.Item item;
+            while ((item = corpus.next()) != null) {
+                long itemStart = System.nanoTime();
+                process(item);
+                totalStats.record(System.nanoTime() - itemStart);
+            }
+            skippedLines = corpus.getSkippedLines();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        engine.save();
+        long modelFileBytes = directorySize(directory);
+
+        JSONObject report = new JSONObject();
+        report.put("engine", engine.getName());
+        report.put("learn", learnMode);
+        report.put("notifications", total);
+        report.put("skipped_lines", skippedLines);
+        report.put("elapsed_ms", elapsed / 1_000_000.0);
+        report.put("throughput_per_second", elapsed > 0 ? total * 1e9 / elapsed : 0);
+        report.put("peak_heap_bytes", peakHeap);
+
+        JSONObject outcomes = new JSONObject();
+        outcomes.put("empty", empty);
+        outcomes.put("ignored", ignored);
+        outcomes.put("updated", updated);
+        outcomes.put("shown", shown);
+        outcomes.put("scored", scored);
+        outcomes.put("filtered", filtered);
+        outcomes.put("online_not_replayed", online);
+        outcomes.put("learned", learned);
+        report.put("outcomes", outcomes);
+
+        JSONArray stages = new JSONArray();
+        for (LatencyStats stats : new LatencyStats[]{rulesStats, tokenizeStats, predictStats, learnStats, totalStats}) {
+            JSONObject stage = new JSONObject();
+            stage.put("stage", stats.name);
+            stage.put("count", stats.count());
+            stage.put("p50_us", stats.percentile(0.50) / 1000.0);
+            stage.put("p90_us", stats.percentile(0.90) / 1000.0);
+            stage.put("p99_us", stats.percentile(0.99) / 1000.0);
+            stage.put("max_us", stats.max() / 1000.0);
+            stage.put("total_ms", stats.totalNanos() / 1_000_000.0);
+            stages.put(stage);
+        }
+        report.put("stages", stages);
+
+        JSONObject model = new JSONObject();
+        model.put("weight_bits", settings.getWeightBits());
+        model.put("load_ms", loadNanos / 1_000_000.0);
+        model.put("terms", engine.getTermCount());
+        model.put("loaded_shards", engine.getLoadedShardCount());
+        model.put("memory_bytes", engine.getMemoryUsageBytes());
+        model.put("file_bytes", modelFileBytes);
+        report.put("model", model);
+
+        int labeled = truePositive + falsePositive + trueNegative + falseNegative;
+        JSONObject quality = new JSONObject();
+        quality.put("labeled_scored", labeled);
+        quality.put("true_positive", truePositive);
+        quality.put("false_positive", falsePositive);
+        quality.put("true_negative", trueNegative);
+        quality.put("false_negative", falseNegative);
+        quality.put("precision", ratio(truePositive, truePositive + falsePositive));
+        quality.put("recall", ratio(truePositive, truePositive + falseNegative));
+        quality.put("accuracy", ratio(truePositive + trueNegative, labeled));
+        report.put("filter_quality", quality);
+        return report;
+    }
+
+    /**
+     * 单条通知：与 NotificationProcessor.processNotification 的流程相同
+     */
+    private void process(ReplayCorpus.Item item) {
+        total++;
+        settings.setCurrentTime(item.timestamp);
+
+        // 1. 前置检查：空消息
+        if ((item.title == null || item.title.isEmpty()) && (item.text == null || item.text.isEmpty())) {
+            empty++;
+            return;
+        }
+
+        // 2. 配置解析与处理规则（语料没有媒体信息，都按普通通知处理）
+        long t0 = System.nanoTime();
+        boolean isExisting = item.key != null && island.indexOfKey(item.key) >= 0;
+        NotificationRules.resolveConfig(config, settings, item.packageName, false, isExisting);
+        NotificationRules.Decision decision = NotificationRules.evaluate(config);
+        rulesStats.record(System.nanoTime() - t0);
+
+        boolean hasFeatures = false;
+        boolean showIsland = false;
+        switch (decision.action) {
+            case IGNORE:
+                ignored++;
+                return;
+            case UPDATE_EXISTING:
+                // 已在超级岛中，只更新内容
+                updated++;
+                return;
+            case SHOW_MEDIA:
+            case SHOW:
+                showIsland = true;
+                break;
+            case FILTER:
+                if (!NotificationRules.MODEL_LOCAL.equals(config.modelType)) {
+                    online++;
+                    showIsland = decision.showIsland;
+                    break;
+                }
+
+                // 3. 本地模型过滤
+                long t1 = System.nanoTime();
+                hasFeatures = Tokenizer.extractFeatures(item.title, item.text, settings.isStringTokenizer(), features);
+                long t2 = System.nanoTime();
+                float score = hasFeatures ? engine.predict(item.packageName, features) : ModelSnapshot.DEFAULT_WEIGHT;
+                long t3 = System.nanoTime();
+                tokenizeStats.record(t2 - t1);
+                predictStats.record(t3 - t2);
+
+                boolean shouldFilter = NotificationRules.shouldFilter(score, settings.getFilteringDegree());
+                scored++;
+                if (shouldFilter) filtered++;
+                countQuality(item.keep, shouldFilter);
+                showIsland = !shouldFilter && decision.showIsland;
+                break;
+        }
+        if (showIsland) {
+            shown++;
+        }
+
+        // 4. 学习：模拟用户反馈，反馈后通知离开超级岛
+        boolean feedback = item.keep != null && config.modelFilterEnabled
+                && NotificationRules.MODEL_LOCAL.equals(config.modelType)
+                && (LEARN_ALL.equals(learnMode) || (LEARN_SHOWN.equals(learnMode) && showIsland));
+        if (feedback) {
+            long t4 = System.nanoTime();
+            if (!hasFeatures) {
+                hasFeatures = Tokenizer.extractFeatures(item.title, item.text, settings.isStringTokenizer(), features);
+            }
+            if (hasFeatures) {
+                engine.learn(item.packageName, features, item.keep);
+                learned++;
+            }
+            learnStats.record(System.nanoTime() - t4);
+        } else if (showIsland && item.key != null) {
+            island.addFirst(new IslandEntry(item.key));
+        }
+    }
+
+    private void countQuality(Boolean keep, boolean shouldFilter) {
+        if (keep == null) return;
+        if (shouldFilter) {
+            if (keep) falsePositive++;
+            else truePositive++;
+        } else {
+            if (keep) trueNegative++;
+            else falseNegative++;
+        }
+    }
+
+    private static double ratio(int numerator, int denominator) {
+        return denominator == 0 ? 0 : (double) numerator / denominator;
+    }
+
+    private void print(JSONObject report) {
+        JSONObject outcomes = report.getJSONObject("outcomes");
+        JSONObject model = report.getJSONObject("model");
+        JSONObject quality = report.getJSONObject("filter_quality");
+
+        System.out.printf(Locale.ROOT, "engine=%s learn=%s notifications=%d skipped_lines=%d%n",
+                report.getString("engine"), learnMode, total, report.getInt("skipped_lines"));
+        System.out.printf(Locale.ROOT, "elapsed %.1f ms, throughput %.0f notifications/s, peak heap %.1f MB%n",
+                report.getDouble("elapsed_ms"), report.getDouble("throughput_per_second"),
+                report.getLong("peak_heap_bytes") / (1024.0 * 1024.0));
+        System.out.printf(Locale.ROOT, "empty %d, ignored %d, updated %d, scored %d, filtered %d, shown %d, online %d, learned %d%n",
+                outcomes.getInt("empty"), outcomes.getInt("ignored"), outcomes.getInt("updated"),
+                outcomes.getInt("scored"), outcomes.getInt("filtered"), outcomes.getInt("shown"),
+                outcomes.getInt("online_not_replayed"), outcomes.getInt("learned"));
+
+        System.out.printf(Locale.ROOT, "%-10s %8s %10s %10s %10s %10s%n", "stage", "count", "p50(us)", "p90(us)", "p99(us)", "max(us)");
+        JSONArray stages = report.getJSONArray("stages");
+        for (int i = 0; i < stages.length(); i++) {
+            JSONObject stage = stages.getJSONObject(i);
+            System.out.printf(Locale.ROOT, "%-10s %8d %10.1f %10.1f %10.1f %10.1f%n",
+                    stage.getString("stage"), stage.getInt("count"), stage.getDouble("p50_us"),
+                    stage.getDouble("p90_us"), stage.getDouble("p99_us"), stage.getDouble("max_us"));
+        }
+
+        System.out.printf(Locale.ROOT, "model: %d terms (%d shards loaded), %.1f KB in memory, %.1f KB on disk, loaded in %.1f ms%n",
+                model.getInt("terms"), model.getInt("loaded_shards"), model.getLong("memory_bytes") / 1024.0,
+                model.getLong("file_bytes") / 1024.0, model.getDouble("load_ms"));
+        System.out.printf(Locale.ROOT, "filter quality (%d labeled): precision %.3f, recall %.3f, accuracy %.3f "
+                        + "(tp %d, fp %d, tn %d, fn %d)%n",
+                quality.getInt("labeled_scored"), quality.getDouble("precision"), quality.getDouble("recall"),
+                quality.getDouble("accuracy"), truePositive, falsePositive, trueNegative, falseNegative);
+    }
+
+    static void copyModelFiles(File from, File to) throws IOException {
+        File[] files = from.listFiles();
+        if (files == null) {
+            throw new IOException("not a directory: " + from);
+        }
+        for (File file : files) {
+            if (file.isFile() && file.getName().startsWith("ml_")) {
+                Files.copy(file.toPath(), new File(to, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else if (file.isDirectory() && file.getName().equals(SHARD_DIRECTORY)) {
+                copyDirectory(file, new File(to, file.getName()));
+            }
+        }
+    }
+
+    private static void copyDirectory(File from, File to) throws IOException {
+        to.mkdirs();
+        File[] files = from.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            File target = new File(to, file.getName());
+            if (file.isDirectory()) {
+                copyDirectory(file, target);
+            } else {
+                Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static long directorySize(File directory) {
+        long bytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.isDirectory() ? directorySize(file) : file.length();
+            }
+        }
+        return bytes;
+    }
+
+    static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        directory.delete();
+    }
+}